@@ -1,9 +1,11 @@
 package universitysystem.courses;
 
 import universitysystem.data.Data;
+import universitysystem.data.Shard;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * class `Course` presents an academic course offered in a university.
  * It includes details such as course code, title, description, credits, and other relevant information. 
@@ -11,7 +13,9 @@ import java.util.*;
  */
 public class Course implements Serializable
 {
+	private static final long serialVersionUID = 6846895529618025655L;
 	private static boolean registrationIsOpen;
+	private static final AtomicInteger creditsVersion = new AtomicInteger();
 	private HashSet<Course> prerequisites;
 	private String title;
 	private String description;
@@ -134,7 +138,7 @@ public class Course implements Serializable
 	 * @param title - new title for the course.
 	 */
 	public void setTitle(String title) {
-		this.title = title;
+		Data.getInstance().change(Shard.CORE, () -> this.title = title);
 	}
 	/**
 	 * Retrieves the description of the course.
@@ -148,7 +152,7 @@ public class Course implements Serializable
 	 * @param description The new description for the course.
 	 */
 	public void setDescription(String description) {
-		this.description = description;
+		Data.getInstance().change(Shard.CORE, () -> this.description = description);
 	}
 	/**
 	 * Retrieves the unique code assigned to the course.
@@ -162,7 +166,8 @@ public class Course implements Serializable
 	 * @param code - new code for the course.
 	 */
 	public void setCode(String code) {
-		this.code = code;
+		Data.getInstance().change(Shard.CORE, () -> this.code = code);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves number of lectures.
@@ -176,7 +181,8 @@ public class Course implements Serializable
 	 * @param lectures - new number of lectures.
 	 */
 	public void setLectures(int lectures) {
-		this.lectures = lectures;
+		Data.getInstance().change(Shard.CORE, () -> this.lectures = lectures);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves number of practices.
@@ -190,7 +196,8 @@ public class Course implements Serializable
 	 * @param practices The new number of practices.
 	 */
 	public void setPractices(int practices) {
-		this.practices = practices;
+		Data.getInstance().change(Shard.CORE, () -> this.practices = practices);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves number of labs.
@@ -204,7 +211,8 @@ public class Course implements Serializable
 	 * @param labs - new number of labs.
 	 */
 	public void setLabs(int labs) {
-		this.labs = labs;
+		Data.getInstance().change(Shard.CORE, () -> this.labs = labs);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves number of credits.
@@ -218,28 +226,41 @@ public class Course implements Serializable
 	 * @param credits The new number of credits.
 	 */
 	public void setCredits(int credits) {
-		this.credits = credits;
+		Data.getInstance().change(Shard.CORE, () -> this.credits = credits);
+		creditsVersion.incrementAndGet();
+		Data.getInstance().catalogChanged();
+	}
+	/**
+	 * Retrieves a number that changes every time the credits of any course are changed,
+	 * so values computed from credits can tell that they are out of date.
+	 * @return version of the credits.
+	 */
+	public static int getCreditsVersion() {
+		return creditsVersion.get();
 	}
 	/**
 	 * Sets major faculties associated.
 	 * @param majorFaculties - set of major faculties.
 	 */
 	public void setMajorFaculties(HashSet<Faculty> majorFaculties) {
-		this.majorFaculties = majorFaculties;
+		Data.getInstance().change(Shard.CORE, () -> this.majorFaculties = majorFaculties);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Sets the minor faculties associated.
 	 * @param minorFaculties - set of minor faculties.
 	 */
 	public void setMinorFaculties(HashSet<Faculty> minorFaculties) {
-		this.minorFaculties = minorFaculties;
+		Data.getInstance().change(Shard.CORE, () -> this.minorFaculties = minorFaculties);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Sets the free elective faculties.
 	 * @param freeElectiveFaculties - set of free elective faculties.
 	 */
 	public void setFreeElectiveFaculties(HashSet<Faculty> freeElectiveFaculties) {
-		this.freeElectiveFaculties = freeElectiveFaculties;
+		Data.getInstance().change(Shard.CORE, () -> this.freeElectiveFaculties = freeElectiveFaculties);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves major faculties.
@@ -269,7 +290,9 @@ public class Course implements Serializable
 	 * @return `true` if the major faculty is successfully added, `false` otherwise.
 	 */
 	public boolean addMajorFaculty(Faculty f) {
-		return majorFaculties.add(f);
+		boolean changed = Data.getInstance().change(Shard.CORE, () -> majorFaculties.add(f));
+		Data.getInstance().catalogChanged();
+		return changed;
 	}
 	/**
 	 * Adds minor faculty to the set.
@@ -277,7 +300,9 @@ public class Course implements Serializable
 	 * @return `true` if the minor faculty is successfully added, `false` otherwise.
 	 */
 	public boolean addMinorFaculty(Faculty f) {
-		return minorFaculties.add(f);
+		boolean changed = Data.getInstance().change(Shard.CORE, () -> minorFaculties.add(f));
+		Data.getInstance().catalogChanged();
+		return changed;
 	}
 	/**
 	 * Adds free elective faculty to the set.
@@ -285,7 +310,9 @@ public class Course implements Serializable
 	 * @return `true` if the free elective faculty is successfully added, `false` otherwise.
 	 */
 	public boolean addFreeFaculty(Faculty f) {
-		return freeElectiveFaculties.add(f);
+		boolean changed = Data.getInstance().change(Shard.CORE, () -> freeElectiveFaculties.add(f));
+		Data.getInstance().catalogChanged();
+		return changed;
 	}
 	/**
 	 * Removes a major faculty from the set.
@@ -294,7 +321,9 @@ public class Course implements Serializable
 	 */
 	public boolean removeMajorFaculty(Faculty f) {
 		if (this.majorFaculties != null) {
-			return this.majorFaculties.remove(f);
+			boolean changed = Data.getInstance().change(Shard.CORE, () -> this.majorFaculties.remove(f));
+			Data.getInstance().catalogChanged();
+			return changed;
 		}
 
 		return false;
@@ -306,7 +335,9 @@ public class Course implements Serializable
 	 */
 	public boolean removeMinorFaculty(Faculty f) {
 		if (this.minorFaculties != null) {
-			return this.minorFaculties.remove(f);
+			boolean changed = Data.getInstance().change(Shard.CORE, () -> this.minorFaculties.remove(f));
+			Data.getInstance().catalogChanged();
+			return changed;
 		}
 
 		return false;
@@ -318,7 +349,9 @@ public class Course implements Serializable
 	 */
 	public boolean removeFreeFaculty(Faculty f) {
 		if (this.freeElectiveFaculties != null) {
-			return this.freeElectiveFaculties.remove(f);
+			boolean changed = Data.getInstance().change(Shard.CORE, () -> this.freeElectiveFaculties.remove(f));
+			Data.getInstance().catalogChanged();
+			return changed;
 		}
 		return false;
 	}
@@ -334,7 +367,8 @@ public class Course implements Serializable
 	 * @param lessons - new set of lessons.
 	 */
 	public void setLessons(TreeSet<Lesson> lessons) {
-		this.lessons = lessons;
+		Data.getInstance().change(Shard.CORE, () -> this.lessons = lessons);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Adds a lesson to the set of lessons.
@@ -342,7 +376,9 @@ public class Course implements Serializable
 	 * @return `true` if the lesson is successfully added, `false` otherwise.
 	 */
 	public boolean addLesson(Lesson l) {
-		return lessons.add(l);
+		boolean changed = Data.getInstance().change(Shard.CORE, () -> lessons.add(l));
+		Data.getInstance().catalogChanged();
+		return changed;
 	}
 	/**
 	 * Removes a lesson from the set of lessons.
@@ -351,10 +387,25 @@ public class Course implements Serializable
 	 */
 	public boolean removeLesson(Lesson l) {
 		if (this.lessons != null) {
-			return this.lessons.remove(l);
+			boolean changed = Data.getInstance().change(Shard.CORE, () -> this.lessons.remove(l));
+			Data.getInstance().catalogChanged();
+			return changed;
 		}
 		return false;
 	}
+	/**
+	 * Retrieves number of students the lessons of the course can take. A student needs a seat in a lesson
+	 * of every type, so it is the smallest number of seats of all lessons of one type.
+	 * @return number of seats, {@link Integer#MAX_VALUE} if the course has no lessons yet.
+	 */
+	public int getCapacity() {
+		if (lessons == null) return Integer.MAX_VALUE;
+		EnumMap<LessonType, Integer> seats = new EnumMap<>(LessonType.class);
+		for (Lesson l : lessons) {
+			if (l.getType() != null) seats.merge(l.getType(), l.getMaxStudents(), Integer::sum);
+		}
+		return seats.isEmpty() ? Integer.MAX_VALUE : Collections.min(seats.values());
+	}
 	/**
 	 * Retrieves semester which the course is offered.
 	 * @return Semester of the course.
@@ -367,7 +418,8 @@ public class Course implements Serializable
 	 * @param semester -  semester for the course.
 	 */
 	public void setSemester(Semester semester) {
-		this.semester = semester;
+		Data.getInstance().change(Shard.CORE, () -> this.semester = semester);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves the academic year of the course.
@@ -381,7 +433,8 @@ public class Course implements Serializable
 	 * @param year - new academic year for the course.
 	 */
 	public void setYear(int year) {
-		this.year = year;
+		Data.getInstance().change(Shard.CORE, () -> this.year = year);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * formula representing the distribution of labs,lectures, and practices.
@@ -405,26 +458,36 @@ public class Course implements Serializable
 		Course.registrationIsOpen = registrationIsOpen;
 	}
 	/**
-	 * Retrieves the set of prerequisites for the course.
+	 * Retrieves the set of prerequisites for the course. Use the methods of the course to change it,
+	 * so the graph of the prerequisites is kept up to date.
 	 * @return Set of prerequisites for the course.
 	 */
 	public HashSet<Course> getPrerequisites() {
 		return this.prerequisites;
 	}
 	/**
-	 * Sets prerequisites for the course.
+	 * Sets prerequisites for the course. They are not set if one of them needs this course,
+	 * directly or through its prerequisites.
 	 * @param prerequisites  set of prerequisites to be set for the course.
+	 * @return `true` if the prerequisites were set, `false` otherwise.
 	 */
-	public void setPrerequisites(HashSet<Course> prerequisites) {
-		this.prerequisites = prerequisites;
+	public boolean setPrerequisites(HashSet<Course> prerequisites) {
+		Data data = Data.getInstance();
+		if (!data.change(Shard.CORE, () -> data.getPrerequisiteGraph().replace(this, prerequisites, () -> this.prerequisites = prerequisites))) return false;
+		data.catalogChanged();
+		return true;
 	}
 	/**
-	 * Adds a prerequisite course to the set of prerequisites.
+	 * Adds a prerequisite course to the set of prerequisites. A course that needs this course,
+	 * directly or through its prerequisites, is not added, the prerequisites would never be completed.
 	 * @param c - course to be added as a prerequisite.
 	 * @return `true` if the course was added successfully, `false` otherwise.
 	 */
 	public boolean addPrerequisite(Course c) {
-		return prerequisites.add(c);
+		Data data = Data.getInstance();
+		if (!data.change(Shard.CORE, () -> data.getPrerequisiteGraph().add(this, c, () -> prerequisites.add(c)))) return false;
+		data.catalogChanged();
+		return true;
 	}
 	/**
 	 * Removes a prerequisite course from the set of prerequisites.
@@ -432,10 +495,10 @@ public class Course implements Serializable
 	 * @return `true` if the course was removed successfully, `false` otherwise.
 	 */
 	public boolean removePrerequisite(Course c) {
-		if (this.prerequisites != null) {
-			return this.prerequisites.remove(c);
-		}
-		return false;
+		Data data = Data.getInstance();
+		if (this.prerequisites == null || !data.change(Shard.CORE, () -> data.getPrerequisiteGraph().remove(() -> this.prerequisites.remove(c)))) return false;
+		data.catalogChanged();
+		return true;
 	}
 	/**
 	 * Creates a clone of the course with the specified year and semester.
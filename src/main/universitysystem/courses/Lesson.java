@@ -2,10 +2,12 @@ package universitysystem.courses;
 
 
 import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.entity.Teacher;
 
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Class `Lesson` represents a scheduled lesson in a university system.
  * It includes information about the teacher, lesson type, day of the week, start and end times,
@@ -14,6 +16,7 @@ import java.util.Objects;
  * and determining if a lesson is full.
  */
 public class Lesson implements Comparable<Lesson>, Serializable {
+	private static final long serialVersionUID = -7111723578773562308L;
 	private static boolean schedulingIsOpen;
 	private Teacher teacher;
 	private LessonType type;
@@ -21,6 +24,7 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	private int startTime;
 	private int endTime;
 	private int maxStudents;
+	private transient volatile AtomicInteger seats;
 
 	static {
 		schedulingIsOpen = false;
@@ -88,7 +92,7 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @param t - teacher to be assigned to this lesson.
 	 */
 	public void setTeacher(Teacher t) {
-		this.teacher = t;
+		Data.getInstance().change(Shard.CORE, () -> this.teacher = t);
 	}
 	/**
 	 * Retrieves the teacher assigned to this lesson.
@@ -109,7 +113,8 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @param l - type to be assigned to this lesson.
 	 */
 	public void setType(LessonType l) {
-		this.type = l;
+		Data.getInstance().change(Shard.CORE, () -> this.type = l);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves day of the week.
@@ -123,7 +128,8 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @param d - day of the week.
 	 */
 	public void setDay(DaysWeek d) {
-		this.day = d;
+		Data.getInstance().change(Shard.CORE, () -> this.day = d);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves start time.
@@ -137,7 +143,8 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @param time The start time.
 	 */
 	public void setStartTime(int time) {
-		this.startTime = time;
+		Data.getInstance().change(Shard.CORE, () -> this.startTime = time);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Retrieves the end time.
@@ -151,14 +158,15 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @param time The end time.
 	 */
 	public void setEndTime(int time) {
-		this.endTime = time;
+		Data.getInstance().change(Shard.CORE, () -> this.endTime = time);
+		Data.getInstance().catalogChanged();
 	}
 	/**
 	 * Sets maximum number of students for this lesson.
 	 * @param cnt - maximum number of students to be assigned to this lesson.
 	 */
 	public void setMaxStudents(int cnt) {
-		this.maxStudents = cnt;
+		Data.getInstance().change(Shard.CORE, () -> this.maxStudents = cnt);
 	}
 	/**
 	 * Retrieves the maximum number of students.
@@ -172,10 +180,8 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	 * @return The current number of students enrolled.
 	 */
 	public long getCurrentStudents(){
-        return Data.getInstance().getStudents().stream()
-				.flatMap(n -> n.getCurrentCourses().stream())
-				.flatMap(n -> n.getLessons().stream())
-				.filter(n -> n.equals(this)).count();
+		Data.getInstance().getEnrollments();
+		return seats().get();
 	}
 	/**
 	 * Checks if this lesson is full based on the current number of enrolled students.
@@ -184,6 +190,46 @@ public class Lesson implements Comparable<Lesson>, Serializable {
 	public boolean isLessonFull(){
 		return getCurrentStudents() >= getMaxStudents();
 	}
+	/**
+	 * Takes a seat in this lesson if there is a free one. The check and the reservation are one atomic step,
+	 * so concurrent registrations never take more than {@link #getMaxStudents()} seats.
+	 * @return {@code true} if a seat was reserved, {@code false} if the lesson is full.
+	 */
+	public boolean tryReserveSeat(){
+		Data.getInstance().getEnrollments();
+		AtomicInteger s = seats();
+		while (true) {
+			int taken = s.get();
+			if (taken >= maxStudents) return false;
+			if (s.compareAndSet(taken, taken + 1)) return true;
+		}
+	}
+	/**
+	 * Frees a seat taken by {@link #tryReserveSeat()} or {@link #occupySeat()}.
+	 */
+	public void releaseSeat(){
+		seats().updateAndGet(n -> Math.max(0, n - 1));
+	}
+	/**
+	 * Takes a seat without checking the limit. Used for students that are already enrolled
+	 * when the enrollment index is built.
+	 */
+	public void occupySeat(){
+		seats().incrementAndGet();
+	}
+	/**
+	 * Seat counter is not stored, it is counted by {@link universitysystem.data.EnrollmentIndex} when it is built.
+	 */
+	private AtomicInteger seats(){
+		AtomicInteger s = seats;
+		if (s == null) {
+			synchronized (this) {
+				if (seats == null) seats = new AtomicInteger();
+				s = seats;
+			}
+		}
+		return s;
+	}
     /** Performs a check if this lesson is equal to the specified object
      */
 	@Override
@@ -1,5 +1,8 @@
 package universitysystem.courses;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
+
 import java.io.Serializable;
 import java.util.*;
 /**
@@ -8,10 +11,28 @@ import java.util.*;
  */
 public class Mark implements Serializable
 {
+	private static final long serialVersionUID = -7356425984800299611L;
+	/**
+	 * GPA of every whole grade from 0 to 100.
+	 */
+	private static final double[] GPA = new double[101];
 	private double value;
 	private LessonType lessonType;
 	private Date date;
 
+	static {
+		int[] bounds = {97, 93, 90, 87, 83, 80, 77, 73, 70, 67, 65};
+		double[] gpa = {4.0, 4.0, 3.7, 3.3, 3.0, 2.7, 2.3, 2.0, 1.7, 1.3, 1.0};
+		for (int grade = 0; grade < GPA.length; grade++) {
+			for (int i = 0; i < bounds.length; i++) {
+				if (grade >= bounds[i]) {
+					GPA[grade] = gpa[i];
+					break;
+				}
+			}
+		}
+	}
+
 	{
 		date = new Date();
 	}
@@ -44,7 +65,7 @@ public class Mark implements Serializable
      * @param value - mark value to be set.
      */
 	public void setMark(double value) {
-		this.value = value;
+		Data.getInstance().change(Shard.CORE, () -> this.value = value);
 	}
     /**
      * Retrieves the mark value for this mark.
@@ -65,14 +86,14 @@ public class Mark implements Serializable
      * @param l - lesson type to be assigned.
      */
 	public void setLessonType(LessonType l) {
-		this.lessonType = l;
+		Data.getInstance().change(Shard.CORE, () -> this.lessonType = l);
 	}
     /**
      * Sets the date for this mark.
      * @param d - date to be assigned to this mark.
      */
 	public void setDate(Date d) {
-		this.date = d;
+		Data.getInstance().change(Shard.CORE, () -> this.date = d);
 	}
     /**
      * Retrieves the date when this mark was assigned.
@@ -111,35 +132,13 @@ public class Mark implements Serializable
 	}
     /**
      * Converts a numeric grade to the corresponding GPA.
+     * The bounds of the grades are whole numbers, so the GPA is looked up by the whole part of the grade.
      * @param grade - numeric grade to be converted.
      * @return PA equivalent of the provided grade.
      */
 	public static double gradeToGpa(double grade) {
-		if(grade >= 97) {
-			return 4.0;
-		} else if (grade >= 93) {
-			return 4.0;
-		} else if (grade >= 90) {
-			return 3.7;
-		} else if (grade >= 87) {
-			return 3.3;
-		} else if (grade >= 83) {
-			return 3.0;
-		} else if (grade >= 80) {
-			return 2.7;
-		} else if (grade >= 77) {
-			return 2.3;
-		} else if (grade >= 73) {
-			return 2.0;
-		} else if (grade >= 70) {
-			return 1.7;
-		} else if (grade >= 67) {
-			return 1.3;
-		} else if (grade >= 65) {
-			return 1.0;
-		} else {
-			return 0;
-		}
+		if(!(grade >= 0)) return 0;
+		return GPA[(int) Math.min(grade, GPA.length - 1)];
 	}
 	
 }
@@ -1,5 +1,9 @@
 package universitysystem.courses;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
+import universitysystem.entity.Student;
+
 import java.io.Serializable;
 import java.util.*;
 /**
@@ -9,6 +13,7 @@ import java.util.*;
  */
 public class RegisteredCourse implements Serializable
 {
+	private static final long serialVersionUID = 2979426133107044411L;
 	private Course course;
 	private boolean retake;
 	private CourseType type;
@@ -18,6 +23,7 @@ public class RegisteredCourse implements Serializable
 	private double secondAttestation;
 	private double finalExam;
 	private Date lastUpdateAttestation;
+	private transient Student owner;
 
 	{
 		lessons = new TreeSet<>();
@@ -91,7 +97,7 @@ public class RegisteredCourse implements Serializable
      * @param c - course to be assigned.
      */
 	public void setCourse(Course c) {
-		this.course = c;
+		Data.getInstance().change(Shard.CORE, () -> this.course = c);
 	}
 
     /**
@@ -106,7 +112,10 @@ public class RegisteredCourse implements Serializable
      * @param b - `true` if it's a retake, `false` otherwise.
      */
 	public void setRetake(boolean b) {
-		this.retake = b;	
+		Data.getInstance().change(Shard.CORE, () -> {
+			this.retake = b;
+			gradeChanged();
+		});
 	}
     /**
      * Retrieves the type of the course.
@@ -120,7 +129,7 @@ public class RegisteredCourse implements Serializable
      * @param c - type to be assigned.
      */
 	public void setType(CourseType c) {
-		this.type = c;
+		Data.getInstance().change(Shard.CORE, () -> this.type = c);
 	}
     /**
      * Adds a lesson to the set of lessons
@@ -128,8 +137,10 @@ public class RegisteredCourse implements Serializable
      * @return `true` if the lesson was successfully added, `false` otherwise.
      */
 	public boolean addLesson(Lesson l) {
-		lessons.add(l);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			lessons.add(l);
+			return true;
+		});
 	}
     /**
      * Removes lesson from the set of lessons for this registered course.
@@ -137,10 +148,12 @@ public class RegisteredCourse implements Serializable
      * @return `true` if the lesson was successfully removed, `false` otherwise.
      */
 	public boolean removeLesson(Lesson l) {
-		if (this.lessons != null) {
-			return this.lessons.remove(l);
-		}
-		return false;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if (this.lessons != null) {
+				return this.lessons.remove(l);
+			}
+			return false;
+		});
 	}
     /**
      * Retrieves the set of lessons.
@@ -161,7 +174,10 @@ public class RegisteredCourse implements Serializable
      * @param d - score of the first attestation to be assigned.
      */
 	public void setFirstAttestation(double d) {
-		this.firstAttestation = d;	
+		Data.getInstance().change(Shard.CORE, () -> {
+			this.firstAttestation = d;
+			gradeChanged();
+		});
 	}
     /**
      * Retrieves  score of the second attestation.
@@ -175,7 +191,10 @@ public class RegisteredCourse implements Serializable
      * @param d - score of the second attestation to be assigned.
      */
 	public void setSecondAttestation(double d) {
-		this.secondAttestation = d;	
+		Data.getInstance().change(Shard.CORE, () -> {
+			this.secondAttestation = d;
+			gradeChanged();
+		});
 	}
     /**
      * Retrieves  score of the final exam.
@@ -189,20 +208,23 @@ public class RegisteredCourse implements Serializable
      * @param d - score of the final exam to be assigned.
      */
 	public void setFinalExam(double d) {
-		this.finalExam = d;
+		Data.getInstance().change(Shard.CORE, () -> {
+			this.finalExam = d;
+			gradeChanged();
+		});
 	}
     /**
      * Sets date of the last update to the attestation scores.
      * @param d - date of the last update to be assigned.
      */
 	public void setLastUpdateAttestation(Date d) {
-		this.lastUpdateAttestation = d;
+		Data.getInstance().change(Shard.CORE, () -> this.lastUpdateAttestation = d);
 	}
     /**
      * Sets the date of the last update to the current date.
      */
 	public void setLastUpdateAttestation() {
-		this.lastUpdateAttestation = new Date();
+		Data.getInstance().change(Shard.CORE, () -> this.lastUpdateAttestation = new Date());
 	}
     /**
      * Retrieves date of the last update to the attestation scores.
@@ -217,8 +239,10 @@ public class RegisteredCourse implements Serializable
      * @return `true` if the mark was successfully added, `false` otherwise.
      */
 	public boolean addMark(Mark m) {
-		marks.add(m);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			marks.add(m);
+			return true;
+		});
 	}
     /**
      * Removes mark from the vector of marks for this course.
@@ -226,11 +250,13 @@ public class RegisteredCourse implements Serializable
      * @return `true` if the mark was successfully removed, `false` otherwise.
      */
 	public boolean removeMark(Mark m) {
-		if (this.marks != null) {
-			return this.marks.remove(m);
-		}
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if (this.marks != null) {
+				return this.marks.remove(m);
+			}
 
-		return false;
+			return false;
+		});
 	}
     /**
      * Retrieves the vector of marks.
@@ -252,16 +278,27 @@ public class RegisteredCourse implements Serializable
      * @return `true` if attestation scores have been added, `false` otherwise.
      */
 	public boolean putAttestation(){
-		if (firstAttestation == 0 && secondAttestation == 0){
-			firstAttestation = marks.stream().mapToDouble(Mark::getMark).sum();
-			lastUpdateAttestation = new Date();
-		} else if(secondAttestation == 0){
-			secondAttestation = marks.stream().filter(n -> n.getDate().compareTo(lastUpdateAttestation) > 0)
-					.mapToDouble(Mark::getMark).sum();
-			lastUpdateAttestation = new Date();
-			if(firstAttestation + secondAttestation < 29.5) retake = true;
-		} else return false;
-		return true;
+		return putAttestation(new Date());
+	}
+    /**
+     * Puts attestation scores for this course at the given time.
+     * @param time - time of the attestation update.
+     * @return `true` if attestation scores have been added, `false` otherwise.
+     */
+	public boolean putAttestation(Date time){
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if (firstAttestation == 0 && secondAttestation == 0){
+				firstAttestation = marks.stream().mapToDouble(Mark::getMark).sum();
+				lastUpdateAttestation = time;
+			} else if(secondAttestation == 0){
+				secondAttestation = marks.stream().filter(n -> n.getDate().compareTo(lastUpdateAttestation) > 0)
+						.mapToDouble(Mark::getMark).sum();
+				lastUpdateAttestation = time;
+				if(firstAttestation + secondAttestation < 29.5) retake = true;
+			} else return false;
+			gradeChanged();
+			return true;
+		});
 	}
     /**
      * Sets final exam score for this course.
@@ -269,12 +306,34 @@ public class RegisteredCourse implements Serializable
      * @return `true` if the final exam score was successfully set, `false` otherwise.
      */
 	public boolean putFinalExam(Double d){
+		return putFinalExam(d, new Date());
+	}
+    /**
+     * Sets final exam score for this course at the given time.
+     * @param d - final exam score to be assigned.
+     * @param time - time of the attestation update.
+     * @return `true` if the final exam score was successfully set, `false` otherwise.
+     */
+	public boolean putFinalExam(Double d, Date time){
 		if(isRetake()) return false;
 		setFinalExam(d);
 		if(finalExam < 20) retake = true;
-		lastUpdateAttestation = new Date();
+		lastUpdateAttestation = time;
+		gradeChanged();
 		return true;
 	}
+    /**
+     * Sets the student whose GPA is computed from this course, so it is recomputed when a grade changes.
+     * @param student - student that completed the course, {@code null} if none.
+     */
+	public void setOwner(Student student) {
+		this.owner = student;
+	}
+
+	private void gradeChanged() {
+		Student student = owner;
+		if (student != null) student.invalidateGpa();
+	}
     /**
      * Generates a hash code for this RegisteredCourse based on the course and lessons.
      * @return The hash code for this RegisteredCourse.
@@ -0,0 +1,204 @@
+package universitysystem.data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retention of the {@link AuditLog}. Closed segments that are too old, that are beyond the number of kept logs or
+ * that belong to a semester that is no longer kept are moved with their index to an archive directory of
+ * the semester they were written in. Archived segments stay compressed and indexed, so they can be searched
+ * with {@link AuditQuery#withArchive()} or, after being copied elsewhere, with {@link AuditQuery#in(File)}.
+ * Retention works on whole segments, so a few logs past a limit may stay live until their segment is closed.
+ * Semesters are recorded in the file {@value #SEMESTERS} of the audit directory, one line per semester
+ * with its name and the number of its first segment.
+ */
+public class AuditArchive
+{
+	private static final String SEMESTERS = "semesters";
+	private static final String ARCHIVE = "archive";
+	private static final String OLDER = "older";
+	private static long maxAgeMillis = 0;
+	private static long maxLogs = 0;
+	private static int keptSemesters = 2;
+
+	private AuditArchive() {
+	}
+
+	public static long getMaxAge(TimeUnit unit) {
+		return unit.convert(maxAgeMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets how long logs stay live.
+	 * @param age - age of the newest log of a segment after which it is archived, {@code 0} to keep logs of any age.
+	 * @param unit - unit of the age.
+	 */
+	public static void setMaxAge(long age, TimeUnit unit) {
+		maxAgeMillis = Math.max(0, unit.toMillis(age));
+	}
+
+	public static long getMaxLogs() {
+		return maxLogs;
+	}
+
+	/**
+	 * Sets how many logs stay live.
+	 * @param count - number of the newest logs that are kept, {@code 0} to keep any number.
+	 */
+	public static void setMaxLogs(long count) {
+		maxLogs = Math.max(0, count);
+	}
+
+	public static int getKeptSemesters() {
+		return keptSemesters;
+	}
+
+	/**
+	 * Sets how many semesters stay live, including the current one.
+	 * @param count - number of semesters, {@code 0} to keep all of them.
+	 */
+	public static void setKeptSemesters(int count) {
+		keptSemesters = Math.max(0, count);
+	}
+
+	/**
+	 * Directory of the archived segments.
+	 */
+	public static File getDirectory() {
+		return new File(AuditLog.getDirectory(), ARCHIVE);
+	}
+
+	/**
+	 * Starts a new semester: logs appended after the call are written to a new segment, then the retention is applied.
+	 * @param name - name of the semester, used as the name of its archive directory.
+	 */
+	static void startSemester(String name) {
+		// not under the lock: the writer may wait for it in apply() while the segment is started
+		int first = AuditLog.startSegment();
+		synchronized (AuditArchive.class) {
+			record(name, first);
+		}
+		apply();
+	}
+
+	private static void record(String name, int first) {
+		LinkedHashMap<String, Integer> semesters = semesters();
+		semesters.remove(name);
+		semesters.put(name, first);
+		File file = new File(AuditLog.getDirectory(), SEMESTERS);
+		File temp = new File(AuditLog.getDirectory(), SEMESTERS + ".tmp");
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Integer> semester : semesters.entrySet()) {
+				out.write(semester.getKey() + " " + semester.getValue() + "\n");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Moves the closed segments that are past a limit to the archive.
+	 * @return number of archived segments.
+	 */
+	public static synchronized int apply() {
+		List<File> segments = AuditLog.segments();
+		File current = AuditLog.currentSegment();
+		LinkedHashMap<String, Integer> semesters = semesters();
+		int keptFrom = 0;
+		if (keptSemesters > 0 && semesters.size() >= keptSemesters) {
+			keptFrom = new ArrayList<>(semesters.values()).get(semesters.size() - keptSemesters);
+		}
+		long now = System.currentTimeMillis();
+		long newer = 0;
+		int archived = 0;
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			File segment = segments.get(i);
+			List<AuditIndex.Block> blocks = AuditIndex.blocks(segment);
+			long count = 0;
+			long maxTime = Long.MIN_VALUE;
+			for (AuditIndex.Block block : blocks) {
+				count += block.count;
+				maxTime = Math.max(maxTime, block.maxTime);
+			}
+			boolean expired = AuditLog.number(segment) < keptFrom
+					|| (maxAgeMillis > 0 && !blocks.isEmpty() && maxTime < now - maxAgeMillis)
+					|| (maxLogs > 0 && newer >= maxLogs);
+			newer += count;
+			if (!expired || segment.equals(current)) continue;
+			if (archive(segment, semesterOf(AuditLog.number(segment), semesters))) archived++;
+		}
+		return archived;
+	}
+
+	private static boolean archive(File segment, String semester) {
+		File directory = new File(getDirectory(), semester);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.err.println("Can not create " + directory);
+			return false;
+		}
+		File index = AuditIndex.indexOf(segment);
+		AuditIndex.forget(segment);
+		try {
+			// the index goes first, a segment without one gets a new index when it is read
+			if (index.isFile()) Files.move(index.toPath(), new File(directory, index.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(segment.toPath(), new File(directory, segment.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Archived segments, oldest first.
+	 */
+	static List<File> segments() {
+		return AuditLog.segments(getDirectory());
+	}
+
+	private static String semesterOf(int segment, LinkedHashMap<String, Integer> semesters) {
+		String name = OLDER;
+		int start = -1;
+		for (Map.Entry<String, Integer> semester : semesters.entrySet()) {
+			// a later semester that starts at the same segment wins, the earlier one wrote nothing
+			if (semester.getValue() <= segment && semester.getValue() >= start) {
+				name = semester.getKey();
+				start = semester.getValue();
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Semesters by the number of their first segment, oldest first.
+	 */
+	private static LinkedHashMap<String, Integer> semesters() {
+		LinkedHashMap<String, Integer> semesters = new LinkedHashMap<>();
+		File file = new File(AuditLog.getDirectory(), SEMESTERS);
+		if (!file.isFile()) return semesters;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				int space = line.lastIndexOf(' ');
+				if (space <= 0) continue;
+				try {
+					semesters.put(line.substring(0, space), Integer.parseInt(line.substring(space + 1)));
+				} catch (NumberFormatException e) {
+					// a line torn by a crash
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return semesters;
+	}
+}
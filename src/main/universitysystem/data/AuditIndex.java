@@ -0,0 +1,227 @@
+package universitysystem.data;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Index of the segment files of the {@link AuditLog}.
+ * Every batch written to a segment gets one fixed-size entry in the index file next to it. The entry holds
+ * where the batch is in the segment, the time range of its logs, the set of their actions and a bloom filter
+ * of their actors and targets, so a {@link AuditQuery} only decompresses the batches that may have a match.
+ * Indexes of closed segments are read once and kept in memory. An index that is missing or shorter than its
+ * segment, after a crash or for segments written before the index, is completed by reading the segment.
+ */
+class AuditIndex
+{
+	static final String SUFFIX = ".idx";
+	private static final int MAGIC = 0xA0D1711D;
+	private static final int FORMAT = 1;
+	private static final int HEADER = 8;
+	private static final int BLOOM_WORDS = 64;
+	private static final int BLOOM_BITS = BLOOM_WORDS * 64;
+	private static final int ENTRY = 8 + 4 + 4 + 8 + 8 + 8 + BLOOM_WORDS * 8;
+	private static final Map<File, List<Block>> cache = new HashMap<>();
+
+	private AuditIndex() {
+	}
+
+	/**
+	 * Summary of one batch of a segment.
+	 */
+	static class Block
+	{
+		final long offset;
+		final int length;
+		int count;
+		long minTime = Long.MAX_VALUE;
+		long maxTime = Long.MIN_VALUE;
+		long actions;
+		final long[] bloom = new long[BLOOM_WORDS];
+
+		Block(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		void addAll(LogRecords records) {
+			for (int i = 0; i < records.size(); i++) {
+				long time = records.time(i);
+				count++;
+				minTime = Math.min(minTime, time);
+				maxTime = Math.max(maxTime, time);
+				actions |= bit(LogAction.of(records.action(i) & ~LogRecords.RENDERED));
+				if (records.actor(i) != null) addKey(bloom, records.actor(i));
+				if (records.target(i) != null) addKey(bloom, records.target(i));
+			}
+		}
+
+		/**
+		 * @param from - start of the time range, inclusive.
+		 * @param to - end of the time range, exclusive.
+		 * @param actions - bits of the wanted actions, {@code -1} for any.
+		 * @param keys - ids that all have to be the actor or the target of a log, may be empty.
+		 * @return {@code false} if no log of the block can match.
+		 */
+		boolean mayContain(long from, long to, long actions, Collection<String> keys) {
+			if (count == 0 || maxTime < from || minTime >= to || (this.actions & actions) == 0) return false;
+			for (String key : keys) {
+				if (!mayContainKey(bloom, key)) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Bit of the action in the action set of a block. Actions past the 63rd share the last bit.
+	 */
+	static long bit(LogAction action) {
+		return 1L << Math.min(action.ordinal(), 63);
+	}
+
+	private static void addKey(long[] bloom, String key) {
+		int h = key.hashCode();
+		for (int i = 0; i < 3; i++) {
+			int b = Math.floorMod(h * 0x9E3779B1 + i * 0x7F4A7C15, BLOOM_BITS);
+			bloom[b >>> 6] |= 1L << b;
+			h = Integer.rotateLeft(h, 11) ^ 0x5BD1E995;
+		}
+	}
+
+	private static boolean mayContainKey(long[] bloom, String key) {
+		int h = key.hashCode();
+		for (int i = 0; i < 3; i++) {
+			int b = Math.floorMod(h * 0x9E3779B1 + i * 0x7F4A7C15, BLOOM_BITS);
+			if ((bloom[b >>> 6] & 1L << b) == 0) return false;
+			h = Integer.rotateLeft(h, 11) ^ 0x5BD1E995;
+		}
+		return true;
+	}
+
+	static File indexOf(File segment) {
+		String name = segment.getName();
+		return new File(segment.getParentFile(), name.substring(0, name.length() - AuditLog.SUFFIX.length()) + SUFFIX);
+	}
+
+	/**
+	 * Starts the index of a new segment.
+	 */
+	static void create(File segment) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(indexOf(segment)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+		}
+		synchronized (cache) {
+			cache.put(segment, new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Adds the block of a batch that was just written to the segment.
+	 * @param sync - whether the index is forced to disk.
+	 */
+	static void append(File segment, Block block, boolean sync) throws IOException {
+		synchronized (cache) {
+			cache.computeIfAbsent(segment, f -> new ArrayList<>()).add(block);
+		}
+		try (FileOutputStream fos = new FileOutputStream(indexOf(segment), true)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, ENTRY));
+			write(out, block);
+			out.flush();
+			if (sync) fos.getChannel().force(false);
+		}
+	}
+
+	/**
+	 * Forgets the index of a segment that is moved to the archive.
+	 */
+	static void forget(File segment) {
+		synchronized (cache) {
+			cache.remove(segment);
+		}
+	}
+
+	/**
+	 * Returns the blocks of a live segment, in the order they were written.
+	 */
+	static List<Block> blocks(File segment) {
+		return blocks(segment, true);
+	}
+
+	/**
+	 * Returns the blocks of the segment, in the order they were written.
+	 * @param cached - whether the index is kept in memory, {@code false} for archived segments.
+	 */
+	static List<Block> blocks(File segment, boolean cached) {
+		synchronized (cache) {
+			List<Block> blocks = cache.get(segment);
+			if (blocks == null) {
+				blocks = load(segment);
+				if (cached) cache.put(segment, blocks);
+			}
+			return new ArrayList<>(blocks);
+		}
+	}
+
+	private static List<Block> load(File segment) {
+		File file = indexOf(segment);
+		ArrayList<Block> blocks = new ArrayList<>();
+		long length = segment.length();
+		long covered = 0;
+		boolean valid = false;
+		if (file.isFile()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				valid = in.readInt() == MAGIC && in.readInt() == FORMAT;
+				long entries = valid ? (file.length() - HEADER) / ENTRY : 0;
+				for (long i = 0; i < entries; i++) {
+					Block block = read(in);
+					// entries of batches that did not reach the segment before a crash are cut off
+					if (block.offset != covered || block.offset + block.length > length) break;
+					blocks.add(block);
+					covered += block.length;
+				}
+			} catch (IOException e) {
+				valid = false;
+			}
+		}
+		if (valid && covered == length && file.length() == HEADER + (long) blocks.size() * ENTRY) return blocks;
+		if (!valid) {
+			blocks.clear();
+			covered = 0;
+		}
+		if (covered < length) {
+			Block block = new Block(covered, (int) Math.min(Integer.MAX_VALUE, length - covered));
+			LogRecords records = new LogRecords(1024, false);
+			AuditLog.read(segment, block.offset, block.length, records);
+			block.addAll(records);
+			blocks.add(block);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			for (Block block : blocks) write(out, block);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return blocks;
+	}
+
+	private static void write(DataOutputStream out, Block block) throws IOException {
+		out.writeLong(block.offset);
+		out.writeInt(block.length);
+		out.writeInt(block.count);
+		out.writeLong(block.minTime);
+		out.writeLong(block.maxTime);
+		out.writeLong(block.actions);
+		for (long word : block.bloom) out.writeLong(word);
+	}
+
+	private static Block read(DataInputStream in) throws IOException {
+		Block block = new Block(in.readLong(), in.readInt());
+		block.count = in.readInt();
+		block.minTime = in.readLong();
+		block.maxTime = in.readLong();
+		block.actions = in.readLong();
+		for (int i = 0; i < BLOOM_WORDS; i++) block.bloom[i] = in.readLong();
+		return block;
+	}
+}
@@ -0,0 +1,546 @@
+package universitysystem.data;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit trail of all {@link Log logs}, written asynchronously to append-only segment files.
+ * Sessions put logs into a lock-free ring buffer and return at once. A background thread takes them in batches,
+ * writes every batch as one gzip member at the end of the current segment file and keeps the latest logs
+ * in a bounded tail, which is what {@link Data#getLogs()} shows.
+ * When the buffer is full a log is dropped instead of blocking the session, the number of dropped logs is counted.
+ * Batches are forced to disk at most every {@value #SYNC_MILLIS} ms or when {@link #flush()} waits for them.
+ * Segments are rotated when they grow over the segment size and on every start, so a batch torn by a crash is
+ * always at the end of a segment and is cut off when it is read.
+ * Every segment has an {@link AuditIndex index} of its batches, which {@link AuditQuery} uses to search the logs.
+ * <p>
+ * The buffer and the tail hold the fields of the logs in {@link LogRecords columns}, so storing a log
+ * creates no objects. In a batch ids and times are written as differences to the previous log and every
+ * actor, target and detail is written once and then referred to by its number.
+ */
+public class AuditLog
+{
+	private static final File DIRECTORY = new File("audit");
+	private static final String PREFIX = "audit-";
+	static final String SUFFIX = ".log.gz";
+	/**
+	 * Starts every batch with structured records of whole texts, written before texts were rendered from templates.
+	 * Batches without a marker hold records of the first format, with only the id, the time and the text of a log.
+	 */
+	private static final int STRUCTURED = 0xA0D10002;
+	/**
+	 * Starts every batch with compact records.
+	 */
+	private static final int COMPACT = 0xA0D10003;
+	private static final int CAPACITY = 1 << 16;
+	private static final int BATCH = 4096;
+	private static final long IDLE_NANOS = 20_000_000;
+	private static final long SYNC_MILLIS = 100;
+	private static final int[] ids = new int[CAPACITY];
+	private static final long[] times = new long[CAPACITY];
+	private static final byte[] actions = new byte[CAPACITY];
+	private static final String[] actors = new String[CAPACITY];
+	private static final String[] targets = new String[CAPACITY];
+	private static final String[] details = new String[CAPACITY];
+	/**
+	 * Sequence number + 1 of the log in every slot, set after its fields.
+	 */
+	private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+	private static final AtomicLong claimed = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final Object writeLock = new Object();
+	private static final LogRecords tail;
+	private static volatile long consumed;
+	private static volatile long written;
+	private static volatile boolean syncRequested;
+	private static volatile boolean rotated;
+	private static long lastSync;
+	private static int tailSize = 1000;
+	private static long segmentSize = 1 << 20;
+	private static File segment;
+	private static final Thread writer;
+
+	static {
+		tail = new LogRecords(tailSize, true);
+		synchronized (tail) {
+			List<File> segments = segments();
+			ArrayList<File> files = new ArrayList<>();
+			ArrayList<AuditIndex.Block> blocks = new ArrayList<>();
+			int needed = tailSize;
+			for (int i = segments.size() - 1; i >= 0 && needed > 0; i--) {
+				List<AuditIndex.Block> segmentBlocks = AuditIndex.blocks(segments.get(i));
+				for (int k = segmentBlocks.size() - 1; k >= 0 && needed > 0; k--) {
+					files.add(segments.get(i));
+					blocks.add(segmentBlocks.get(k));
+					needed -= segmentBlocks.get(k).count;
+				}
+			}
+			for (int i = blocks.size() - 1; i >= 0; i--) read(files.get(i), blocks.get(i).offset, blocks.get(i).length, tail);
+		}
+		AuditArchive.apply();
+		writer = new Thread(AuditLog::run, "audit-log");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(AuditLog::flush, "audit-log-shutdown"));
+	}
+
+	private AuditLog() {
+	}
+
+	static File getDirectory() {
+		return DIRECTORY;
+	}
+
+	public static int getTailSize() {
+		return tailSize;
+	}
+
+	/**
+	 * Sets how many of the latest logs are kept in memory.
+	 * @param size - number of logs.
+	 */
+	public static void setTailSize(int size) {
+		synchronized (tail) {
+			tailSize = Math.max(0, size);
+			tail.resize(tailSize);
+		}
+	}
+
+	public static long getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Sets the compressed size after which the next batch starts a new segment file.
+	 * @param bytes - size of a segment.
+	 */
+	public static void setSegmentSize(long bytes) {
+		segmentSize = Math.max(1, bytes);
+	}
+
+	/**
+	 * Number of logs that were dropped because the buffer was full.
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Puts the log into the buffer. Never blocks.
+	 * @param log - log to be stored.
+	 * @return {@code false} if the buffer is full and the log was dropped.
+	 */
+	public static boolean append(Log log) {
+		boolean rendered = log.getRenderedText() != null;
+		return append(log.getId(), log.getTime() == null ? 0 : log.getTime().getTime(),
+				log.getAction().ordinal() | (rendered ? LogRecords.RENDERED : 0), log.getActor(), log.getTarget(),
+				rendered ? log.getRenderedText() : log.getDetail());
+	}
+
+	/**
+	 * Puts a log into the buffer without creating it. Never blocks.
+	 * @param action - ordinal of the {@link LogAction}, with {@link LogRecords#RENDERED} if the detail is the whole text.
+	 * @return {@code false} if the buffer is full and the log was dropped.
+	 */
+	static boolean append(int id, long time, int action, String actor, String target, String detail) {
+		long seq;
+		do {
+			seq = claimed.get();
+			if (seq - consumed >= CAPACITY) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		} while (!claimed.compareAndSet(seq, seq + 1));
+		int slot = (int) (seq & (CAPACITY - 1));
+		ids[slot] = id;
+		times[slot] = time;
+		actions[slot] = (byte) action;
+		actors[slot] = actor;
+		targets[slot] = target;
+		details[slot] = detail;
+		published.set(slot, seq + 1);
+		// wake the writer early when the buffer fills up faster than it polls
+		if (seq - consumed == CAPACITY / 2) LockSupport.unpark(writer);
+		return true;
+	}
+
+	/**
+	 * Writes the logs directly, waiting until they are on disk. Used for large imports that do not fit the buffer.
+	 * @param logs - logs to be stored, in order.
+	 */
+	static void appendAll(Collection<Log> logs) {
+		flush();
+		LogRecords batch = new LogRecords(BATCH, false);
+		Iterator<Log> iterator = logs.iterator();
+		while (iterator.hasNext()) {
+			batch.add(iterator.next());
+			if (batch.size() == BATCH || !iterator.hasNext()) {
+				store(batch, !iterator.hasNext());
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the latest logs, oldest first.
+	 */
+	public static List<Log> tail() {
+		synchronized (tail) {
+			ArrayList<Log> logs = new ArrayList<>(tail.size());
+			for (int i = 0; i < tail.size(); i++) logs.add(tail.get(i));
+			return logs;
+		}
+	}
+
+	/**
+	 * Largest id of the latest logs, {@code 0} if there are none. Ids are taken from blocks of the threads,
+	 * so the latest stored log does not always have the largest id.
+	 */
+	static int maxId() {
+		synchronized (tail) {
+			int max = 0;
+			for (int i = 0; i < tail.size(); i++) max = Math.max(max, tail.id(i));
+			return max;
+		}
+	}
+
+	/**
+	 * Waits until all logs appended before the call are written and forced to disk.
+	 */
+	public static void flush() {
+		long target = claimed.get();
+		while (written < target && writer.isAlive()) {
+			syncRequested = true;
+			LockSupport.unpark(writer);
+			synchronized (writeLock) {
+				if (written >= target) break;
+				try {
+					writeLock.wait(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the current segment, so logs appended after the call are written to a new one.
+	 * @return number of the new segment.
+	 */
+	static int startSegment() {
+		flush();
+		synchronized (writeLock) {
+			try {
+				rotate();
+			} catch (IOException e) {
+				e.printStackTrace();
+				segment = null;
+				List<File> segments = segments(DIRECTORY);
+				return segments.isEmpty() ? 1 : number(segments.get(segments.size() - 1)) + 1;
+			}
+			rotated = false;
+			return number(segment);
+		}
+	}
+
+	/**
+	 * Segment the logs are written to now, {@code null} before the first write.
+	 */
+	static File currentSegment() {
+		synchronized (writeLock) {
+			return segment;
+		}
+	}
+
+	/**
+	 * Reads all stored logs, oldest first.
+	 * @param action - called for every log.
+	 */
+	public static void read(Consumer<Log> action) {
+		flush();
+		LogRecords records = new LogRecords(BATCH, false);
+		for (File file : segments()) {
+			for (AuditIndex.Block block : AuditIndex.blocks(file)) {
+				records.clear();
+				read(file, block.offset, block.length, records);
+				for (int i = 0; i < records.size(); i++) action.accept(records.get(i));
+			}
+		}
+	}
+
+	private static void run() {
+		LogRecords batch = new LogRecords(BATCH, false);
+		while (true) {
+			long next = consumed;
+			while (batch.size() < BATCH) {
+				int slot = (int) (next & (CAPACITY - 1));
+				if (published.get(slot) != next + 1) break;
+				batch.add(ids[slot], times[slot], actions[slot] & 0xFF, actors[slot], targets[slot], details[slot]);
+				actors[slot] = null;
+				targets[slot] = null;
+				details[slot] = null;
+				next++;
+			}
+			consumed = next;
+			if (batch.size() == 0) {
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			boolean sync = syncRequested || System.currentTimeMillis() - lastSync >= SYNC_MILLIS;
+			if (sync) syncRequested = false;
+			if (!store(batch, sync)) {
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			batch.clear();
+			synchronized (writeLock) {
+				written = next;
+				writeLock.notifyAll();
+			}
+			if (rotated) {
+				rotated = false;
+				AuditArchive.apply();
+			}
+		}
+	}
+
+	/**
+	 * Appends the batch to the current segment and to the tail.
+	 * @param sync - whether the segment is forced to disk.
+	 * @return {@code false} if the batch could not be written and has to be retried.
+	 */
+	private static boolean store(LogRecords batch, boolean sync) {
+		AuditIndex.Block block;
+		synchronized (writeLock) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, 1 << 16) {
+					{
+						def.setLevel(Deflater.BEST_SPEED);
+					}
+				})) {
+					write(out, batch);
+				}
+				if (segment == null || segment.length() >= segmentSize) rotate();
+				block = new AuditIndex.Block(segment.length(), bytes.size());
+				try (FileOutputStream fos = new FileOutputStream(segment, true)) {
+					bytes.writeTo(fos);
+					if (sync) {
+						fos.getChannel().force(false);
+						lastSync = System.currentTimeMillis();
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+			block.addAll(batch);
+			try {
+				AuditIndex.append(segment, block, sync);
+			} catch (IOException e) {
+				// the batch is already in the segment, its block is added to the index file on the next start
+				e.printStackTrace();
+			}
+		}
+		synchronized (tail) {
+			for (int i = 0; i < batch.size(); i++) {
+				tail.add(batch.id(i), batch.time(i), batch.action(i), batch.actor(i), batch.target(i), batch.detail(i));
+			}
+		}
+		return true;
+	}
+
+	private static void write(DataOutputStream out, LogRecords batch) throws IOException {
+		HashMap<String, Integer> strings = new HashMap<>();
+		out.writeInt(COMPACT);
+		writeVarint(out, batch.size());
+		int id = 0;
+		long time = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			writeVarint(out, zigzag(batch.id(i) - (long) id));
+			writeVarint(out, zigzag(batch.time(i) - time));
+			out.writeByte(batch.action(i));
+			writeString(out, strings, batch.actor(i));
+			writeString(out, strings, batch.target(i));
+			writeString(out, strings, batch.detail(i));
+			id = batch.id(i);
+			time = batch.time(i);
+		}
+	}
+
+	/**
+	 * Writes {@code 0} for {@code null}, the number of a string that was already written, or the next number
+	 * followed by the string.
+	 */
+	private static void writeString(DataOutputStream out, Map<String, Integer> strings, String value) throws IOException {
+		if (value == null) {
+			out.writeByte(0);
+			return;
+		}
+		Integer number = strings.get(value);
+		if (number != null) {
+			writeVarint(out, number);
+			return;
+		}
+		number = strings.size() + 1;
+		strings.put(value, number);
+		writeVarint(out, number);
+		out.writeUTF(value);
+	}
+
+	private static String readString(DataInputStream in, List<String> strings) throws IOException {
+		int number = (int) readVarint(in);
+		if (number == 0) return null;
+		if (number <= strings.size()) return strings.get(number - 1);
+		String value = in.readUTF();
+		strings.add(value);
+		return value;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarint(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarint(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+
+	private static void rotate() throws IOException {
+		if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) throw new IOException("Can not create " + DIRECTORY);
+		// archived segments are counted too, so numbers are never used twice
+		List<File> segments = segments(DIRECTORY);
+		int number = segments.isEmpty() ? 0 : number(segments.get(segments.size() - 1));
+		segment = new File(DIRECTORY, String.format("%s%06d%s", PREFIX, number + 1, SUFFIX));
+		AuditIndex.create(segment);
+		rotated = true;
+	}
+
+	/**
+	 * Live segment files, oldest first.
+	 */
+	static List<File> segments() {
+		ArrayList<File> segments = new ArrayList<>();
+		collect(DIRECTORY, false, segments);
+		segments.sort(Comparator.comparingInt(AuditLog::number));
+		return segments;
+	}
+
+	/**
+	 * Segment files in the directory and its subdirectories, oldest first.
+	 */
+	static List<File> segments(File directory) {
+		ArrayList<File> segments = new ArrayList<>();
+		collect(directory, true, segments);
+		segments.sort(Comparator.comparingInt(AuditLog::number));
+		return segments;
+	}
+
+	private static void collect(File directory, boolean recursive, List<File> segments) {
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			if (file.isDirectory()) {
+				if (recursive) collect(file, true, segments);
+			} else if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX)) {
+				segments.add(file);
+			}
+		}
+	}
+
+	static int number(File file) {
+		String name = file.getName();
+		try {
+			return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads the logs of the batches in a part of a segment. A torn batch at the end of the segment is skipped.
+	 * @param offset - position of the first batch in the segment.
+	 * @param length - length of the batches.
+	 * @param records - the logs are added to it.
+	 */
+	static void read(File file, long offset, int length, LogRecords records) {
+		byte[] bytes = new byte[length];
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			in.seek(offset);
+			in.readFully(bytes);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes))))) {
+			boolean structured = false;
+			ArrayList<String> strings = new ArrayList<>();
+			while (true) {
+				int id;
+				try {
+					id = in.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				if (id == COMPACT) {
+					strings.clear();
+					long count = readVarint(in);
+					id = 0;
+					long time = 0;
+					for (long i = 0; i < count; i++) {
+						id += (int) unzigzag(readVarint(in));
+						time += unzigzag(readVarint(in));
+						int action = in.readUnsignedByte();
+						String actor = readString(in, strings);
+						String target = readString(in, strings);
+						records.add(id, time, action, actor, target, readString(in, strings));
+					}
+					continue;
+				}
+				if (id == STRUCTURED) {
+					structured = true;
+					continue;
+				}
+				long time = in.readLong();
+				if (structured) {
+					int action = in.readUnsignedByte();
+					String actor = in.readBoolean() ? in.readUTF() : null;
+					String target = in.readBoolean() ? in.readUTF() : null;
+					String text = in.readBoolean() ? in.readUTF() : null;
+					records.add(id, time, action | LogRecords.RENDERED, actor, target, text);
+				} else {
+					String text = in.readBoolean() ? in.readUTF() : null;
+					records.add(id, time, LogAction.OTHER.ordinal() | LogRecords.RENDERED, null, null, text);
+				}
+			}
+		} catch (EOFException e) {
+			// the last batch was not written completely
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package universitysystem.data;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Search over all logs of the {@link AuditLog}, for example all marks put by a teacher in a semester
+ * or all logins of the last hour.
+ * Only batches whose {@link AuditIndex index} entry may match are read, one batch at a time, so the history
+ * is never loaded as a whole. A {@link Log} is only created for the logs that match.
+ */
+public class AuditQuery
+{
+	private long from = Long.MIN_VALUE;
+	private long to = Long.MAX_VALUE;
+	private long actionBits = -1;
+	private final EnumSet<LogAction> actions = EnumSet.noneOf(LogAction.class);
+	private String actor;
+	private String target;
+	private int limit = Integer.MAX_VALUE;
+	private boolean newestFirst;
+	private boolean archived;
+	private File directory;
+
+	/**
+	 * Starts a query that matches all logs.
+	 */
+	public static AuditQuery logs() {
+		return new AuditQuery();
+	}
+
+	/**
+	 * Starts a query over the segments in a directory and its subdirectories, for example over an archive
+	 * that was copied away from the live system.
+	 * @param directory - directory with segment files.
+	 */
+	public static AuditQuery in(File directory) {
+		AuditQuery query = new AuditQuery();
+		query.directory = directory;
+		return query;
+	}
+
+	/**
+	 * Searches the {@link AuditArchive archived} logs too.
+	 */
+	public AuditQuery withArchive() {
+		this.archived = true;
+		return this;
+	}
+
+	/**
+	 * @param id - id of the user who did the action.
+	 */
+	public AuditQuery actor(String id) {
+		this.actor = id;
+		return this;
+	}
+
+	/**
+	 * @param id - id of the user or object the action was done with.
+	 */
+	public AuditQuery target(String id) {
+		this.target = id;
+		return this;
+	}
+
+	/**
+	 * Matches only logs of the given actions. Called several times, matches logs of any of them.
+	 */
+	public AuditQuery action(LogAction... actions) {
+		if (this.actions.isEmpty()) actionBits = 0;
+		for (LogAction action : actions) {
+			this.actions.add(action);
+			actionBits |= AuditIndex.bit(action);
+		}
+		return this;
+	}
+
+	/**
+	 * @param time - earliest time of a log, inclusive.
+	 */
+	public AuditQuery from(Date time) {
+		this.from = time.getTime();
+		return this;
+	}
+
+	/**
+	 * @param time - latest time of a log, exclusive.
+	 */
+	public AuditQuery to(Date time) {
+		this.to = time.getTime();
+		return this;
+	}
+
+	/**
+	 * Matches only logs of the last milliseconds.
+	 * @param millis - length of the period.
+	 */
+	public AuditQuery last(long millis) {
+		this.from = System.currentTimeMillis() - millis;
+		return this;
+	}
+
+	/**
+	 * @param limit - maximal number of logs returned.
+	 */
+	public AuditQuery limit(int limit) {
+		this.limit = Math.max(0, limit);
+		return this;
+	}
+
+	/**
+	 * Returns the newest logs first. By default the oldest logs are first.
+	 */
+	public AuditQuery newestFirst() {
+		this.newestFirst = true;
+		return this;
+	}
+
+	/**
+	 * Passes every matching log to the action, including logs that were appended but not written yet.
+	 * @param action - called for every matching log.
+	 * @return number of matching logs.
+	 */
+	public int forEach(Consumer<Log> action) {
+		ArrayList<String> keys = new ArrayList<>(2);
+		if (actor != null) keys.add(actor);
+		if (target != null) keys.add(target);
+		List<File> segments;
+		if (directory != null) {
+			segments = AuditLog.segments(directory);
+		} else {
+			AuditLog.flush();
+			segments = archived ? AuditArchive.segments() : new ArrayList<>();
+			segments.addAll(AuditLog.segments());
+		}
+		if (newestFirst) Collections.reverse(segments);
+		int found = 0;
+		LogRecords records = new LogRecords(4096, false);
+		ArrayList<Log> logs = new ArrayList<>();
+		for (File segment : segments) {
+			boolean live = directory == null && segment.getParentFile().equals(AuditLog.getDirectory());
+			List<AuditIndex.Block> blocks = AuditIndex.blocks(segment, live);
+			if (newestFirst) Collections.reverse(blocks);
+			for (AuditIndex.Block block : blocks) {
+				if (found >= limit) return found;
+				if (!block.mayContain(from, to, actionBits, keys)) continue;
+				logs.clear();
+				records.clear();
+				AuditLog.read(segment, block.offset, block.length, records);
+				for (int i = 0; i < records.size(); i++) {
+					if (matches(records, i)) logs.add(records.get(i));
+				}
+				if (newestFirst) Collections.reverse(logs);
+				for (Log log : logs) {
+					if (found >= limit) return found;
+					action.accept(log);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the matching logs.
+	 */
+	public List<Log> list() {
+		ArrayList<Log> logs = new ArrayList<>();
+		forEach(logs::add);
+		return logs;
+	}
+
+	private boolean matches(LogRecords records, int i) {
+		long time = records.time(i);
+		return time >= from && time < to
+				&& (actions.isEmpty() || actions.contains(LogAction.of(records.action(i) & ~LogRecords.RENDERED)))
+				&& (actor == null || actor.equals(records.actor(i)))
+				&& (target == null || target.equals(records.target(i)));
+	}
+}
@@ -0,0 +1,773 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Lesson;
+import universitysystem.courses.Mark;
+import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.*;
+import universitysystem.research.Page;
+import universitysystem.research.ResearchPaper;
+import universitysystem.research.ResearchProject;
+import universitysystem.research.Researcher;
+import universitysystem.utills.*;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compact binary encoding of the model objects that replaces {@code java.io} serialization in snapshots
+ * and in the journal.
+ * <ul>
+ *     <li>numbers are written as zigzag varints, dates as epoch milliseconds;</li>
+ *     <li>every string and class is written once and then referred to by its index in the table;</li>
+ *     <li>a class is described by the names and types of its fields, so the reader maps fields by name;</li>
+ *     <li>an object that was already written is referred to by its id, so shared objects and cycles are kept.</li>
+ * </ul>
+ * Like {@code java.io} serialization it writes every non-static, non-transient field, but it only creates objects
+ * of the model classes listed in {@link #MODEL}, the enums of the model and the collections it uses; any other class
+ * name read from a file is rejected. Hash and sorted
+ * collections are filled after the whole graph is read, when the hash codes of their elements are final.
+ */
+public class BinaryCodec
+{
+	private static final int NULL = 0;
+	private static final int REF = 1;
+	private static final int STRING = 2;
+	private static final int OBJECT = 3;
+	private static final int ENUM = 4;
+	private static final int DATE = 5;
+	private static final int LIST = 6;
+	private static final int SET = 7;
+	private static final int MAP = 8;
+	private static final int INT = 9;
+	private static final int LONG = 10;
+	private static final int DOUBLE = 11;
+	private static final int TRUE = 12;
+	private static final int FALSE = 13;
+	private static final int JAVA = 14; // java.io serialization of older files, no longer read
+	private static final int ARRAY = 15;
+	private static final int BATCH = 64 * 1024;
+
+	private static final Set<Class<?>> LISTS = Set.of(Vector.class, ArrayList.class, LinkedList.class);
+	private static final Set<Class<?>> SETS = Set.of(HashSet.class, LinkedHashSet.class, TreeSet.class, ConcurrentHashMap.KeySetView.class);
+	private static final Set<Class<?>> MAPS = Set.of(HashMap.class, LinkedHashMap.class, TreeMap.class);
+	/**
+	 * Classes whose objects are encoded field by field. Each of them has a no-arg constructor, which the
+	 * {@link Instantiator} of the class calls before the fields are set.
+	 */
+	private static final List<Class<?>> MODEL = List.of(
+			Admin.class, Student.class, GraduateStudent.class, Employee.class, Teacher.class, Manager.class, Dean.class,
+			TechSupportSpecialist.class, Organization.class,
+			Course.class, Lesson.class, Mark.class, RegisteredCourse.class,
+			ResearchPaper.class, ResearchProject.class, Researcher.class, Page.class,
+			Complaint.class, EmployeeRequest.class, RegistrationRequest.class, TechReport.class, Message.class,
+			Notification.class, News.class, Comment.class, Journal.class,
+			Data.class, IdAllocator.class, Log.class, EntityRef.class, LazyRef.class);
+	private static final Map<String, Class<?>> KNOWN = new HashMap<>();
+	private static final Map<Class<?>, Layout> layouts = new ConcurrentHashMap<>();
+
+	static {
+		for (Class<?> type : MODEL) KNOWN.put(type.getName(), type);
+		for (Class<?> type : JournalEntry.class.getDeclaredClasses()) {
+			if (JournalEntry.class.isAssignableFrom(type)) KNOWN.put(type.getName(), type);
+		}
+		for (Set<Class<?>> types : List.of(LISTS, SETS, MAPS)) {
+			for (Class<?> type : types) KNOWN.put(type.getName(), type);
+		}
+	}
+
+	private BinaryCodec() {
+	}
+
+	/**
+	 * Encodes the object graph.
+	 * @param root - root object.
+	 * @param replace - applied to every object before it is written, may return a replacement or {@code null}.
+	 * @return encoded bytes.
+	 */
+	public static byte[] encode(Object root, UnaryOperator<Object> replace) throws IOException {
+		Writer writer = new Writer(replace, null);
+		writer.write(root);
+		return writer.out.toByteArray();
+	}
+
+	/**
+	 * Encodes the object graph straight into a stream. Encoded bytes are passed on in batches while
+	 * collections are written, so the encoding is never held in memory as a whole.
+	 * @param root - root object.
+	 * @param replace - applied to every object before it is written, may return a replacement or {@code null}.
+	 * @param target - stream the bytes are written to.
+	 */
+	public static void encode(Object root, UnaryOperator<Object> replace, OutputStream target) throws IOException {
+		Writer writer = new Writer(replace, target);
+		writer.write(root);
+		writer.spill(0);
+	}
+
+	/**
+	 * Decodes the object graph written by {@link #encode(Object, UnaryOperator)}.
+	 * @param in - encoded bytes.
+	 * @param resolve - applied to every decoded object, may return the object that should be used instead.
+	 * @return root object.
+	 */
+	public static Object decode(ByteBuffer in, UnaryOperator<Object> resolve) throws IOException {
+		Reader reader = new Reader(in, resolve);
+		try {
+			Object root = reader.read();
+			reader.fill();
+			return root;
+		} catch (BufferUnderflowException | ReflectiveOperationException | ClassCastException e) {
+			throw (IOException) new StreamCorruptedException("Can not decode: " + e).initCause(e);
+		}
+	}
+
+	/**
+	 * Number of elements of an encoded list, read from its head without decoding the elements.
+	 * @param in - encoded list.
+	 */
+	static int size(ByteBuffer in) throws IOException {
+		try {
+			if (in.get() != LIST) throw new StreamCorruptedException("Not a list");
+			Reader reader = new Reader(in, null);
+			reader.type(false);
+			return reader.varint();
+		} catch (BufferUnderflowException | ClassNotFoundException e) {
+			throw (IOException) new StreamCorruptedException("Can not decode: " + e).initCause(e);
+		}
+	}
+
+	/**
+	 * Creates an object of a model class the way the decoder does, by its no-arg constructor and without taking ids.
+	 * @return object with the field values set by the constructor.
+	 * @return object with no field values.
+	 */
+	static <T> T instantiate(Class<T> type) throws IOException {
+		try {
+			return type.cast(layout(type).instantiator.newInstance());
+		} catch (ReflectiveOperationException e) {
+			throw (IOException) new InvalidClassException(type.getName(), "can not be created").initCause(e);
+		}
+	}
+
+	/**
+	 * Model class of the name, {@code null} if objects of the class are not encoded field by field.
+	 */
+	static Class<?> model(String name) {
+		Class<?> type = KNOWN.get(name);
+		return type != null && isModel(type) ? type : null;
+	}
+
+	/**
+	 * Passes on every object the object refers to: the field values of a model object, the elements
+	 * of a collection or an array and the keys and values of a map.
+	 * @param obj - object whose references are passed on.
+	 * @param action - called for every referred object that is not {@code null}.
+	 */
+	static void references(Object obj, Consumer<Object> action) {
+		if (obj instanceof Collection<?> c) {
+			c.forEach(n -> accept(n, action));
+		} else if (obj instanceof Map<?, ?> m) {
+			m.forEach((k, v) -> {
+				accept(k, action);
+				accept(v, action);
+			});
+		} else if (obj instanceof Object[] array) {
+			for (Object n : array) accept(n, action);
+		} else if (obj != null && isModel(obj.getClass())) {
+			try {
+				for (Field f : layout(obj.getClass()).fields) {
+					if (!f.getType().isPrimitive()) accept(f.get(obj), action);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static void accept(Object obj, Consumer<Object> action) {
+		if (obj != null) action.accept(obj);
+	}
+
+	/**
+	 * Whether objects of the class are encoded field by field.
+	 */
+	private static boolean isModel(Class<?> type) {
+		return KNOWN.get(type.getName()) == type && !LISTS.contains(type) && !SETS.contains(type) && !MAPS.contains(type);
+	}
+
+	/**
+	 * Enum of the model or a model class, the only classes besides the collections that are read.
+	 */
+	private static boolean isKnown(Class<?> type) {
+		return type == String.class || type.isEnum() && type.getName().startsWith("universitysystem.") || isModel(type);
+	}
+
+	/**
+	 * Copies the fields that are encoded from one object into another object of the same class.
+	 * @param from - object the values are taken from.
+	 * @param into - object the values are set to.
+	 */
+	static void copy(Object from, Object into) {
+		if (from.getClass() != into.getClass()) throw new IllegalArgumentException(from.getClass() + " into " + into.getClass());
+		try {
+			for (Field f : layout(from.getClass()).fields) f.set(into, f.get(from));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Layout layout(Class<?> type) {
+		return layouts.computeIfAbsent(type, Layout::new);
+	}
+
+	/**
+	 * Fields of a class, including the inherited ones, in the order they are written.
+	 */
+	private static class Layout {
+		private final Instantiator instantiator;
+		private final List<Field> fields = new ArrayList<>();
+		private final Map<String, Field> byName = new HashMap<>();
+
+		Layout(Class<?> type) {
+			this.instantiator = new Instantiator(type);
+			Deque<Class<?>> hierarchy = new ArrayDeque<>();
+			for (Class<?> t = type; t != null && t != Object.class; t = t.getSuperclass()) hierarchy.push(t);
+			for (Class<?> t : hierarchy) {
+				for (Field f : t.getDeclaredFields()) {
+					if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0) continue;
+					f.setAccessible(true);
+					String name = byName.containsKey(f.getName()) ? t.getSimpleName() + "." + f.getName() : f.getName();
+					fields.add(f);
+					byName.put(name, f);
+				}
+			}
+		}
+
+		String name(Field f) {
+			return byName.get(f.getName()) == f ? f.getName() : f.getDeclaringClass().getSimpleName() + "." + f.getName();
+		}
+	}
+
+	/**
+	 * Creates objects of a model class by its no-arg constructor, which may be private. The ids the constructor
+	 * takes are not handed out, the fields of the object are set from the encoding afterwards.
+	 */
+	private static class Instantiator {
+		private final Constructor<?> constructor;
+
+		Instantiator(Class<?> type) {
+			if (!isModel(type) || Modifier.isAbstract(type.getModifiers())) {
+				this.constructor = null;
+				return;
+			}
+			try {
+				this.constructor = type.getDeclaredConstructor();
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException(type.getName() + " has no no-arg constructor", e);
+			}
+			constructor.setAccessible(true);
+		}
+
+		Object newInstance() throws ReflectiveOperationException {
+			if (constructor == null) throw new InstantiationException("Not a model class");
+			return IdAllocator.withoutIds(constructor);
+		}
+	}
+
+	private static char code(Class<?> type) {
+		if (type == int.class) return 'I';
+		if (type == long.class) return 'J';
+		if (type == double.class) return 'D';
+		if (type == float.class) return 'F';
+		if (type == boolean.class) return 'Z';
+		if (type == char.class) return 'C';
+		if (type == short.class) return 'S';
+		if (type == byte.class) return 'B';
+		return 'L';
+	}
+
+	static class Writer {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private final UnaryOperator<Object> replace;
+		private final IdentityHashMap<Object, Integer> objects = new IdentityHashMap<>();
+		private int nextId;
+		private final HashMap<String, Integer> strings = new HashMap<>();
+		private int stringCount;
+		private int interned = Integer.MAX_VALUE; // strings kept in the table, the others are written in full every time
+		private int internedLength = Integer.MAX_VALUE;
+		private final HashMap<Class<?>, Integer> classes = new HashMap<>();
+		private final OutputStream target;
+
+		Writer(UnaryOperator<Object> replace, OutputStream target) {
+			this.replace = replace == null ? UnaryOperator.identity() : replace;
+			this.target = target;
+		}
+
+		/**
+		 * Passes the encoded bytes on to the target stream once there are more than {@code limit} of them.
+		 */
+		private void spill(int limit) throws IOException {
+			if (target == null || out.size() <= limit) return;
+			out.writeTo(target);
+			out.reset();
+		}
+
+		void write(Object value) throws IOException {
+			Object original = value;
+			if (value != null && !objects.containsKey(value) && !(value instanceof String) && !(value instanceof Enum<?>)) {
+				value = replace.apply(value);
+			}
+			if (value == null) {
+				out.write(NULL);
+			} else if (value instanceof String s) {
+				out.write(STRING);
+				string(s);
+			} else if (value instanceof Integer i) {
+				out.write(INT);
+				varlong(i);
+			} else if (value instanceof Long l) {
+				out.write(LONG);
+				varlong(l);
+			} else if (value instanceof Double d) {
+				out.write(DOUBLE);
+				fixed(Double.doubleToRawLongBits(d));
+			} else if (value instanceof Boolean b) {
+				out.write(b ? TRUE : FALSE);
+			} else if (value instanceof Enum<?> e) {
+				out.write(ENUM);
+				type(e.getDeclaringClass(), false);
+				string(e.name());
+			} else if (value instanceof Date d) {
+				out.write(DATE);
+				varlong(d.getTime());
+			} else if (objects.containsKey(value)) {
+				out.write(REF);
+				varint(objects.get(value));
+			} else {
+				objects.put(value, nextId);
+				objects.put(original, nextId);
+				nextId++;
+				Class<?> type = value.getClass();
+				if (LISTS.contains(type)) {
+					out.write(LIST);
+					type(type, false);
+					elements((Collection<?>) value);
+				} else if (SETS.contains(type) && !(value instanceof SortedSet<?> sorted && sorted.comparator() != null)) {
+					out.write(SET);
+					type(type, false);
+					elements((Collection<?>) value);
+				} else if (MAPS.contains(type) && !(value instanceof SortedMap<?, ?> sorted && sorted.comparator() != null)) {
+					Map<?, ?> map = (Map<?, ?>) value;
+					out.write(MAP);
+					type(type, false);
+					varint(map.size());
+					for (Map.Entry<?, ?> e : map.entrySet()) {
+						write(e.getKey());
+						write(e.getValue());
+						spill(BATCH);
+					}
+				} else if (isModel(type)) {
+					out.write(OBJECT);
+					type(type, true);
+					fields(value);
+				} else if (type.isArray() && (type.getComponentType().isPrimitive() || isKnown(type.getComponentType()))) {
+					out.write(ARRAY);
+					array(value);
+				} else {
+					throw new NotSerializableException(type.getName());
+				}
+			}
+		}
+
+		private void array(Object array) throws IOException {
+			Class<?> component = array.getClass().getComponentType();
+			char code = code(component);
+			out.write(code);
+			if (code == 'L') type(component, false);
+			int length = Array.getLength(array);
+			varint(length);
+			for (int i = 0; i < length; i++) {
+				switch (code) {
+					case 'I' -> varlong(Array.getInt(array, i));
+					case 'J' -> varlong(Array.getLong(array, i));
+					case 'D' -> fixed(Double.doubleToRawLongBits(Array.getDouble(array, i)));
+					case 'F' -> varlong(Float.floatToRawIntBits(Array.getFloat(array, i)));
+					case 'Z' -> out.write(Array.getBoolean(array, i) ? 1 : 0);
+					case 'C' -> varlong(Array.getChar(array, i));
+					case 'S' -> varlong(Array.getShort(array, i));
+					case 'B' -> varlong(Array.getByte(array, i));
+					default -> write(Array.get(array, i));
+				}
+				spill(BATCH);
+			}
+		}
+
+		private void elements(Collection<?> values) throws IOException {
+			// a copy is taken at once, so a collection changed by another thread is written in a consistent state
+			Object[] copy = values.toArray();
+			varint(copy.length);
+			for (Object v : copy) {
+				write(v);
+				spill(BATCH);
+			}
+		}
+
+		private void fields(Object value) throws IOException {
+			try {
+				for (Field f : layout(value.getClass()).fields) {
+					switch (code(f.getType())) {
+						case 'I' -> varlong(f.getInt(value));
+						case 'J' -> varlong(f.getLong(value));
+						case 'D' -> fixed(Double.doubleToRawLongBits(f.getDouble(value)));
+						case 'F' -> varlong(Float.floatToRawIntBits(f.getFloat(value)));
+						case 'Z' -> out.write(f.getBoolean(value) ? 1 : 0);
+						case 'C' -> varlong(f.getChar(value));
+						case 'S' -> varlong(f.getShort(value));
+						case 'B' -> varlong(f.getByte(value));
+						default -> write(f.get(value));
+					}
+				}
+			} catch (IllegalAccessException e) {
+				throw new NotSerializableException(value.getClass().getName());
+			}
+		}
+
+		private void type(Class<?> type, boolean withFields) {
+			Integer index = classes.get(type);
+			if (index != null) {
+				varint(index);
+				return;
+			}
+			varint(classes.size());
+			classes.put(type, classes.size());
+			string(type.getName());
+			if (!withFields) return;
+			Layout layout = layout(type);
+			varint(layout.fields.size());
+			for (Field f : layout.fields) {
+				string(layout.name(f));
+				out.write(code(f.getType()));
+			}
+		}
+
+		private void string(String s) {
+			Integer index = strings.get(s);
+			if (index != null) {
+				varint(index);
+				return;
+			}
+			if (strings.size() < interned && s.length() <= internedLength) strings.put(s, stringCount);
+			varint(stringCount++);
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length);
+			out.writeBytes(bytes);
+		}
+
+		private void varint(int v) {
+			while ((v & ~0x7F) != 0) {
+				out.write((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			out.write(v);
+		}
+
+		private void varlong(long v) {
+			v = (v << 1) ^ (v >> 63);
+			while ((v & ~0x7FL) != 0) {
+				out.write((int) ((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			out.write((int) v);
+		}
+
+		private void fixed(long v) {
+			for (int i = 56; i >= 0; i -= 8) out.write((int) (v >>> i));
+		}
+	}
+
+	/**
+	 * Encodes a list whose elements come one at a time straight into a stream, for lists that are too large
+	 * to be built in memory first. The elements must not share objects other than strings and enums: the objects
+	 * of an element are forgotten once it is written, so only the class table and a bounded table of short strings
+	 * are kept.
+	 */
+	static class ListEncoder {
+		private static final int INTERNED = 16 * 1024;
+		private static final int INTERNED_LENGTH = 64;
+		private final Writer writer;
+		private final byte[] head;
+		private int size;
+
+		/**
+		 * @param type - class of the list.
+		 * @param replace - applied to every object before it is written, may return a replacement or {@code null}.
+		 * @param target - stream the encoded elements are written to.
+		 */
+		ListEncoder(Class<?> type, UnaryOperator<Object> replace, OutputStream target) {
+			if (!LISTS.contains(type)) throw new IllegalArgumentException("Not a list: " + type.getName());
+			this.writer = new Writer(replace, target);
+			writer.interned = INTERNED;
+			writer.internedLength = INTERNED_LENGTH;
+			writer.out.write(LIST);
+			writer.type(type, false);
+			this.head = writer.out.toByteArray();
+			writer.out.reset();
+			writer.nextId = 1; // the list itself
+		}
+
+		void add(Object element) throws IOException {
+			writer.write(element);
+			writer.objects.clear();
+			writer.spill(BATCH);
+			size++;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Writes the elements that are still buffered to the target stream.
+		 */
+		void flush() throws IOException {
+			writer.spill(0);
+		}
+
+		/**
+		 * Writes the tag, class and size of the list, which go before the encoded elements.
+		 * @param out - stream the encoded elements are written to afterwards.
+		 */
+		void writeHead(OutputStream out) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			bytes.writeBytes(head);
+			for (int v = size; ; v >>>= 7) {
+				if ((v & ~0x7F) == 0) {
+					bytes.write(v);
+					break;
+				}
+				bytes.write((v & 0x7F) | 0x80);
+			}
+			bytes.writeTo(out);
+		}
+	}
+
+	static class Reader {
+		private final ByteBuffer in;
+		private final UnaryOperator<Object> resolve;
+		private final List<Object> objects = new ArrayList<>();
+		private final List<String> strings = new ArrayList<>();
+		private final List<ClassDef> classes = new ArrayList<>();
+		private final List<Runnable> fills = new ArrayList<>();
+
+		Reader(ByteBuffer in, UnaryOperator<Object> resolve) {
+			this.in = in;
+			this.resolve = resolve == null ? UnaryOperator.identity() : resolve;
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Object read() throws IOException, ReflectiveOperationException {
+			int tag = in.get();
+			switch (tag) {
+				case NULL:
+					return null;
+				case REF:
+					return objects.get(varint());
+				case STRING:
+					return string();
+				case INT:
+					return (int) varlong();
+				case LONG:
+					return varlong();
+				case DOUBLE:
+					return Double.longBitsToDouble(in.getLong());
+				case TRUE:
+					return true;
+				case FALSE:
+					return false;
+				case ENUM:
+					return Enum.valueOf((Class) type(false).type, string());
+				case DATE:
+					return new Date(varlong());
+				case LIST: {
+					int id = register(null);
+					Collection list = (Collection) type(false).type.getConstructor().newInstance();
+					objects.set(id, list);
+					int size = varint();
+					for (int i = 0; i < size; i++) list.add(read());
+					return list;
+				}
+				case SET: {
+					int id = register(null);
+					Class<?> type = type(false).type;
+					Collection set = type == ConcurrentHashMap.KeySetView.class ? ConcurrentHashMap.newKeySet()
+							: (Collection) type.getConstructor().newInstance();
+					objects.set(id, set);
+					int size = varint();
+					Object[] values = new Object[size];
+					for (int i = 0; i < size; i++) values[i] = read();
+					fills.add(() -> set.addAll(Arrays.asList(values)));
+					return set;
+				}
+				case MAP: {
+					int id = register(null);
+					Map map = (Map) type(false).type.getConstructor().newInstance();
+					objects.set(id, map);
+					int size = varint();
+					Object[] values = new Object[size * 2];
+					for (int i = 0; i < values.length; i++) values[i] = read();
+					fills.add(() -> {
+						for (int i = 0; i < values.length; i += 2) map.put(values[i], values[i + 1]);
+					});
+					return map;
+				}
+				case OBJECT: {
+					ClassDef def = type(true);
+					Object value = def.layout.instantiator.newInstance();
+					int id = register(value);
+					for (int i = 0; i < def.names.length; i++) {
+						Field f = def.layout.byName.get(def.names[i]);
+						Object v = value(def.codes[i]);
+						if (f != null && code(f.getType()) == def.codes[i]) f.set(value, v);
+					}
+					Object resolved = resolve.apply(value);
+					objects.set(id, resolved);
+					return resolved;
+				}
+				case ARRAY: {
+					int id = register(null);
+					char code = (char) in.get();
+					Class<?> component = code == 'L' ? type(false).type : primitive(code);
+					int length = varint();
+					if (length > in.remaining()) throw new StreamCorruptedException("Array of " + length + " elements");
+					Object array = Array.newInstance(component, length);
+					objects.set(id, array);
+					for (int i = 0; i < length; i++) Array.set(array, i, value(code));
+					return array;
+				}
+				case JAVA:
+					throw new InvalidClassException("Objects of java.io serialization are not read");
+				default:
+					throw new StreamCorruptedException("Unknown tag " + tag);
+			}
+		}
+
+		void fill() {
+			fills.forEach(Runnable::run);
+		}
+
+		private int register(Object value) {
+			objects.add(value);
+			return objects.size() - 1;
+		}
+
+		private Object value(char code) throws IOException, ReflectiveOperationException {
+			return switch (code) {
+				case 'I' -> (int) varlong();
+				case 'J' -> varlong();
+				case 'D' -> Double.longBitsToDouble(in.getLong());
+				case 'F' -> Float.intBitsToFloat((int) varlong());
+				case 'Z' -> in.get() != 0;
+				case 'C' -> (char) varlong();
+				case 'S' -> (short) varlong();
+				case 'B' -> (byte) varlong();
+				default -> read();
+			};
+		}
+
+		private ClassDef type(boolean withFields) throws ClassNotFoundException {
+			int index = varint();
+			if (index < classes.size()) return classes.get(index);
+			ClassDef def = new ClassDef(known(string()));
+			classes.add(def);
+			if (withFields) {
+				def.layout = layout(def.type);
+				int count = varint();
+				def.names = new String[count];
+				def.codes = new char[count];
+				for (int i = 0; i < count; i++) {
+					def.names[i] = string();
+					def.codes[i] = (char) in.get();
+				}
+			}
+			return def;
+		}
+
+		/**
+		 * Class of a name read from the input, which has to be a collection, an enum or a class of the model.
+		 * An enum is loaded without being initialized, before it is checked.
+		 */
+		private Class<?> known(String name) throws ClassNotFoundException {
+			Class<?> type = KNOWN.get(name);
+			if (type == null && name.startsWith("universitysystem.")) {
+				Class<?> loaded = Class.forName(name, false, BinaryCodec.class.getClassLoader());
+				if (loaded.isEnum()) type = loaded;
+			}
+			if (type == null && name.equals(String.class.getName())) type = String.class;
+			if (type == null) throw new ClassNotFoundException("Not a class of the model: " + name);
+			return type;
+		}
+
+		private static Class<?> primitive(char code) throws StreamCorruptedException {
+			return switch (code) {
+				case 'I' -> int.class;
+				case 'J' -> long.class;
+				case 'D' -> double.class;
+				case 'F' -> float.class;
+				case 'Z' -> boolean.class;
+				case 'C' -> char.class;
+				case 'S' -> short.class;
+				case 'B' -> byte.class;
+				default -> throw new StreamCorruptedException("Unknown array type " + code);
+			};
+		}
+
+		private String string() {
+			int index = varint();
+			if (index < strings.size()) return strings.get(index);
+			byte[] bytes = new byte[varint()];
+			in.get(bytes);
+			String s = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(s);
+			return s;
+		}
+
+		private int varint() {
+			int v = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = in.get();
+				v |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return v;
+			}
+		}
+
+		private long varlong() {
+			long v = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = in.get();
+				v |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return (v >>> 1) ^ -(v & 1);
+			}
+		}
+	}
+
+	private static class ClassDef {
+		private final Class<?> type;
+		private Layout layout;
+		private String[] names;
+		private char[] codes;
+
+		ClassDef(Class<?> type) {
+			this.type = type;
+		}
+	}
+}
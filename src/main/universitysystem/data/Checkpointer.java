@@ -0,0 +1,117 @@
+package universitysystem.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes snapshots and journal records on a background thread.
+ * Saves requested within one checkpoint interval are coalesced: only the latest image of every shard is written
+ * and the collected journal records are appended with a single fsync.
+ * Pending writes are drained when the JVM shuts down.
+ */
+public class Checkpointer
+{
+	private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "checkpointer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Object writeLock = new Object();
+	private static long intervalMillis = 0;
+	private static final EnumMap<Shard, Snapshot.Image> images = new EnumMap<>(Shard.class);
+	private static final ByteArrayOutputStream records = new ByteArrayOutputStream();
+	private static boolean compaction;
+	private static boolean scheduled;
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(Checkpointer::drain, "checkpointer-shutdown"));
+	}
+
+	private Checkpointer() {
+	}
+
+	public static long getInterval(TimeUnit unit) {
+		return unit.convert(intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets how long save requests are collected before they are written.
+	 * @param interval - checkpoint interval, {@code 0} to write as soon as possible.
+	 * @param unit - unit of the interval.
+	 */
+	public static void setInterval(long interval, TimeUnit unit) {
+		intervalMillis = Math.max(0, unit.toMillis(interval));
+	}
+
+	/**
+	 * Queues a snapshot of one shard. A queued older snapshot of the same shard is replaced.
+	 */
+	static synchronized void submit(Snapshot.Image image) {
+		images.put(image.getShard(), image);
+		schedule();
+	}
+
+	/**
+	 * Queues snapshots of all loaded shards and the removal of the journal. Queued journal records are dropped
+	 * because the snapshots already contain them.
+	 */
+	static synchronized void compact(List<Snapshot.Image> shards) {
+		shards.forEach(n -> images.put(n.getShard(), n));
+		compaction = true;
+		records.reset();
+		schedule();
+	}
+
+	/**
+	 * Queues journal records to be appended to the journal.
+	 */
+	static synchronized void submit(byte[] journal) {
+		records.writeBytes(journal);
+		schedule();
+	}
+
+	private static void schedule() {
+		if (scheduled) return;
+		scheduled = true;
+		executor.schedule(Checkpointer::drain, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes everything that is queued and waits until it is on disk.
+	 */
+	public static void drain() {
+		synchronized (writeLock) {
+			List<Snapshot.Image> shards;
+			byte[] journal;
+			boolean compact;
+			synchronized (Checkpointer.class) {
+				shards = new ArrayList<>(images.values());
+				journal = records.toByteArray();
+				compact = compaction;
+				images.clear();
+				records.reset();
+				compaction = false;
+				scheduled = false;
+			}
+			try {
+				if (!compact && journal.length > 0) DataJournal.append(journal);
+				for (Snapshot.Image image : shards) {
+					image.write();
+				}
+				if (compact) {
+					DataJournal.delete();
+					if (journal.length > 0) DataJournal.append(journal);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				Data.getInstance().markDirty();
+			}
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.Manager;
+import universitysystem.entity.Student;
+import universitysystem.utills.RegistrationRequest;
+import universitysystem.utills.RegistrationType;
+import universitysystem.utills.RequestStatus;
+
+import java.util.*;
+
+/**
+ * Courses of the current semester a student may add, so problems are seen before a request is sent.
+ * A course is recommended when the student has not taken, completed or requested it, its faculty may take it,
+ * its prerequisites are completed, its credits fit into what is left of {@link Student#getMaxCredits()} after
+ * the current courses and the pending requests to add a course, and its lessons do not clash with the schedule.
+ * Courses are ranked by type, major first, then by the number of courses that need them and then by code,
+ * full courses go last because they only give a place on the waitlist.
+ * The recommendations of a student are computed on first access and kept until the courses, requests,
+ * schedule or faculty of the student change, the courses of the university change or the semester ends.
+ * Students are compared by identity, because their hash codes depend on mutable fields.
+ */
+public class CourseRecommender
+{
+	private final Data data;
+	private final IdentityHashMap<Student, Entry> cache = new IdentityHashMap<>();
+	private Catalog catalog;
+	private long changes;
+
+	CourseRecommender(Data data) {
+		this.data = data;
+	}
+
+	/**
+	 * Returns the courses the student may add, best first.
+	 * @param s - student.
+	 * @return recommended courses, empty if there are none.
+	 */
+	public List<Recommendation> recommend(Student s) {
+		List<Recommendation> recommendations = new ArrayList<>();
+		for (Candidate c : candidates(s)) {
+			recommendations.add(new Recommendation(c.course, c.type, c.dependents, data.getEnrollments().getFreeSeats(c.course)));
+		}
+		recommendations.sort(Comparator.comparing(r -> r.freeSeats() == 0));
+		return recommendations;
+	}
+
+	/**
+	 * Computes the recommendations of all students in parallel, so they are ready when the registration opens.
+	 * @return number of students.
+	 */
+	public int prepare() {
+		List<Student> students = new ArrayList<>(data.getStudents());
+		students.parallelStream().forEach(this::candidates);
+		return students.size();
+	}
+
+	/**
+	 * Drops the recommendations of a student after its courses, requests, schedule or faculty changed.
+	 */
+	synchronized void changed(Student s) {
+		cache.remove(s);
+		changes++;
+	}
+
+	/**
+	 * Recommended courses of a student in the order of rank without the free seats. They are computed without
+	 * holding the lock of the recommender and kept only if nothing changed meanwhile.
+	 */
+	private List<Candidate> candidates(Student s) {
+		int version = Data.getCatalogVersion();
+		int term = data.getTerm();
+		int maxCredits = Student.getMaxCredits();
+		long stamp;
+		Catalog courses;
+		synchronized (this) {
+			Entry entry = cache.get(s);
+			if (entry != null && entry.version == version && entry.term == term && entry.maxCredits == maxCredits) {
+				return entry.candidates;
+			}
+			stamp = changes;
+			if (catalog == null || catalog.version != version || catalog.term != term) {
+				catalog = new Catalog(version, term, offered());
+			}
+			courses = catalog;
+		}
+		List<Candidate> candidates = compute(s, courses.courses, maxCredits);
+		synchronized (this) {
+			if (stamp == changes && version == Data.getCatalogVersion()) {
+				cache.put(s, new Entry(version, term, maxCredits, candidates));
+			}
+		}
+		return candidates;
+	}
+
+	private List<Course> offered() {
+		List<Course> courses = new ArrayList<>();
+		for (Course c : new ArrayList<>(data.getCourses())) {
+			if (c.getYear() == data.getYear() && c.getSemester() == data.getSemester()) courses.add(c);
+		}
+		return courses;
+	}
+
+	private List<Candidate> compute(Student s, List<Course> courses, int maxCredits) {
+		Set<Course> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Lesson> schedule = new ArrayList<>();
+		int credits;
+		LockStripes.Guard guard = data.lock(s);
+		try {
+			for (RegisteredCourse r : s.getCurrentCourses()) {
+				taken.add(r.getCourse());
+				schedule.addAll(r.getLessons());
+			}
+			for (RegisteredCourse r : s.getCompletedCourses()) taken.add(r.getCourse());
+			credits = s.getCredits(s.getCurrentCourses());
+		} finally {
+			guard.close();
+		}
+		for (RegistrationRequest r : data.getRequestIndex().get(s)) {
+			// a second request for the course would be refused as a duplicate
+			taken.add(r.getCourse());
+			if (r.getStatus() == RequestStatus.SHIPPED && r.getRegistrationType() == RegistrationType.ADD) {
+				credits += r.getCourse().getCredits();
+			}
+		}
+		PrerequisiteGraph graph = data.getPrerequisiteGraph();
+		List<Candidate> candidates = new ArrayList<>();
+		for (Course c : courses) {
+			if (taken.contains(c) || credits + c.getCredits() > maxCredits) continue;
+			CourseType type = Manager.courseTypeFor(s, c);
+			if (type == null || !graph.isEligible(s, c) || clashes(c, schedule)) continue;
+			candidates.add(new Candidate(c, type, graph.getDependentCount(c)));
+		}
+		candidates.sort(Comparator.comparing((Candidate c) -> c.type)
+				.thenComparing(c -> -c.dependents)
+				.thenComparing(c -> c.course.getCode(), Comparator.nullsLast(Comparator.naturalOrder())));
+		return List.copyOf(candidates);
+	}
+
+	/**
+	 * Checks whether a course has, for some type of lesson, fewer lessons that do not overlap the schedule
+	 * than the student has to attend. A course without lessons of a type is not scheduled yet and does not clash.
+	 */
+	private static boolean clashes(Course c, List<Lesson> schedule) {
+		if (schedule.isEmpty() || c.getLessons() == null) return false;
+		EnumMap<LessonType, Integer> all = new EnumMap<>(LessonType.class);
+		EnumMap<LessonType, Integer> free = new EnumMap<>(LessonType.class);
+		for (Lesson l : c.getLessons()) {
+			if (l.getType() == null) continue;
+			all.merge(l.getType(), 1, Integer::sum);
+			if (schedule.stream().noneMatch(n -> overlap(n, l))) free.merge(l.getType(), 1, Integer::sum);
+		}
+		for (Map.Entry<LessonType, Integer> lessons : all.entrySet()) {
+			int needed = switch (lessons.getKey()) {
+				case LECTURE -> c.getLectures();
+				case PRACTICE -> c.getPractices();
+				case LAB -> c.getLabs();
+			};
+			if (free.getOrDefault(lessons.getKey(), 0) < Math.min(needed, lessons.getValue())) return true;
+		}
+		return false;
+	}
+
+	private static boolean overlap(Lesson a, Lesson b) {
+		return a.getDay() == b.getDay() && a.getStartTime() < b.getEndTime() && b.getStartTime() < a.getEndTime();
+	}
+
+	/**
+	 * A course recommended to a student.
+	 * @param course - course.
+	 * @param type - type of the course for the student.
+	 * @param dependents - number of courses that need the course.
+	 * @param freeSeats - free seats of the course, {@code 0} if only the waitlist is left.
+	 */
+	public record Recommendation(Course course, CourseType type, int dependents, int freeSeats)
+	{
+		@Override
+		public String toString() {
+			return course + "\nТип: " + type + (freeSeats == 0 ? ", мест нет (лист ожидания)" : "");
+		}
+	}
+
+	private record Candidate(Course course, CourseType type, int dependents)
+	{
+	}
+
+	private record Entry(int version, int term, int maxCredits, List<Candidate> candidates)
+	{
+	}
+
+	/**
+	 * Courses offered in a term.
+	 */
+	private record Catalog(int version, int term, List<Course> courses)
+	{
+	}
+}
@@ -3,6 +3,7 @@ package universitysystem.data;
 import universitysystem.courses.Course;
 import universitysystem.courses.Semester;
 import universitysystem.entity.*;
+import universitysystem.research.Page;
 import universitysystem.research.ResearchPaper;
 import universitysystem.research.ResearchProject;
 import universitysystem.research.Researcher;
@@ -10,20 +11,42 @@ import universitysystem.utills.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+/**
+ * All data of the university, shared by every session.
+ * Users, courses and researchers are kept in concurrent sets and ids come from the {@link IdAllocator}.
+ * Changes made through {@link #journal(JournalEntry)} lock only the students and other aggregates they change,
+ * so independent changes run in parallel, and {@link #write()} waits for them to finish to store a consistent state.
+ */
 public class Data implements Serializable
 {
+	private static final long serialVersionUID = 152630024365598503L;
+	private static final AtomicLongFieldUpdater<Data> JOURNAL_SEQ = AtomicLongFieldUpdater.newUpdater(Data.class, "journalSeq");
+	private static final LockStripes locks = new LockStripes(256);
+	private static final ReentrantReadWriteLock checkpoint = new ReentrantReadWriteLock();
+	private static final ThreadLocal<int[]> journaling = ThreadLocal.withInitial(() -> new int[1]);
+	private static final Object rolloverLock = new Object();
+	private static final Object catalogLock = new Object();
+	private static final AtomicInteger catalogVersion = new AtomicInteger();
 	private static Data INSTANCE = new Data();
-	private HashSet<Course> courses;
-	private int logId;
+	private static Exception loadError;
+	private volatile Set<Course> courses; // null until read from the courses segment, see loadCatalog()
+	private int logId; // counters of older data, see seedIds()
 	private Admin admin;
-	private HashSet<Student> students;
-	private HashSet<Employee> employees;
-	private HashSet<Teacher> teachers;
-	private HashSet<Manager> managers;
-	private HashSet<Dean> deans;
-	private HashSet<TechSupportSpecialist> techSpecialists;
-	private HashSet<Researcher> researchers;
+	private Set<Student> students;
+	private Set<Employee> employees;
+	private Set<Teacher> teachers;
+	private Set<Manager> managers;
+	private Set<Dean> deans;
+	private Set<TechSupportSpecialist> techSpecialists;
+	private volatile Set<Researcher> researchers; // null until read from the research segment with the projects, papers and journals
 	private Vector<ResearchProject> researchProjects;
 	private Vector<ResearchPaper> researchPapers;
 	private Vector<TechReport> newOrders;
@@ -38,64 +61,477 @@ public class Data implements Serializable
 	private Vector<Organization> organizations;
 	private int year;
 	private Semester semester;
-	private int idCounter;
+	private int idCounter; // counters of older data, see seedIds()
+	private IdAllocator ids;
+	private int rollover; // term whose rollover is not finished, 0 if none
+	private volatile long journalSeq;
+	private transient Set<Shard> dirty;
+	private transient Set<Shard> failed;
+	private transient Map<Shard, Snapshot> snapshots;
+	private transient Placeholders placeholders;
+	private transient volatile UserRegistry userRegistry;
+	private transient volatile EnrollmentIndex enrollments;
+	private transient volatile GpaRanking ranking;
+	private transient volatile RequestIndex requestIndex;
+	private transient volatile PrerequisiteGraph prerequisiteGraph;
+	private transient volatile CourseRecommender recommender;
 
 	static{
-		if(new File("data.ser").exists()){
+		try {
+			if(Snapshot.exists()) INSTANCE = Snapshot.read();
+			else if(new File("data.ser").exists()) INSTANCE = Migrator.convert();
+			else INSTANCE = new Data();
+		} catch (Exception e){
+			loadFailed(e);
+		}
+		if(INSTANCE.ids == null) INSTANCE.seedIds();
+		if(loadError == null){
 			try {
-				INSTANCE = read();
-			} catch (Exception e){
-				e.printStackTrace();
+				DataJournal.replay(INSTANCE);
+			} catch (IOException e){
+				loadFailed(e);
 			}
-		} else INSTANCE = new Data();
-	}
-
-	public static Data read() throws IOException, ClassNotFoundException{
-		try {
-			FileInputStream fis = new FileInputStream("data.ser");
-			ObjectInputStream oin = new ObjectInputStream(fis);
-			return (Data) oin.readObject();
-
-		} catch (FileNotFoundException e){
-			System.out.println(e);
-			return new Data();
-		} catch (ClassNotFoundException e){
-			throw new ClassNotFoundException();
 		}
+		INSTANCE.moveLogsToAudit();
+		// logs are not stored with the shards, so their counter may be behind the audit log
+		INSTANCE.advanceId(IdSequence.LOG, AuditLog.maxId());
 	}
 
+	/**
+	 * Stores the changed shards. Journaled changes wait while the shards are encoded,
+	 * so the snapshots and the journal sequence number always match.
+	 */
 	public static void write() throws IOException{
+		checkLoaded();
+		EnumSet<Shard> taken = EnumSet.noneOf(Shard.class);
+		checkpoint.writeLock().lock();
 		try{
-			FileOutputStream fos = new FileOutputStream("data.ser");
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(INSTANCE);
-			oos.close();
+			boolean compaction = DataJournal.isCompactionDue();
+			ArrayList<Snapshot.Image> images = new ArrayList<>();
+			for(Shard shard : Shard.values()){
+				if(!INSTANCE.isLoaded(shard)) continue;
+				if(INSTANCE.dirty.remove(shard)) taken.add(shard);
+				if(compaction || taken.contains(shard) || !shard.exists()){
+					images.add(Snapshot.encode(INSTANCE, shard));
+				}
+			}
+			if(compaction){
+				Checkpointer.compact(images);
+				DataJournal.clear();
+			} else {
+				DataJournal.flush();
+				images.forEach(Checkpointer::submit);
+			}
 		} catch (IOException e){
+			INSTANCE.dirty.addAll(taken);
 			e.printStackTrace();
+		} finally {
+			checkpoint.writeLock().unlock();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+		in.defaultReadObject();
+		initTransient();
+	}
+
+	void initTransient(){
+		this.dirty = Collections.synchronizedSet(EnumSet.noneOf(Shard.class));
+		this.failed = Collections.synchronizedSet(EnumSet.noneOf(Shard.class));
+		this.snapshots = Collections.synchronizedMap(new EnumMap<>(Shard.class));
+		if(courses != null) this.courses = concurrent(courses);
+		this.students = concurrent(students);
+		this.employees = concurrent(employees);
+		this.teachers = concurrent(teachers);
+		this.managers = concurrent(managers);
+		this.deans = concurrent(deans);
+		this.techSpecialists = concurrent(techSpecialists);
+		if(researchers != null) this.researchers = concurrent(researchers);
+		if(ids != null) ids.init();
+	}
+
+	/**
+	 * Copies a set of older data, which was stored as a {@code HashSet}, into a concurrent set.
+	 */
+	private static <T> Set<T> concurrent(Set<T> set){
+		if(set instanceof ConcurrentHashMap.KeySetView) return set;
+		Set<T> result = ConcurrentHashMap.newKeySet();
+		if(set != null) result.addAll(set);
+		return result;
+	}
+
+	/**
+	 * Applies the entry and records it in the journal, so the next save only appends it
+	 * instead of rewriting the whole snapshot.
+	 * The aggregates of the entry are locked while it is applied. A caller that already holds a {@link #lock(Object...)}
+	 * journals only entries of the aggregates it locked.
+	 * @param entry - mutation to be applied.
+	 * @return {@code true} if the data was changed, {@code false} otherwise.
+	 * @throws IllegalStateException if the caller holds locks and the entry changes an aggregate it did not lock.
+	 */
+	public boolean journal(JournalEntry entry){
+		if(isApplying()) return apply(entry);
+		LockStripes.Guard guard = lock(entry.aggregates());
+		try {
+			if(!apply(entry)) return false;
+			entry.setSeq(JOURNAL_SEQ.incrementAndGet(this));
+			if(!DataJournal.record(entry)) markDirty();
+			return true;
+		} finally {
+			guard.close();
+		}
+	}
+
+	/**
+	 * Locks students, courses or other aggregates of the data for a change that spans several steps.
+	 * Changes of other aggregates are not blocked. A save waits until the locks are released,
+	 * so it never stores a change that is half done.
+	 * @param aggregates - objects to be changed.
+	 * @return guard that releases the locks when it is closed.
+	 */
+	public LockStripes.Guard lock(Object... aggregates){
+		return locks.lock(checkpoint.readLock(), aggregates);
+	}
+
+	/**
+	 * Changes objects of a shard outside of the journal and marks the shard dirty.
+	 * A save waits until the change is done, so it is never stored half done.
+	 * @param shard - shard of the changed objects.
+	 * @param change - change to be made.
+	 * @return result of the change.
+	 */
+	public <T> T change(Shard shard, Supplier<T> change){
+		checkpoint.readLock().lock();
+		try {
+			markDirty(shard);
+			return change.get();
+		} finally {
+			checkpoint.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Changes objects of a shard outside of the journal and marks the shard dirty.
+	 * A save waits until the change is done, so it is never stored half done.
+	 * @param shard - shard of the changed objects.
+	 * @param change - change to be made.
+	 */
+	public void change(Shard shard, Runnable change){
+		change(shard, () -> {
+			change.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Changes objects that may be stored in any shard outside of the journal and marks every shard dirty.
+	 * A save waits until the change is done, so it is never stored half done.
+	 * @param change - change to be made.
+	 */
+	public void change(Runnable change){
+		checkpoint.readLock().lock();
+		try {
+			markDirty();
+			change.run();
+		} finally {
+			checkpoint.readLock().unlock();
+		}
+	}
+
+	private static boolean isApplying(){
+		return journaling.get()[0] > 0;
+	}
+
+	/**
+	 * Marks that the data was changed outside of the journal, so the next save rewrites every shard.
+	 */
+	public void markDirty(){
+		if(!isApplying()) dirty.addAll(EnumSet.allOf(Shard.class));
+	}
+
+	/**
+	 * Marks that the shard was changed outside of the journal, so the next save rewrites it.
+	 * @param shard - changed shard.
+	 */
+	public void markDirty(Shard shard){
+		if(!isApplying()) dirty.add(shard);
+	}
+
+	boolean apply(JournalEntry entry){
+		int[] depth = journaling.get();
+		depth[0]++;
+		try {
+			return entry.apply(this);
+		} finally {
+			depth[0]--;
+		}
+	}
+
+	Snapshot getSnapshot(Shard shard){
+		return snapshots.get(shard);
+	}
+
+	void setSnapshot(Shard shard, Snapshot snapshot){
+		snapshots.put(shard, snapshot);
+	}
+
+	/**
+	 * Journal sequence number up to which the shard is already stored in its snapshot.
+	 */
+	long getSnapshotSeq(Shard shard){
+		Snapshot snapshot = snapshots.get(shard);
+		if(snapshot != null) return snapshot.getSeq();
+		return snapshots.isEmpty() ? journalSeq : 0;
+	}
+
+	boolean isLoaded(Shard shard){
+		if(shard == Shard.CORE) return true;
+		return Arrays.stream(shard.getSegments()).anyMatch(n -> loadedSegment(n) != null);
+	}
+
+	Vector<?> loadedSegment(String name){
+		return switch (name) {
+			case "logs" -> logs;
+			case "news" -> news;
+			case "registrationRequests" -> registrationRequests;
+			case "employeeRequests" -> employeeRequests;
+			case "complaints" -> complaints;
+			case "newOrders" -> newOrders;
+			default -> null;
+		};
+	}
+
+	/**
+	 * Drops the collections of a shard that is stored in its snapshot. They are read again on next access.
+	 * @param shard - shard to be released.
+	 */
+	void unload(Shard shard){
+		if(shard == Shard.CORE || dirty.contains(shard) || snapshots.get(shard) == null) return;
+		for(String name : shard.getSegments()){
+			switch (name) {
+				case "logs" -> logs = null;
+				case "news" -> news = null;
+				case "registrationRequests" -> {
+					registrationRequests = null;
+					// the index holds the unloaded requests, it is built again from the reloaded ones
+					requestIndex = null;
+				}
+				case "employeeRequests" -> employeeRequests = null;
+				case "complaints" -> complaints = null;
+				case "newOrders" -> newOrders = null;
+			}
+		}
+	}
+
+	/**
+	 * Reads a lazy segment from the snapshot of its shard. A segment that can not be read is reported by
+	 * {@link #checkLoaded()} and its shard is never written again, so the empty collection returned instead
+	 * does not replace the stored one.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Vector<T> segment(String name){
+		Shard shard = Arrays.stream(Shard.values()).filter(n -> Arrays.asList(n.getSegments()).contains(name)).findFirst().orElseThrow();
+		Snapshot snapshot = snapshots.get(shard);
+		Vector<?> loaded = null;
+		try {
+			if(snapshot != null) loaded = snapshot.load(name, this);
+		} catch (IOException e){
+			loadFailed(shard, e);
+		}
+		return loaded == null ? new Vector<>() : (Vector<T>) loaded;
+	}
+
+	/**
+	 * Records that a shard could not be read. The shard is not written any more and the error is reported
+	 * by {@link #checkLoaded()}.
+	 * @param shard - shard that could not be read.
+	 * @param e - error it was read with.
+	 */
+	void loadFailed(Shard shard, Exception e){
+		failed.add(shard);
+		loadFailed(new IOException(shard.getFile() + " can not be read", e));
+	}
+
+	/**
+	 * Whether the shard could not be read, in which case it must not be written.
+	 */
+	boolean hasFailed(Shard shard){
+		return failed.contains(shard);
+	}
+
+	Placeholders getPlaceholders(){
+		return placeholders;
+	}
+
+	void setPlaceholders(Placeholders placeholders){
+		this.placeholders = placeholders;
+	}
+
+	/**
+	 * Whether the courses and research are read. The users are read at startup, the courses and research
+	 * of the core snapshot when they are first needed.
+	 */
+	public boolean isCatalogLoaded(){
+		return courses != null && researchers != null;
+	}
+
+	/**
+	 * Reads the courses and research from the core snapshot if they are not read yet. Until then the courses
+	 * and research projects the users refer to have only the fields of their keys, so this is done before
+	 * a user is served.
+	 */
+	public void loadCatalog(){
+		loadCourses();
+		loadResearch();
+	}
+
+	Set<Course> loadedCourses(){
+		return courses;
+	}
+
+	/**
+	 * Researchers, research projects, research papers and journals, {@code null} if they are not read.
+	 */
+	Vector<Collection<?>> loadedResearch(){
+		if(researchers == null) return null;
+		return new Vector<>(List.of(researchers, researchProjects, researchPapers, journals));
+	}
+
+	private void loadCourses(){
+		if(courses != null) return;
+		// built before the catalog is locked, the registry locks the data and the indexes read the courses under that lock
+		getUserRegistry();
+		synchronized (catalogLock){
+			if(courses != null) return;
+			Set<Course> loaded = null;
+			try {
+				loaded = snapshots.get(Shard.CORE).loadCourses(this, placeholders);
+			} catch (IOException e){
+				loadFailed(Shard.CORE, e);
+			}
+			courses = concurrent(loaded);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadResearch(){
+		if(researchers != null) return;
+		getUserRegistry();
+		synchronized (catalogLock){
+			if(researchers != null) return;
+			// the hash codes of graduate students depend on their diploma projects, which get their fields now
+			Set<Student> graduates = Collections.newSetFromMap(new IdentityHashMap<>());
+			for(Student s : students){
+				if(s instanceof GraduateStudent g && placeholders.contains(g.getProject())) graduates.add(g);
+			}
+			graduates.forEach(students::remove);
+			Vector<?> loaded = null;
+			try {
+				loaded = snapshots.get(Shard.CORE).loadResearch(this, placeholders);
+			} catch (IOException e){
+				loadFailed(Shard.CORE, e);
+			}
+			students.addAll(graduates);
+			for(Teacher t : teachers){
+				if(t.getRates() == null || t.getRates().keySet().stream().noneMatch(graduates::contains)) continue;
+				HashMap<Student, Integer> rates = new HashMap<>(t.getRates());
+				t.getRates().clear();
+				t.getRates().putAll(rates);
+			}
+			researchProjects = loaded == null ? new Vector<>() : (Vector<ResearchProject>) loaded.get(1);
+			researchPapers = loaded == null ? new Vector<>() : (Vector<ResearchPaper>) loaded.get(2);
+			journals = loaded == null ? new Vector<>() : (Vector<Journal>) loaded.get(3);
+			researchers = concurrent(loaded == null ? null : (Set<Researcher>) loaded.get(0));
 		}
 	}
 
+	private static synchronized void loadFailed(Exception e){
+		e.printStackTrace();
+		if(loadError == null) loadError = e;
+		else loadError.addSuppressed(e);
+	}
+
+	long getJournalSeq(){
+		return journalSeq;
+	}
+
+	void setJournalSeq(long journalSeq){
+		this.journalSeq = journalSeq;
+	}
+
+	int currentIdCounter(){
+		return ids.reserved(IdSequence.USER);
+	}
+
+	void advanceId(IdSequence sequence, int id){
+		ids.advance(sequence, id);
+	}
+
+	long[] idCounters(){
+		return ids.counters();
+	}
+
+	/**
+	 * Takes over the id counters stored with the snapshot of a shard other than the core one.
+	 * Data stored before the counters were kept there has none, its ids are taken from the data by {@link #seedIds()}.
+	 */
+	void mergeIds(long[] counters){
+		if(ids != null && counters != null) ids.merge(counters);
+	}
+
+	/**
+	 * Creates the id allocator for data stored before ids were allocated by {@link IdAllocator}.
+	 * Only the user and log counters were stored then, the other counters started from the beginning on every run,
+	 * so their sequences continue after the largest id found in the data.
+	 */
+	void seedIds(){
+		change(Shard.CORE, () -> {
+			ids = new IdAllocator();
+			ids.advance(IdSequence.USER, idCounter);
+			ids.advance(IdSequence.LOG, Math.max(logId, maxId(legacyLogs().stream().map(Log::getId))));
+			ids.advance(IdSequence.MAIL, maxId(Stream.of(getRegistrationRequests(), getEmployeeRequests(), getComplaints(),
+					getNewOrders(), employees.stream().flatMap(n -> n.getMessages().stream()).toList())
+					.flatMap(Collection::stream).map(Mail::getId)));
+			ids.advance(IdSequence.NEWS, maxId(getNews().stream().map(News::getId)));
+			ids.advance(IdSequence.COMMENT, maxId(getNews().stream().flatMap(n -> comments(n.getComments())).map(Comment::getId)));
+			ids.advance(IdSequence.JOURNAL, maxId(getJournals().stream().map(Journal::getReleaseNumber)));
+			ids.advance(IdSequence.PAGE, maxId(getResearchPapers().stream().flatMap(n -> n.getPages().stream()).map(Page::getId)));
+			ids.advance(IdSequence.RESEARCH_PAPER, maxId(getResearchPapers().stream().map(ResearchPaper::getId)));
+			ids.advance(IdSequence.RESEARCH_PROJECT, maxId(getResearchProjects().stream().map(ResearchProject::getId)));
+			ids.advance(IdSequence.WAITLIST, maxId(getRegistrationRequests().stream().map(RegistrationRequest::getWaitlistTicket)));
+		});
+	}
+
+	private static Stream<Comment> comments(Collection<Comment> comments){
+		if(comments == null) return Stream.empty();
+		return comments.stream().flatMap(n -> Stream.concat(Stream.of(n), comments(n.getSubComments())));
+	}
+
+	private static int maxId(Stream<Integer> ids){
+		return ids.filter(Objects::nonNull).mapToInt(Integer::intValue).max().orElse(0);
+	}
+
 	private Data() {
 		super();
-		this.idCounter = 0;
-		this.logId = 0;
+		initTransient();
+		this.ids = new IdAllocator();
 		this.year = new Date().getYear() + 1900;
 		this.semester = Semester.FALL;
-		this.courses = new HashSet<Course>();
+		this.courses = ConcurrentHashMap.newKeySet();
 		this.complaints = new Vector<>();
 		this.registationIsOpen = true;
 		this.schedulingIsOpen = true;
 		this.employeeRequests = new Vector<>();
 		this.registrationRequests = new Vector<>();
 		this.admin = new Admin("admin", "12345"); // добавить лог и пароль
-		this.students = new HashSet<Student>();
+		this.students = ConcurrentHashMap.newKeySet();
 		this.newOrders = new Vector<>();
-		this.employees = new HashSet<Employee>();
-		this.teachers = new HashSet<Teacher>();
-		this.managers = new HashSet<Manager>();
-		this.deans = new HashSet<Dean>();
-		this.techSpecialists = new HashSet<TechSupportSpecialist>();
-		this.researchers = new HashSet<Researcher>();
+		this.employees = ConcurrentHashMap.newKeySet();
+		this.teachers = ConcurrentHashMap.newKeySet();
+		this.managers = ConcurrentHashMap.newKeySet();
+		this.deans = ConcurrentHashMap.newKeySet();
+		this.techSpecialists = ConcurrentHashMap.newKeySet();
+		this.researchers = ConcurrentHashMap.newKeySet();
 		this.researchProjects = new Vector<ResearchProject>();
 		this.researchPapers = new Vector<ResearchPaper>();
 		this.logs = new Vector<Log>();
@@ -104,33 +540,113 @@ public class Data implements Serializable
 		this.organizations = new Vector<>();
 	}
 	public int getLogId(){
-		logId++;
-		return logId;
+		return ids.next(IdSequence.LOG);
+	}
+
+	/**
+	 * Returns the next id of the sequence.
+	 * @param sequence - sequence of the id.
+	 */
+	public int nextId(IdSequence sequence){
+		return ids.next(sequence);
 	}
 	public Vector<RegistrationRequest> getRegistrationRequests(){
+		if(registrationRequests == null) registrationRequests = segment("registrationRequests");
 		return registrationRequests;
 	}
+	public boolean addRegistrationRequest(RegistrationRequest r){
+		return journal(new JournalEntry.AddRegistrationRequest(r));
+	}
+
+	/**
+	 * Adds a sent request to the requests and their index.
+	 */
+	boolean putRegistrationRequest(RegistrationRequest r){
+		if(!getRegistrationRequests().add(r)) return false;
+		RequestIndex index = requestIndex;
+		if(index != null) index.add(r);
+		if(r.getSender() instanceof Student s) recommendationsChanged(s);
+		return true;
+	}
+
+	/**
+	 * Returns the indexes of the registration requests, building them on first access.
+	 */
+	public RequestIndex getRequestIndex(){
+		RequestIndex index = requestIndex;
+		if(index == null){
+			synchronized (this){
+				if(requestIndex == null){
+					Vector<RegistrationRequest> requests = getRegistrationRequests();
+					synchronized (requests){
+						requestIndex = new RequestIndex(requests);
+					}
+				}
+				index = requestIndex;
+			}
+		}
+		return index;
+	}
 	public Vector<EmployeeRequest> getEmployeeRequests(){
+		if(employeeRequests == null) employeeRequests = segment("employeeRequests");
 		return employeeRequests;
 	}
+	public boolean addEmployeeRequest(EmployeeRequest e){
+		return change(Shard.REQUESTS, () -> getEmployeeRequests().add(e));
+	}
+	public boolean removeEmployeeRequest(EmployeeRequest e){
+		return change(Shard.REQUESTS, () -> getEmployeeRequests().remove(e));
+	}
 	public Vector<Complaint>  getComplaints(){
+		if(complaints == null) complaints = segment("complaints");
 		return complaints;
 	}
+	public boolean addComplaint(Complaint c){
+		return change(Shard.REQUESTS, () -> getComplaints().add(c));
+	}
+	public boolean removeComplaint(Complaint c){
+		return change(Shard.REQUESTS, () -> getComplaints().remove(c));
+	}
 	public Vector<TechReport>  getNewOrders(){
+		if(newOrders == null) newOrders = segment("newOrders");
 		return newOrders;
 	}
+	public boolean addNewOrder(TechReport t){
+		return change(Shard.REQUESTS, () -> getNewOrders().add(t));
+	}
+	public boolean removeNewOrder(TechReport t){
+		return change(Shard.REQUESTS, () -> getNewOrders().remove(t));
+	}
 	public boolean getRegistrationStatus(){
 		return registationIsOpen;
 	}
 	public void setRegistrationStatus(boolean b){
-		this.registationIsOpen = b;
+		change(Shard.CORE, () -> this.registationIsOpen = b);
 	}
 	public boolean getSchedulingStatus(){
 		return registationIsOpen;
 	}
 	public void setSchedulingStatus(boolean b){
-		this.registationIsOpen = b;
+		change(Shard.CORE, () -> this.registationIsOpen = b);
+	}
+	/**
+	 * Error the stored data could not be read with, in which case the instance starts empty
+	 * or without the changes of the journal, or a lazy segment read later is missing.
+	 * @return the error or {@code null} if the data was read.
+	 */
+	static Exception getLoadError() {
+		return loadError;
+	}
+
+	/**
+	 * Refuses to work with data that could not be read completely, so the stored files are neither
+	 * served nor overwritten until they are repaired.
+	 * @throws IOException if the snapshot or the journal could not be read.
+	 */
+	public static void checkLoaded() throws IOException {
+		if(loadError != null) throw new IOException("Stored data could not be read", loadError);
 	}
+
 	public static Data getInstance() {
 		return INSTANCE;	
 	}
@@ -140,188 +656,415 @@ public class Data implements Serializable
 	}
 
 	public void setAdmin(Admin admin) {
-		this.admin = admin;
+		change(Shard.CORE, () -> this.admin = admin);
+	}
+
+	/**
+	 * Returns the indexes of all users, building them on first access.
+	 */
+	public UserRegistry getUserRegistry() {
+		UserRegistry registry = userRegistry;
+		if(registry == null){
+			synchronized (this){
+				if(userRegistry == null) userRegistry = new UserRegistry(EntityRef.users(this).toList());
+				registry = userRegistry;
+			}
+		}
+		return registry;
+	}
+
+	/**
+	 * Returns the students of every course and lesson, building the index on first access.
+	 */
+	public EnrollmentIndex getEnrollments() {
+		loadCourses();
+		EnrollmentIndex index = enrollments;
+		if(index == null){
+			synchronized (this){
+				if(enrollments == null) enrollments = new EnrollmentIndex(this);
+				index = enrollments;
+			}
+		}
+		return index;
 	}
 
-	public HashSet<Course> getCourses() {
+	/**
+	 * Returns the ranking of students by GPA, building it on first access.
+	 */
+	public GpaRanking getRanking() {
+		loadCourses();
+		GpaRanking r = ranking;
+		if(r == null){
+			synchronized (this){
+				if(ranking == null) ranking = new GpaRanking(new ArrayList<>(students));
+				r = ranking;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Tells the ranking, if it is built, that the GPA, faculty or year of study of a student changed.
+	 * @param s - changed student.
+	 */
+	public void rankingChanged(Student s) {
+		GpaRanking r = ranking;
+		if(r != null) r.changed(s);
+	}
+
+	/**
+	 * Returns the graph of the prerequisites of the courses, building it on first access.
+	 */
+	public PrerequisiteGraph getPrerequisiteGraph() {
+		loadCourses();
+		PrerequisiteGraph graph = prerequisiteGraph;
+		if(graph == null){
+			synchronized (this){
+				if(prerequisiteGraph == null) prerequisiteGraph = new PrerequisiteGraph(this);
+				graph = prerequisiteGraph;
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Forgets the graph of the prerequisites after prerequisites were removed or replaced, it is built again on next access.
+	 */
+	void prerequisiteGraphDropped(PrerequisiteGraph graph) {
+		if(prerequisiteGraph == graph) prerequisiteGraph = null;
+	}
+
+	/**
+	 * Tells the graph of the prerequisites, if it is built, that the completed courses of a student changed.
+	 * @param s - changed student.
+	 */
+	public void completedCoursesChanged(Student s) {
+		PrerequisiteGraph graph = prerequisiteGraph;
+		if(graph != null) graph.completedChanged(s);
+		recommendationsChanged(s);
+	}
+
+	/**
+	 * Returns the recommender of the courses students may add, building it on first access.
+	 */
+	public CourseRecommender getRecommender() {
+		loadCourses();
+		CourseRecommender r = recommender;
+		if(r == null){
+			synchronized (this){
+				if(recommender == null) recommender = new CourseRecommender(this);
+				r = recommender;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Tells the recommender, if it is built, that the courses, requests, schedule or faculty of a student changed.
+	 * @param s - changed student.
+	 */
+	public void recommendationsChanged(Student s) {
+		CourseRecommender r = recommender;
+		if(r != null) r.changed(s);
+	}
+
+	/**
+	 * Tells the recommender that a course was added, removed or changed, so every recommendation is computed again.
+	 */
+	public void catalogChanged() {
+		catalogVersion.incrementAndGet();
+	}
+
+	static int getCatalogVersion() {
+		return catalogVersion.get();
+	}
+
+	/**
+	 * Removes a user from its set. The hash codes of users depend on mutable fields, so a user changed after
+	 * it was added may not be found by its hash, in which case it is looked up by identity.
+	 */
+	private boolean removeUser(Set<? extends User> users, User u){
+		// courses and research refer to users by id, they are read first and are written with the removed user in full
+		loadCatalog();
+		return users.remove(u) || users.removeIf(n -> n == u);
+	}
+
+	public Set<Course> getCourses() {
+		loadCourses();
 		return courses;
 	}
 	
 	public boolean addCourse(Course c) {
-		this.courses.add(c);
-		return true;
+		return change(Shard.CORE, () -> {
+			getCourses().add(c);
+			catalogChanged();
+			return true;
+		});
 	}
 	
 	public boolean removeCourse(Course c) {
-		this.courses.remove(c);
-		return true;
+		return change(Shard.CORE, () -> {
+			getCourses().remove(c);
+			catalogChanged();
+			return true;
+		});
 	}
 
-	public HashSet<Student> getStudents() {
+	public Set<Student> getStudents() {
 		return students;
 	}
 	
 	public boolean addStudent(Student s) {
-		this.students.add(s);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.students.add(s)){
+				if(userRegistry != null) userRegistry.add(s);
+				if(enrollments != null) enrollments.add(s);
+				if(ranking != null) ranking.add(s);
+			}
+			return true;
+		});
 	}
 	
 	public boolean removeStudent(Student s) {
-		this.students.remove(s);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.students, s)){
+				if(userRegistry != null) userRegistry.remove(s);
+				if(enrollments != null) enrollments.remove(s);
+				if(ranking != null) ranking.remove(s);
+			}
+			return true;
+		});
 	}
 
 	public boolean addEmployee(Employee e){
-		this.employees.add(e);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.employees.add(e) && userRegistry != null) userRegistry.add(e);
+			return true;
+		});
 	}
 
 	public boolean removeEmployee(Employee e){
-		this.employees.remove(e);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.employees, e) && userRegistry != null) userRegistry.remove(e);
+			return true;
+		});
 	}
 
-	public HashSet<Employee> getEmployees(){
+	public Set<Employee> getEmployees(){
 		return employees;
 	}
-	public HashSet<Teacher> getTeachers() {
+	public Set<Teacher> getTeachers() {
 		return teachers;
 	}
 
 	public boolean addTeacher(Teacher t) {
-		this.teachers.add(t);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.teachers.add(t) && userRegistry != null) userRegistry.add(t);
+			return true;
+		});
 	}
 	
 	public boolean removeTeacher(Teacher t) {
-		this.teachers.remove(t);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.teachers, t) && userRegistry != null) userRegistry.remove(t);
+			return true;
+		});
 	}
 
-	public HashSet<Manager> getManagers() {
+	public Set<Manager> getManagers() {
 		return managers;
 	}
 
 	public boolean addManager(Manager m) {
-		this.managers.add(m);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.managers.add(m) && userRegistry != null) userRegistry.add(m);
+			return true;
+		});
 	}
 	
 	public boolean removeManager(Manager m) {
-		this.managers.remove(m);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.managers, m) && userRegistry != null) userRegistry.remove(m);
+			return true;
+		});
 	}
 
-	public HashSet<Dean> getDeans() {
+	public Set<Dean> getDeans() {
 		return deans;
 	}
 
 	public boolean addDean(Dean d) {
-		this.deans.add(d);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.deans.add(d) && userRegistry != null) userRegistry.add(d);
+			return true;
+		});
 	}
 	
 	public boolean removeDean(Dean d) {
-		this.deans.remove(d);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.deans, d) && userRegistry != null) userRegistry.remove(d);
+			return true;
+		});
 	}
 
-	public HashSet<TechSupportSpecialist> getTechSpecialists() {
+	public Set<TechSupportSpecialist> getTechSpecialists() {
 		return techSpecialists;
 	}
 
 	public boolean addTechSpecialist(TechSupportSpecialist t) {
-		this.techSpecialists.add(t);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(this.techSpecialists.add(t) && userRegistry != null) userRegistry.add(t);
+			return true;
+		});
 	}
 	
 	public boolean removeTechSpecialist(TechSupportSpecialist t) {
-		this.techSpecialists.remove(t);
-		return true;
+		return change(Shard.CORE, () -> {
+			if(removeUser(this.techSpecialists, t) && userRegistry != null) userRegistry.remove(t);
+			return true;
+		});
 	}
 
-	public HashSet<Researcher> getResearchers() {
+	public Set<Researcher> getResearchers() {
+		loadResearch();
 		return researchers;
 	}
 
 	public boolean addReseacher(Researcher r) {
-		this.researchers.add(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchers().add(r);
+			return true;
+		});
 	}
 
 	public boolean removeResearcher(Researcher r){
-		this.researchers.remove(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchers().remove(r);
+			return true;
+		});
 	}
 
 	public Vector<ResearchProject> getResearchProjects() {
+		loadResearch();
 		return researchProjects;
 	}
 
 	public boolean addResearchProject(ResearchProject r) {
-		this.researchProjects.add(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchProjects().add(r);
+			return true;
+		});
 	}
 	
 	public boolean removeResearchProject(ResearchProject r) {
-		this.researchProjects.remove(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchProjects().remove(r);
+			return true;
+		});
 	}
 
 	public Vector<ResearchPaper> getResearchPapers() {
+		loadResearch();
 		return researchPapers;
 	}
 
 	public boolean addResearchPaper(ResearchPaper r) {
-		this.researchPapers.add(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchPapers().add(r);
+			return true;
+		});
 	}
 	
 	public boolean removeResearchPaper(ResearchPaper r) {
-		this.researchPapers.remove(r);
-		return true;
+		return change(Shard.CORE, () -> {
+			getResearchPapers().remove(r);
+			return true;
+		});
 	}
 
-	public Vector<Log> getLogs() {
-		return logs;
+	/**
+	 * Returns the latest logs, oldest first. All logs can be read with {@link AuditLog#read}.
+	 */
+	public List<Log> getLogs() {
+		return AuditLog.tail();
 	}
 
+	/**
+	 * Stores the log in the {@link AuditLog} without waiting for it to be written.
+	 * @return {@code false} if the log was dropped because the audit log is overloaded.
+	 */
 	public boolean addLog(Log l) {
-		this.logs.add(l);
-		return true;
+		return AuditLog.append(l);
 	}
-	
-	public boolean removeLog(Log l) {
-		this.logs.remove(l);
-		return true;
+
+	/**
+	 * Stores a log of the action in the {@link AuditLog} without creating a {@link Log} or its text,
+	 * which is rendered from the template of the action only when the log is viewed.
+	 * @param action - kind of the action.
+	 * @param actor - id of the user who did the action.
+	 * @param target - id of the user or object the action was done with, {@code null} if none.
+	 * @param detail - rest of the text of the action, {@code null} if none.
+	 * @return {@code false} if the log was dropped because the audit log is overloaded.
+	 */
+	public boolean log(LogAction action, String actor, String target, String detail) {
+		return AuditLog.append(nextId(IdSequence.LOG), System.currentTimeMillis(), action.ordinal(), actor, target, detail);
+	}
+
+	/**
+	 * Logs of older data that were stored in the logs shard.
+	 */
+	private Vector<Log> legacyLogs() {
+		if(logs == null) logs = segment("logs");
+		return logs;
+	}
+
+	/**
+	 * Moves the logs of the logs shard to the {@link AuditLog}. Logs that are already there are skipped,
+	 * so an interrupted move is finished on the next start.
+	 */
+	private void moveLogsToAudit() {
+		if(legacyLogs().isEmpty()) return;
+		int last = AuditLog.maxId();
+		AuditLog.appendAll(legacyLogs().stream().filter(n -> n.getId() > last).toList());
+		change(Shard.LOGS, () -> logs = new Vector<>());
 	}
 
 	public Vector<News> getNews() {
+		if(news == null) news = segment("news");
 		return news;
 	}
 
 	public boolean addNews(News n) {
-		this.news.add(n);
-		return true;
+		return change(Shard.COMMUNICATION, () -> {
+			getNews().add(n);
+			return true;
+		});
 	}
 	
 	public boolean removeNews(News n) {
-		this.news.remove(n);
-		return true;
+		return change(Shard.COMMUNICATION, () -> {
+			getNews().remove(n);
+			return true;
+		});
 	}
 
 	public Vector<Journal> getJournals() {
+		loadResearch();
 		return journals;
 	}
 
 	public boolean addJournal(Journal j) {
-		this.journals.add(j);
-		return true;
+		return change(Shard.CORE, () -> {
+			getJournals().add(j);
+			return true;
+		});
 	}
 	
 	public boolean removeJournal(Journal j) {
-		this.journals.remove(j);
-		return true;
+		return change(Shard.CORE, () -> {
+			getJournals().remove(j);
+			return true;
+		});
 	}
 
 	public Vector<Organization> getOrganizations() {
@@ -329,13 +1072,17 @@ public class Data implements Serializable
 	}
 
 	public boolean addOrganization(Organization o) {
-		this.organizations.add(o);
-		return true;
+		return change(Shard.CORE, () -> {
+			this.organizations.add(o);
+			return true;
+		});
 	}
 	
 	public boolean removeOrganization(Organization o) {
-		this.organizations.remove(o);
-		return true;
+		return change(Shard.CORE, () -> {
+			this.organizations.remove(o);
+			return true;
+		});
 	}
 
 	public int getYear(){
@@ -347,31 +1094,79 @@ public class Data implements Serializable
 	}
 
 	public void setSemester(Semester semester){
-		this.semester = semester;
+		change(Shard.CORE, () -> this.semester = semester);
 	}
 
 	public void setYear(int year){
-		this.year = year;
+		change(Shard.CORE, () -> this.year = year);
 	}
 
 	public int getIdCounter(){
-		return ++idCounter;
+		return ids.next(IdSequence.USER);
 	}
 
 	public void resetIdCounter(){
-		idCounter = 0;
-	}
-
-	public void nextSemester(){
-		students.forEach(Student::endSemester);
-		teachers.forEach(Teacher::endSemester);
-		if (this.semester == Semester.FALL) this.semester = Semester.SPRING;
-		else {
-			this.semester = Semester.FALL;
-			this.year = this.year++;
-			resetIdCounter();
-			students.forEach(n -> n.setYearOfStudy(n.getYearOfStudy() + 1));
+		change(Shard.CORE, () -> ids.reset(IdSequence.USER));
+	}
+
+	/**
+	 * Number of the current term. Terms are numbered in order: the fall and spring semesters of a year
+	 * are {@code 2 * year} and {@code 2 * year + 1}, the spring semester ends the academic year.
+	 */
+	public int getTerm(){
+		return 2 * year + (semester == Semester.SPRING ? 1 : 0);
+	}
+
+	/**
+	 * Whether a rollover was interrupted and is finished by the next {@link #nextSemester()}.
+	 */
+	public boolean isRolloverPending(){
+		return rollover != 0;
+	}
+
+	public SemesterRollover nextSemester(){
+		return nextSemester(null);
+	}
+
+	/**
+	 * Ends the current semester and starts the next one. Students and teachers are moved in parallel
+	 * by {@link SemesterRollover}. Every step is journaled and done only once, so if the rollover is
+	 * interrupted the next call finishes it instead of ending another semester.
+	 * @param progress - called on the calling thread while the rollover runs, may be {@code null}.
+	 * @return the rollover, it is not complete if some student could not be moved, {@link SemesterRollover#getError()} tells why.
+	 */
+	public SemesterRollover nextSemester(Consumer<SemesterRollover> progress){
+		loadCourses();
+		synchronized (rolloverLock) {
+			if(rollover == 0) journal(new JournalEntry.StartRollover(getTerm()));
+			int term = rollover;
+			SemesterRollover r = SemesterRollover.run(this, term, term % 2 == 1, progress);
+			if(r.isComplete()){
+				journal(new JournalEntry.FinishRollover(term));
+				AuditArchive.startSemester(this.year + "-" + this.semester);
+			}
+			return r;
 		}
 	}
+
+	boolean startRollover(int term){
+		if(rollover != 0) return false;
+		change(Shard.CORE, () -> rollover = term);
+		return true;
+	}
+
+	boolean finishRollover(int term){
+		if(rollover != term) return false;
+		change(Shard.CORE, () -> {
+			if (this.semester == Semester.FALL) this.semester = Semester.SPRING;
+			else {
+				this.semester = Semester.FALL;
+				this.year++;
+				ids.reset(IdSequence.USER);
+			}
+			rollover = 0;
+		});
+		return true;
+	}
 }
 
@@ -0,0 +1,151 @@
+package universitysystem.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of {@link JournalEntry} records kept next to the snapshot.
+ * Each record is stored as {@code [length][crc32][serialized entry]}, so a record torn by a crash
+ * is detected on replay and cut off. The journal is cleared every time a full snapshot is written.
+ */
+public class DataJournal
+{
+	private static final String FILE = "data.journal";
+	private static int compactionThreshold = 500;
+	private static int storedEntries = 0;
+	private static int pendingEntries = 0;
+	private static ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	private DataJournal() {
+	}
+
+	public static int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * Sets the number of journal records after which the next save writes a full snapshot.
+	 * @param threshold - number of records.
+	 */
+	public static void setCompactionThreshold(int threshold) {
+		compactionThreshold = Math.max(1, threshold);
+	}
+
+	public static synchronized boolean isCompactionDue() {
+		return storedEntries + pendingEntries >= compactionThreshold;
+	}
+
+	/**
+	 * Serializes the entry into the pending buffer. Nothing is written to disk until {@link #flush()}.
+	 * @param entry - applied entry.
+	 * @return {@code false} if the entry can not be serialized.
+	 */
+	static synchronized boolean record(JournalEntry entry) {
+		try {
+			byte[] bytes = BinaryCodec.encode(entry, EntityRef.replacer(entry.owned()));
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			DataOutputStream header = new DataOutputStream(pending);
+			header.writeInt(bytes.length);
+			header.writeInt((int) crc.getValue());
+			header.write(bytes);
+			pendingEntries++;
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Hands the pending records over to the {@link Checkpointer}.
+	 */
+	static synchronized void flush() {
+		if (pendingEntries == 0) return;
+		Checkpointer.submit(pending.toByteArray());
+		storedEntries += pendingEntries;
+		pendingEntries = 0;
+		pending.reset();
+	}
+
+	/**
+	 * Drops the pending records after they have been included into a snapshot.
+	 */
+	static synchronized void clear() {
+		pending.reset();
+		pendingEntries = 0;
+		storedEntries = 0;
+	}
+
+	static void append(byte[] records) throws IOException {
+		try (FileOutputStream fos = new FileOutputStream(FILE, true)) {
+			fos.write(records);
+			fos.getFD().sync();
+		}
+	}
+
+	static void delete() {
+		new File(FILE).delete();
+	}
+
+	/**
+	 * Applies the records that are newer than the snapshots of their shards.
+	 * Only a torn tail is cut off: a record that ends past the end of the file, or the last record
+	 * if its checksum does not match. A complete record that can not be decoded or applied means the journal
+	 * is damaged, the replay stops and the file is left as it is.
+	 * @param data - data loaded from the snapshot.
+	 * @throws IOException if a complete record can not be replayed.
+	 */
+	static void replay(Data data) throws IOException {
+		File file = new File(FILE);
+		if (!file.exists()) return;
+		long size = file.length();
+		long valid = 0;
+		EntityRef.Resolver resolver = EntityRef.resolver(data);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (valid < size) {
+				if (valid + 8 > size) break;
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length < 0) throw new StreamCorruptedException("Journal record at " + valid + " has length " + length);
+				if (valid + 8 + length > size) break;
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				CRC32 crc = new CRC32();
+				crc.update(bytes);
+				if ((int) crc.getValue() != checksum) {
+					if (valid + 8 + length == size) break;
+					throw new StreamCorruptedException("Journal record at " + valid + " is damaged");
+				}
+				replay(data, bytes, resolver, valid);
+				valid += 8 + length;
+				storedEntries++;
+			}
+		}
+		if (valid < size) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(valid);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static void replay(Data data, byte[] bytes, EntityRef.Resolver resolver, long offset) throws IOException {
+		try {
+			JournalEntry entry = (JournalEntry) BinaryCodec.decode(ByteBuffer.wrap(bytes), resolver);
+			if (entry.getSeq() > data.getJournalSeq()) data.setJournalSeq(entry.getSeq());
+			entry.advanceIds(data);
+			if (entry.getSeq() <= data.getSnapshotSeq(entry.shard())) {
+				// a record already in the snapshot may refer to a user or course that was removed since
+				resolver.forget();
+				return;
+			}
+			resolver.check();
+			data.apply(entry);
+		} catch (IOException | RuntimeException e) {
+			throw new IOException("Journal record at " + offset + " can not be replayed", e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Lesson;
+import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.Student;
+
+import java.util.*;
+
+/**
+ * Students enrolled in every course and every lesson of the current semester.
+ * The other direction, from a student to its courses and lessons, is kept by {@link Student#getCurrentCourses()}.
+ * The index is not stored: it is built from the current courses of the students on first access and then
+ * kept up to date when a student registers to or drops a course, changes the schedule or ends the semester.
+ * Courses and lessons are compared by identity, because their hash codes depend on mutable fields.
+ */
+public class EnrollmentIndex
+{
+	private final Data data;
+	private final IdentityHashMap<Course, Set<Student>> byCourse = new IdentityHashMap<>();
+	private final IdentityHashMap<Lesson, Set<Student>> byLesson = new IdentityHashMap<>();
+
+	EnrollmentIndex(Data data) {
+		this.data = data;
+		for (Student s : data.getStudents()) add(s);
+	}
+
+	/**
+	 * Enrolls a student of the data in all its current courses and lessons.
+	 * @param s - student to be added.
+	 */
+	synchronized void add(Student s) {
+		for (RegisteredCourse r : s.getCurrentCourses()) enroll(s, r);
+	}
+
+	/**
+	 * Removes a student from all courses and lessons.
+	 * @param s - student to be removed.
+	 */
+	public synchronized void remove(Student s) {
+		for (RegisteredCourse r : s.getCurrentCourses()) {
+			take(byCourse, r.getCourse(), s);
+			for (Lesson l : r.getLessons()) leave(l, s);
+		}
+	}
+
+	/**
+	 * Enrolls a student in a course and its lessons. Students that are not part of the data are ignored.
+	 * @param s - student.
+	 * @param r - registered course of the student.
+	 */
+	public synchronized void enroll(Student s, RegisteredCourse r) {
+		if (!data.getUserRegistry().contains(s)) return;
+		put(byCourse, r.getCourse(), s);
+		for (Lesson l : r.getLessons()) {
+			if (put(byLesson, l, s)) l.occupySeat();
+		}
+	}
+
+	/**
+	 * Removes a student from a course and its lessons, after the course was removed from the student.
+	 * @param s - student.
+	 * @param r - removed registered course.
+	 */
+	public synchronized void drop(Student s, RegisteredCourse r) {
+		if (s.getCurrentCourses().stream().noneMatch(n -> n.getCourse() == r.getCourse())) take(byCourse, r.getCourse(), s);
+		for (Lesson l : r.getLessons()) leave(l, s);
+	}
+
+	/**
+	 * Adds a lesson to the schedule of a student. The seat must already be reserved by {@link Lesson#tryReserveSeat()},
+	 * it is released again if the student is not part of the data or already has the lesson.
+	 * @param s - student.
+	 * @param l - lesson with a reserved seat.
+	 */
+	public synchronized void addLesson(Student s, Lesson l) {
+		if (!data.getUserRegistry().contains(s) || !put(byLesson, l, s)) l.releaseSeat();
+	}
+
+	/**
+	 * Removes a lesson from the schedule of a student and frees its seat.
+	 */
+	public synchronized void removeLesson(Student s, Lesson l) {
+		leave(l, s);
+	}
+
+	/**
+	 * Returns the students enrolled in the course.
+	 */
+	public synchronized List<Student> getStudents(Course c) {
+		return List.copyOf(byCourse.getOrDefault(c, Set.of()));
+	}
+
+	/**
+	 * Returns the number of students enrolled in the course.
+	 */
+	public synchronized int count(Course c) {
+		Set<Student> students = byCourse.get(c);
+		return students == null ? 0 : students.size();
+	}
+
+	/**
+	 * Returns the number of free seats of the course, see {@link Course#getCapacity()}.
+	 * @return seats, {@link Integer#MAX_VALUE} if the course has no lessons and so no limit.
+	 */
+	public int getFreeSeats(Course c) {
+		int capacity = c.getCapacity();
+		return capacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(0, capacity - count(c));
+	}
+
+	/**
+	 * Returns the students that have the lesson in their schedule.
+	 */
+	public synchronized List<Student> getStudents(Lesson l) {
+		return List.copyOf(byLesson.getOrDefault(l, Set.of()));
+	}
+
+	private void leave(Lesson l, Student s) {
+		if (take(byLesson, l, s)) l.releaseSeat();
+	}
+
+	private static <K> boolean put(Map<K, Set<Student>> index, K key, Student s) {
+		if (key == null) return false;
+		return index.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(s);
+	}
+
+	private static <K> boolean take(Map<K, Set<Student>> index, K key, Student s) {
+		Set<Student> students = index.get(key);
+		if (students == null) return false;
+		boolean removed = students.remove(s);
+		if (students.isEmpty()) index.remove(key);
+		return removed;
+	}
+}
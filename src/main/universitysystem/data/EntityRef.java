@@ -0,0 +1,186 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Semester;
+import universitysystem.entity.User;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Reference to a user or a course that already lives in {@link Data}.
+ * Used by the journal and by snapshot segments so that shared entities are written once
+ * and resolved against the loaded data instead of being copied.
+ * A user is referred to by its id, a course by its code, year and semester.
+ */
+class EntityRef implements Serializable
+{
+	private static final long serialVersionUID = -2228099633015487824L;
+	private final String userId;
+	private final String code;
+	private final int year;
+	private final Semester semester;
+
+	/**
+	 * Reference read by the decoder, which sets its fields.
+	 */
+	private EntityRef() {
+		this.userId = null;
+		this.code = null;
+		this.year = 0;
+		this.semester = null;
+	}
+
+	EntityRef(User u) {
+		this.userId = u.getId();
+		this.code = null;
+		this.year = 0;
+		this.semester = null;
+	}
+
+	EntityRef(Course c) {
+		this.userId = null;
+		this.code = c.getCode();
+		this.year = c.getYear();
+		this.semester = c.getSemester();
+	}
+
+	@Override
+	public String toString() {
+		return userId != null ? "user " + userId : "course " + code + " " + year + " " + semester;
+	}
+
+	static Stream<User> users(Data data) {
+		return Stream.of(data.getStudents(), data.getTeachers(), data.getManagers(), data.getDeans(),
+						data.getTechSpecialists(), data.getEmployees())
+				.flatMap(set -> set.stream());
+	}
+
+	/**
+	 * Replaces users and courses with references, except the owned object that has to be stored in full.
+	 * Used by the journal, whose entries only refer to users and courses of the data.
+	 * @param owned - object written in full or {@code null}.
+	 */
+	static UnaryOperator<Object> replacer(Object owned) {
+		return obj -> {
+			if (obj == owned) return obj;
+			if (obj instanceof User u) return new EntityRef(u);
+			if (obj instanceof Course c) return new EntityRef(c);
+			return obj;
+		};
+	}
+
+	/**
+	 * Replaces users and courses of the data with references. Users and courses that are no longer in the data,
+	 * for example the course of an old request after the course was removed, are written in full,
+	 * because a reference to them could not be resolved.
+	 * @param data - data the references are resolved against.
+	 */
+	static UnaryOperator<Object> snapshotReplacer(Data data) {
+		Catalog catalog = new Catalog(data);
+		return obj -> {
+			if (obj instanceof User u && data.getUserRegistry().findById(u.getId()) == u) return new EntityRef(u);
+			if (obj instanceof Course c && catalog.get(c.getCode(), c.getYear(), c.getSemester()) == c) return new EntityRef(c);
+			return obj;
+		};
+	}
+
+	/**
+	 * Tells whether a reference to a user or course would be resolved against the data to the very object.
+	 * @param data - data the references are resolved against.
+	 */
+	static Predicate<Object> resolvable(Data data) {
+		Catalog catalog = new Catalog(data);
+		return obj -> obj instanceof User u ? data.getUserRegistry().findById(u.getId()) == u
+				: obj instanceof Course c && catalog.get(c.getCode(), c.getYear(), c.getSemester()) == c;
+	}
+
+	/**
+	 * Replaces the users of the data with references and keeps courses, for the segments that hold the courses.
+	 * Users that are no longer in the data are written in full.
+	 * @param data - data the references are resolved against.
+	 */
+	static UnaryOperator<Object> userReplacer(Data data) {
+		return obj -> obj instanceof User u && data.getUserRegistry().findById(u.getId()) == u ? new EntityRef(u) : obj;
+	}
+
+	/**
+	 * Resolves references written by the replacers against the given data.
+	 */
+	static Resolver resolver(Data data) {
+		return new Resolver(data);
+	}
+
+	/**
+	 * Resolves references against the data. The courses are looked up in a map that is built on first use
+	 * and built again after the courses of the data change. A reference that matches nothing is resolved
+	 * to {@code null} and reported by {@link #check()}.
+	 */
+	static class Resolver implements UnaryOperator<Object>
+	{
+		private final Data data;
+		private Catalog catalog;
+		private EntityRef missing;
+
+		private Resolver(Data data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object apply(Object obj) {
+			if (!(obj instanceof EntityRef ref)) return obj;
+			Object resolved;
+			if (ref.userId != null) {
+				resolved = data.getUserRegistry().findById(ref.userId);
+			} else {
+				if (catalog == null || catalog.version != Data.getCatalogVersion()) catalog = new Catalog(data);
+				resolved = catalog.get(ref.code, ref.year, ref.semester);
+			}
+			if (resolved == null && missing == null) missing = ref;
+			return resolved;
+		}
+
+		/**
+		 * Throws if a reference decoded since the last check did not match anything.
+		 * @throws IllegalStateException naming the first reference that was not found.
+		 */
+		void check() {
+			EntityRef ref = missing;
+			missing = null;
+			if (ref != null) throw new IllegalStateException("Not found: " + ref);
+		}
+
+		/**
+		 * Forgets the references that were not found, for objects that are decoded but not used.
+		 */
+		void forget() {
+			missing = null;
+		}
+	}
+
+	/**
+	 * Courses of the data by code, year and semester. If several courses have the same key, the first one is kept.
+	 */
+	private static class Catalog
+	{
+		private final int version;
+		private final Map<Key, Course> courses = new HashMap<>();
+
+		Catalog(Data data) {
+			this.version = Data.getCatalogVersion();
+			for (Course c : data.getCourses()) courses.putIfAbsent(new Key(c.getCode(), c.getYear(), c.getSemester()), c);
+		}
+
+		Course get(String code, int year, Semester semester) {
+			return courses.get(new Key(code, year, semester));
+		}
+	}
+
+	private record Key(String code, int year, Semester semester)
+	{
+	}
+}
@@ -0,0 +1,391 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Faculty;
+import universitysystem.entity.Student;
+
+import java.util.*;
+
+/**
+ * Ranking of students by GPA over all students, per faculty and per year of study.
+ * Every group keeps its students in an order-statistics tree, so the best students, the rank and the percentile
+ * of a student are found in logarithmic time instead of sorting the students and computing GPAs on every comparison.
+ * The ranking is not stored: it is built from the students of {@link Data} on first access and then kept up to date
+ * by {@link Data} when students are added or removed and by {@link Student} when a GPA, faculty or year of study
+ * changes. A changed student is only marked, the next query moves it to its new place.
+ * A query also waits for the students taken by earlier queries to be placed, so it never answers from a ranking
+ * older than the changes made before it started.
+ */
+public class GpaRanking
+{
+	private final Tree all = new Tree();
+	private final EnumMap<Faculty, Tree> byFaculty = new EnumMap<>(Faculty.class);
+	private final HashMap<Integer, Tree> byYear = new HashMap<>();
+	private final Set<Student> members = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<Student> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final IdentityHashMap<Student, Place> places = new IdentityHashMap<>();
+	private final Random random = new Random();
+	private int creditsVersion = Course.getCreditsVersion();
+	private long sequence;
+	private long taken;
+	/**
+	 * Stamps of the refreshes whose students are taken but not placed yet.
+	 */
+	private final TreeSet<Long> inFlight = new TreeSet<>();
+
+	GpaRanking(Iterable<Student> students) {
+		for (Student s : students) add(s);
+	}
+
+	/**
+	 * Adds a student, it is placed by the next query.
+	 */
+	synchronized void add(Student s) {
+		members.add(s);
+		changed.add(s);
+	}
+
+	/**
+	 * Removes a student from the ranking.
+	 */
+	synchronized void remove(Student s) {
+		members.remove(s);
+		changed.remove(s);
+		unlink(s);
+	}
+
+	/**
+	 * Marks a student whose GPA, faculty or year of study changed, it is moved by the next query.
+	 */
+	synchronized void changed(Student s) {
+		if (members.contains(s)) changed.add(s);
+	}
+
+	/**
+	 * Ranking of all students.
+	 */
+	public Group all() {
+		return new Group(null, null);
+	}
+
+	/**
+	 * Ranking of the students of a faculty.
+	 */
+	public Group faculty(Faculty faculty) {
+		return new Group(faculty, null);
+	}
+
+	/**
+	 * Ranking of the students of a year of study.
+	 */
+	public Group year(int yearOfStudy) {
+		return new Group(null, yearOfStudy);
+	}
+
+	/**
+	 * Moves the changed students to their places. GPAs are computed without holding the lock of the ranking,
+	 * a student that changes meanwhile is marked again and moved by the next query. Then waits until the students
+	 * taken by this and every earlier refresh are placed.
+	 */
+	private void refresh() {
+		List<Student> students = null;
+		long stamp;
+		synchronized (this) {
+			if (creditsVersion != Course.getCreditsVersion()) {
+				// the credits of a course changed, every GPA may be different
+				creditsVersion = Course.getCreditsVersion();
+				changed.addAll(members);
+			}
+			if (!changed.isEmpty()) {
+				students = new ArrayList<>(changed);
+				changed.clear();
+				inFlight.add(++taken);
+			}
+			stamp = taken;
+		}
+		if (students != null) place(students, stamp);
+		synchronized (this) {
+			while (!inFlight.isEmpty() && inFlight.first() <= stamp) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places the students taken by a refresh. If a GPA can not be computed, the students are marked again.
+	 */
+	private void place(List<Student> students, long stamp) {
+		double[] gpa = new double[students.size()];
+		try {
+			for (int i = 0; i < gpa.length; i++) {
+				gpa[i] = students.get(i).getGpa();
+			}
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				for (Student s : students) {
+					if (members.contains(s)) changed.add(s);
+				}
+				inFlight.remove(stamp);
+				notifyAll();
+			}
+			throw e;
+		}
+		synchronized (this) {
+			for (int i = 0; i < gpa.length; i++) {
+				Student s = students.get(i);
+				Place old = unlink(s);
+				if (!members.contains(s)) continue;
+				Place place = new Place(gpa[i], old != null ? old.seq : sequence++, s.getFaculty(), s.getYearOfStudy());
+				places.put(s, place);
+				all.insert(s, place);
+				if (place.faculty != null) byFaculty.computeIfAbsent(place.faculty, n -> new Tree()).insert(s, place);
+				byYear.computeIfAbsent(place.year, n -> new Tree()).insert(s, place);
+			}
+			inFlight.remove(stamp);
+			notifyAll();
+		}
+	}
+
+	private Place unlink(Student s) {
+		Place place = places.remove(s);
+		if (place == null) return null;
+		all.delete(place);
+		if (place.faculty != null) delete(byFaculty, place.faculty, place);
+		delete(byYear, place.year, place);
+		return place;
+	}
+
+	private static <K> void delete(Map<K, Tree> trees, K key, Place place) {
+		Tree tree = trees.get(key);
+		if (tree == null) return;
+		tree.delete(place);
+		if (tree.root == null) trees.remove(key);
+	}
+
+	/**
+	 * Students of the ranking in one group, best GPA first. Students with the same GPA keep the order
+	 * in which they were ranked.
+	 */
+	public class Group
+	{
+		private final Faculty faculty;
+		private final Integer year;
+
+		private Group(Faculty faculty, Integer year) {
+			this.faculty = faculty;
+			this.year = year;
+		}
+
+		private Tree tree() {
+			if (faculty != null) return byFaculty.get(faculty);
+			if (year != null) return byYear.get(year);
+			return all;
+		}
+
+		/**
+		 * Number of students in the group.
+		 */
+		public int size() {
+			refresh();
+			synchronized (GpaRanking.this) {
+				Tree tree = tree();
+				return tree == null ? 0 : Tree.size(tree.root);
+			}
+		}
+
+		/**
+		 * Returns the students with the best GPA.
+		 * @param k - maximal number of students.
+		 * @return students, best first.
+		 */
+		public List<Student> top(int k) {
+			refresh();
+			synchronized (GpaRanking.this) {
+				Tree tree = tree();
+				ArrayList<Student> students = new ArrayList<>(Math.max(0, Math.min(k, tree == null ? 0 : Tree.size(tree.root))));
+				if (tree != null) Tree.collect(tree.root, k, students);
+				return students;
+			}
+		}
+
+		/**
+		 * Returns all students of the group, best first.
+		 */
+		public List<Student> list() {
+			return top(Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Rank of a student in the group: one more than the number of students with a better GPA,
+		 * so students with the same GPA share a rank.
+		 * @param s - student.
+		 * @return rank starting from {@code 1}, {@code 0} if the student is not in the group.
+		 */
+		public int rank(Student s) {
+			refresh();
+			synchronized (GpaRanking.this) {
+				Place place = places.get(s);
+				Tree tree = tree();
+				if (place == null || tree == null || !contains(place)) return 0;
+				return tree.countBefore(place.gpa, Long.MIN_VALUE) + 1;
+			}
+		}
+
+		/**
+		 * Percentile of a student in the group: the share of the students of the group with a lower GPA.
+		 * @param s - student.
+		 * @return percent from {@code 0} to {@code 100}, {@code -1} if the student is not in the group.
+		 */
+		public double percentile(Student s) {
+			refresh();
+			synchronized (GpaRanking.this) {
+				Place place = places.get(s);
+				Tree tree = tree();
+				if (place == null || tree == null || !contains(place)) return -1;
+				int size = Tree.size(tree.root);
+				int lower = size - tree.countBefore(place.gpa, Long.MAX_VALUE);
+				return 100.0 * lower / size;
+			}
+		}
+
+		private boolean contains(Place place) {
+			return (faculty == null || faculty == place.faculty) && (year == null || year == place.year);
+		}
+	}
+
+	/**
+	 * GPA a student was ranked with and the groups it was put in.
+	 */
+	private record Place(double gpa, long seq, Faculty faculty, int year)
+	{
+	}
+
+	/**
+	 * Treap ordered by GPA, best first, and then by sequence number, every node knows the size of its subtree.
+	 */
+	private class Tree
+	{
+		private Node root;
+
+		void insert(Student s, Place place) {
+			root = insert(root, new Node(s, place.gpa, place.seq, random.nextInt()));
+		}
+
+		void delete(Place place) {
+			root = delete(root, place.gpa, place.seq);
+		}
+
+		/**
+		 * Number of nodes ordered before the key.
+		 */
+		int countBefore(double gpa, long seq) {
+			int count = 0;
+			for (Node n = root; n != null; ) {
+				if (compare(n.gpa, n.seq, gpa, seq) < 0) {
+					count += size(n.left) + 1;
+					n = n.right;
+				} else n = n.left;
+			}
+			return count;
+		}
+
+		private Node insert(Node n, Node node) {
+			if (n == null) return node;
+			if (compare(node.gpa, node.seq, n.gpa, n.seq) < 0) {
+				n.left = insert(n.left, node);
+				if (n.left.priority > n.priority) n = rotateRight(n);
+			} else {
+				n.right = insert(n.right, node);
+				if (n.right.priority > n.priority) n = rotateLeft(n);
+			}
+			n.update();
+			return n;
+		}
+
+		private Node delete(Node n, double gpa, long seq) {
+			if (n == null) return null;
+			int c = compare(gpa, seq, n.gpa, n.seq);
+			if (c < 0) n.left = delete(n.left, gpa, seq);
+			else if (c > 0) n.right = delete(n.right, gpa, seq);
+			else return merge(n.left, n.right);
+			n.update();
+			return n;
+		}
+
+		private Node merge(Node left, Node right) {
+			if (left == null) return right;
+			if (right == null) return left;
+			if (left.priority > right.priority) {
+				left.right = merge(left.right, right);
+				left.update();
+				return left;
+			}
+			right.left = merge(left, right.left);
+			right.update();
+			return right;
+		}
+
+		private Node rotateRight(Node n) {
+			Node left = n.left;
+			n.left = left.right;
+			left.right = n;
+			n.update();
+			return left;
+		}
+
+		private Node rotateLeft(Node n) {
+			Node right = n.right;
+			n.right = right.left;
+			right.left = n;
+			n.update();
+			return right;
+		}
+
+		static int size(Node n) {
+			return n == null ? 0 : n.size;
+		}
+
+		/**
+		 * Adds the students of the subtree in order until the list has {@code k} of them.
+		 */
+		static void collect(Node n, int k, List<Student> students) {
+			if (n == null || students.size() >= k) return;
+			collect(n.left, k, students);
+			if (students.size() >= k) return;
+			students.add(n.student);
+			collect(n.right, k, students);
+		}
+
+		private static int compare(double gpa, long seq, double otherGpa, long otherSeq) {
+			int c = Double.compare(otherGpa, gpa);
+			return c != 0 ? c : Long.compare(seq, otherSeq);
+		}
+	}
+
+	private static class Node
+	{
+		private final Student student;
+		private final double gpa;
+		private final long seq;
+		private final int priority;
+		private Node left;
+		private Node right;
+		private int size = 1;
+
+		Node(Student student, double gpa, long seq, int priority) {
+			this.student = student;
+			this.gpa = gpa;
+			this.seq = seq;
+			this.priority = priority;
+		}
+
+		void update() {
+			size = 1 + Tree.size(left) + Tree.size(right);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package universitysystem.data;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+
+/**
+ * Hands out the ids of all {@link IdSequence sequences} without a global lock (hi/lo allocation).
+ * A thread reserves a block of ids with one atomic add on the shared counter of the sequence and then takes ids
+ * from its block without touching shared state. Ids are unique, but not dense: the rest of a block that was not
+ * used up before a restart is skipped.
+ * The counters are stored with the snapshot of {@link Data} and with the snapshots of the other shards, whose objects
+ * may be stored later than the core shard. The low 32 bits of a counter hold the last reserved id,
+ * the high bits hold the generation of the sequence, which is increased by {@link #reset(IdSequence)}.
+ * Blocks of an older generation are dropped, so ids of the new generation start from 1 again.
+ * Objects created by the decoder take no ids: they keep the ids they were stored with.
+ */
+public class IdAllocator implements Serializable
+{
+	private static final long serialVersionUID = 8121537358546524856L;
+	private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final long ID_MASK = 0xFFFFFFFFL;
+	/**
+	 * Set while the current thread runs a constructor for the decoder.
+	 */
+	private static final ThreadLocal<Boolean> decoding = new ThreadLocal<>();
+	private long[] counters;
+	/**
+	 * Block of the current thread for every sequence: the last taken id and the last id of the block,
+	 * both with the generation in the high bits.
+	 */
+	private transient ThreadLocal<long[]> blocks;
+
+	IdAllocator() {
+		this.counters = new long[IdSequence.values().length];
+		init();
+	}
+
+	/**
+	 * Prepares an allocator read from a snapshot. Counters of sequences added since the snapshot start from 0.
+	 */
+	void init() {
+		int sequences = IdSequence.values().length;
+		if (counters.length < sequences) counters = Arrays.copyOf(counters, sequences);
+		blocks = ThreadLocal.withInitial(() -> new long[2 * sequences]);
+	}
+
+	/**
+	 * Returns the next id of the sequence.
+	 * @param sequence - sequence of the id.
+	 * @return id, starting from 1, or {@code 0} in a constructor run by {@link #withoutIds(Constructor)}.
+	 */
+	public int next(IdSequence sequence) {
+		if (decoding.get() != null) return 0;
+		int i = sequence.ordinal();
+		long[] block = blocks.get();
+		long last = block[2 * i];
+		if (last >= block[2 * i + 1] || generation(last) != generation(counter(i))) {
+			last = (long) COUNTERS.getAndAdd(counters, i, (long) sequence.getBlock());
+			block[2 * i + 1] = last + sequence.getBlock();
+		}
+		block[2 * i] = ++last;
+		return (int) (last & ID_MASK);
+	}
+
+	/**
+	 * Creates an object by a no-arg constructor of the model for the decoder. The ids that the constructor and
+	 * the initializers of the class take are {@code 0} and are not reserved, the decoder sets the stored ones.
+	 * @param constructor - no-arg constructor.
+	 * @return new object.
+	 */
+	static <T> T withoutIds(Constructor<T> constructor) throws ReflectiveOperationException {
+		Boolean outer = decoding.get();
+		decoding.set(Boolean.TRUE);
+		try {
+			return constructor.newInstance();
+		} finally {
+			if (outer == null) decoding.remove();
+		}
+	}
+
+	/**
+	 * Returns the last reserved id of the sequence. Every id handed out so far is not greater than it.
+	 */
+	public int reserved(IdSequence sequence) {
+		return (int) (counter(sequence.ordinal()) & ID_MASK);
+	}
+
+	/**
+	 * Makes sure that the sequence never hands out the given id or a smaller one, for example after
+	 * an object with this id was read from the journal.
+	 * @param sequence - sequence of the id.
+	 * @param id - id that is already used.
+	 */
+	public void advance(IdSequence sequence, int id) {
+		int i = sequence.ordinal();
+		long current;
+		do {
+			current = counter(i);
+			if ((current & ID_MASK) >= id) return;
+		} while (!COUNTERS.compareAndSet(counters, i, current, (current & ~ID_MASK) | id));
+	}
+
+	/**
+	 * Starts the sequence from 1 again. Blocks that threads reserved before are not used any more.
+	 * @param sequence - sequence to be reset.
+	 */
+	public void reset(IdSequence sequence) {
+		int i = sequence.ordinal();
+		long current;
+		do {
+			current = counter(i);
+		} while (!COUNTERS.compareAndSet(counters, i, current, (generation(current) + 1) << 32));
+	}
+
+	/**
+	 * Returns a copy of the counters, which is stored with the snapshot of a shard.
+	 */
+	long[] counters() {
+		long[] copy = new long[counters.length];
+		for (int i = 0; i < copy.length; i++) copy[i] = counter(i);
+		return copy;
+	}
+
+	/**
+	 * Takes over counters stored with the snapshot of a shard. A counter of a newer generation replaces
+	 * the current one, a counter of the same generation only advances it.
+	 * @param stored - counters returned by {@link #counters()}.
+	 */
+	void merge(long[] stored) {
+		for (int i = 0; i < Math.min(stored.length, counters.length); i++) {
+			long current;
+			do {
+				current = counter(i);
+				if (generation(stored[i]) < generation(current)
+						|| generation(stored[i]) == generation(current) && (stored[i] & ID_MASK) <= (current & ID_MASK)) break;
+			} while (!COUNTERS.compareAndSet(counters, i, current, stored[i]));
+		}
+	}
+
+	private long counter(int i) {
+		return (long) COUNTERS.getVolatile(counters, i);
+	}
+
+	private static long generation(long value) {
+		return value >>> 32;
+	}
+}
@@ -0,0 +1,40 @@
+package universitysystem.data;
+
+/**
+ * Independent sequence of ids handed out by {@link IdAllocator}.
+ * The state of a sequence is stored by its position, so new sequences are only added at the end.
+ */
+public enum IdSequence
+{
+	/**
+	 * Number part of user ids. It starts again from 1 every academic year, because user ids begin with the year.
+	 */
+	USER(8),
+	LOG(512),
+	MAIL(32),
+	NEWS(8),
+	COMMENT(32),
+	JOURNAL(4),
+	PAGE(32),
+	RESEARCH_PAPER(8),
+	RESEARCH_PROJECT(4),
+	/**
+	 * Tickets of the requests put on the waitlist of a course, handed out only by {@link RegistrationBatch}.
+	 * A block of one id takes every ticket from the shared counter, so a ticket is later than every ticket
+	 * handed out before it by any thread and the waitlists are served in the order the requests were put on them.
+	 */
+	WAITLIST(1);
+
+	private final int block;
+
+	IdSequence(int block) {
+		this.block = block;
+	}
+
+	/**
+	 * Number of ids a thread reserves at once.
+	 */
+	public int getBlock() {
+		return block;
+	}
+}
@@ -0,0 +1,943 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.CourseType;
+import universitysystem.courses.Lesson;
+import universitysystem.courses.Mark;
+import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.*;
+import universitysystem.research.Researcher;
+import universitysystem.utills.Message;
+import universitysystem.utills.Notification;
+import universitysystem.utills.RegistrationRequest;
+import universitysystem.utills.RequestStatus;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A single mutation of {@link Data} that is stored in the {@link DataJournal}.
+ * The same {@link #apply(Data)} is used for the live change and for the replay on startup,
+ * so an entry must carry everything it needs (including timestamps) to give the same result twice.
+ * Users and courses referenced by an entry are written as references and resolved by id on replay.
+ * Every entry has a private no-arg constructor, by which the {@link BinaryCodec} creates it when the journal is read.
+ */
+public abstract class JournalEntry implements Serializable
+{
+	private static final long serialVersionUID = 5592169551703348398L;
+	private long seq;
+
+	long getSeq() {
+		return seq;
+	}
+
+	void setSeq(long seq) {
+		this.seq = seq;
+	}
+
+	/**
+	 * Applies the mutation to the data.
+	 * @param data - data to be changed.
+	 * @return {@code true} if the data was changed, {@code false} otherwise.
+	 */
+	abstract boolean apply(Data data);
+
+	/**
+	 * Makes sure the ids of objects created by the entry are not handed out again. Called on replay for every record,
+	 * also for the ones already in a snapshot, because the counters of a snapshot do not cover the records after it.
+	 * @param data - data loaded from the snapshot.
+	 */
+	void advanceIds(Data data) {
+	}
+
+	/**
+	 * Object that is written in full instead of as a reference (for example, a newly created user).
+	 * @return owned object or {@code null}.
+	 */
+	Object owned() {
+		return null;
+	}
+
+	/**
+	 * Students, courses and other objects changed by the entry. They are locked by {@link Data#journal(JournalEntry)}
+	 * while the entry is applied, so entries of different aggregates are applied in parallel.
+	 */
+	Object[] aggregates() {
+		return new Object[0];
+	}
+
+	/**
+	 * Shard changed by the entry.
+	 */
+	Shard shard() {
+		return Shard.CORE;
+	}
+
+	static RegistrationRequest find(Data data, int id, long date) {
+		RegistrationRequest request = data.getRequestIndex().find(id, date);
+		if (request != null) return request;
+		// two requests with the same key in the index, only the first one is found by it
+		synchronized (data.getRegistrationRequests()) {
+			return data.getRegistrationRequests().stream()
+					.filter(r -> r.getId() == id && r.getDate().getTime() == date)
+					.findFirst().orElse(null);
+		}
+	}
+
+	static RegisteredCourse currentCourse(Student s, Course c) {
+		if (s == null || c == null) return null;
+		return s.getCurrentCourses().stream().filter(r -> r.getCourse().equals(c)).findFirst().orElse(null);
+	}
+
+	/**
+	 * Lesson of the collection equal to the given one, which may be a copy decoded from the journal.
+	 */
+	static Lesson lesson(Collection<Lesson> lessons, Lesson lesson) {
+		if (lessons == null || lesson == null) return null;
+		return lessons.stream().filter(lesson::equals).findFirst().orElse(null);
+	}
+
+	/**
+	 * Log of a journal written before logs were stored by the {@link AuditLog}. Only created on replay.
+	 */
+	public static class AddLog extends JournalEntry {
+		private static final long serialVersionUID = -4109648996663528979L;
+		private final Log log;
+
+		private AddLog() {
+			this(null);
+		}
+
+		public AddLog(Log log) {
+			this.log = log;
+		}
+
+		@Override
+		Shard shard() {
+			return Shard.LOGS;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			AuditLog.append(log);
+			return true;
+		}
+
+		@Override
+		void advanceIds(Data data) {
+			data.advanceId(IdSequence.LOG, log.getId());
+		}
+	}
+
+	public static class AddUser extends JournalEntry {
+		private static final long serialVersionUID = -1489597450957728284L;
+		private final User user;
+		private final boolean researcher;
+		private final int idCounter;
+
+		private AddUser() {
+			this.user = null;
+			this.researcher = false;
+			this.idCounter = 0;
+		}
+
+		public AddUser(User user, boolean researcher) {
+			this.user = user;
+			this.researcher = researcher;
+			this.idCounter = Data.getInstance().currentIdCounter();
+		}
+
+		@Override
+		Object owned() {
+			return user;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{user};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (user instanceof Dean d) data.addDean(d);
+			else if (user instanceof Student s) data.addStudent(s);
+			else if (user instanceof Manager m) data.addManager(m);
+			else if (user instanceof Teacher t) data.addTeacher(t);
+			else if (user instanceof TechSupportSpecialist t) data.addTechSpecialist(t);
+			else if (user instanceof Employee e) data.addEmployee(e);
+			else return false;
+			if (researcher) data.addReseacher(new Researcher(user));
+			data.advanceId(IdSequence.USER, idCounter);
+			return true;
+		}
+	}
+
+	public static class RemoveUser extends JournalEntry {
+		private static final long serialVersionUID = -2489190476116417193L;
+		private final User user;
+
+		private RemoveUser() {
+			this(null);
+		}
+
+		public RemoveUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{user};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (user instanceof Dean d) return data.removeDean(d);
+			if (user instanceof Student s) return data.removeStudent(s);
+			if (user instanceof Manager m) return data.removeManager(m);
+			if (user instanceof Teacher t) return data.removeTeacher(t);
+			if (user instanceof TechSupportSpecialist t) return data.removeTechSpecialist(t);
+			if (user instanceof Employee e) return data.removeEmployee(e);
+			return false;
+		}
+	}
+
+	public static class SetPassword extends JournalEntry {
+		private static final long serialVersionUID = 5312139590302053336L;
+		private final User user;
+		private final String password;
+
+		private SetPassword() {
+			this(null, null);
+		}
+
+		public SetPassword(User user, String password) {
+			this.user = user;
+			this.password = password;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{user};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (user == null) return false;
+			user.setPassword(password);
+			return true;
+		}
+	}
+
+	public static class AddNotification extends JournalEntry {
+		private static final long serialVersionUID = 2997232564154286557L;
+		private final User user;
+		private final Notification notification;
+
+		private AddNotification() {
+			this(null, null);
+		}
+
+		public AddNotification(User user, Notification notification) {
+			this.user = user;
+			this.notification = notification;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{user};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (user == null) return false;
+			user.addNotification(notification);
+			return true;
+		}
+	}
+
+	public static class ClearNotifications extends JournalEntry {
+		private static final long serialVersionUID = -2684955349200777757L;
+		private final User user;
+
+		private ClearNotifications() {
+			this(null);
+		}
+
+		public ClearNotifications(User user) {
+			this.user = user;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{user};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return user != null && user.clearNotifications();
+		}
+	}
+
+	public static class AddRegistrationRequest extends JournalEntry {
+		private static final long serialVersionUID = 7433098398622678446L;
+		private final RegistrationRequest request;
+
+		private AddRegistrationRequest() {
+			this(null);
+		}
+
+		public AddRegistrationRequest(RegistrationRequest request) {
+			this.request = request;
+		}
+
+		@Override
+		Shard shard() {
+			return Shard.REQUESTS;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{request.getSender()};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (request.getSender() == null || request.getCourse() == null) return false;
+			return data.putRegistrationRequest(request);
+		}
+
+		@Override
+		void advanceIds(Data data) {
+			data.advanceId(IdSequence.MAIL, request.getId());
+		}
+	}
+
+	public static class SetRequestStatus extends JournalEntry {
+		private static final long serialVersionUID = 424916154358999285L;
+		private final int requestId;
+		private final long requestDate;
+		private final RequestStatus status;
+
+		private SetRequestStatus() {
+			this.requestId = 0;
+			this.requestDate = 0;
+			this.status = null;
+		}
+
+		public SetRequestStatus(RegistrationRequest request, RequestStatus status) {
+			this.requestId = request.getId();
+			this.requestDate = request.getDate().getTime();
+			this.status = status;
+		}
+
+		@Override
+		Shard shard() {
+			return Shard.REQUESTS;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegistrationRequest request = find(data, requestId, requestDate);
+			if (request == null) return false;
+			request.setStatus(status);
+			return true;
+		}
+	}
+
+	/**
+	 * Statuses of many registration requests, set in one pass over the requests.
+	 */
+	public static class SetRequestStatuses extends JournalEntry {
+		private static final long serialVersionUID = 7059810857752859630L;
+		private final int[] requestIds;
+		private final long[] requestDates;
+		private final RequestStatus[] statuses;
+
+		private SetRequestStatuses() {
+			this.requestIds = null;
+			this.requestDates = null;
+			this.statuses = null;
+		}
+
+		public SetRequestStatuses(List<RegistrationRequest> requests, List<RequestStatus> statuses) {
+			this.requestIds = new int[requests.size()];
+			this.requestDates = new long[requests.size()];
+			this.statuses = statuses.toArray(new RequestStatus[0]);
+			for (int i = 0; i < requestIds.length; i++) {
+				requestIds[i] = requests.get(i).getId();
+				requestDates[i] = requests.get(i).getDate().getTime();
+			}
+		}
+
+		@Override
+		Shard shard() {
+			return Shard.REQUESTS;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			boolean changed = false;
+			for (int i = 0; i < requestIds.length; i++) {
+				RegistrationRequest request = find(data, requestIds[i], requestDates[i]);
+				if (request == null) continue;
+				request.setStatus(statuses[i]);
+				changed = true;
+			}
+			return changed;
+		}
+	}
+
+	/**
+	 * Waitlist tickets of registration requests that found their course full.
+	 */
+	public static class SetWaitlistTickets extends JournalEntry {
+		private static final long serialVersionUID = -2264153097741520863L;
+		private final int[] requestIds;
+		private final long[] requestDates;
+		private final int[] tickets;
+
+		private SetWaitlistTickets() {
+			this.requestIds = null;
+			this.requestDates = null;
+			this.tickets = null;
+		}
+
+		public SetWaitlistTickets(List<RegistrationRequest> requests, int[] tickets) {
+			this.requestIds = new int[requests.size()];
+			this.requestDates = new long[requests.size()];
+			this.tickets = tickets.clone();
+			for (int i = 0; i < requestIds.length; i++) {
+				requestIds[i] = requests.get(i).getId();
+				requestDates[i] = requests.get(i).getDate().getTime();
+			}
+		}
+
+		@Override
+		Shard shard() {
+			return Shard.REQUESTS;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			boolean changed = false;
+			for (int i = 0; i < requestIds.length; i++) {
+				RegistrationRequest request = find(data, requestIds[i], requestDates[i]);
+				if (request == null) continue;
+				request.setWaitlistTicket(tickets[i]);
+				changed = true;
+			}
+			return changed;
+		}
+
+		@Override
+		void advanceIds(Data data) {
+			for (int ticket : tickets) data.advanceId(IdSequence.WAITLIST, ticket);
+		}
+	}
+
+	public static class AddCurrentCourse extends JournalEntry {
+		private static final long serialVersionUID = 7031634575053466022L;
+		private final Student student;
+		private final Course course;
+		private final CourseType type;
+
+		private AddCurrentCourse() {
+			this.student = null;
+			this.course = null;
+			this.type = null;
+		}
+
+		public AddCurrentCourse(Student student, RegisteredCourse r) {
+			this.student = student;
+			this.course = r.getCourse();
+			this.type = r.getType();
+		}
+
+		@Override
+		Object[] aggregates() {
+			// the course is locked too, so the seats of the course are counted and taken by one change at a time
+			return new Object[]{student, course};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (student == null || course == null) return false;
+			return student.addCurrentCourse(new RegisteredCourse(course, type));
+		}
+	}
+
+	public static class DropCourse extends JournalEntry {
+		private static final long serialVersionUID = -1783265888926702838L;
+		private final Student student;
+		private final Course course;
+
+		private DropCourse() {
+			this(null, null);
+		}
+
+		public DropCourse(Student student, Course course) {
+			this.student = student;
+			this.course = course;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student, course};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegisteredCourse r = currentCourse(student, course);
+			return r != null && student.removeCurrentCourse(r);
+		}
+	}
+
+	public static class PutMark extends JournalEntry {
+		private static final long serialVersionUID = -8278650088143209646L;
+		private final Student student;
+		private final Course course;
+		private final Mark mark;
+
+		private PutMark() {
+			this(null, null, null);
+		}
+
+		public PutMark(Student student, Course course, Mark mark) {
+			this.student = student;
+			this.course = course;
+			this.mark = mark;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegisteredCourse r = currentCourse(student, course);
+			return r != null && r.addMark(mark);
+		}
+	}
+
+	public static class PutAttestation extends JournalEntry {
+		private static final long serialVersionUID = -5420663211592195473L;
+		private final Student student;
+		private final Course course;
+		private final Date time;
+
+		private PutAttestation() {
+			this(null, null, null);
+		}
+
+		public PutAttestation(Student student, Course course, Date time) {
+			this.student = student;
+			this.course = course;
+			this.time = time;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegisteredCourse r = currentCourse(student, course);
+			return r != null && r.putAttestation(time);
+		}
+	}
+
+	public static class PutFinalExam extends JournalEntry {
+		private static final long serialVersionUID = -5282639158143287961L;
+		private final Student student;
+		private final Course course;
+		private final Double value;
+		private final Date time;
+
+		private PutFinalExam() {
+			this(null, null, null, null);
+		}
+
+		public PutFinalExam(Student student, Course course, Double value, Date time) {
+			this.student = student;
+			this.course = course;
+			this.value = value;
+			this.time = time;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegisteredCourse r = currentCourse(student, course);
+			return r != null && r.putFinalExam(value, time);
+		}
+	}
+
+	/**
+	 * Lesson added to the timetable of a course.
+	 */
+	public static class AddLesson extends JournalEntry {
+		private static final long serialVersionUID = 3904318270716035842L;
+		private final Course course;
+		private final Lesson lesson;
+
+		private AddLesson() {
+			this(null, null);
+		}
+
+		public AddLesson(Course course, Lesson lesson) {
+			this.course = course;
+			this.lesson = lesson;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{course};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return course != null && course.addLesson(lesson);
+		}
+	}
+
+	public static class RemoveLesson extends JournalEntry {
+		private static final long serialVersionUID = -6090415373186374577L;
+		private final Course course;
+		private final Lesson lesson;
+
+		private RemoveLesson() {
+			this(null, null);
+		}
+
+		public RemoveLesson(Course course, Lesson lesson) {
+			this.course = course;
+			this.lesson = lesson;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{course};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return course != null && course.removeLesson(lesson);
+		}
+	}
+
+	/**
+	 * Lesson of a course added to the schedule of a student. The seat of the lesson is taken when the entry
+	 * is applied, so it is taken again on replay.
+	 */
+	public static class ScheduleLesson extends JournalEntry {
+		private static final long serialVersionUID = 1626262717395520169L;
+		private final Student student;
+		private final Course course;
+		private final Lesson lesson;
+
+		private ScheduleLesson() {
+			this(null, null, null);
+		}
+
+		public ScheduleLesson(Student student, Course course, Lesson lesson) {
+			this.student = student;
+			this.course = course;
+			this.lesson = lesson;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			RegisteredCourse r = currentCourse(student, course);
+			// a replayed lesson is a copy, the student gets the lesson of the course
+			Lesson l = r == null ? null : lesson(course.getLessons(), lesson);
+			if (l == null || !l.tryReserveSeat()) return false;
+			if (!r.addLesson(l)) {
+				l.releaseSeat();
+				return false;
+			}
+			data.getEnrollments().addLesson(student, l);
+			data.recommendationsChanged(student);
+			return true;
+		}
+	}
+
+	public static class UnscheduleLesson extends JournalEntry {
+		private static final long serialVersionUID = -4412780757367291925L;
+		private final Student student;
+		private final Lesson lesson;
+
+		private UnscheduleLesson() {
+			this(null, null);
+		}
+
+		public UnscheduleLesson(Student student, Lesson lesson) {
+			this.student = student;
+			this.lesson = lesson;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (student == null) return false;
+			for (RegisteredCourse r : student.getCurrentCourses()) {
+				Lesson l = lesson(r.getLessons(), lesson);
+				if (l == null) continue;
+				if (!r.removeLesson(l)) return false;
+				data.getEnrollments().removeLesson(student, l);
+				data.recommendationsChanged(student);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	public static class AddMessage extends JournalEntry {
+		private static final long serialVersionUID = -1172526180924410273L;
+		private final Employee employee;
+		private final Message message;
+
+		private AddMessage() {
+			this(null, null);
+		}
+
+		public AddMessage(Employee employee, Message message) {
+			this.employee = employee;
+			this.message = message;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{employee};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (employee == null) return false;
+			employee.addMessage(message);
+			return true;
+		}
+
+		@Override
+		void advanceIds(Data data) {
+			data.advanceId(IdSequence.MAIL, message.getId());
+		}
+	}
+
+	public static class SetRate extends JournalEntry {
+		private static final long serialVersionUID = 5151420768393358105L;
+		private final Teacher teacher;
+		private final Student student;
+		private final int rate;
+
+		private SetRate() {
+			this(null, null, 0);
+		}
+
+		public SetRate(Teacher teacher, Student student, int rate) {
+			this.teacher = teacher;
+			this.student = student;
+			this.rate = rate;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{teacher};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return teacher != null && student != null && teacher.addRate(student, rate);
+		}
+	}
+
+	/**
+	 * Course assigned to a teacher.
+	 */
+	public static class AssignCourse extends JournalEntry {
+		private static final long serialVersionUID = -8852004964911634290L;
+		private final Teacher teacher;
+		private final Course course;
+
+		private AssignCourse() {
+			this(null, null);
+		}
+
+		public AssignCourse(Teacher teacher, Course course) {
+			this.teacher = teacher;
+			this.course = course;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{teacher};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return teacher != null && course != null && teacher.addCourse(course);
+		}
+	}
+
+	public static class SetTeacherType extends JournalEntry {
+		private static final long serialVersionUID = 7713604485617346528L;
+		private final Teacher teacher;
+		private final TeacherType type;
+
+		private SetTeacherType() {
+			this(null, null);
+		}
+
+		public SetTeacherType(Teacher teacher, TeacherType type) {
+			this.teacher = teacher;
+			this.type = type;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{teacher};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (teacher == null) return false;
+			teacher.setType(type);
+			return true;
+		}
+	}
+
+	public static class AddWarning extends JournalEntry {
+		private static final long serialVersionUID = 2480338926066001548L;
+		private final Student student;
+
+		private AddWarning() {
+			this(null);
+		}
+
+		public AddWarning(Student student) {
+			this.student = student;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			if (student == null) return false;
+			student.addWarning();
+			return true;
+		}
+	}
+
+	/**
+	 * Start of the rollover of a term, see {@link SemesterRollover}.
+	 */
+	public static class StartRollover extends JournalEntry {
+		private static final long serialVersionUID = 6962755935032707478L;
+		private final int term;
+
+		private StartRollover() {
+			this(0);
+		}
+
+		public StartRollover(int term) {
+			this.term = term;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return data.startRollover(term);
+		}
+	}
+
+	public static class EndStudentSemester extends JournalEntry {
+		private static final long serialVersionUID = 8017401148395724953L;
+		private final Student student;
+		private final int term;
+		private final boolean newYear;
+
+		private EndStudentSemester() {
+			this(null, 0, false);
+		}
+
+		public EndStudentSemester(Student student, int term, boolean newYear) {
+			this.student = student;
+			this.term = term;
+			this.newYear = newYear;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{student};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return student != null && student.endSemester(term, newYear);
+		}
+	}
+
+	public static class EndTeacherSemester extends JournalEntry {
+		private static final long serialVersionUID = -2572490537766245386L;
+		private final Teacher teacher;
+		private final int term;
+
+		private EndTeacherSemester() {
+			this(null, 0);
+		}
+
+		public EndTeacherSemester(Teacher teacher, int term) {
+			this.teacher = teacher;
+			this.term = term;
+		}
+
+		@Override
+		Object[] aggregates() {
+			return new Object[]{teacher};
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return teacher != null && teacher.endSemester(term);
+		}
+	}
+
+	/**
+	 * End of the rollover of a term: the next semester starts.
+	 */
+	public static class FinishRollover extends JournalEntry {
+		private static final long serialVersionUID = -347761500256245558L;
+		private final int term;
+
+		private FinishRollover() {
+			this(0);
+		}
+
+		public FinishRollover(int term) {
+			this.term = term;
+		}
+
+		@Override
+		boolean apply(Data data) {
+			return data.finishRollover(term);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Semester;
+import universitysystem.research.ResearchProject;
+
+import java.io.Serializable;
+
+/**
+ * Reference from the users of the core segment to a course or research project of the courses or research segment,
+ * which are read after the users. It is decoded into a {@link Placeholders placeholder} that already has the fields
+ * the hash code of the object depends on, so the users can be put into hash sets before the segment is read.
+ * A course is referred to by its title, code, year and semester, a research project by its id.
+ */
+class LazyRef implements Serializable
+{
+	private static final long serialVersionUID = 4620783617125390741L;
+	final String title;
+	final String code;
+	final int year;
+	final Semester semester;
+	final int project;
+	private final boolean course;
+
+	/**
+	 * Reference read by the decoder, which sets its fields.
+	 */
+	private LazyRef() {
+		this.title = null;
+		this.code = null;
+		this.year = 0;
+		this.semester = null;
+		this.project = 0;
+		this.course = false;
+	}
+
+	LazyRef(Course c) {
+		this.title = c.getTitle();
+		this.code = c.getCode();
+		this.year = c.getYear();
+		this.semester = c.getSemester();
+		this.project = 0;
+		this.course = true;
+	}
+
+	LazyRef(ResearchProject p) {
+		this.title = null;
+		this.code = null;
+		this.year = 0;
+		this.semester = null;
+		this.project = p.getId();
+		this.course = false;
+	}
+
+	boolean isCourse() {
+		return course;
+	}
+
+	@Override
+	public String toString() {
+		return isCourse() ? "course " + code + " " + year + " " + semester : "research project " + project;
+	}
+}
@@ -0,0 +1,685 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.entity.User;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reader of the legacy {@code data.ser}, which was written by {@code java.io} serialization, that does not keep
+ * the whole object graph in memory. The stream is parsed by this class instead of {@link ObjectInputStream}:
+ * the elements of the collections of {@link Data} that have a sink are passed to it one at a time as soon as they
+ * are read and then dropped, the rest of the data is built as usual.
+ * <p>The stream refers to an object written before by its handle, so the table of handles has an entry for every
+ * object of the stream. The entry of a dropped object is released: a string, a date or a boxed number is read from
+ * the file again if it is referred to later, any other dropped object must not be. Users and courses first written
+ * inside a dropped element, and everything they refer to, are kept, as the data refers to them later.</p>
+ * <p>Like {@link BinaryCodec}, only the model classes, the enums of the model and the collections, dates, strings
+ * and boxed numbers are created; hash and sorted collections are filled once their elements are complete.</p>
+ */
+final class LegacyStream implements Closeable
+{
+	private static final short MAGIC = (short) 0xACED;
+	private static final short VERSION = 5;
+	private static final int TC_NULL = 0x70;
+	private static final int TC_REFERENCE = 0x71;
+	private static final int TC_CLASSDESC = 0x72;
+	private static final int TC_OBJECT = 0x73;
+	private static final int TC_STRING = 0x74;
+	private static final int TC_ARRAY = 0x75;
+	private static final int TC_CLASS = 0x76;
+	private static final int TC_BLOCKDATA = 0x77;
+	private static final int TC_ENDBLOCKDATA = 0x78;
+	private static final int TC_RESET = 0x79;
+	private static final int TC_BLOCKDATALONG = 0x7A;
+	private static final int TC_EXCEPTION = 0x7B;
+	private static final int TC_LONGSTRING = 0x7C;
+	private static final int TC_PROXYCLASSDESC = 0x7D;
+	private static final int TC_ENUM = 0x7E;
+	private static final int BASE_HANDLE = 0x7E0000;
+	private static final int SC_WRITE_METHOD = 0x01;
+	private static final int SC_SERIALIZABLE = 0x02;
+	private static final int SC_EXTERNALIZABLE = 0x04;
+	private static final Object RELEASED = new Object();
+	private static final int CHUNK = 64 * 1024;
+	/**
+	 * Classes whose objects are read from the file again when they are referred to after they were dropped.
+	 */
+	private static final Set<String> VALUES = Set.of(String.class.getName(), Date.class.getName(),
+			Integer.class.getName(), Long.class.getName(), Double.class.getName(), Float.class.getName(),
+			Short.class.getName(), Byte.class.getName(), Character.class.getName(), Boolean.class.getName());
+
+	private final Path file;
+	private final Map<String, Consumer<Object>> sinks;
+	private final ArrayList<Object> handles = new ArrayList<>();
+	private final ArrayList<long[]> offsets = new ArrayList<>(); // of every handle, in chunks
+	private final ArrayList<Fill> fills = new ArrayList<>();
+	private Input in;
+	private boolean detached; // an object is read again, it gets no handle
+	private FileChannel channel;
+
+	/**
+	 * @param file - legacy file.
+	 * @param sinks - consumers of the elements of the collections of the data, by the name of the field.
+	 */
+	LegacyStream(Path file, Map<String, Consumer<Object>> sinks) throws IOException {
+		this.file = file;
+		this.sinks = sinks;
+		this.in = new Input(new FileInputStream(file.toFile()), 0);
+	}
+
+	/**
+	 * Reads the data. The collections that have a sink are empty in the returned data.
+	 * @throws IOException if the file is not a serialized {@link Data} or has objects of other classes.
+	 */
+	Data read() throws IOException {
+		if (in.readShort() != MAGIC || in.readShort() != VERSION) throw new StreamCorruptedException("Not a java.io stream: " + file);
+		if (!(content(null) instanceof Data data)) throw new StreamCorruptedException("Not a serialized data: " + file);
+		run(fills);
+		fills.clear();
+		data.initTransient();
+		return data;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+		if (channel != null) channel.close();
+	}
+
+	/**
+	 * Reads the next object of the stream.
+	 * @param sink - consumer of the elements if the object is a {@link Vector} whose elements are not kept.
+	 */
+	private Object content(Consumer<Object> sink) throws IOException {
+		long start = in.position();
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case TC_NULL:
+				return null;
+			case TC_REFERENCE:
+				return handle(in.readInt() - BASE_HANDLE);
+			case TC_STRING:
+			case TC_LONGSTRING: {
+				int h = register(null, start);
+				String s = tag == TC_STRING ? in.readUTF() : in.readLongUTF();
+				set(h, s);
+				return s;
+			}
+			case TC_ENUM: {
+				ClassDesc desc = classDesc();
+				int h = register(null, start);
+				Object constant = content(null);
+				Class<?> type = enumType(desc.name);
+				if (type == null || !(constant instanceof String name)) throw new InvalidClassException(desc.name, "not an enum of the model");
+				Object value = enumValue(type, name);
+				set(h, value);
+				return value;
+			}
+			case TC_ARRAY:
+				return array(start, sink);
+			case TC_OBJECT:
+				return object(start, sink);
+			case TC_CLASS: {
+				ClassDesc desc = classDesc();
+				Opaque type = new Opaque(desc.name);
+				register(type, start);
+				return type;
+			}
+			case TC_CLASSDESC:
+			case TC_PROXYCLASSDESC:
+				return classDesc(tag, start);
+			case TC_RESET:
+				handles.clear();
+				offsets.clear();
+				return content(sink);
+			case TC_EXCEPTION:
+				throw new StreamCorruptedException("The data was not written completely: " + file);
+			default:
+				throw new StreamCorruptedException("Unknown tag " + tag + " at " + start);
+		}
+	}
+
+	private ClassDesc classDesc() throws IOException {
+		long start = in.position();
+		return classDesc(in.readUnsignedByte(), start);
+	}
+
+	private ClassDesc classDesc(int tag, long start) throws IOException {
+		switch (tag) {
+			case TC_NULL:
+				return null;
+			case TC_REFERENCE: {
+				Object desc = handle(in.readInt() - BASE_HANDLE);
+				if (desc instanceof ClassDesc d) return d;
+				throw new StreamCorruptedException("Not a class at " + start);
+			}
+			case TC_CLASSDESC: {
+				ClassDesc desc = new ClassDesc(in.readUTF());
+				in.readLong(); // serialVersionUID, the fields are matched by name
+				register(desc, start);
+				desc.flags = in.readUnsignedByte();
+				int count = in.readShort();
+				desc.names = new String[count];
+				desc.codes = new char[count];
+				for (int i = 0; i < count; i++) {
+					desc.codes[i] = (char) in.readUnsignedByte();
+					desc.names[i] = in.readUTF();
+					if (desc.codes[i] == 'L' || desc.codes[i] == '[') content(null); // name of the field type
+				}
+				skipAnnotation();
+				desc.parent = classDesc();
+				return desc;
+			}
+			case TC_PROXYCLASSDESC:
+				throw new InvalidClassException("Proxy classes are not read");
+			default:
+				throw new StreamCorruptedException("Not a class at " + start);
+		}
+	}
+
+	private Object object(long start, Consumer<Object> sink) throws IOException {
+		ClassDesc desc = classDesc();
+		if (desc == null) throw new StreamCorruptedException("Object without class at " + start);
+		if (detached && !VALUES.contains(desc.name)) {
+			throw new InvalidObjectException("Object of " + desc.name + " is referred to after the element it was written with was dropped");
+		}
+		List<ClassDesc> chain = desc.chain();
+		for (ClassDesc d : chain) {
+			if ((d.flags & SC_EXTERNALIZABLE) != 0) throw new InvalidClassException(d.name, "externalizable classes are not read");
+		}
+		Class<?> model = BinaryCodec.model(desc.name);
+		if (model != null) return model(start, chain, model);
+		switch (desc.name) {
+			case "java.util.Vector": {
+				Vector<Object> list = new Vector<>();
+				register(list, start);
+				Map<String, Object> fields = slots(chain, n -> n.equals("elementData") ? sink : null).get(0).fields;
+				if (sink == null) {
+					Object[] elements = (Object[]) fields.get("elementData");
+					list.addAll(Arrays.asList(elements).subList(0, (Integer) fields.get("elementCount")));
+				}
+				return list;
+			}
+			case "java.util.ArrayList":
+			case "java.util.LinkedList": {
+				List<Object> list = desc.name.equals("java.util.ArrayList") ? new ArrayList<>() : new LinkedList<>();
+				register(list, start);
+				list.addAll(last(slots(chain, null)).objects);
+				return list;
+			}
+			case "java.util.HashSet":
+			case "java.util.LinkedHashSet":
+			case "java.util.TreeSet": {
+				Set<Object> set = desc.name.equals("java.util.HashSet") ? new HashSet<>()
+						: desc.name.equals("java.util.TreeSet") ? new TreeSet<>() : new LinkedHashSet<>();
+				register(set, start);
+				List<Object> objects = written(slots(chain, null), desc).objects;
+				if (set instanceof TreeSet<?>) {
+					if (objects.isEmpty() || objects.get(0) != null) throw new InvalidClassException(desc.name, "comparators are not read");
+					objects = objects.subList(1, objects.size());
+				}
+				Object[] values = objects.toArray();
+				fills.add(new Fill(set, values, () -> set.addAll(Arrays.asList(values))));
+				return set;
+			}
+			case "java.util.HashMap":
+			case "java.util.LinkedHashMap":
+			case "java.util.TreeMap":
+			case "java.util.concurrent.ConcurrentHashMap": {
+				Map<Object, Object> map = switch (desc.name) {
+					case "java.util.HashMap" -> new HashMap<>();
+					case "java.util.LinkedHashMap" -> new LinkedHashMap<>();
+					case "java.util.TreeMap" -> new TreeMap<>();
+					default -> new ConcurrentHashMap<>();
+				};
+				register(map, start);
+				List<Slot> slots = slots(chain, null);
+				if (last(slots).fields.get("comparator") != null) throw new InvalidClassException(desc.name, "comparators are not read");
+				Object[] values = written(slots, desc).objects.toArray();
+				fills.add(new Fill(map, values, () -> {
+					// a concurrent map ends with a pair of nulls
+					for (int i = 0; i + 1 < values.length; i += 2) {
+						if (values[i] != null) map.put(values[i], values[i + 1]);
+					}
+				}));
+				return map;
+			}
+			case "java.util.concurrent.ConcurrentHashMap$KeySetView": {
+				Set<Object> set = ConcurrentHashMap.newKeySet();
+				register(set, start);
+				Object map = slots(chain, null).get(0).fields.get("map");
+				if (!(map instanceof ConcurrentHashMap<?, ?> keys)) throw new StreamCorruptedException("Key set without map at " + start);
+				fills.add(new Fill(set, new Object[]{map}, () -> set.addAll(keys.keySet())));
+				return set;
+			}
+			case "java.util.Date": {
+				int h = register(null, start);
+				Slot slot = last(slots(chain, null));
+				Date date = new Date(slot.block().readLong());
+				set(h, date);
+				return date;
+			}
+			default: {
+				if (VALUES.contains(desc.name)) {
+					int h = register(null, start);
+					Object value = last(slots(chain, null)).fields.get("value");
+					set(h, value);
+					return value;
+				}
+				// objects of other classes are only read over, such as the locks of a concurrent map
+				for (ClassDesc d : chain) {
+					if ((d.flags & SC_WRITE_METHOD) != 0) throw new InvalidClassException(d.name, "not a class of the model");
+				}
+				Opaque opaque = new Opaque(desc.name);
+				register(opaque, start);
+				slots(chain, null);
+				return opaque;
+			}
+		}
+	}
+
+	/**
+	 * Creates an object of a model class and sets the fields read from the stream. The elements of the collections
+	 * of the data that have a sink are passed to the sink.
+	 */
+	private Object model(long start, List<ClassDesc> chain, Class<?> type) throws IOException {
+		Object obj = BinaryCodec.instantiate(type);
+		register(obj, start);
+		for (ClassDesc d : chain) {
+			Slot slot = slot(d, type == Data.class ? sinks::get : null);
+			Class<?> declaring = type;
+			while (declaring != null && !declaring.getName().equals(d.name)) declaring = declaring.getSuperclass();
+			if (declaring == null) continue;
+			for (Map.Entry<String, Object> value : slot.fields.entrySet()) set(obj, declaring, value.getKey(), value.getValue());
+		}
+		return obj;
+	}
+
+	private static void set(Object obj, Class<?> declaring, String name, Object value) throws IOException {
+		Field f;
+		try {
+			f = declaring.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			return; // the field was removed since the data was written
+		}
+		if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0) return;
+		if (value instanceof Opaque o) throw new InvalidClassException(o.name, "not a class of the model");
+		try {
+			f.setAccessible(true);
+			f.set(obj, value);
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw (IOException) new InvalidClassException(declaring.getName(), "field " + name + " can not be set").initCause(e);
+		}
+	}
+
+	/**
+	 * Reads an array. The elements of an array with a sink are passed to it and dropped one at a time.
+	 */
+	private Object array(long start, Consumer<Object> sink) throws IOException {
+		ClassDesc desc = classDesc();
+		if (desc == null || desc.name.length() < 2 || desc.name.charAt(0) != '[') throw new StreamCorruptedException("Not an array at " + start);
+		int length = in.readInt();
+		if (length < 0) throw new StreamCorruptedException("Array of " + length + " elements at " + start);
+		char code = desc.name.charAt(1);
+		if (code != 'L' && code != '[') {
+			Object array = Array.newInstance(primitive(code), length);
+			register(array, start);
+			for (int i = 0; i < length; i++) Array.set(array, i, value(code, null));
+			return array;
+		}
+		if (sink != null) {
+			register(new Object[0], start);
+			for (int i = 0; i < length; i++) element(sink);
+			return new Object[0];
+		}
+		Object[] array = new Object[length];
+		register(array, start);
+		for (int i = 0; i < length; i++) array[i] = content(null);
+		return array;
+	}
+
+	/**
+	 * Reads an element of a collection that is not kept, completes it and passes it to the sink. Afterwards the
+	 * handles of the objects first written with the element are released, except the users and courses among them
+	 * and the objects they refer to.
+	 */
+	private void element(Consumer<Object> sink) throws IOException {
+		int mark = handles.size();
+		int fillMark = fills.size();
+		Object element = content(null);
+		IdentityHashMap<Object, Integer> created = new IdentityHashMap<>();
+		for (int h = mark; h < handles.size(); h++) {
+			Object obj = handles.get(h);
+			if (obj != null && obj != RELEASED && !(obj instanceof ClassDesc) && !(obj instanceof Enum<?>)) created.put(obj, h);
+		}
+		List<Fill> pending = fills.subList(fillMark, fills.size());
+		IdentityHashMap<Object, Fill> unfilled = new IdentityHashMap<>();
+		pending.forEach(n -> unfilled.put(n.target, n));
+		Set<Object> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+		ArrayDeque<Object> queue = new ArrayDeque<>();
+		created.keySet().stream().filter(n -> n instanceof User || n instanceof Course).forEach(queue::add);
+		while (!queue.isEmpty()) {
+			Object obj = queue.poll();
+			if (!kept.add(obj)) continue;
+			Consumer<Object> visit = n -> {
+				if (created.containsKey(n) && !kept.contains(n)) queue.add(n);
+			};
+			BinaryCodec.references(obj, visit);
+			Fill fill = unfilled.get(obj);
+			if (fill != null) Arrays.stream(fill.values).filter(Objects::nonNull).forEach(visit);
+		}
+		// collections of the kept objects are filled with the rest of the data, when all their elements are complete
+		List<Fill> dropped = new ArrayList<>();
+		for (Iterator<Fill> fill = pending.iterator(); fill.hasNext(); ) {
+			Fill next = fill.next();
+			if (kept.contains(next.target)) continue;
+			dropped.add(next);
+			fill.remove();
+		}
+		run(dropped);
+		if (element != null) sink.accept(element);
+		for (Map.Entry<Object, Integer> obj : created.entrySet()) {
+			if (!kept.contains(obj.getKey())) handles.set(obj.getValue(), RELEASED);
+		}
+	}
+
+	private static void run(List<Fill> fills) {
+		fills.forEach(n -> n.apply.run());
+	}
+
+	/**
+	 * Object of a handle, read from the file again if it was released.
+	 */
+	private Object handle(int h) throws IOException {
+		if (h < 0 || h >= handles.size()) throw new StreamCorruptedException("Unknown handle " + h);
+		Object obj = handles.get(h);
+		return obj == RELEASED ? reread(h) : obj;
+	}
+
+	private Object reread(int h) throws IOException {
+		if (channel == null) channel = FileChannel.open(file, StandardOpenOption.READ);
+		Input saved = in;
+		boolean wasDetached = detached;
+		long offset = offsets.get(h / CHUNK)[h % CHUNK];
+		in = new Input(Channels.newInputStream(channel.position(offset)), offset);
+		detached = true;
+		try {
+			return content(null);
+		} finally {
+			in = saved;
+			detached = wasDetached;
+		}
+	}
+
+	private int register(Object obj, long start) {
+		if (detached) return -1;
+		int h = handles.size();
+		handles.add(obj);
+		if (h % CHUNK == 0) offsets.add(new long[CHUNK]);
+		offsets.get(h / CHUNK)[h % CHUNK] = start;
+		return h;
+	}
+
+	private void set(int h, Object obj) {
+		if (h >= 0) handles.set(h, obj);
+	}
+
+	private List<Slot> slots(List<ClassDesc> chain, Function<String, Consumer<Object>> sinkOf) throws IOException {
+		List<Slot> slots = new ArrayList<>(chain.size());
+		for (ClassDesc d : chain) slots.add(slot(d, sinkOf));
+		return slots;
+	}
+
+	private static Slot last(List<Slot> slots) {
+		return slots.get(slots.size() - 1);
+	}
+
+	/**
+	 * Data of the class of the hierarchy whose {@code writeObject} wrote the elements of a collection.
+	 */
+	private static Slot written(List<Slot> slots, ClassDesc desc) throws InvalidClassException {
+		for (Slot slot : slots) {
+			if (slot.written) return slot;
+		}
+		throw new InvalidClassException(desc.name, "collection without elements");
+	}
+
+	/**
+	 * Reads the data of one class of the hierarchy of an object: its fields and what its {@code writeObject} wrote.
+	 * The classes of the model and the collections that are read write their fields before anything else.
+	 */
+	private Slot slot(ClassDesc desc, Function<String, Consumer<Object>> sinkOf) throws IOException {
+		Slot slot = new Slot();
+		if ((desc.flags & SC_SERIALIZABLE) == 0) return slot;
+		for (int i = 0; i < desc.names.length; i++) {
+			slot.fields.put(desc.names[i], value(desc.codes[i], sinkOf == null ? null : sinkOf.apply(desc.names[i])));
+		}
+		if ((desc.flags & SC_WRITE_METHOD) == 0) return slot;
+		slot.written = true;
+		while (true) {
+			int tag = in.peek();
+			if (tag == TC_ENDBLOCKDATA) {
+				in.readUnsignedByte();
+				return slot;
+			}
+			if (tag == TC_BLOCKDATA || tag == TC_BLOCKDATALONG) {
+				in.readUnsignedByte();
+				byte[] bytes = new byte[tag == TC_BLOCKDATA ? in.readUnsignedByte() : in.readInt()];
+				in.readFully(bytes);
+				slot.block.writeBytes(bytes);
+			} else {
+				slot.objects.add(content(null));
+			}
+		}
+	}
+
+	private void skipAnnotation() throws IOException {
+		while (in.peek() != TC_ENDBLOCKDATA) {
+			if (in.peek() == TC_BLOCKDATA || in.peek() == TC_BLOCKDATALONG) {
+				int tag = in.readUnsignedByte();
+				in.skipNBytes(tag == TC_BLOCKDATA ? in.readUnsignedByte() : in.readInt());
+			} else {
+				content(null);
+			}
+		}
+		in.readUnsignedByte();
+	}
+
+	private Object value(char code, Consumer<Object> sink) throws IOException {
+		return switch (code) {
+			case 'B' -> in.readByte();
+			case 'C' -> in.readChar();
+			case 'D' -> in.readDouble();
+			case 'F' -> in.readFloat();
+			case 'I' -> in.readInt();
+			case 'J' -> in.readLong();
+			case 'S' -> in.readShort();
+			case 'Z' -> in.readBoolean();
+			case 'L', '[' -> content(sink);
+			default -> throw new StreamCorruptedException("Unknown field type " + code);
+		};
+	}
+
+	private static Class<?> primitive(char code) throws StreamCorruptedException {
+		return switch (code) {
+			case 'B' -> byte.class;
+			case 'C' -> char.class;
+			case 'D' -> double.class;
+			case 'F' -> float.class;
+			case 'I' -> int.class;
+			case 'J' -> long.class;
+			case 'S' -> short.class;
+			case 'Z' -> boolean.class;
+			default -> throw new StreamCorruptedException("Unknown array type " + code);
+		};
+	}
+
+	/**
+	 * Enum of the model, loaded without being initialized before it is checked.
+	 */
+	private static Class<?> enumType(String name) {
+		if (!name.startsWith("universitysystem.")) return null;
+		try {
+			Class<?> type = Class.forName(name, false, LegacyStream.class.getClassLoader());
+			return type.isEnum() ? type : null;
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object enumValue(Class<?> type, String name) throws InvalidObjectException {
+		try {
+			return Enum.valueOf((Class) type, name);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidObjectException("Unknown constant " + type.getName() + "." + name);
+		}
+	}
+
+	/**
+	 * Class description of the stream.
+	 */
+	private static final class ClassDesc
+	{
+		private final String name;
+		private int flags;
+		private String[] names;
+		private char[] codes;
+		private ClassDesc parent;
+
+		ClassDesc(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * The class and its serializable superclasses, the topmost first, in the order their data is written.
+		 */
+		List<ClassDesc> chain() {
+			LinkedList<ClassDesc> chain = new LinkedList<>();
+			for (ClassDesc d = this; d != null; d = d.parent) chain.addFirst(d);
+			return chain;
+		}
+	}
+
+	/**
+	 * Data of one class of the hierarchy of an object.
+	 */
+	private static final class Slot
+	{
+		private final Map<String, Object> fields = new HashMap<>();
+		private final List<Object> objects = new ArrayList<>();
+		private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+		private boolean written; // the class has a writeObject method
+
+		DataInputStream block() {
+			return new DataInputStream(new ByteArrayInputStream(block.toByteArray()));
+		}
+	}
+
+	/**
+	 * Hash or sorted collection that is filled once its elements are complete.
+	 */
+	private record Fill(Object target, Object[] values, Runnable apply)
+	{
+	}
+
+	/**
+	 * Object of a class that is only read over. It must not be set to a field of the model.
+	 */
+	private record Opaque(String name)
+	{
+	}
+
+	/**
+	 * Input that knows its position in the file.
+	 */
+	private static final class Input extends DataInputStream
+	{
+		Input(InputStream in, long position) {
+			super(new Counter(new BufferedInputStream(in, 64 * 1024), position));
+		}
+
+		long position() {
+			return ((Counter) in).position;
+		}
+
+		int peek() throws IOException {
+			return ((Counter) in).peek();
+		}
+
+		/**
+		 * Reads a string longer than 65535 bytes, in modified UTF-8 like {@link #readUTF()}.
+		 */
+		String readLongUTF() throws IOException {
+			long length = readLong();
+			if (length < 0 || length > Integer.MAX_VALUE - 8) throw new StreamCorruptedException("String of " + length + " bytes");
+			byte[] bytes = new byte[(int) length];
+			readFully(bytes);
+			StringBuilder s = new StringBuilder(bytes.length);
+			for (int i = 0; i < bytes.length; ) {
+				int b = bytes[i++] & 0xFF;
+				if (b < 0x80) {
+					s.append((char) b);
+				} else if ((b & 0xE0) == 0xC0 && i < bytes.length) {
+					s.append((char) ((b & 0x1F) << 6 | bytes[i++] & 0x3F));
+				} else if ((b & 0xF0) == 0xE0 && i + 1 < bytes.length) {
+					s.append((char) ((b & 0x0F) << 12 | (bytes[i++] & 0x3F) << 6 | bytes[i++] & 0x3F));
+				} else {
+					throw new UTFDataFormatException("Malformed string");
+				}
+			}
+			return s.toString();
+		}
+	}
+
+	private static final class Counter extends FilterInputStream
+	{
+		private long position;
+
+		Counter(InputStream in, long position) {
+			super(in);
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) position++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			position += skipped;
+			return skipped;
+		}
+
+		int peek() throws IOException {
+			in.mark(1);
+			int b = in.read();
+			in.reset();
+			if (b < 0) throw new EOFException();
+			return b;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package universitysystem.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by the aggregates of {@link Data}, such as students and courses.
+ * An aggregate is mapped to its stripe by identity, because the hash codes of entities depend on mutable fields.
+ * Changes of different aggregates usually take different stripes and run in parallel, while changes of the same
+ * aggregate are serialized. Several aggregates are always locked in the order of their stripes, so two operations
+ * that lock the same aggregates in a different order can not deadlock.
+ * That order holds only within one call, so a thread that already holds stripes may lock again only aggregates
+ * of the stripes it holds, such as a change that journals an entry of the aggregates it locked.
+ */
+public class LockStripes
+{
+	private final ReentrantLock[] locks;
+	private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * @param stripes - minimal number of locks, rounded up to a power of two.
+	 */
+	public LockStripes(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.locks = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) locks[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Locks the stripes of the aggregates. {@code null} aggregates are ignored.
+	 * @param aggregates - objects to be changed.
+	 * @return guard that releases the locks when it is closed.
+	 * @throws IllegalStateException if the thread holds stripes and one of the aggregates is not in them.
+	 */
+	public Guard lock(Object... aggregates) {
+		return lock(null, aggregates);
+	}
+
+	/**
+	 * Takes a lock shared by all changes, such as the read lock of a checkpoint, and then the stripes of the aggregates.
+	 * The shared lock is always taken first, so a thread that waits for it holds no stripes.
+	 * @param shared - lock released after the stripes, {@code null} if none.
+	 * @param aggregates - objects to be changed.
+	 * @return guard that releases the locks when it is closed.
+	 * @throws IllegalStateException if the thread holds stripes and one of the aggregates is not in them.
+	 */
+	public Guard lock(Lock shared, Object... aggregates) {
+		int[] stripes = Arrays.stream(aggregates).filter(Objects::nonNull).mapToInt(this::stripe).sorted().distinct().toArray();
+		int[] count = held.get();
+		if (count[0] > 0) {
+			// a stripe taken after the held ones may come before them in the order of the stripes
+			for (Object aggregate : aggregates) {
+				if (aggregate != null && !locks[stripe(aggregate)].isHeldByCurrentThread()) {
+					throw new IllegalStateException(aggregate.getClass().getSimpleName() + " is locked while other aggregates are held, lock them together");
+				}
+			}
+		}
+		if (shared != null) shared.lock();
+		for (int stripe : stripes) locks[stripe].lock();
+		count[0] += stripes.length;
+		return new Guard(shared, stripes);
+	}
+
+	private int stripe(Object aggregate) {
+		int h = System.identityHashCode(aggregate);
+		return (h ^ (h >>> 16)) & (locks.length - 1);
+	}
+
+	/**
+	 * Locks taken by {@link #lock(Object...)}.
+	 */
+	public class Guard implements AutoCloseable
+	{
+		private final Lock shared;
+		private final int[] stripes;
+
+		private Guard(Lock shared, int[] stripes) {
+			this.shared = shared;
+			this.stripes = stripes;
+		}
+
+		@Override
+		public void close() {
+			for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock();
+			held.get()[0] -= stripes.length;
+			if (shared != null) shared.unlock();
+		}
+	}
+}
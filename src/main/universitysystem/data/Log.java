@@ -4,22 +4,55 @@ import java.io.Serializable;
 import java.util.*;
 
 //TODO везде сделать логи
+/**
+ * View of one entry of the {@link AuditLog}. Logs are stored without creating this object,
+ * see {@link Data#log(LogAction, String, String, String)}, and the text is rendered from the template
+ * of the action only when it is asked for.
+ */
 public class Log implements Serializable
 {
+	private static final long serialVersionUID = -1394582453156404098L;
 	private final int id;
+	/**
+	 * Whole text of the log. Only set for logs written before their text was rendered from a template.
+	 */
 	private String text;
 	private final Date time;
-
-	{
-		id = Data.getInstance().getLogId();
-		time = new Date();
-	}
+	private LogAction action;
+	private String actor;
+	private String target;
+	private String detail;
 
 	public Log(){
-		super();
+		this(null);
 	}
 
 	public Log(String text) {
+		this(LogAction.OTHER, null, null, text);
+	}
+
+	/**
+	 * @param action - kind of the action.
+	 * @param actor - id of the user who did the action, {@code null} if unknown.
+	 * @param target - id of the user or object the action was done with, {@code null} if none.
+	 * @param detail - rest of the text of the action, {@code null} if none.
+	 */
+	public Log(LogAction action, String actor, String target, String detail) {
+		this(Data.getInstance().getLogId(), System.currentTimeMillis(), action, actor, target, detail, null);
+	}
+
+	/**
+	 * Restores a log read from the {@link AuditLog}, without taking a new id.
+	 * @param time - time in milliseconds, {@code 0} if unknown.
+	 * @param text - whole text of an older log, {@code null} if it is rendered from the template.
+	 */
+	Log(int id, long time, LogAction action, String actor, String target, String detail, String text) {
+		this.id = id;
+		this.time = time == 0 ? null : new Date(time);
+		this.action = action;
+		this.actor = actor;
+		this.target = target;
+		this.detail = detail;
 		this.text = text;
 	}
 
@@ -27,32 +60,56 @@ public class Log implements Serializable
 		return id;
 	}
 	public String getText() {
-		return text;
+		if(text != null) return text;
+		return getAction().render(actor, target, detail);
 	}
 	public void setText(String text){
 		this.text = text;
 	}
 
+	/**
+	 * Text that was stored as a whole instead of being rendered, {@code null} if there is none.
+	 */
+	String getRenderedText() {
+		return text;
+	}
+
 	public Date getTime() {
 		return time;
 	}
 
+	public LogAction getAction() {
+		return action == null ? LogAction.OTHER : action;
+	}
+
+	public String getActor() {
+		return actor;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public String getDetail() {
+		return detail;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		Log log = (Log) o;
-		return id == log.id && Objects.equals(text, log.text) && Objects.equals(time, log.time);
+		return id == log.id && Objects.equals(getText(), log.getText()) && Objects.equals(time, log.time);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, text, time);
+		return Objects.hash(id, getText(), time);
 	}
 
 	@Override
 	public String toString() {
-		return "id: " + id + ", time: " + time + "\nAction: " + text;
+		return "id: " + id + ", time: " + time + "\nAction: " + getText();
 	}
 }
 
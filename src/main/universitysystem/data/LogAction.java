@@ -0,0 +1,90 @@
+package universitysystem.data;
+
+/**
+ * Kind of action recorded by a {@link Log}, with the template of its text.
+ * The text is only rendered when a log is viewed: {@code {actor}}, {@code {target}} and {@code {detail}}
+ * in the template are replaced by the fields of the log.
+ * Actions are stored in the {@link AuditLog} by their position, so new actions are only added at the end.
+ */
+public enum LogAction
+{
+	OTHER("{detail}"),
+	LOGIN("{actor} вошел в систему"),
+	LOGOUT("{actor} вышел из системы"),
+	CHANGE_PASSWORD("{actor} изменил пароль {target}"),
+	ADD_USER("{actor} добавил пользователя {target}: {detail}"),
+	REMOVE_USER("{actor} удалил пользователя {target}"),
+	CHANGE_USER("{actor} изменил {detail} пользователя {target}"),
+	PUT_MARK("{actor} поставил оценку {target} по курсу {detail}"),
+	PUT_ATTESTATION("{actor} поставил аттестацию {target} по курсу {detail}"),
+	PUT_FINAL_EXAM("{actor} поставил оценку за экзамен {target} по курсу {detail}"),
+	REGISTRATION_REQUEST("{actor} отправил заявку на регистрацию курса {target}"),
+	ADD_LESSON("{actor} добавил урок курса {target} в расписание"),
+	REMOVE_LESSON("{actor} удалил урок из расписания"),
+	RATE_TEACHER("{actor} оценил учителя {target}"),
+	CREATE_ORGANIZATION("{actor} создал организацию {target}"),
+	JOIN_ORGANIZATION("{actor} вступил в организацию {target}"),
+	LEAVE_ORGANIZATION("{actor} вышел из организации"),
+	CREATE_PAPER("{actor} создал научную статью {detail}"),
+	JOIN_PAPER("{actor} присоединился к научной статье {detail}"),
+	CREATE_PROJECT("{actor} создал научный проект {detail}"),
+	JOIN_PROJECT("{actor} присоединился к научному проекту {detail}"),
+	SUPERVISE("{actor} стал supervisor для {target}"),
+	CREATE_JOURNAL("{actor} создал новый журнал {detail}"),
+	SUBSCRIBE("{actor} подписался на журнал {detail}"),
+	UNSUBSCRIBE("{actor} отписался от журнала {detail}"),
+	SEND_TECH_REPORT("{actor} отправил tech report"),
+	ACCEPT_TECH_REPORT("{actor} начал рассматривать тех репорт от {target}"),
+	COMPLETE_TECH_REPORT("{actor} завершил выполнение тех репорта от {target}"),
+	SEND_EMPLOYEE_REQUEST("{actor} отправил employee request"),
+	SIGN_EMPLOYEE_REQUEST("{actor} подписал запрос работника {target}"),
+	REJECT_EMPLOYEE_REQUEST("{actor} отклонил запрос работника {target}"),
+	ACCEPT_COMPLAINT("{actor} принял жалобу на студента от {target}"),
+	REJECT_COMPLAINT("{actor} отклонил жалобу на студента от {target}"),
+	WARN_STUDENT("{actor} вынес выговор {target}"),
+	OPEN_COURSE("{actor} открыл регистрацию на курс {target}"),
+	CLOSE_COURSE("{actor} закрыл регистрацию на курс {target}"),
+	CONSIDER_REGISTRATIONS("{actor} рассмотрел заявки на регистрацию. {detail}");
+
+	private static final LogAction[] VALUES = values();
+	private final String template;
+
+	LogAction(String template) {
+		this.template = template;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Renders the text of a log of this action.
+	 * @param actor - id of the user who did the action.
+	 * @param target - id of the user or object the action was done with.
+	 * @param detail - rest of the text, such as a title.
+	 * @return text of the log.
+	 */
+	public String render(String actor, String target, String detail) {
+		StringBuilder text = new StringBuilder(template.length() + 32);
+		int from = 0;
+		for (int open = template.indexOf('{'); open >= 0; open = template.indexOf('{', from)) {
+			int close = template.indexOf('}', open);
+			text.append(template, from, open);
+			String value = switch (template.substring(open + 1, close)) {
+				case "actor" -> actor;
+				case "target" -> target;
+				default -> detail;
+			};
+			text.append(value == null ? "" : value);
+			from = close + 1;
+		}
+		return text.append(template, from, template.length()).toString().trim();
+	}
+
+	/**
+	 * Returns the action with the ordinal, {@link #OTHER} for actions of a newer version.
+	 */
+	static LogAction of(int ordinal) {
+		return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : OTHER;
+	}
+}
@@ -0,0 +1,166 @@
+package universitysystem.data;
+
+import java.util.Arrays;
+
+/**
+ * Logs stored column by column in primitive arrays, without a {@link Log} object per entry.
+ * A {@link Log} is only created when an entry is viewed, see {@link #get(int)}.
+ * A bounded instance keeps the newest entries and overwrites the oldest one when it is full,
+ * an unbounded one grows.
+ */
+class LogRecords
+{
+	/**
+	 * Set in the action of an entry whose detail is the whole text of the log, not the detail of the template.
+	 */
+	static final int RENDERED = 0x80;
+	private final boolean bounded;
+	private int start;
+	private int size;
+	private int[] ids;
+	private long[] times;
+	private byte[] actions;
+	private String[] actors;
+	private String[] targets;
+	private String[] details;
+
+	/**
+	 * @param capacity - number of entries that fit without growing.
+	 * @param bounded - whether the oldest entries are overwritten instead of growing.
+	 */
+	LogRecords(int capacity, boolean bounded) {
+		this.bounded = bounded;
+		allocate(Math.max(bounded ? 0 : 1, capacity));
+	}
+
+	private void allocate(int capacity) {
+		ids = new int[capacity];
+		times = new long[capacity];
+		actions = new byte[capacity];
+		actors = new String[capacity];
+		targets = new String[capacity];
+		details = new String[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param action - ordinal of the {@link LogAction}, with {@link #RENDERED} if the detail is the whole text.
+	 */
+	void add(int id, long time, int action, String actor, String target, String detail) {
+		int capacity = ids.length;
+		if (size == capacity) {
+			if (bounded) {
+				if (capacity == 0) return;
+				start = (start + 1) % capacity;
+				size--;
+			} else {
+				resize(capacity * 2);
+				capacity = ids.length;
+			}
+		}
+		int i = (start + size) % capacity;
+		ids[i] = id;
+		times[i] = time;
+		actions[i] = (byte) action;
+		actors[i] = actor;
+		targets[i] = target;
+		details[i] = detail;
+		size++;
+	}
+
+	/**
+	 * Adds an entry of a log.
+	 */
+	void add(Log log) {
+		boolean rendered = log.getRenderedText() != null;
+		add(log.getId(), log.getTime() == null ? 0 : log.getTime().getTime(),
+				log.getAction().ordinal() | (rendered ? RENDERED : 0), log.getActor(), log.getTarget(),
+				rendered ? log.getRenderedText() : log.getDetail());
+	}
+
+	/**
+	 * Changes the capacity. If it becomes smaller than the size, the oldest entries are dropped.
+	 */
+	void resize(int capacity) {
+		int keep = Math.min(size, capacity);
+		int[] ids = new int[capacity];
+		long[] times = new long[capacity];
+		byte[] actions = new byte[capacity];
+		String[] actors = new String[capacity];
+		String[] targets = new String[capacity];
+		String[] details = new String[capacity];
+		for (int j = 0; j < keep; j++) {
+			int i = index(size - keep + j);
+			ids[j] = this.ids[i];
+			times[j] = this.times[i];
+			actions[j] = this.actions[i];
+			actors[j] = this.actors[i];
+			targets[j] = this.targets[i];
+			details[j] = this.details[i];
+		}
+		this.ids = ids;
+		this.times = times;
+		this.actions = actions;
+		this.actors = actors;
+		this.targets = targets;
+		this.details = details;
+		this.start = 0;
+		this.size = keep;
+	}
+
+	void clear() {
+		Arrays.fill(actors, null);
+		Arrays.fill(targets, null);
+		Arrays.fill(details, null);
+		start = 0;
+		size = 0;
+	}
+
+	private int index(int i) {
+		return (start + i) % ids.length;
+	}
+
+	/**
+	 * @param i - position of the entry, {@code 0} is the oldest.
+	 */
+	int id(int i) {
+		return ids[index(i)];
+	}
+
+	long time(int i) {
+		return times[index(i)];
+	}
+
+	/**
+	 * Ordinal of the action with the {@link #RENDERED} flag.
+	 */
+	int action(int i) {
+		return actions[index(i)] & 0xFF;
+	}
+
+	String actor(int i) {
+		return actors[index(i)];
+	}
+
+	String target(int i) {
+		return targets[index(i)];
+	}
+
+	String detail(int i) {
+		return details[index(i)];
+	}
+
+	/**
+	 * Creates the log of an entry.
+	 */
+	Log get(int i) {
+		int action = action(i);
+		String detail = detail(i);
+		boolean rendered = (action & RENDERED) != 0;
+		return new Log(id(i), time(i), LogAction.of(action & ~RENDERED), actor(i), target(i),
+				rendered ? null : detail, rendered ? detail : null);
+	}
+}
@@ -0,0 +1,296 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.entity.User;
+import universitysystem.utills.Comment;
+import universitysystem.utills.Mail;
+import universitysystem.utills.News;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts the legacy {@code data.ser} into the sharded snapshot. The conversion runs on the first start that finds
+ * only {@code data.ser}, or by itself with this class.
+ * The file is read once by {@link LegacyStream}, without {@link ObjectInputStream}: the users, courses and research
+ * are built in memory as on every start, while the requests, complaints and news are encoded into the segments
+ * of their shard as soon as they are read and the logs are moved to the {@link AuditLog} in batches, so memory
+ * does not grow with them. An entry that refers to a user or course no longer in the data has to store it in full,
+ * which is known only at the end, so then the file is read a second time.
+ * The shards of the lazy collections are written first and the core shard last, so an interrupted conversion
+ * is simply started again.
+ * <p>Usage: {@code java universitysystem.data.Migrator [--verify]}</p>
+ * <p>With {@code --verify} the written snapshot is read back and compared with the converted data.
+ * That needs a second copy of the users, courses and research in memory.</p>
+ */
+public class Migrator
+{
+	private static final String LEGACY = "data.ser";
+	private static final List<String> STREAMED = List.of("registrationRequests", "employeeRequests", "complaints", "news");
+	private static final String LOGS = "logs";
+	private static final int LOG_BATCH = 4096;
+	private static Map<String, Integer> converted = Map.of();
+
+	public static void main(String[] args) throws IOException {
+		if (Snapshot.exists()) {
+			System.out.println(Shard.CORE.getFile() + " already exists");
+			return;
+		}
+		if (!new File(LEGACY).exists()) {
+			System.out.println(LEGACY + " not found");
+			return;
+		}
+		Data data = Data.getInstance();
+		if (Data.getLoadError() != null) {
+			System.out.println(LEGACY + " can not be converted: " + Data.getLoadError());
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--verify")) verify(data);
+		long size = 0;
+		for (Shard shard : Shard.values()) size += new File(shard.getFile()).length();
+		System.out.println(LEGACY + ": " + new File(LEGACY).length() + " bytes, snapshot: " + size + " bytes, streamed: " + converted);
+	}
+
+	/**
+	 * Converts {@code data.ser} into the snapshot files.
+	 * @return the converted data, whose lazy collections are read from the snapshot on first access.
+	 * @throws IOException if the file can not be read or the snapshot can not be written.
+	 */
+	static Data convert() throws IOException {
+		Set<String> orphans = new HashSet<>();
+		while (true) {
+			Conversion conversion = new Conversion(orphans);
+			try {
+				Data data = conversion.read();
+				Set<String> missing = conversion.missing(data);
+				if (missing.isEmpty()) {
+					conversion.write(data);
+					converted = conversion.sizes();
+					return data;
+				}
+				// read again, with the entities that are not in the data stored in full
+				if (!orphans.addAll(missing)) throw new StreamCorruptedException("Not found: " + missing);
+			} finally {
+				conversion.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads the written snapshot back and compares it with the converted data. The streamed collections are only
+	 * counted, their elements are not read.
+	 * @param data - converted data.
+	 * @throws IOException if the snapshot can not be read or differs from the data.
+	 */
+	public static void verify(Data data) throws IOException {
+		Data copy;
+		try {
+			copy = Snapshot.read();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		copy.loadCatalog();
+		if (copy.hasFailed(Shard.CORE)) throw new IOException("courses and research can not be decoded: " + Data.getLoadError());
+		check("users", EntityRef.users(data).count(), EntityRef.users(copy).count());
+		check("courses", data.getCourses().size(), copy.getCourses().size());
+		check("researchers", data.getResearchers().size(), copy.getResearchers().size());
+		check("research papers", data.getResearchPapers().size(), copy.getResearchPapers().size());
+		check("research projects", data.getResearchProjects().size(), copy.getResearchProjects().size());
+		check("organizations", data.getOrganizations().size(), copy.getOrganizations().size());
+		check("journals", data.getJournals().size(), copy.getJournals().size());
+		check("id counter", data.currentIdCounter(), copy.currentIdCounter());
+		check("registered courses", data.getStudents().stream().mapToLong(n -> n.getCurrentCourses().size()).sum(),
+				copy.getStudents().stream().mapToLong(n -> n.getCurrentCourses().size()).sum());
+		check("marks", data.getStudents().stream().flatMap(n -> n.getCurrentCourses().stream()).mapToLong(n -> n.getMarks().size()).sum(),
+				copy.getStudents().stream().flatMap(n -> n.getCurrentCourses().stream()).mapToLong(n -> n.getMarks().size()).sum());
+		check("new orders", data.getNewOrders().size(), copy.getNewOrders().size());
+		for (Shard shard : Shard.values()) {
+			if (copy.hasFailed(shard)) throw new IOException(shard.getFile() + " can not be decoded: " + Data.getLoadError());
+			for (String name : shard.getSegments()) {
+				if (converted.containsKey(name) && !name.equals(LOGS)) check(name, converted.get(name), copy.getSnapshot(shard).size(name));
+			}
+		}
+	}
+
+	private static void check(String what, long expected, long actual) throws IOException {
+		if (expected != actual) throw new IOException(what + ": expected " + expected + ", decoded " + actual);
+	}
+
+	/**
+	 * One read of {@code data.ser}. The streamed collections are encoded into temporary files next to their shard.
+	 */
+	private static class Conversion
+	{
+		private final Set<String> orphans;
+		private final Set<Object> referred = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final Map<String, Spill> spills = new LinkedHashMap<>();
+		private final EnumMap<IdSequence, Integer> ids = new EnumMap<>(IdSequence.class);
+		private final ArrayList<Log> logs = new ArrayList<>();
+		private final int lastLog = AuditLog.maxId();
+		private int logCount;
+
+		/**
+		 * @param orphans - users and courses that are not in the data and are stored in full, by their reference.
+		 */
+		Conversion(Set<String> orphans) {
+			this.orphans = orphans;
+		}
+
+		Data read() throws IOException {
+			Map<String, Consumer<Object>> sinks = new HashMap<>();
+			for (String name : STREAMED) {
+				Spill spill = new Spill(name, this::replace);
+				spills.put(name, spill);
+				sinks.put(name, obj -> {
+					advance(obj);
+					spill.add(obj);
+				});
+			}
+			sinks.put(LOGS, this::log);
+			try (LegacyStream in = new LegacyStream(Paths.get(LEGACY), sinks)) {
+				Data data = in.read();
+				storeLogs();
+				for (Spill spill : spills.values()) spill.close();
+				return data;
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * References of the streamed entries that would not be resolved against the data.
+		 */
+		Set<String> missing(Data data) {
+			Predicate<Object> resolvable = EntityRef.resolvable(data);
+			return referred.stream().filter(resolvable.negate()).map(n -> reference(n).toString()).collect(Collectors.toSet());
+		}
+
+		/**
+		 * Writes the shards of the lazy collections with the streamed segments, then the core shard.
+		 */
+		void write(Data data) throws IOException {
+			data.seedIds();
+			ids.forEach(data::advanceId);
+			for (Shard shard : Shard.values()) {
+				if (shard == Shard.CORE) continue;
+				Map<String, Snapshot.Content> encoded = new HashMap<>();
+				for (String name : shard.getSegments()) {
+					Spill spill = spills.get(name);
+					if (spill != null) encoded.put(name, spill::writeTo);
+				}
+				Snapshot.stream(data, shard, encoded);
+				data.unload(shard);
+			}
+			Snapshot.stream(data, Shard.CORE);
+		}
+
+		Map<String, Integer> sizes() {
+			Map<String, Integer> sizes = new LinkedHashMap<>();
+			spills.forEach((name, spill) -> sizes.put(name, spill.encoder.size()));
+			sizes.put(LOGS, logCount);
+			return sizes;
+		}
+
+		void delete() throws IOException {
+			for (Spill spill : spills.values()) spill.delete();
+		}
+
+		private Object replace(Object obj) {
+			if (!(obj instanceof User || obj instanceof Course)) return obj;
+			EntityRef ref = reference(obj);
+			if (orphans.contains(ref.toString())) return obj;
+			referred.add(obj);
+			return ref;
+		}
+
+		private static EntityRef reference(Object obj) {
+			return obj instanceof User u ? new EntityRef(u) : new EntityRef((Course) obj);
+		}
+
+		/**
+		 * Keeps the largest id of every sequence of the streamed entries, the id counters continue after them.
+		 */
+		private void advance(Object obj) {
+			if (obj instanceof Mail m) ids.merge(IdSequence.MAIL, m.getId(), Math::max);
+			if (obj instanceof News n) {
+				ids.merge(IdSequence.NEWS, n.getId(), Math::max);
+				comments(n.getComments()).forEach(c -> ids.merge(IdSequence.COMMENT, c.getId(), Math::max));
+			}
+		}
+
+		private static Stream<Comment> comments(Collection<Comment> comments) {
+			if (comments == null) return Stream.empty();
+			return comments.stream().flatMap(n -> Stream.concat(Stream.of(n), comments(n.getSubComments())));
+		}
+
+		/**
+		 * Moves a log to the audit log. Logs that are already there are skipped, as on every start.
+		 */
+		private void log(Object obj) {
+			if (!(obj instanceof Log log)) return;
+			ids.merge(IdSequence.LOG, log.getId(), Math::max);
+			logCount++;
+			if (log.getId() <= lastLog) return;
+			logs.add(log);
+			if (logs.size() == LOG_BATCH) storeLogs();
+		}
+
+		private void storeLogs() {
+			if (logs.isEmpty()) return;
+			AuditLog.appendAll(logs);
+			logs.clear();
+		}
+	}
+
+	/**
+	 * Streamed collection, encoded into a temporary file as its elements are read.
+	 */
+	private static class Spill
+	{
+		private final Path file;
+		private final OutputStream out;
+		private final BinaryCodec.ListEncoder encoder;
+
+		Spill(String name, UnaryOperator<Object> replace) throws IOException {
+			String shard = Arrays.stream(Shard.values()).filter(n -> Arrays.asList(n.getSegments()).contains(name))
+					.findFirst().orElseThrow().getFile();
+			this.file = Paths.get(shard + "." + name + ".tmp");
+			this.out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+			this.encoder = new BinaryCodec.ListEncoder(Vector.class, replace, out);
+		}
+
+		void add(Object element) {
+			try {
+				encoder.add(element);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void close() throws IOException {
+			encoder.flush();
+			out.close();
+		}
+
+		/**
+		 * Writes the segment: the head of the list and the elements from the file.
+		 */
+		void writeTo(OutputStream target) throws IOException {
+			encoder.writeHead(target);
+			Files.copy(file, target);
+		}
+
+		void delete() throws IOException {
+			out.close();
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.Lesson;
+import universitysystem.courses.Semester;
+import universitysystem.entity.GraduateStudent;
+import universitysystem.entity.Student;
+import universitysystem.entity.User;
+import universitysystem.research.ResearchProject;
+import universitysystem.research.Researcher;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Courses and research projects the users refer to while the courses and research segments of the core snapshot
+ * are not read yet. A {@link LazyRef} in the users segment is resolved to a placeholder that has only the fields
+ * of its key, the rest of the fields are copied into it when the segment is read, so the users keep pointing
+ * to the very objects of the data.
+ */
+class Placeholders implements UnaryOperator<Object>
+{
+	private final Map<Key, Course> courses = new HashMap<>();
+	private final Map<Integer, ResearchProject> projects = new HashMap<>();
+	private final Set<Object> created = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<Object> filled = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final IdentityHashMap<Course, Course> copied = new IdentityHashMap<>();
+
+	/**
+	 * Resolves the references of the users segment to placeholders, one placeholder for every key.
+	 */
+	@Override
+	public Object apply(Object obj) {
+		if (!(obj instanceof LazyRef ref)) return obj;
+		if (ref.isCourse()) {
+			return courses.computeIfAbsent(new Key(ref.code, ref.year, ref.semester), k -> {
+				Course c = new Course(ref.title, null, ref.code, 0, 0, 0, 0, ref.year, ref.semester);
+				created.add(c);
+				return c;
+			});
+		}
+		ResearchProject p = projects.get(ref.project);
+		if (p == null) {
+			try {
+				p = BinaryCodec.instantiate(ResearchProject.class);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			projects.put(ref.project, p);
+			created.add(p);
+		}
+		return p;
+	}
+
+	/**
+	 * Whether the object is a placeholder that is not filled yet, so it has to be written as a {@link LazyRef}.
+	 */
+	boolean contains(Object obj) {
+		return created.contains(obj) && !filled.contains(obj);
+	}
+
+	/**
+	 * Placeholder of a course, {@code null} if the users do not refer to it.
+	 */
+	Course course(String code, int year, Semester semester) {
+		return courses.get(new Key(code, year, semester));
+	}
+
+	/**
+	 * Resolver of the courses segment: references to users are resolved against the data and a decoded course
+	 * is copied into its placeholder, which is used instead of it.
+	 */
+	UnaryOperator<Object> courseFiller(EntityRef.Resolver users) {
+		return obj -> {
+			obj = users.apply(obj);
+			if (obj instanceof Course c) {
+				Course placeholder = courses.get(new Key(c.getCode(), c.getYear(), c.getSemester()));
+				if (placeholder != null && filled.add(placeholder)) {
+					BinaryCodec.copy(c, placeholder);
+					copied.put(c, placeholder);
+					return placeholder;
+				}
+			}
+			return obj;
+		};
+	}
+
+	/**
+	 * Resolver of the research segment: references to users are resolved against the data, a decoded research project
+	 * is copied into its placeholder and a researcher is replaced by the supervisor of the same user read with the users.
+	 */
+	UnaryOperator<Object> researchFiller(EntityRef.Resolver users, Data data) {
+		IdentityHashMap<User, Researcher> researchers = new IdentityHashMap<>();
+		for (Student s : data.getStudents()) {
+			if (s instanceof GraduateStudent g && g.getSupervisor() != null) {
+				researchers.putIfAbsent(g.getSupervisor().getInitialUser(), g.getSupervisor());
+			}
+		}
+		return obj -> {
+			obj = users.apply(obj);
+			if (obj instanceof ResearchProject p) {
+				ResearchProject placeholder = projects.get(p.getId());
+				if (placeholder != null && filled.add(placeholder)) {
+					BinaryCodec.copy(p, placeholder);
+					return placeholder;
+				}
+			}
+			if (obj instanceof Researcher r && r.getInitialUser() != null) return researchers.computeIfAbsent(r.getInitialUser(), u -> r);
+			return obj;
+		};
+	}
+
+	/**
+	 * Replaces the decoded courses that were copied into placeholders in the prerequisites of the courses.
+	 * A course is replaced by its placeholder only after it is decoded, so a course that is a prerequisite
+	 * of its own prerequisite still refers to the decoded copy.
+	 * @param catalog - courses that were just read.
+	 */
+	void relink(Collection<Course> catalog) {
+		for (Course c : catalog) {
+			HashSet<Course> prerequisites = c.getPrerequisites();
+			if (prerequisites == null || prerequisites.stream().noneMatch(copied::containsKey)) continue;
+			List<Course> relinked = prerequisites.stream().map(n -> copied.getOrDefault(n, n)).toList();
+			prerequisites.clear();
+			prerequisites.addAll(relinked);
+		}
+		copied.clear();
+	}
+
+	/**
+	 * Gives the courses the lessons of the users. The users segment stores the lessons of a student in full,
+	 * so a lesson of a course is replaced by the equal lesson a student of the course has.
+	 * @param data - data whose courses were just read.
+	 */
+	void shareLessons(Data data) {
+		IdentityHashMap<Course, Map<Lesson, Lesson>> lessons = new IdentityHashMap<>();
+		for (Student s : data.getStudents()) {
+			Stream.of(s.getCurrentCourses(), s.getCompletedCourses(), s.getNotCompletedCourses())
+					.filter(Objects::nonNull).flatMap(Collection::stream).forEach(r -> {
+						if (r.getLessons() == null) return;
+						for (Lesson l : r.getLessons()) lessons.computeIfAbsent(r.getCourse(), k -> new HashMap<>()).putIfAbsent(l, l);
+					});
+		}
+		for (Map.Entry<Course, Map<Lesson, Lesson>> course : lessons.entrySet()) {
+			TreeSet<Lesson> own = course.getKey().getLessons();
+			if (own == null) continue;
+			for (Lesson l : new ArrayList<>(own)) {
+				Lesson shared = course.getValue().get(l);
+				if (shared == null || shared == l) continue;
+				own.remove(l);
+				own.add(shared);
+			}
+		}
+	}
+
+	/**
+	 * Checks that every course placeholder was filled by the courses segment.
+	 * @throws StreamCorruptedException naming the first course that is missing in the segment.
+	 */
+	void checkCourses() throws StreamCorruptedException {
+		for (Map.Entry<Key, Course> c : courses.entrySet()) {
+			if (!filled.contains(c.getValue())) throw new StreamCorruptedException("Not found: course " + c.getKey());
+		}
+	}
+
+	/**
+	 * Checks that every research project placeholder was filled by the research segment.
+	 * @throws StreamCorruptedException naming the first research project that is missing in the segment.
+	 */
+	void checkProjects() throws StreamCorruptedException {
+		for (Map.Entry<Integer, ResearchProject> p : projects.entrySet()) {
+			if (!filled.contains(p.getValue())) throw new StreamCorruptedException("Not found: research project " + p.getKey());
+		}
+	}
+
+	private record Key(String code, int year, Semester semester)
+	{
+	}
+}
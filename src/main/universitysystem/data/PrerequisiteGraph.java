@@ -0,0 +1,358 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.Student;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Graph of the prerequisites of the courses. Every course gets a dense number, the prerequisites of a course,
+ * all of its prerequisites with their own prerequisites and the courses completed by a student are kept as bitsets
+ * over these numbers, so whether a student may take a course is checked a word of 64 courses at a time.
+ * The graph is not stored: a course is added with its prerequisites when it is first asked about. The prerequisites
+ * of a course are changed through the graph, under its lock: a new prerequisite is checked and added to the closures,
+ * one that would make a cycle is refused, and the graph is dropped when prerequisites are removed or replaced.
+ * A change that finds its graph dropped is made through the graph built after it. The completed courses of a student
+ * are encoded on first use and dropped by {@link Student} when they change.
+ * Courses and students are compared by identity, because their hash codes depend on mutable fields.
+ */
+public class PrerequisiteGraph
+{
+	private static final long[] NONE = new long[0];
+	private final Data data;
+	private final IdentityHashMap<Course, Integer> ids = new IdentityHashMap<>();
+	private final List<Course> courses = new ArrayList<>();
+	private final List<long[]> direct = new ArrayList<>();
+	private final List<long[]> closure = new ArrayList<>();
+	private final IdentityHashMap<Student, long[]> completed = new IdentityHashMap<>();
+	private long completedVersion;
+	private int[] dependents;
+	private boolean dropped;
+
+	PrerequisiteGraph(Data data) {
+		this.data = data;
+		for (Course c : new ArrayList<>(data.getCourses())) id(c);
+	}
+
+	/**
+	 * Checks whether a student completed all prerequisites of a course.
+	 * @param s - student.
+	 * @param c - course.
+	 * @return {@code true} if the student may take the course.
+	 */
+	public boolean isEligible(Student s, Course c) {
+		long[] done = completed(s);
+		synchronized (this) {
+			return covers(done, direct.get(id(c)));
+		}
+	}
+
+	/**
+	 * Checks whether a set of completed courses has all prerequisites of a course.
+	 * @param done - completed courses.
+	 * @param c - course.
+	 * @return {@code true} if the course may be taken.
+	 */
+	public synchronized boolean isEligible(Collection<Course> done, Course c) {
+		return covers(encode(done), direct.get(id(c)));
+	}
+
+	/**
+	 * Returns the students who completed all prerequisites of a course, including the ones who took the course.
+	 * @param c - course.
+	 * @return students in no particular order.
+	 */
+	public List<Student> getEligibleStudents(Course c) {
+		List<Student> students = new ArrayList<>(data.getStudents());
+		long[] required;
+		synchronized (this) {
+			required = direct.get(id(c));
+		}
+		List<Student> eligible = new ArrayList<>();
+		for (Student s : students) {
+			if (covers(completed(s), required)) eligible.add(s);
+		}
+		return eligible;
+	}
+
+	/**
+	 * Checks whether a course needs another one, directly or through the prerequisites of its prerequisites.
+	 * @param c - course.
+	 * @param prerequisite - course that may be needed.
+	 */
+	public synchronized boolean requires(Course c, Course prerequisite) {
+		return get(closure.get(id(c)), id(prerequisite));
+	}
+
+	/**
+	 * Returns the prerequisites of a course with their own prerequisites.
+	 * @param c - course.
+	 * @return courses in no particular order.
+	 */
+	public synchronized List<Course> getAllPrerequisites(Course c) {
+		long[] bits = closure.get(id(c));
+		List<Course> all = new ArrayList<>();
+		for (int i = nextSet(bits, 0); i >= 0; i = nextSet(bits, i + 1)) all.add(courses.get(i));
+		return all;
+	}
+
+	/**
+	 * Number of courses that need a course, directly or through the prerequisites of their prerequisites.
+	 * @param c - course.
+	 */
+	public synchronized int getDependentCount(Course c) {
+		int id = id(c);
+		if (dependents == null || dependents.length < courses.size()) {
+			dependents = new int[courses.size()];
+			for (long[] bits : closure) {
+				for (int i = nextSet(bits, 0); i >= 0; i = nextSet(bits, i + 1)) dependents[i]++;
+			}
+		}
+		return dependents[id];
+	}
+
+	/**
+	 * Courses that are their own prerequisites through other courses. Such a course was stored before
+	 * cycles were refused and nobody can complete all of its prerequisites first.
+	 */
+	public synchronized List<Course> getCycles() {
+		List<Course> cyclic = new ArrayList<>();
+		for (int i = 0; i < courses.size(); i++) {
+			if (get(closure.get(i), i)) cyclic.add(courses.get(i));
+		}
+		return cyclic;
+	}
+
+	/**
+	 * Adds a prerequisite to a course unless the prerequisite needs the course, directly or through its own
+	 * prerequisites. The check, the change of the course and the update of the closures are done under the lock
+	 * of the graph, so two courses are never made prerequisites of each other at once.
+	 * @param c - course.
+	 * @param prerequisite - new prerequisite.
+	 * @param add - adds the prerequisite to the course, {@code false} if the course already has it.
+	 * @return {@code true} if the prerequisite was added.
+	 */
+	public boolean add(Course c, Course prerequisite, BooleanSupplier add) {
+		synchronized (this) {
+			if (!dropped) {
+				if (c == prerequisite || requires(prerequisite, c) || !add.getAsBoolean()) return false;
+				added(c, prerequisite);
+				return true;
+			}
+		}
+		return data.getPrerequisiteGraph().add(c, prerequisite, add);
+	}
+
+	/**
+	 * Replaces the prerequisites of a course unless one of them needs the course, then drops the graph.
+	 * @param c - course.
+	 * @param prerequisites - new prerequisites, may be {@code null}.
+	 * @param replace - sets the prerequisites of the course.
+	 * @return {@code true} if the prerequisites were replaced.
+	 */
+	public boolean replace(Course c, Collection<Course> prerequisites, Runnable replace) {
+		synchronized (this) {
+			if (!dropped) {
+				if (prerequisites != null) {
+					for (Course p : prerequisites) {
+						if (p == c || requires(p, c)) return false;
+					}
+				}
+				replace.run();
+				drop();
+				return true;
+			}
+		}
+		return data.getPrerequisiteGraph().replace(c, prerequisites, replace);
+	}
+
+	/**
+	 * Removes a prerequisite of a course, then drops the graph.
+	 * @param remove - removes the prerequisite from the course, {@code false} if the course does not have it.
+	 * @return {@code true} if the prerequisite was removed.
+	 */
+	public boolean remove(BooleanSupplier remove) {
+		synchronized (this) {
+			if (!dropped) {
+				if (!remove.getAsBoolean()) return false;
+				drop();
+				return true;
+			}
+		}
+		return data.getPrerequisiteGraph().remove(remove);
+	}
+
+	/**
+	 * Stops the graph from taking changes. The graph is built again from the courses on next access,
+	 * after the change that dropped it.
+	 */
+	private void drop() {
+		dropped = true;
+		data.prerequisiteGraphDropped(this);
+	}
+
+	/**
+	 * Adds a prerequisite that was added to a course. It is also added to the closure of every course
+	 * that needs the course.
+	 */
+	private void added(Course c, Course prerequisite) {
+		int from = id(c);
+		int to = id(prerequisite);
+		direct.set(from, set(direct.get(from), to));
+		dependents = null;
+		long[] reached = set(or(closure.get(from), closure.get(to)), to);
+		for (int i = 0; i < closure.size(); i++) {
+			if (i == from || get(closure.get(i), from)) closure.set(i, or(closure.get(i), reached));
+		}
+	}
+
+	/**
+	 * Drops the encoded completed courses of a student after they changed.
+	 */
+	synchronized void completedChanged(Student s) {
+		completed.remove(s);
+		completedVersion++;
+	}
+
+	/**
+	 * Completed courses of a student as a bitset. They are read under the lock of the student without holding
+	 * the lock of the graph, the bitset is kept only if no completed courses changed meanwhile.
+	 */
+	private long[] completed(Student s) {
+		long version;
+		synchronized (this) {
+			long[] bits = completed.get(s);
+			if (bits != null) return bits;
+			version = completedVersion;
+		}
+		List<Course> done = new ArrayList<>();
+		LockStripes.Guard guard = data.lock(s);
+		try {
+			for (RegisteredCourse r : s.getCompletedCourses()) done.add(r.getCourse());
+		} finally {
+			guard.close();
+		}
+		synchronized (this) {
+			long[] bits = encode(done);
+			if (version == completedVersion) completed.put(s, bits);
+			return bits;
+		}
+	}
+
+	private long[] encode(Collection<Course> done) {
+		int[] numbers = new int[done.size()];
+		int max = -1;
+		int n = 0;
+		for (Course c : done) {
+			numbers[n] = id(c);
+			max = Math.max(max, numbers[n++]);
+		}
+		if (max < 0) return NONE;
+		long[] bits = new long[(max >>> 6) + 1];
+		for (int i = 0; i < n; i++) bits[numbers[i] >>> 6] |= 1L << numbers[i];
+		return bits;
+	}
+
+	/**
+	 * Number of a course, the course and its prerequisites are added first if they are new.
+	 * Prerequisites are added depth first, a prerequisite met again on the current path closes a cycle,
+	 * then the closures are completed by going over the courses until nothing changes.
+	 */
+	private int id(Course c) {
+		Integer id = ids.get(c);
+		if (id != null) return id;
+		boolean[] cycle = new boolean[1];
+		int added = visit(c, new IdentityHashMap<>(), cycle);
+		if (cycle[0]) {
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int i = 0; i < courses.size(); i++) {
+					long[] bits = closure.get(i);
+					long[] more = bits;
+					long[] edges = direct.get(i);
+					for (int j = nextSet(edges, 0); j >= 0; j = nextSet(edges, j + 1)) more = or(more, closure.get(j));
+					if (!Arrays.equals(bits, more)) {
+						closure.set(i, more);
+						changed = true;
+					}
+				}
+			}
+		}
+		return added;
+	}
+
+	private int visit(Course c, IdentityHashMap<Course, Boolean> path, boolean[] cycle) {
+		Integer known = ids.get(c);
+		if (known != null) {
+			if (path.containsKey(c)) cycle[0] = true;
+			return known;
+		}
+		int id = courses.size();
+		ids.put(c, id);
+		courses.add(c);
+		direct.add(NONE);
+		closure.add(NONE);
+		path.put(c, true);
+		long[] edges = NONE;
+		long[] reached = NONE;
+		if (c.getPrerequisites() != null) {
+			for (Course p : new ArrayList<>(c.getPrerequisites())) {
+				int to = visit(p, path, cycle);
+				edges = set(edges, to);
+				reached = set(or(reached, closure.get(to)), to);
+			}
+		}
+		path.remove(c);
+		direct.set(id, edges);
+		closure.set(id, reached);
+		return id;
+	}
+
+	/**
+	 * Checks that every bit of the required set is in the done set, a word at a time.
+	 */
+	private static boolean covers(long[] done, long[] required) {
+		for (int i = 0; i < required.length; i++) {
+			long have = i < done.length ? done[i] : 0;
+			if ((required[i] & ~have) != 0) return false;
+		}
+		return true;
+	}
+
+	private static boolean get(long[] bits, int i) {
+		int word = i >>> 6;
+		return word < bits.length && (bits[word] & 1L << i) != 0;
+	}
+
+	private static long[] set(long[] bits, int i) {
+		int word = i >>> 6;
+		long[] result = Arrays.copyOf(bits, Math.max(bits.length, word + 1));
+		result[word] |= 1L << i;
+		return result;
+	}
+
+	private static long[] or(long[] a, long[] b) {
+		if (b.length > a.length) {
+			long[] t = a;
+			a = b;
+			b = t;
+		}
+		long[] result = a.clone();
+		for (int i = 0; i < b.length; i++) result[i] |= b[i];
+		return result;
+	}
+
+	private static int nextSet(long[] bits, int from) {
+		int word = from >>> 6;
+		if (word >= bits.length) return -1;
+		long w = bits[word] & -1L << from;
+		while (true) {
+			if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+			if (++word >= bits.length) return -1;
+			w = bits[word];
+		}
+	}
+}
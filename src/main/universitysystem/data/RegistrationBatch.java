@@ -0,0 +1,293 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.CourseType;
+import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.Manager;
+import universitysystem.entity.Student;
+import universitysystem.utills.Notification;
+import universitysystem.utills.RegistrationRequest;
+import universitysystem.utills.RegistrationType;
+import universitysystem.utills.RequestStatus;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Considers all pending registration requests at once instead of one by one.
+ * The requests are grouped by course and checked in parallel against the prerequisites and the faculties
+ * of the course, every course and every student is looked at once per batch. Then drops are applied first,
+ * so the seats and credits they free can be used by adds, and the seats of the courses are allocated
+ * to the adds by the {@link SeatAllocator}, within {@link Course#getCapacity()} and {@link Student#getMaxCredits()}.
+ * A request that finds its course full stays pending on the waitlist of the course and takes part in the next batch.
+ * It gets a waitlist ticket, so the next batch serves it before the new requests and the place the student is told
+ * is the place the request keeps.
+ * All statuses are changed by one journal entry and every student gets one notification about all of their requests.
+ * Requests sent while the batch runs stay pending for the next batch.
+ * Batches run one at a time and a manager does not consider a single request while a batch runs, so a request
+ * is decided once. Every seat is counted again under the lock of its course right before it is taken,
+ * so a course is never filled over its capacity.
+ */
+public class RegistrationBatch
+{
+	private static final Object running = new Object();
+	private final int total;
+	private int approved;
+	private int rejected;
+	private int waitlisted;
+	private int notified;
+	private SeatAllocator allocator;
+	private final long started = System.nanoTime();
+	private long finished;
+
+	private RegistrationBatch(int total) {
+		this.total = total;
+	}
+
+	/**
+	 * Considers all pending registration requests, the lottery of the seats is drawn from the current term.
+	 * @param data - data with the requests.
+	 * @return the finished batch.
+	 */
+	public static RegistrationBatch run(Data data) {
+		return run(data, data.getTerm());
+	}
+
+	/**
+	 * Considers all pending registration requests.
+	 * @param data - data with the requests.
+	 * @param seed - seed of the lottery of the seats, the same requests with the same seed get the same seats.
+	 * @return the finished batch.
+	 */
+	public static RegistrationBatch run(Data data, long seed) {
+		synchronized (running) {
+			List<RegistrationRequest> requests = new ArrayList<>();
+			for (RegistrationRequest r : data.getRequestIndex().get(RequestStatus.SHIPPED)) {
+				if (r.getSender() instanceof Student && r.getCourse() != null) requests.add(r);
+			}
+			RegistrationBatch batch = new RegistrationBatch(requests.size());
+			batch.apply(data, requests, batch.check(data, requests), seed);
+			batch.finished = System.nanoTime();
+			return batch;
+		}
+	}
+
+	/**
+	 * Considers a single registration request while no batch runs.
+	 * @param r - request.
+	 * @param decision - decides the request, called only if the request is still pending.
+	 * @return result of the decision, or whether the request was approved if it was already decided.
+	 */
+	public static boolean considerAlone(RegistrationRequest r, Predicate<RegistrationRequest> decision) {
+		synchronized (running) {
+			if (r.getStatus() != RequestStatus.SHIPPED) return r.getStatus() == RequestStatus.DONE;
+			return decision.test(r);
+		}
+	}
+
+	/**
+	 * Checks the requests to add a course.
+	 * @return type of the course for every request, {@code null} if the request is rejected or is a drop.
+	 */
+	private CourseType[] check(Data data, List<RegistrationRequest> requests) {
+		IdentityHashMap<Student, Integer> index = new IdentityHashMap<>();
+		List<Student> students = new ArrayList<>();
+		int[] studentOf = new int[requests.size()];
+		HashMap<Course, List<Integer>> byCourse = new HashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			RegistrationRequest r = requests.get(i);
+			if (r.getRegistrationType() == RegistrationType.DROP) continue;
+			Student s = (Student) r.getSender();
+			Integer n = index.get(s);
+			if (n == null) {
+				n = students.size();
+				index.put(s, n);
+				students.add(s);
+			}
+			studentOf[i] = n;
+			byCourse.computeIfAbsent(r.getCourse(), c -> new ArrayList<>()).add(i);
+		}
+		PrerequisiteGraph graph = data.getPrerequisiteGraph();
+		List<Taken> taken = IntStream.range(0, students.size()).parallel().mapToObj(i -> {
+			Student s = students.get(i);
+			LockStripes.Guard guard = data.lock(s);
+			try {
+				Taken courses = new Taken(new HashSet<>(), new HashSet<>());
+				for (RegisteredCourse r : s.getCompletedCourses()) courses.completed.add(r.getCourse());
+				for (RegisteredCourse r : s.getCurrentCourses()) courses.current.add(r.getCourse());
+				return courses;
+			} finally {
+				guard.close();
+			}
+		}).toList();
+		CourseType[] types = new CourseType[requests.size()];
+		byCourse.entrySet().parallelStream().forEach(group -> {
+			Course c = group.getKey();
+			for (int i : group.getValue()) {
+				Taken courses = taken.get(studentOf[i]);
+				// a course that is taken or completed is not added again
+				if (courses.current.contains(c) || courses.completed.contains(c)) continue;
+				if (!graph.isEligible(students.get(studentOf[i]), c)) continue;
+				types[i] = Manager.courseTypeFor(students.get(studentOf[i]), c);
+			}
+		});
+		return types;
+	}
+
+	private void apply(Data data, List<RegistrationRequest> requests, CourseType[] types, long seed) {
+		RequestStatus[] statuses = new RequestStatus[requests.size()];
+		for (int i = 0; i < requests.size(); i++) {
+			RegistrationRequest r = requests.get(i);
+			if (r.getRegistrationType() != RegistrationType.DROP) continue;
+			boolean ok = data.journal(new JournalEntry.DropCourse((Student) r.getSender(), r.getCourse()));
+			statuses[i] = ok ? RequestStatus.DONE : RequestStatus.REFUSED;
+		}
+		allocator = new SeatAllocator(seed,
+				c -> data.getEnrollments().getFreeSeats(c),
+				s -> {
+					LockStripes.Guard guard = data.lock(s);
+					try {
+						return s.getCredits(s.getCurrentCourses());
+					} finally {
+						guard.close();
+					}
+				});
+		for (int i : allocator.allocate(requests, types, statuses)) {
+			RegistrationRequest r = requests.get(i);
+			statuses[i] = take(data, (Student) r.getSender(), r.getCourse(), types[i]);
+			if (statuses[i] == RequestStatus.SHIPPED) allocator.waitlist(i);
+		}
+		List<RegistrationRequest> queued = allocator.getWaitlisted().stream().filter(r -> r.getWaitlistTicket() == 0).toList();
+		if (!queued.isEmpty()) {
+			int[] tickets = new int[queued.size()];
+			for (int i = 0; i < tickets.length; i++) tickets[i] = data.nextId(IdSequence.WAITLIST);
+			data.journal(new JournalEntry.SetWaitlistTickets(queued, tickets));
+		}
+		// the rest was found not eligible by check()
+		for (int i = 0; i < statuses.length; i++) {
+			if (statuses[i] == null) statuses[i] = RequestStatus.REFUSED;
+		}
+		List<RegistrationRequest> decided = new ArrayList<>();
+		List<RequestStatus> decisions = new ArrayList<>();
+		IdentityHashMap<Student, Integer> senders = new IdentityHashMap<>();
+		List<StringBuilder[]> texts = new ArrayList<>();
+		for (int i = 0; i < requests.size(); i++) {
+			RegistrationRequest r = requests.get(i);
+			int kind = switch (statuses[i]) {
+				case DONE -> 0;
+				case REFUSED -> 1;
+				case SHIPPED -> 2;
+			};
+			if (kind == 0) approved++;
+			else if (kind == 1) rejected++;
+			else waitlisted++;
+			if (kind != 2) {
+				decided.add(r);
+				decisions.add(statuses[i]);
+			}
+			Integer n = senders.get((Student) r.getSender());
+			if (n == null) {
+				n = texts.size();
+				senders.put((Student) r.getSender(), n);
+				texts.add(new StringBuilder[3]);
+			}
+			StringBuilder[] text = texts.get(n);
+			if (text[kind] == null) text[kind] = new StringBuilder();
+			else text[kind].append(", ");
+			text[kind].append(r.getCourse().getCode());
+			if (kind == 2 && allocator.getWaitlistPosition(i) > 0) text[kind].append(" (№ ").append(allocator.getWaitlistPosition(i)).append(")");
+		}
+		if (!decided.isEmpty()) data.journal(new JournalEntry.SetRequestStatuses(decided, decisions));
+		for (Map.Entry<Student, Integer> sender : senders.entrySet()) {
+			StringBuilder[] text = texts.get(sender.getValue());
+			StringJoiner message = new StringJoiner(". ", "", ".");
+			if (text[0] != null) message.add("Приняты: " + text[0]);
+			if (text[1] != null) message.add("Отклонены: " + text[1]);
+			if (text[2] != null) message.add("В листе ожидания: " + text[2]);
+			data.journal(new JournalEntry.AddNotification(sender.getKey(), new Notification("Заявки на регистрацию курсов", message.toString())));
+			notified++;
+		}
+	}
+
+	/**
+	 * Takes the seat the allocator gave to a request, if the course and the credits of the student still allow it.
+	 * @return {@link RequestStatus#DONE} if the seat is taken, {@link RequestStatus#SHIPPED} if the course is full
+	 * and {@link RequestStatus#REFUSED} if the student can not take the course.
+	 */
+	private static RequestStatus take(Data data, Student s, Course c, CourseType type) {
+		LockStripes.Guard guard = data.lock(s, c);
+		try {
+			if (data.getEnrollments().getFreeSeats(c) <= 0) return RequestStatus.SHIPPED;
+			if (s.getCredits(s.getCurrentCourses()) + c.getCredits() > Student.getMaxCredits()) return RequestStatus.REFUSED;
+			return data.journal(new JournalEntry.AddCurrentCourse(s, new RegisteredCourse(c, type))) ? RequestStatus.DONE : RequestStatus.REFUSED;
+		} finally {
+			guard.close();
+		}
+	}
+
+	/**
+	 * Returns the requests of a course that got no seat in this batch, first in line first.
+	 * They stay pending and are served first by the next batch, in this order.
+	 * @param c - course.
+	 */
+	public List<RegistrationRequest> getWaitlist(Course c) {
+		return allocator == null ? List.of() : allocator.getWaitlist(c);
+	}
+
+	/**
+	 * Courses of a student when the batch started.
+	 */
+	private record Taken(Set<Course> completed, Set<Course> current)
+	{
+	}
+
+	/**
+	 * Number of requests that were considered.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	public int getApproved() {
+		return approved;
+	}
+
+	public int getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Number of requests that got no seat and stay pending.
+	 */
+	public int getWaitlisted() {
+		return waitlisted;
+	}
+
+	/**
+	 * Number of students that were notified.
+	 */
+	public int getNotified() {
+		return notified;
+	}
+
+	public long getMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(finished - started);
+	}
+
+	/**
+	 * Number of requests considered per second.
+	 */
+	public double getThroughput() {
+		long nanos = Math.max(1, finished - started);
+		return total * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "Заявок рассмотрено: " + total + " (принято " + approved + ", отклонено " + rejected
+				+ ", в листе ожидания " + waitlisted + "), уведомлено студентов: " + notified + ", " + getMillis() + " мс, "
+				+ Math.round(getThroughput()) + " заявок/с";
+	}
+}
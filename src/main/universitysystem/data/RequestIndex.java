@@ -0,0 +1,152 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.entity.User;
+import universitysystem.utills.RegistrationRequest;
+import universitysystem.utills.RequestStatus;
+
+import java.util.*;
+
+/**
+ * Indexes of the registration requests of {@link Data} by sender and course, by sender and status,
+ * by status and by id, so a student's requests and the pending requests are found without scanning all requests.
+ * The index is not stored: it is built from {@link Data#getRegistrationRequests()} on first access and then kept
+ * up to date when a request is added and by the setters of the status and the course of a request.
+ * It is dropped together with the requests when their shard is unloaded.
+ * Requests, senders and courses are compared by identity, because their hash codes depend on mutable fields.
+ * Every list returned is in the order the requests were sent.
+ */
+public class RequestIndex
+{
+	private final IdentityHashMap<RegistrationRequest, Long> order = new IdentityHashMap<>();
+	private final IdentityHashMap<User, IdentityHashMap<Course, Integer>> bySenderAndCourse = new IdentityHashMap<>();
+	private final IdentityHashMap<User, EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>>> bySenderAndStatus = new IdentityHashMap<>();
+	private final EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> byStatus = new EnumMap<>(RequestStatus.class);
+	private final HashMap<Long, RegistrationRequest> byId = new HashMap<>();
+	private long sequence;
+
+	RequestIndex(Iterable<RegistrationRequest> requests) {
+		for (RegistrationRequest r : requests) add(r);
+	}
+
+	/**
+	 * Adds a request to the indexes.
+	 * @param r - request to be added.
+	 */
+	synchronized void add(RegistrationRequest r) {
+		if (order.containsKey(r)) return;
+		long seq = sequence++;
+		order.put(r, seq);
+		put(r, seq);
+	}
+
+	/**
+	 * Removes the request from the indexes, changes an indexed field and adds the request back.
+	 * A request that is not indexed is only changed.
+	 * @param r - request to be changed.
+	 * @param change - change of the status or the course.
+	 */
+	public synchronized void update(RegistrationRequest r, Runnable change) {
+		Long seq = order.get(r);
+		if (seq != null) take(r, seq);
+		change.run();
+		if (seq != null) put(r, seq);
+	}
+
+	/**
+	 * Checks whether the user has sent a request for the course, whatever its status.
+	 */
+	public synchronized boolean contains(User sender, Course c) {
+		IdentityHashMap<Course, Integer> courses = bySenderAndCourse.get(sender);
+		return courses != null && courses.containsKey(c);
+	}
+
+	/**
+	 * Returns all requests of the user.
+	 */
+	public synchronized List<RegistrationRequest> get(User sender) {
+		EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> statuses = bySenderAndStatus.get(sender);
+		if (statuses == null) return List.of();
+		TreeMap<Long, RegistrationRequest> all = new TreeMap<>();
+		statuses.values().forEach(all::putAll);
+		return List.copyOf(all.values());
+	}
+
+	/**
+	 * Returns the requests of the user with the status.
+	 */
+	public synchronized List<RegistrationRequest> get(User sender, RequestStatus status) {
+		EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> statuses = bySenderAndStatus.get(sender);
+		if (statuses == null || !statuses.containsKey(status)) return List.of();
+		return List.copyOf(statuses.get(status).values());
+	}
+
+	/**
+	 * Checks whether the user has a request with the status.
+	 */
+	public synchronized boolean contains(User sender, RequestStatus status) {
+		EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> statuses = bySenderAndStatus.get(sender);
+		return statuses != null && statuses.containsKey(status);
+	}
+
+	/**
+	 * Returns the requests with the status.
+	 */
+	public synchronized List<RegistrationRequest> get(RequestStatus status) {
+		TreeMap<Long, RegistrationRequest> requests = byStatus.get(status);
+		return requests == null ? List.of() : List.copyOf(requests.values());
+	}
+
+	/**
+	 * Finds a request by its id and the time it was sent, ids of requests sent in different years may repeat.
+	 * @return the request, {@code null} if there is none.
+	 */
+	public synchronized RegistrationRequest find(int id, long date) {
+		RegistrationRequest r = byId.get(key(id, date));
+		return r != null && r.getId() == id && r.getDate().getTime() == date ? r : null;
+	}
+
+	public synchronized int size() {
+		return order.size();
+	}
+
+	private void put(RegistrationRequest r, long seq) {
+		if (r.getSender() != null && r.getCourse() != null) {
+			bySenderAndCourse.computeIfAbsent(r.getSender(), n -> new IdentityHashMap<>()).merge(r.getCourse(), 1, Integer::sum);
+		}
+		if (r.getStatus() != null) {
+			if (r.getSender() != null) {
+				bySenderAndStatus.computeIfAbsent(r.getSender(), n -> new EnumMap<>(RequestStatus.class))
+						.computeIfAbsent(r.getStatus(), n -> new TreeMap<>()).put(seq, r);
+			}
+			byStatus.computeIfAbsent(r.getStatus(), n -> new TreeMap<>()).put(seq, r);
+		}
+		if (r.getDate() != null) byId.putIfAbsent(key(r.getId(), r.getDate().getTime()), r);
+	}
+
+	private void take(RegistrationRequest r, long seq) {
+		IdentityHashMap<Course, Integer> courses = bySenderAndCourse.get(r.getSender());
+		if (courses != null && r.getCourse() != null) {
+			courses.computeIfPresent(r.getCourse(), (c, n) -> n > 1 ? n - 1 : null);
+			if (courses.isEmpty()) bySenderAndCourse.remove(r.getSender());
+		}
+		EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> statuses = bySenderAndStatus.get(r.getSender());
+		if (statuses != null && r.getStatus() != null) {
+			remove(statuses, r.getStatus(), seq);
+			if (statuses.isEmpty()) bySenderAndStatus.remove(r.getSender());
+		}
+		if (r.getStatus() != null) remove(byStatus, r.getStatus(), seq);
+		if (r.getDate() != null) byId.remove(key(r.getId(), r.getDate().getTime()), r);
+	}
+
+	private static void remove(EnumMap<RequestStatus, TreeMap<Long, RegistrationRequest>> index, RequestStatus status, long seq) {
+		TreeMap<Long, RegistrationRequest> requests = index.get(status);
+		if (requests == null) return;
+		requests.remove(seq);
+		if (requests.isEmpty()) index.remove(status);
+	}
+
+	private static long key(int id, long date) {
+		return (long) id << 32 ^ date;
+	}
+}
@@ -0,0 +1,194 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.courses.CourseType;
+import universitysystem.entity.Student;
+import universitysystem.utills.RegistrationRequest;
+import universitysystem.utills.RequestStatus;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Allocates the free seats of courses to the requests of one registration window, so the order in which
+ * requests arrived does not decide who gets a seat in a popular course.
+ * Seats are handed out in rounds. In every round each student takes part with their next request in the order
+ * the requests were sent, so every student gets a first course before anyone gets a second one.
+ * Within a round the requests for a course are ordered by the type of the course for the student
+ * (major, then minor, then free elective), by year of study, older years first, and then by a lottery number
+ * drawn for the student from the seed of the window, so the same window always gives the same allocation.
+ * A request that finds its course full is put on the waitlist of the course in the order it was reached.
+ * A request that is already on a waitlist keeps its place: before the rounds the waitlisted requests of every course
+ * are served in the order of their {@link RegistrationRequest#getWaitlistTicket() tickets}, and the new requests
+ * that find the course full are put on the waitlist after them.
+ */
+class SeatAllocator
+{
+	private final long seed;
+	private final ToIntFunction<Course> freeSeats;
+	private final ToIntFunction<Student> takenCredits;
+	private final IdentityHashMap<Course, int[]> seats = new IdentityHashMap<>();
+	private final IdentityHashMap<Student, int[]> credits = new IdentityHashMap<>();
+	private final IdentityHashMap<Course, List<Integer>> waitlists = new IdentityHashMap<>();
+	private List<RegistrationRequest> requests = List.of();
+	private int[] positions;
+
+	/**
+	 * @param seed - seed of the lottery.
+	 * @param freeSeats - number of free seats of a course, asked once per course.
+	 * @param takenCredits - credits of the courses a student takes, asked once per student.
+	 */
+	SeatAllocator(long seed, ToIntFunction<Course> freeSeats, ToIntFunction<Student> takenCredits) {
+		this.seed = seed;
+		this.freeSeats = freeSeats;
+		this.takenCredits = takenCredits;
+	}
+
+	/**
+	 * Allocates seats to the requests to add a course.
+	 * @param requests - requests of the window in the order they were sent.
+	 * @param types - type of the course for every request that may get a seat, {@code null} for the others,
+	 *              which are left alone.
+	 * @param statuses - receives {@link RequestStatus#DONE} for a request that got a seat, {@link RequestStatus#REFUSED}
+	 *                 for one over the credit limit and {@link RequestStatus#SHIPPED} for a waitlisted one.
+	 * @return requests that got a seat, in the order the seats were given.
+	 */
+	List<Integer> allocate(List<RegistrationRequest> requests, CourseType[] types, RequestStatus[] statuses) {
+		this.requests = requests;
+		positions = null;
+		List<Integer> approved = new ArrayList<>();
+		// requests that are already waitlisted are served first, first in line first
+		List<Integer> waiting = new ArrayList<>();
+		for (int i = 0; i < requests.size(); i++) {
+			if (types[i] != null && requests.get(i).getWaitlistTicket() > 0) waiting.add(i);
+		}
+		waiting.sort(Comparator.comparingInt(i -> requests.get(i).getWaitlistTicket()));
+		for (int i : waiting) seat(i, statuses, approved);
+		// students and courses are compared by identity, their hash codes depend on mutable fields
+		IdentityHashMap<Student, ArrayDeque<Integer>> byStudent = new IdentityHashMap<>();
+		List<ArrayDeque<Integer>> queues = new ArrayList<>();
+		IdentityHashMap<Student, Long> lottery = new IdentityHashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			if (types[i] == null || requests.get(i).getWaitlistTicket() > 0) continue;
+			Student s = (Student) requests.get(i).getSender();
+			ArrayDeque<Integer> queue = byStudent.get(s);
+			if (queue == null) {
+				queue = new ArrayDeque<>();
+				byStudent.put(s, queue);
+				queues.add(queue);
+				lottery.put(s, draw(s));
+			}
+			queue.add(i);
+		}
+		Comparator<Integer> priority = Comparator
+				.comparing((Integer i) -> types[i])
+				.thenComparing(i -> -((Student) requests.get(i).getSender()).getYearOfStudy())
+				.thenComparing(i -> lottery.get((Student) requests.get(i).getSender()))
+				.thenComparing(i -> i);
+		while (!queues.isEmpty()) {
+			IdentityHashMap<Course, List<Integer>> round = new IdentityHashMap<>();
+			List<Course> courses = new ArrayList<>();
+			List<ArrayDeque<Integer>> next = new ArrayList<>(queues.size());
+			for (ArrayDeque<Integer> queue : queues) {
+				int i = queue.poll();
+				Course c = requests.get(i).getCourse();
+				List<Integer> candidates = round.get(c);
+				if (candidates == null) {
+					candidates = new ArrayList<>();
+					round.put(c, candidates);
+					courses.add(c);
+				}
+				candidates.add(i);
+				if (!queue.isEmpty()) next.add(queue);
+			}
+			queues = next;
+			for (Course c : courses) {
+				List<Integer> candidates = round.get(c);
+				candidates.sort(priority);
+				for (int i : candidates) seat(i, statuses, approved);
+			}
+		}
+		return approved;
+	}
+
+	/**
+	 * Gives a request a seat of its course, or puts it on the waitlist if the course is full.
+	 */
+	private void seat(int i, RequestStatus[] statuses, List<Integer> approved) {
+		Course c = requests.get(i).getCourse();
+		Student s = (Student) requests.get(i).getSender();
+		int[] free = seats.computeIfAbsent(c, n -> new int[]{freeSeats.applyAsInt(n)});
+		int[] taken = credits.computeIfAbsent(s, n -> new int[]{takenCredits.applyAsInt(n)});
+		if (taken[0] + c.getCredits() > Student.getMaxCredits()) {
+			statuses[i] = RequestStatus.REFUSED;
+		} else if (free[0] <= 0) {
+			statuses[i] = RequestStatus.SHIPPED;
+			waitlist(i);
+		} else {
+			statuses[i] = RequestStatus.DONE;
+			free[0]--;
+			taken[0] += c.getCredits();
+			approved.add(i);
+		}
+	}
+
+	/**
+	 * Puts a request on the waitlist of its course, also one whose seat was taken after it was given.
+	 * A request with a ticket goes before the requests with a later ticket and the requests without one,
+	 * a request without a ticket goes to the end.
+	 * @param i - index of the request in the window.
+	 */
+	void waitlist(int i) {
+		List<Integer> waitlist = waitlists.computeIfAbsent(requests.get(i).getCourse(), n -> new ArrayList<>());
+		int place = waitlist.size();
+		while (place > 0 && ticket(waitlist.get(place - 1)) > ticket(i)) place--;
+		waitlist.add(place, i);
+		positions = null;
+	}
+
+	private long ticket(int i) {
+		int ticket = requests.get(i).getWaitlistTicket();
+		return ticket > 0 ? ticket : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the waitlisted requests of all courses, every course first in line first.
+	 */
+	List<RegistrationRequest> getWaitlisted() {
+		List<RegistrationRequest> waitlisted = new ArrayList<>();
+		for (List<Integer> waitlist : waitlists.values()) {
+			for (int i : waitlist) waitlisted.add(requests.get(i));
+		}
+		return waitlisted;
+	}
+
+	/**
+	 * Returns the waitlisted requests of a course, first in line first.
+	 */
+	List<RegistrationRequest> getWaitlist(Course c) {
+		return waitlists.getOrDefault(c, List.of()).stream().map(requests::get).toList();
+	}
+
+	/**
+	 * Returns the place of a waitlisted request on the waitlist of its course.
+	 * @param request - index of the request in the window.
+	 * @return place starting from {@code 1}, {@code 0} if the request is not waitlisted.
+	 */
+	int getWaitlistPosition(int request) {
+		if (positions == null) {
+			positions = new int[requests.size()];
+			for (List<Integer> waitlist : waitlists.values()) {
+				for (int n = 0; n < waitlist.size(); n++) positions[waitlist.get(n)] = n + 1;
+			}
+		}
+		return positions[request];
+	}
+
+	private long draw(Student s) {
+		// SplitMix64 finalizer of the seed and the id, the same student draws the same number in the same window
+		long z = seed * 0x9E3779B97F4A7C15L + Objects.hashCode(s.getId());
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
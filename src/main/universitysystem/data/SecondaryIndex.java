@@ -0,0 +1,100 @@
+package universitysystem.data;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Index of objects of one type by the value of one of their fields.
+ * Objects are kept in buckets by key, so a query returns a bucket instead of filtering the whole collection.
+ * Buckets compare objects by identity, because the hash codes of the model classes depend on mutable fields.
+ * The index is not thread-safe, {@link UserRegistry} guards it with its own lock.
+ * @param <K> - type of the key.
+ * @param <V> - type of the indexed objects.
+ */
+public class SecondaryIndex<K, V>
+{
+	private final Class<V> type;
+	private final Function<? super V, ? extends K> key;
+	private final Map<K, Set<V>> buckets;
+
+	private SecondaryIndex(Class<V> type, Function<? super V, ? extends K> key, Map<K, Set<V>> buckets) {
+		this.type = type;
+		this.key = key;
+		this.buckets = buckets;
+	}
+
+	/**
+	 * Creates an index by an enum field, backed by an {@link EnumMap}.
+	 * @param keyType - enum class of the key.
+	 * @param type - class of the indexed objects, objects of other classes are ignored.
+	 * @param key - returns the key of an object, {@code null} keys are not indexed.
+	 */
+	static <K extends Enum<K>, V> SecondaryIndex<K, V> byEnum(Class<K> keyType, Class<V> type, Function<? super V, K> key) {
+		return new SecondaryIndex<>(type, key, new EnumMap<>(keyType));
+	}
+
+	/**
+	 * Creates an index by an int field.
+	 * @param type - class of the indexed objects, objects of other classes are ignored.
+	 * @param key - returns the key of an object.
+	 */
+	static <V> SecondaryIndex<Integer, V> byInt(Class<V> type, Function<? super V, Integer> key) {
+		return new SecondaryIndex<>(type, key, new HashMap<>());
+	}
+
+	/**
+	 * Creates an index by a referenced object, keys are compared by identity.
+	 * @param type - class of the indexed objects, objects of other classes are ignored.
+	 * @param key - returns the key of an object, {@code null} keys are not indexed.
+	 */
+	static <K, V> SecondaryIndex<K, V> byIdentity(Class<V> type, Function<? super V, K> key) {
+		return new SecondaryIndex<>(type, key, new IdentityHashMap<>());
+	}
+
+	void add(Object o) {
+		if (!type.isInstance(o)) return;
+		V value = type.cast(o);
+		K k = key.apply(value);
+		if (k == null) return;
+		buckets.computeIfAbsent(k, n -> Collections.newSetFromMap(new IdentityHashMap<>())).add(value);
+	}
+
+	/**
+	 * Removes an object. Must be called before the indexed field changes, while the object is still in its bucket.
+	 */
+	void remove(Object o) {
+		if (!type.isInstance(o)) return;
+		K k = key.apply(type.cast(o));
+		if (k == null) return;
+		Set<V> bucket = buckets.get(k);
+		if (bucket == null) return;
+		bucket.remove(o);
+		if (bucket.isEmpty()) buckets.remove(k);
+	}
+
+	/**
+	 * Returns a copy of the bucket of the key.
+	 * @param k - key.
+	 * @return objects with the key, empty list if there are none.
+	 */
+	List<V> get(K k) {
+		Set<V> bucket = buckets.get(k);
+		return bucket == null ? List.of() : List.copyOf(bucket);
+	}
+
+	/**
+	 * Returns the first object of the bucket of the key.
+	 */
+	V first(K k) {
+		Set<V> bucket = buckets.get(k);
+		return bucket == null ? null : bucket.iterator().next();
+	}
+
+	/**
+	 * Returns the number of objects with the key.
+	 */
+	int count(K k) {
+		Set<V> bucket = buckets.get(k);
+		return bucket == null ? 0 : bucket.size();
+	}
+}
@@ -0,0 +1,191 @@
+package universitysystem.data;
+
+import universitysystem.entity.Student;
+import universitysystem.entity.Teacher;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Moves students and teachers to the next semester in parallel on a fork-join pool of its own. Every part
+ * waits for locks and journal writes, so the rollover does not take the threads of the common pool from
+ * the parallel streams of the sessions.
+ * Users are split into parts of at most {@value #THRESHOLD}, every user is changed by its own journal entry,
+ * so sessions keep working while the rollover runs and only the changed student is locked.
+ * Every student stores the last term that was ended, so a rollover that was interrupted
+ * can be run again and only finishes the students that were not moved yet.
+ */
+public class SemesterRollover
+{
+	private static final int THRESHOLD = 64;
+	private static final long REPORT_MILLIS = 500;
+	private final int term;
+	private final boolean newYear;
+	private final int total;
+	private final AtomicInteger done = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private Throwable error;
+	private final long started = System.nanoTime();
+	private volatile long finished;
+
+	private SemesterRollover(int term, boolean newYear, int total) {
+		this.term = term;
+		this.newYear = newYear;
+		this.total = total;
+	}
+
+	/**
+	 * Moves all students and teachers out of the term. Waits until they are moved.
+	 * @param term - number of the ended term, see {@link Data#getTerm()}.
+	 * @param newYear - whether the term ends the academic year.
+	 * @param progress - called on the calling thread about every {@value #REPORT_MILLIS} ms and at the end,
+	 *                 may be {@code null}.
+	 * @return the rollover, a failure of a user or of the whole rollover is returned by {@link #getError()}.
+	 */
+	static SemesterRollover run(Data data, int term, boolean newYear, Consumer<SemesterRollover> progress) {
+		Object[] users = Stream.concat(data.getStudents().stream(), data.getTeachers().stream()).toArray();
+		SemesterRollover rollover = new SemesterRollover(term, newYear, users.length);
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("rollover-" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+		try {
+			ForkJoinTask<Void> task = pool.submit(rollover.new Part(users, 0, users.length));
+			while (true) {
+				try {
+					task.get(REPORT_MILLIS, TimeUnit.MILLISECONDS);
+					break;
+				} catch (TimeoutException e) {
+					if (progress != null) progress.accept(rollover);
+				} catch (InterruptedException e) {
+					// the parts already submitted go on in the pool, the next call finishes whatever they did not reach
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					rollover.fail(e.getCause());
+					// parts that were not started are dropped, the ones that run are waited for, so the counts are final
+					pool.shutdownNow();
+					awaitTermination(pool);
+					break;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		rollover.finished = System.nanoTime();
+		if (progress != null) progress.accept(rollover);
+		return rollover;
+	}
+
+	private static void awaitTermination(ForkJoinPool pool) {
+		try {
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Keeps the first failure, the later ones are added to it as suppressed.
+	 */
+	private synchronized void fail(Throwable e) {
+		if (error == null) error = e;
+		else if (error != e) error.addSuppressed(e);
+	}
+
+	private class Part extends RecursiveAction {
+		private static final long serialVersionUID = 6803961140380581080L;
+		private final Object[] users;
+		private final int from;
+		private final int to;
+
+		Part(Object[] users, int from, int to) {
+			this.users = users;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Part(users, from, middle), new Part(users, middle, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				try {
+					boolean changed = users[i] instanceof Student student
+							? Data.getInstance().journal(new JournalEntry.EndStudentSemester(student, term, newYear))
+							: Data.getInstance().journal(new JournalEntry.EndTeacherSemester((Teacher) users[i], term));
+					if (!changed) skipped.incrementAndGet();
+				} catch (RuntimeException e) {
+					failed.incrementAndGet();
+					fail(e);
+				}
+				done.incrementAndGet();
+			}
+		}
+	}
+
+	public int getTerm() {
+		return term;
+	}
+
+	/**
+	 * Number of students and teachers to be moved.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Number of students and teachers that were handled so far, including skipped ones.
+	 */
+	public int getDone() {
+		return done.get();
+	}
+
+	/**
+	 * Number of students that had already been moved by an interrupted rollover.
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Returns why the rollover is not complete: the first failure of a user or of the rollover itself,
+	 * with the later failures of users suppressed in it.
+	 * @return failure, {@code null} if nothing failed.
+	 */
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Whether every student and teacher was moved, so the next semester can start.
+	 */
+	public boolean isComplete() {
+		return finished != 0 && done.get() == total && failed.get() == 0 && getError() == null;
+	}
+
+	/**
+	 * Time the rollover took or has taken so far.
+	 */
+	public long getMillis() {
+		return TimeUnit.NANOSECONDS.toMillis((finished != 0 ? finished : System.nanoTime()) - started);
+	}
+
+	@Override
+	public String toString() {
+		return "Перевод семестра: " + getDone() + " из " + total + " (пропущено " + getSkipped()
+				+ ", ошибок " + getFailed() + "), " + getMillis() + " мс" + (getError() == null ? "" : ": " + getError());
+	}
+}
@@ -0,0 +1,40 @@
+package universitysystem.data;
+
+import java.io.File;
+
+/**
+ * Independently stored part of {@link Data}. Each shard has its own snapshot file and dirty flag,
+ * so a save only rewrites the shards that were changed.
+ */
+public enum Shard
+{
+	/**
+	 * Users and organizations, read at startup, and the courses and research in segments of their own,
+	 * read on first access. The users refer to courses and research projects by their keys and get placeholders
+	 * for them until they are read, see {@link Data#loadCatalog()}.
+	 */
+	CORE("data.snap"),
+	REQUESTS("data.requests.snap", "registrationRequests", "employeeRequests", "complaints", "newOrders"),
+	COMMUNICATION("data.communication.snap", "news"),
+	LOGS("data.logs.snap", "logs");
+
+	private final String file;
+	private final String[] segments;
+
+	Shard(String file, String... segments) {
+		this.file = file;
+		this.segments = segments;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	String[] getSegments() {
+		return segments;
+	}
+
+	public boolean exists() {
+		return new File(file).exists();
+	}
+}
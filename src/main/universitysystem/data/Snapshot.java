@@ -0,0 +1,416 @@
+package universitysystem.data;
+
+import universitysystem.courses.Course;
+import universitysystem.research.ResearchProject;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot file of one {@link Shard} of {@link Data}.
+ * The file is memory-mapped and consists of a header {@code [magic][version][journal seq]}, segments
+ * encoded with {@link BinaryCodec} and an index {@code [name][offset][length][crc32]}. The core segment with the
+ * users and the id counters stored with the other shards are read at startup; the other collections are read on
+ * first access. The core shard keeps the courses and the research in segments of their own: the users refer to them
+ * through {@link LazyRef}, they refer to the users through {@link EntityRef}.
+ */
+public class Snapshot
+{
+	static final String CORE = "core";
+	static final String COURSES = "courses";
+	static final String RESEARCH = "research";
+	private static final String IDS = "ids";
+	private static final int MAGIC = 0x554E4953;
+	private static final int VERSION = 4;
+	private static final int UNSPLIT_VERSION = 3; // the core segment holds the courses and research as well
+	private static final int HEADER = 16;
+
+	private final ByteBuffer buffer;
+	private final long seq;
+	private final Map<String, long[]> index = new HashMap<>();
+
+	private Snapshot(ByteBuffer buffer, long seq) {
+		this.buffer = buffer;
+		this.seq = seq;
+	}
+
+	private Snapshot(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.limit() < HEADER + 12 || buffer.getInt(0) != MAGIC) throw new StreamCorruptedException("Not a snapshot: " + path);
+		if (buffer.getInt(4) != VERSION && buffer.getInt(4) != UNSPLIT_VERSION) throw new StreamCorruptedException("Unsupported snapshot version " + buffer.getInt(4));
+		seq = buffer.getLong(8);
+		ByteBuffer in = buffer.duplicate().position((int) buffer.getLong(buffer.limit() - 8));
+		int count = in.getInt();
+		for (int i = 0; i < count; i++) {
+			byte[] name = new byte[in.getShort()];
+			in.get(name);
+			index.put(new String(name, "UTF-8"), new long[]{in.getLong(), in.getInt(), in.getInt()});
+		}
+	}
+
+	public static boolean exists() {
+		return Shard.CORE.exists();
+	}
+
+	/**
+	 * Journal sequence number the snapshot was taken at.
+	 */
+	long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * Reads the users of the core shard and maps the files of the other shards. The courses, the research and
+	 * the collections of the other shards are read later on first access.
+	 * A shard whose file can not be mapped is recorded by {@link Data#loadFailed(Shard, Exception)}.
+	 */
+	public static Data read() throws IOException, ClassNotFoundException {
+		Data data = decode(new Snapshot(Paths.get(Shard.CORE.getFile())));
+		for (Shard shard : Shard.values()) {
+			if (shard == Shard.CORE || !shard.exists()) continue;
+			try {
+				Snapshot snapshot = new Snapshot(Paths.get(shard.getFile()));
+				data.setSnapshot(shard, snapshot);
+				data.mergeIds(snapshot.ids());
+			} catch (IOException e) {
+				data.loadFailed(shard, e);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Reads a lazy segment of the data.
+	 * @param name - name of the segment.
+	 * @param data - data the references of the segment are resolved against.
+	 * @return the collection or {@code null} if the snapshot has no such segment.
+	 * @throws IOException if the segment is damaged, is not a collection or refers to a missing user or course.
+	 */
+	Vector<?> load(String name, Data data) throws IOException {
+		ByteBuffer in = open(name);
+		if (in == null) return null;
+		try {
+			EntityRef.Resolver resolver = EntityRef.resolver(data);
+			Vector<?> segment = (Vector<?>) BinaryCodec.decode(in, resolver);
+			resolver.check();
+			return segment;
+		} catch (ClassCastException | IllegalStateException e) {
+			throw (IOException) new StreamCorruptedException("Segment " + name + " can not be read: " + e.getMessage()).initCause(e);
+		}
+	}
+
+	/**
+	 * Decodes the users of an image of the core shard, the courses and research are read from the image on first access.
+	 * Used to check that the data survives a round trip.
+	 */
+	static Data decode(Image core) throws IOException {
+		return decode(core.snapshot());
+	}
+
+	private static Data decode(Snapshot core) throws IOException {
+		Placeholders placeholders = new Placeholders();
+		Data data = (Data) BinaryCodec.decode(core.open(CORE), placeholders);
+		data.initTransient();
+		data.setPlaceholders(placeholders);
+		data.setSnapshot(Shard.CORE, core);
+		return data;
+	}
+
+	/**
+	 * Reads the courses segment of the core shard. The courses the users refer to are copied into their placeholders.
+	 * @param data - data the references to users are resolved against.
+	 * @param placeholders - placeholders of the courses the users refer to.
+	 * @throws IOException if the segment is missing or damaged, or a course the users refer to is not in it.
+	 */
+	@SuppressWarnings("unchecked")
+	Set<Course> loadCourses(Data data, Placeholders placeholders) throws IOException {
+		ByteBuffer in = open(COURSES);
+		if (in == null) throw new StreamCorruptedException("Segment " + COURSES + " is missing");
+		try {
+			EntityRef.Resolver users = EntityRef.resolver(data);
+			Set<Course> courses = (Set<Course>) BinaryCodec.decode(in, placeholders.courseFiller(users));
+			users.check();
+			placeholders.checkCourses();
+			placeholders.relink(courses);
+			placeholders.shareLessons(data);
+			return courses;
+		} catch (ClassCastException | IllegalStateException e) {
+			throw (IOException) new StreamCorruptedException("Segment " + COURSES + " can not be read: " + e.getMessage()).initCause(e);
+		}
+	}
+
+	/**
+	 * Reads the research segment of the core shard. The research projects the users refer to are copied into their
+	 * placeholders and the researchers are the supervisors the graduate students already have.
+	 * @param data - data the references to users are resolved against.
+	 * @param placeholders - placeholders of the research projects the users refer to.
+	 * @return researchers, research projects, research papers and journals.
+	 * @throws IOException if the segment is missing or damaged, or a research project the users refer to is not in it.
+	 */
+	Vector<?> loadResearch(Data data, Placeholders placeholders) throws IOException {
+		ByteBuffer in = open(RESEARCH);
+		if (in == null) throw new StreamCorruptedException("Segment " + RESEARCH + " is missing");
+		try {
+			EntityRef.Resolver users = EntityRef.resolver(data);
+			Vector<?> research = (Vector<?>) BinaryCodec.decode(in, placeholders.researchFiller(users, data));
+			users.check();
+			placeholders.checkProjects();
+			if (research.size() != 4) throw new StreamCorruptedException("Segment " + RESEARCH + " has " + research.size() + " collections");
+			return research;
+		} catch (ClassCastException | IllegalStateException e) {
+			throw (IOException) new StreamCorruptedException("Segment " + RESEARCH + " can not be read: " + e.getMessage()).initCause(e);
+		}
+	}
+
+	/**
+	 * Number of elements of a lazy segment, without reading them.
+	 * @param name - name of the segment.
+	 * @return number of elements, {@code 0} if the snapshot has no such segment.
+	 */
+	int size(String name) throws IOException {
+		ByteBuffer in = open(name);
+		return in == null ? 0 : BinaryCodec.size(in);
+	}
+
+	/**
+	 * Id counters stored with the shard, {@code null} if the snapshot has none.
+	 */
+	private long[] ids() throws IOException {
+		ByteBuffer in = open(IDS);
+		if (in == null) return null;
+		long[] counters = new long[in.remaining() / 8];
+		in.asLongBuffer().get(counters);
+		return counters;
+	}
+
+	private ByteBuffer open(String name) throws IOException {
+		long[] entry = index.get(name);
+		if (entry == null) return null;
+		ByteBuffer segment = buffer.slice((int) entry[0], (int) entry[1]);
+		CRC32 crc = new CRC32();
+		crc.update(segment.duplicate());
+		if ((int) crc.getValue() != (int) entry[2]) throw new StreamCorruptedException("Segment " + name + " is damaged");
+		return segment;
+	}
+
+	private ByteBuffer raw(String name) {
+		long[] entry = index.get(name);
+		return entry == null ? null : buffer.slice((int) entry[0], (int) entry[1]);
+	}
+
+	/**
+	 * Content of a segment of this snapshot that is written again without deserialization.
+	 */
+	private Content copy(String name) throws IOException {
+		ByteBuffer raw = raw(name);
+		if (raw == null) throw new StreamCorruptedException("Segment " + name + " is missing");
+		return out -> Channels.newChannel(out).write(raw.duplicate());
+	}
+
+	/**
+	 * Serializes one shard of the data into an in-memory image. Segments that were never read are taken
+	 * from the current snapshot without deserialization. The image is written to disk by {@link Image#write()}.
+	 * @param data - data to be written.
+	 * @param shard - shard to be written.
+	 * @return image of the shard.
+	 */
+	static Image encode(Data data, Shard shard) throws IOException {
+		Image image = new Image(data, shard, data.getJournalSeq());
+		for (Map.Entry<String, Content> segment : contents(data, shard).entrySet()) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			segment.getValue().writeTo(bytes);
+			image.segments.put(segment.getKey(), ByteBuffer.wrap(bytes.toByteArray()));
+		}
+		return image;
+	}
+
+	/**
+	 * Writes one shard of the data straight into its file, without building the image in memory first.
+	 * Used to convert large data, where the image would double the memory needed.
+	 * @param data - data to be written.
+	 * @param shard - shard to be written.
+	 */
+	static void stream(Data data, Shard shard) throws IOException {
+		stream(data, shard, Map.of());
+	}
+
+	/**
+	 * Writes one shard of the data straight into its file, with some of the segments encoded beforehand.
+	 * @param data - data to be written.
+	 * @param shard - shard to be written.
+	 * @param encoded - segments that are written instead of the collections of the data, by name.
+	 */
+	static void stream(Data data, Shard shard, Map<String, Content> encoded) throws IOException {
+		Map<String, Content> contents = contents(data, shard);
+		contents.putAll(encoded);
+		write(data, shard, data.getJournalSeq(), contents);
+	}
+
+	private static Map<String, Content> contents(Data data, Shard shard) throws IOException {
+		// the collections of a shard that could not be read are empty stand-ins, they would replace the stored ones
+		if (data.hasFailed(shard)) throw new IOException(shard.getFile() + " could not be read and is not written");
+		Map<String, Content> contents = new LinkedHashMap<>();
+		if (shard == Shard.CORE) {
+			IdentityHashMap<Object, String> lazy = new IdentityHashMap<>();
+			for (Shard other : Shard.values()) {
+				for (String name : other.getSegments()) {
+					Vector<?> segment = data.loadedSegment(name);
+					if (segment != null) lazy.put(segment, name);
+				}
+			}
+			Set<Course> courses = data.loadedCourses();
+			Vector<Collection<?>> research = data.loadedResearch();
+			Placeholders placeholders = data.getPlaceholders();
+			// courses and research projects of the other segments, the users refer to them by LazyRef
+			Set<Object> catalog = Collections.newSetFromMap(new IdentityHashMap<>());
+			if (courses != null) {
+				lazy.put(courses, COURSES);
+				catalog.addAll(courses);
+			}
+			if (research != null) {
+				research.forEach(n -> lazy.put(n, RESEARCH));
+				catalog.addAll(research.get(1));
+			}
+			contents.put(CORE, out -> BinaryCodec.encode(data, obj -> {
+				if (lazy.containsKey(obj)) return null;
+				if (!(obj instanceof Course || obj instanceof ResearchProject)) return obj;
+				if (!catalog.contains(obj) && (placeholders == null || !placeholders.contains(obj))) return obj;
+				return obj instanceof Course c ? new LazyRef(c) : new LazyRef((ResearchProject) obj);
+			}, out));
+			Snapshot previous = data.getSnapshot(shard);
+			contents.put(COURSES, courses != null ? out -> BinaryCodec.encode(courses, EntityRef.userReplacer(data), out)
+					: previous.copy(COURSES));
+			contents.put(RESEARCH, research != null ? out -> BinaryCodec.encode(research, EntityRef.userReplacer(data), out)
+					: previous.copy(RESEARCH));
+			return contents;
+		}
+		Snapshot previous = data.getSnapshot(shard);
+		for (String name : shard.getSegments()) {
+			Vector<?> segment = data.loadedSegment(name);
+			if (segment != null) {
+				contents.put(name, out -> BinaryCodec.encode(segment, EntityRef.snapshotReplacer(data), out));
+			} else if (previous != null && previous.raw(name) != null) {
+				contents.put(name, previous.copy(name));
+			}
+		}
+		// taken after the segments, so the counters cover every id in them
+		contents.put(IDS, out -> {
+			DataOutputStream counters = new DataOutputStream(out);
+			for (long counter : data.idCounters()) counters.writeLong(counter);
+			counters.flush();
+		});
+		return contents;
+	}
+
+	/**
+	 * Writes segments into a temporary file, forces it to disk and atomically moves it over the shard file.
+	 */
+	private static void write(Data data, Shard shard, long seq, Map<String, Content> segments) throws IOException {
+		Path target = Paths.get(shard.getFile());
+		Path temp = Paths.get(shard.getFile() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteArrayOutputStream index = new ByteArrayOutputStream();
+			DataOutputStream entries = new DataOutputStream(index);
+			channel.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putLong(seq).flip());
+			for (Map.Entry<String, Content> segment : segments.entrySet()) {
+				writeSegment(channel, entries, segment.getKey(), segment.getValue());
+			}
+			long indexOffset = channel.position();
+			ByteBuffer trailer = ByteBuffer.allocate(4 + index.size() + 8);
+			trailer.putInt(segments.size()).put(index.toByteArray()).putLong(indexOffset).flip();
+			while (trailer.hasRemaining()) channel.write(trailer);
+			channel.force(true);
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Path dir = target.toAbsolutePath().getParent();
+		try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// not every file system allows to sync a directory
+		}
+		data.setSnapshot(shard, new Snapshot(target));
+	}
+
+	private static void writeSegment(FileChannel channel, DataOutputStream index, String name, Content content)
+			throws IOException {
+		long offset = channel.position();
+		CheckedOutputStream out = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), new CRC32());
+		content.writeTo(out);
+		out.flush();
+		byte[] bytes = name.getBytes("UTF-8");
+		index.writeShort(bytes.length);
+		index.write(bytes);
+		index.writeLong(offset);
+		index.writeInt((int) (channel.position() - offset));
+		index.writeInt((int) out.getChecksum().getValue());
+	}
+
+	/**
+	 * Encoded content of a segment.
+	 */
+	interface Content
+	{
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Serialized shard that is ready to be written.
+	 */
+	static class Image {
+		private final Data data;
+		private final Shard shard;
+		private final long seq;
+		private final Map<String, ByteBuffer> segments = new LinkedHashMap<>();
+
+		private Image(Data data, Shard shard, long seq) {
+			this.data = data;
+			this.shard = shard;
+			this.seq = seq;
+		}
+
+		Shard getShard() {
+			return shard;
+		}
+
+		/**
+		 * Encoded content of a segment or {@code null} if the image has no such segment.
+		 */
+		ByteBuffer segment(String name) {
+			ByteBuffer segment = segments.get(name);
+			return segment == null ? null : segment.duplicate();
+		}
+
+		/**
+		 * Snapshot that reads the segments of the image from memory.
+		 */
+		private Snapshot snapshot() {
+			ByteBuffer buffer = ByteBuffer.allocate(segments.values().stream().mapToInt(ByteBuffer::remaining).sum());
+			Snapshot snapshot = new Snapshot(buffer, seq);
+			segments.forEach((name, segment) -> {
+				CRC32 crc = new CRC32();
+				crc.update(segment.duplicate());
+				snapshot.index.put(name, new long[]{buffer.position(), segment.remaining(), (int) crc.getValue()});
+				buffer.put(segment.duplicate());
+			});
+			return snapshot;
+		}
+
+		/**
+		 * Writes the image into a temporary file, forces it to disk and atomically moves it over the shard file.
+		 */
+		void write() throws IOException {
+			Map<String, Content> contents = new LinkedHashMap<>();
+			segments.forEach((name, segment) -> contents.put(name, out -> Channels.newChannel(out).write(segment.duplicate())));
+			Snapshot.write(data, shard, seq, contents);
+		}
+	}
+}
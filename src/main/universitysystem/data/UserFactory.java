@@ -3,7 +3,6 @@ package universitysystem.data;
 
 import universitysystem.entity.*;
 import universitysystem.interfaces.CanCreate;
-import universitysystem.research.Researcher;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -14,51 +13,27 @@ public class UserFactory implements Serializable {
         super();
     }
     public User createUser(String login, String password, UsersType type) {
+        User user = newUser(login, password, type);
+        Data.getInstance().journal(new JournalEntry.AddUser(user, false));
+        return user;
+    }
+
+    private User newUser(String login, String password, UsersType type) {
         String email = login + "@wow.kz";
         return switch (type) {
-            case DEAN -> {
-                Dean d = new Dean(login, password, email);
-                Data.getInstance().addDean(d);
-                yield d;
-            }
-            case STUDENT -> {
-                Student s = new Student(login, password, email);
-                Data.getInstance().addStudent(s);
-                yield s;
-            }
-            case MANAGER -> {
-                Manager m = new Manager(login, password, email);
-                Data.getInstance().addManager(m);
-                yield m;
-            }
-            case TEACHER -> {
-                Teacher t = new Teacher(login, password, email);
-                Data.getInstance().addTeacher(t);
-                yield t;
-            }
-            case TECH_SUPPORT -> {
-                TechSupportSpecialist t = new TechSupportSpecialist(login, password, email);
-                Data.getInstance().addTechSpecialist(t);
-                yield t;
-            }
-            case EMPLOYEE -> {
-                Employee e = new Employee(login, password, email);
-                Data.getInstance().addEmployee(e);
-                yield e;
-            }
-            case GRADUATE_STUDENT -> {
-                GraduateStudent g = new GraduateStudent(login, password, email);
-                Data.getInstance().addStudent(g);
-                yield g;
-            }
+            case DEAN -> new Dean(login, password, email);
+            case STUDENT -> new Student(login, password, email);
+            case MANAGER -> new Manager(login, password, email);
+            case TEACHER -> new Teacher(login, password, email);
+            case TECH_SUPPORT -> new TechSupportSpecialist(login, password, email);
+            case EMPLOYEE -> new Employee(login, password, email);
+            case GRADUATE_STUDENT -> new GraduateStudent(login, password, email);
         };
     }
 
     public CanCreate create(String login, String password, UsersType type, boolean isResearcher) {
-        User user = createUser(login, password, type);
-        if (isResearcher) {
-            Data.getInstance().addReseacher(new Researcher(user));
-        }
+        User user = newUser(login, password, type);
+        Data.getInstance().journal(new JournalEntry.AddUser(user, isResearcher));
         return user;
     }
 }
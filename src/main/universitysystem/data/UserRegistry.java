@@ -0,0 +1,202 @@
+package universitysystem.data;
+
+import universitysystem.courses.Faculty;
+import universitysystem.entity.*;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Indexes of all users of {@link Data} by id, login, email and (lastname, firstname), and secondary indexes
+ * by faculty, year of study, organization and type.
+ * The registry is not stored: it is built from the user collections on first access and then kept up to date
+ * by {@link Data} when users are added or removed and by the setters of the indexed fields.
+ */
+public class UserRegistry
+{
+	private final HashMap<String, List<User>> byId = new HashMap<>();
+	private final HashMap<String, List<User>> byLogin = new HashMap<>();
+	private final HashMap<String, List<User>> byEmail = new HashMap<>();
+	private final TreeMap<Name, List<User>> byName = new TreeMap<>();
+	private final List<SecondaryIndex<?, ?>> indexes = new ArrayList<>();
+	private final SecondaryIndex<Faculty, Student> studentsByFaculty =
+			index(SecondaryIndex.byEnum(Faculty.class, Student.class, Student::getFaculty));
+	private final SecondaryIndex<Integer, Student> studentsByYear =
+			index(SecondaryIndex.byInt(Student.class, Student::getYearOfStudy));
+	private final SecondaryIndex<Organization, Student> studentsByOrganization =
+			index(SecondaryIndex.byIdentity(Student.class, Student::getOrganization));
+	private final SecondaryIndex<Faculty, Teacher> teachersByFaculty =
+			index(SecondaryIndex.byEnum(Faculty.class, Teacher.class, Teacher::getFaculty));
+	private final SecondaryIndex<TeacherType, Teacher> teachersByType =
+			index(SecondaryIndex.byEnum(TeacherType.class, Teacher.class, Teacher::getType));
+	private final SecondaryIndex<ManagerType, Manager> managersByType =
+			index(SecondaryIndex.byEnum(ManagerType.class, Manager.class, Manager::getType));
+	private final SecondaryIndex<Faculty, Dean> deansByFaculty =
+			index(SecondaryIndex.byEnum(Faculty.class, Dean.class, Dean::getFaculty));
+
+	UserRegistry(Iterable<? extends User> users) {
+		for (User u : users) add(u);
+	}
+
+	/**
+	 * Adds a user to the indexes.
+	 * @param u - user to be added.
+	 */
+	synchronized void add(User u) {
+		put(byId, u.getId(), u);
+		put(byLogin, u.getLogin(), u);
+		put(byEmail, u.getEmail(), u);
+		put(byName, new Name(u), u);
+		indexes.forEach(n -> n.add(u));
+	}
+
+	/**
+	 * Removes a user from the indexes.
+	 * @param u - user to be removed.
+	 * @return {@code true} if the user was indexed.
+	 */
+	synchronized boolean remove(User u) {
+		if (!contains(byId.get(u.getId()), u)) return false;
+		take(byId, u.getId(), u);
+		take(byLogin, u.getLogin(), u);
+		take(byEmail, u.getEmail(), u);
+		take(byName, new Name(u), u);
+		indexes.forEach(n -> n.remove(u));
+		return true;
+	}
+
+	/**
+	 * Removes the user from the indexes, changes an indexed field and adds the user back.
+	 * A user that is not registered is only changed.
+	 * @param u - user to be changed.
+	 * @param change - change of an indexed field.
+	 */
+	public synchronized void update(User u, Runnable change) {
+		boolean indexed = remove(u);
+		change.run();
+		if (indexed) add(u);
+	}
+
+	/**
+	 * Checks whether the user is registered in the data.
+	 */
+	public synchronized boolean contains(User u) {
+		return contains(byId.get(u.getId()), u);
+	}
+
+	public synchronized User findById(String id) {
+		List<User> users = byId.get(id);
+		return users == null ? null : users.get(0);
+	}
+
+	public synchronized User findByLogin(String login) {
+		List<User> users = byLogin.get(login);
+		return users == null ? null : users.get(0);
+	}
+
+	public synchronized User findByEmail(String email) {
+		List<User> users = byEmail.get(email);
+		return users == null ? null : users.get(0);
+	}
+
+	/**
+	 * Returns all users with the given login. Logins are expected to be unique, but older data may contain duplicates.
+	 */
+	public synchronized List<User> findAllByLogin(String login) {
+		return List.copyOf(byLogin.getOrDefault(login, List.of()));
+	}
+
+	public synchronized List<User> findByName(String firstname, String lastname) {
+		return List.copyOf(byName.getOrDefault(new Name(lastname, firstname), List.of()));
+	}
+
+	/**
+	 * Returns all users sorted by lastname and then by firstname. Users without a name come first.
+	 */
+	public synchronized List<User> sortedByName() {
+		return byName.values().stream().flatMap(List::stream).toList();
+	}
+
+	/**
+	 * Returns the users whose lastname starts with the given prefix, sorted by lastname and firstname.
+	 * @param prefix - beginning of the lastname.
+	 */
+	public synchronized List<User> findByLastnamePrefix(String prefix) {
+		return byName.tailMap(new Name(prefix, null), true).entrySet().stream()
+				.takeWhile(e -> e.getKey().lastname != null && e.getKey().lastname.startsWith(prefix))
+				.flatMap(e -> e.getValue().stream())
+				.toList();
+	}
+
+	public synchronized List<Student> getStudents(Faculty faculty) {
+		return studentsByFaculty.get(faculty);
+	}
+
+	public synchronized List<Student> getStudents(int yearOfStudy) {
+		return studentsByYear.get(yearOfStudy);
+	}
+
+	public synchronized List<Student> getStudents(Organization organization) {
+		return studentsByOrganization.get(organization);
+	}
+
+	public synchronized List<Teacher> getTeachers(Faculty faculty) {
+		return teachersByFaculty.get(faculty);
+	}
+
+	public synchronized List<Teacher> getTeachers(TeacherType type) {
+		return teachersByType.get(type);
+	}
+
+	public synchronized List<Manager> getManagers(ManagerType type) {
+		return managersByType.get(type);
+	}
+
+	public synchronized Dean getDean(Faculty faculty) {
+		return deansByFaculty.first(faculty);
+	}
+
+	public synchronized int size() {
+		return byId.values().stream().mapToInt(List::size).sum();
+	}
+
+	private <K, V> SecondaryIndex<K, V> index(SecondaryIndex<K, V> index) {
+		indexes.add(index);
+		return index;
+	}
+
+	private static <K> void put(Map<K, List<User>> index, K key, User u) {
+		if (key == null) return;
+		index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(u);
+	}
+
+	private static <K> void take(Map<K, List<User>> index, K key, User u) {
+		List<User> users = index.get(key);
+		if (users == null) return;
+		users.removeIf(n -> n == u);
+		if (users.isEmpty()) index.remove(key);
+	}
+
+	private static boolean contains(List<User> users, User u) {
+		return users != null && users.stream().anyMatch(n -> n == u);
+	}
+
+	/**
+	 * Key of the name index, {@code null} names are ordered first.
+	 */
+	private record Name(String lastname, String firstname) implements Comparable<Name>
+	{
+		private static final Comparator<Name> ORDER = Comparator
+				.comparing((Function<Name, String>) Name::lastname, Comparator.nullsFirst(Comparator.naturalOrder()))
+				.thenComparing(Name::firstname, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+		Name(User u) {
+			this(u.getLastname(), u.getFirstname());
+		}
+
+		@Override
+		public int compareTo(Name o) {
+			return ORDER.compare(this, o);
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package universitysystem.entity;
 
 import universitysystem.courses.Faculty;
+import universitysystem.data.AuditQuery;
 import universitysystem.data.Data;
+import universitysystem.data.GpaRanking;
+import universitysystem.data.JournalEntry;
 import universitysystem.data.UserFactory;
 import universitysystem.interfaces.CanCreate;
 import universitysystem.data.Log;
+import universitysystem.data.LogAction;
 import universitysystem.interfaces.CanLogin;
 import universitysystem.research.Researcher;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -17,6 +22,7 @@ import java.util.stream.Stream;
 //TODO Adil на тебе висит
 public class Admin implements CanLogin, Serializable
 {
+	private static final long serialVersionUID = 5200409506788840972L;
 	private String login;
 	private String password;
 
@@ -35,7 +41,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private void createUser(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				Напишите логин
 				""");
@@ -59,7 +65,7 @@ public class Admin implements CanLogin, Serializable
 			default -> throw new IllegalStateException("Unexpected value: ");
 		};
 		User user = addUser(login, password, usersType, isResearcher);
-		Data.getInstance().getLogs().add(new Log("добавлен user: " + usersType));
+		Data.getInstance().log(LogAction.ADD_USER, getLogin(), user == null ? null : user.getId(), usersType.toString());
 		System.out.println("""
 				Хотите добавить специфичные параметры?
 				0 : Нет
@@ -112,7 +118,7 @@ public class Admin implements CanLogin, Serializable
 						Teacher teacher = (Teacher) user;
 						teacher.setFaculty(determineFaculty());
 						teacher.setSalary(determineSalary());
-						teacher.setType(determineTeacher());
+						Data.getInstance().journal(new JournalEntry.SetTeacherType(teacher, determineTeacher()));
 					}
 					case EMPLOYEE -> {
 						Employee employee = (Employee) user;
@@ -139,151 +145,141 @@ public class Admin implements CanLogin, Serializable
 	public boolean removeUser(CanCreate c) {
 		if (c instanceof Researcher){
 			Data.getInstance().removeResearcher((Researcher) c);
-			Data.getInstance().getLogs().add(new Log("удален researcher"));
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), null, null);
 		}
 		if (c instanceof Dean){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeDean((Dean) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		if (c instanceof Student){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeStudent((Student) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		if (c instanceof Manager){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeManager((Manager) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		if (c instanceof Teacher){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeTeacher((Teacher) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		if (c instanceof TechSupportSpecialist){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeTechSpecialist((TechSupportSpecialist) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		if (c instanceof Employee){
 			User forLogs = (User) c;
-			Data.getInstance().getLogs().add(new Log("удален user: " + forLogs.getId()));
-			return Data.getInstance().removeEmployee((Employee) c);
+			Data.getInstance().log(LogAction.REMOVE_USER, getLogin(), forLogs.getId(), null);
+			return Data.getInstance().journal(new JournalEntry.RemoveUser(forLogs));
 		}
 		return false;
 	}
 
 	public boolean setUserFirstname(CanCreate c, String firstname) {
 		User forLogs = (User) c;
-		Data.getInstance().getLogs().add(new Log("изменено имя userа: " + forLogs.getId()));
+		Data.getInstance().log(LogAction.CHANGE_USER, getLogin(), forLogs.getId(), "имя");
 		((User) c).setFirstname(firstname);
 		return true;
 	}
 	
 	public boolean setUserLastname(CanCreate c, String lastname) {
 		User forLogs = (User) c;
-		Data.getInstance().getLogs().add(new Log("изменена фамилия userа: " + forLogs.getId()));
+		Data.getInstance().log(LogAction.CHANGE_USER, getLogin(), forLogs.getId(), "фамилию");
 		((User) c).setLastname(lastname);
 		return true;
 	}
 
 	public boolean setUserMiddlename(CanCreate c, String middlename) {
 		User forLogs = (User) c;
-		Data.getInstance().getLogs().add(new Log("изменено отчество userа: " + forLogs.getId()));
+		Data.getInstance().log(LogAction.CHANGE_USER, getLogin(), forLogs.getId(), "отчество");
 		((User) c).setMiddlename(middlename);
 		return true;
 	}
 	
 	public boolean setUserPassword(CanCreate c, String password) {
 		User forLogs = (User) c;
-		Data.getInstance().getLogs().add(new Log("изменен пароль userа: " + forLogs.getId()));
-		((User) c).setPassword(password);
+		Data.getInstance().log(LogAction.CHANGE_PASSWORD, getLogin(), forLogs.getId(), null);
+		Data.getInstance().journal(new JournalEntry.SetPassword(forLogs, password));
 		return false;	
 	}
 	
-	public Vector<Log> getLogs() {
+	public List<Log> getLogs() {
 		return Data.getInstance().getLogs();
 	}
 
+	/**
+	 * Searches all stored logs, not only the latest ones.
+	 * @param query - conditions of the search.
+	 * @return matching logs.
+	 */
+	public List<Log> findLogs(AuditQuery query) {
+		return query.list();
+	}
+
 	public User findUserById(String id){
-		return getStudents().stream().filter(student -> student.getId().equals(id)).limit(1).findFirst().orElse(null);
+		return Data.getInstance().getUserRegistry().findById(id);
 	}
 	public List<User> findUsers(String login){
-		Vector<User> users = new Vector<>();
-		users.addAll(Data.getInstance().getEmployees());
-		users.addAll(Data.getInstance().getStudents());
-		users.addAll(Data.getInstance().getManagers());
-		users.addAll(Data.getInstance().getDeans());
-		users.addAll(Data.getInstance().getTeachers());
-		users.addAll(Data.getInstance().getTechSpecialists());
-		return users.stream().filter(user -> user.getLogin().equals(login)).toList();
+		return Data.getInstance().getUserRegistry().findAllByLogin(login);
 	}
 	public List<User> findUsers(String firstname, String lastname){
-		Stream<User> userStream = Stream.of(getStudents().stream(),
-						getEmployees().stream(),
-						getDeans().stream(),
-						getManagers().stream(),
-						getTeachers().stream(),
-						getTechSupportSpecialists().stream())
-				.flatMap(stream -> stream);
-		return userStream.filter(user -> user.getFirstname() != null && user.getFirstname().equals(firstname)
-					&& user.getLastname() != null && user.getLastname().equals(lastname)).toList();
-	}
-
-	public HashSet<Student> getStudents(){
+		return Data.getInstance().getUserRegistry().findByName(firstname, lastname);
+	}
+
+	public Set<Student> getStudents(){
 		return Data.getInstance().getStudents();
 	}
 	public List<Student> getStudents(Comparator<Student> comparator){
 		return getStudents().stream().sorted(comparator).toList();
 	}
 	public List<Student> getStudentByYear(int year){
-		return getStudents().stream().filter(student -> student.getYearOfStudy() == year).toList();
+		return Data.getInstance().getUserRegistry().getStudents(year);
 	}
 	public List<Student> getStudentByFaculty(Faculty faculty){
-		return getStudents().stream().filter(student -> student.getFaculty() != null && student.getFaculty().equals(faculty)).toList();
+		return Data.getInstance().getUserRegistry().getStudents(faculty);
 	}
 	public List<Student> getStudentByOrganization(Organization organization){
-		return getStudents().stream().filter(student -> student.getOrganization() != null && student.getOrganization().equals(organization)).toList();
+		return Data.getInstance().getUserRegistry().getStudents(organization);
 	}
-	public HashSet<Employee> getEmployees(){
+	public Set<Employee> getEmployees(){
 		return Data.getInstance().getEmployees();
 	}
 	public List<Employee> getEmployees(Comparator<Employee> comparator) {
 		return getEmployees().stream().sorted(comparator).toList();
 	}
-	public HashSet<Teacher> getTeachers(){
+	public Set<Teacher> getTeachers(){
 		return Data.getInstance().getTeachers();
 	}
 	public List<Teacher> getTeachers(Comparator<Teacher> comparator){
 		return getTeachers().stream().sorted(comparator).toList();
 	}
 	public List<Teacher> getTeachers(Faculty faculty) {
-		return getTeachers().stream()
-				.filter(teacher -> teacher.getFaculty() != null && teacher.getFaculty().equals(faculty))
-				.toList();
+		return Data.getInstance().getUserRegistry().getTeachers(faculty);
 	}
 	public List<Teacher> getTeachers(TeacherType teacherType){
-		return getTeachers().stream()
-				.filter(teacher -> teacher.getType() != null && teacher.getType().equals(teacherType))
-				.toList();
+		return Data.getInstance().getUserRegistry().getTeachers(teacherType);
 	}
-	public HashSet<Manager> getManagers(){
+	public Set<Manager> getManagers(){
 		return Data.getInstance().getManagers();
 	}
 	public List<Manager> getManagers(ManagerType type){
-		return getManagers().stream().filter(manager -> manager.getType() != null && manager.getType().equals(type)).toList();
+		return Data.getInstance().getUserRegistry().getManagers(type);
 	}
-	public HashSet<Dean> getDeans(){
+	public Set<Dean> getDeans(){
 		return Data.getInstance().getDeans();
 	}
 	public Dean getDean(Faculty faculty){
-		return Data.getInstance().getDeans().stream().filter(dean -> dean.getFaculty() != null && dean.getFaculty().equals(faculty)).limit(1).findFirst().orElse(null);
+		return Data.getInstance().getUserRegistry().getDean(faculty);
 	}
-	public HashSet<TechSupportSpecialist> getTechSupportSpecialists(){
+	public Set<TechSupportSpecialist> getTechSupportSpecialists(){
 		return Data.getInstance().getTechSpecialists();
 	}
-	public HashSet<Researcher> getResearchers(){
+	public Set<Researcher> getResearchers(){
 		return Data.getInstance().getResearchers();
 	}
 
@@ -298,14 +294,14 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	public void login(){
-		Data.getInstance().getLogs().add(new Log( "Выполнен вход в admin-панель"));
-		Scanner in = new Scanner(System.in);
+		Data.getInstance().log(LogAction.LOGIN, getLogin(), null, null);
+		Scanner in = Session.scanner();
 		System.out.println("Welcome to the system, Admin!");
 		run();
 	}
 
 	public void logout(){
-		Data.getInstance().getLogs().add(new Log( "Выход из admin-панели"));
+		Data.getInstance().log(LogAction.LOGOUT, getLogin(), null, null);
 		System.out.println("Выполняем выход...");
 		try {
 			save();
@@ -318,7 +314,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	public void run() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 
 		menu:
 		while (true) {
@@ -505,8 +501,9 @@ public class Admin implements CanLogin, Serializable
 					System.out.println("""
 							1 : Сначала старые
 							2 : Сначала новые
-							3 : Вернуться в меню
-							4 : Выйти
+							3 : Найти
+							4 : Вернуться в меню
+							5 : Выйти
 							""");
 					choice = in.nextInt();
 					switch (choice){
@@ -514,15 +511,17 @@ public class Admin implements CanLogin, Serializable
 						case 2 -> System.out.println(getLogs().stream()
 								.sorted(Comparator.comparing(Log::getId).reversed()).toList()
 						);
-						case 3 -> {
-						}
+						case 3 -> outputList(findLogs(determineLogQuery()));
 						case 4 -> {
+						}
+						case 5 -> {
 							logout();
 							break menu;
 						}
 					}
 				}
 				case 4 -> {
+					GpaRanking.Group ranking = null;
 					List<Student> students = null;
 					filterUsers:
 					while (true) {
@@ -538,15 +537,25 @@ public class Admin implements CanLogin, Serializable
 						choice = in.nextInt();
 						switch (choice) {
 							case 1 -> {
-								students = getStudentByYear(determineYear());
+								int year = determineYear();
+								students = getStudentByYear(year);
+								ranking = Data.getInstance().getRanking().year(year);
+							}
+							case 2 -> {
+								Faculty faculty = determineFaculty();
+								students = getStudentByFaculty(faculty);
+								ranking = Data.getInstance().getRanking().faculty(faculty);
 							}
-							case 2 -> students = getStudentByFaculty(determineFaculty());
 							case 3 -> {
 								printOrganizations();
 								choice = in.nextInt();
 								students = getStudentByOrganization(Data.getInstance().getOrganizations().stream().toList().get(choice));
+								ranking = null;
+							}
+							case 4 -> {
+								students = getStudents().stream().toList();
+								ranking = Data.getInstance().getRanking().all();
 							}
-							case 4 -> students = getStudents().stream().toList();
 							case 5 -> {
 								break filterUsers;
 							}
@@ -576,7 +585,14 @@ public class Admin implements CanLogin, Serializable
 							choice = in.nextInt();
 							Comparator<Student> comparator = Comparator.comparing(Student::getId);
 							switch (choice) {
-								case 1 -> comparator = Comparator.comparing(Student::getGpa);
+								case 1 -> {
+									// the ranking is already ordered, best GPA first
+									if (ranking != null) {
+										outputList(ranking.list());
+										continue;
+									}
+									comparator = Comparator.comparing(Student::getGpa).reversed();
+								}
 								case 2 -> {
 
 								}
@@ -762,7 +778,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private GraduateType determineGraduate(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				1 : Магистрант
 				2 : Докторант
@@ -775,7 +791,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private int determineYear(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 								Выберите год обучения
 								1 : 1 год
@@ -792,8 +808,30 @@ public class Admin implements CanLogin, Serializable
 		};
 	}
 
+	private AuditQuery determineLogQuery(){
+		Scanner in = Session.scanner();
+		AuditQuery query = AuditQuery.logs().withArchive().newestFirst().limit(100);
+		System.out.println("""
+				Id пользователя, который выполнил действие (0 : любой)
+				""");
+		String actor = in.next();
+		if(!actor.equals("0")) query.actor(actor);
+		StringBuilder actions = new StringBuilder("Действие\n0 : Любое\n");
+		LogAction[] values = LogAction.values();
+		for(int i = 1; i < values.length; i++) actions.append(i).append(" : ").append(values[i]).append("\n");
+		System.out.println(actions);
+		int action = in.nextInt();
+		if(action > 0 && action < values.length) query.action(values[action]);
+		System.out.println("""
+				За сколько последних часов (0 : за все время)
+				""");
+		int hours = in.nextInt();
+		if(hours > 0) query.last(hours * 3600_000L);
+		return query;
+	}
+
 	private UsersType determineType(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		System.out.println("""
 				1 : Student
@@ -818,7 +856,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private int determineSalary() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				Впишите зарплату
 				""");
@@ -826,7 +864,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private TeacherType determineTeacher(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 			1 : Tutor
 			2 : Senior Lecturer
@@ -841,7 +879,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private Faculty determineFaculty() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		System.out.println("""
 				1 : SITE
@@ -884,7 +922,7 @@ public class Admin implements CanLogin, Serializable
 	}
 
 	private User chooseUser(List<User> users){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int count = 1;
 		for (User user : users) {
 			System.out.println(count++ + "  : " + user.toString());
@@ -1,10 +1,13 @@
 package universitysystem.entity;
 
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
 import universitysystem.courses.Faculty;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -153,7 +156,7 @@ public class Dean extends Employee implements Serializable {
 	 */
 	public static boolean addEmployeeRequest(EmployeeRequest e) {
 
-		return Data.getInstance().getEmployeeRequests().add(e);
+		return Data.getInstance().addEmployeeRequest(e);
 	}
 
 	/**
@@ -163,7 +166,7 @@ public class Dean extends Employee implements Serializable {
 	 * @return {@code true} if the removal is successful, {@code false} otherwise.
 	 */
 	public static boolean removeEmployeeRequest(EmployeeRequest e) {
-		return Data.getInstance().getEmployeeRequests().remove(e);
+		return Data.getInstance().removeEmployeeRequest(e);
 	}
 
 	/**
@@ -183,7 +186,7 @@ public class Dean extends Employee implements Serializable {
 	 */
 	public static boolean addComplaint(Complaint c) {
 
-		return Data.getInstance().getComplaints().add(c);
+		return Data.getInstance().addComplaint(c);
 	}
 
 	/**
@@ -193,7 +196,7 @@ public class Dean extends Employee implements Serializable {
 	 * @return {@code true} if the removal is successful, {@code false} otherwise.
 	 */
 	public static boolean removeComplaint(Complaint c) {
-		return Data.getInstance().getComplaints().remove(c);
+		return Data.getInstance().removeComplaint(c);
 	}
 
 	/**
@@ -211,7 +214,7 @@ public class Dean extends Employee implements Serializable {
 	 * @param faculty The faculty to set.
 	 */
 	public void setFaculty(Faculty faculty) {
-		this.faculty = faculty;
+		Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.faculty = faculty));
 	}
 
 	/**
@@ -229,7 +232,7 @@ public class Dean extends Employee implements Serializable {
 		for (int i = 0; i < Data.getInstance().getComplaints().size(); i++) {
 			System.out.println((i + 1) + ") " + Data.getInstance().getComplaints().get(i));
 		}
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("Выберите номер жалобы для управления (или 0 для выхода):");
 		int choice = in.nextInt();
 
@@ -240,16 +243,16 @@ public class Dean extends Employee implements Serializable {
 			int action = in.nextInt();
 			if (action == 1) {
 				warn(selectedRequest.getStudent());
-				Data.getInstance().getLogs().add(new Log(getId() + " принял жалобу на студента от " + selectedRequest.getSender().getId()));
-				Data.getInstance().getLogs().add(new Log(getId() + " вынес выговор " + selectedRequest.getStudent().getId()));
+				Data.getInstance().log(LogAction.ACCEPT_COMPLAINT, getId(), selectedRequest.getSender().getId(), null);
+				Data.getInstance().log(LogAction.WARN_STUDENT, getId(), selectedRequest.getStudent().getId(), null);
 				selectedRequest.getSender().addNotification(new Notification("Жалоба на студента", "Ваша жалоба рассмотрена. Студент наказан!"));
 				selectedRequest.getStudent().addNotification(new Notification("Выговор", "Вы получили выговор от учителя"));
-				Data.getInstance().getComplaints().remove(selectedRequest);
+				removeComplaint(selectedRequest);
 				return;
 			} else if (action == 2) {
-				Data.getInstance().getLogs().add(new Log(getId() + " отклонил жалобу на студента от " + selectedRequest.getSender().getId()));
+				Data.getInstance().log(LogAction.REJECT_COMPLAINT, getId(), selectedRequest.getSender().getId(), null);
 				selectedRequest.getSender().addNotification(new Notification("Жалоба на студента", "Ваша жалоба отклонена. Недостаточно аргументов"));
-				Data.getInstance().getComplaints().remove(selectedRequest);
+				removeComplaint(selectedRequest);
 				return;
 			} else if(action == 3){
 				return;
@@ -299,7 +302,7 @@ public class Dean extends Employee implements Serializable {
 	public boolean rejectRequest(EmployeeRequest r) {
 		if(Data.getInstance().getEmployeeRequests().stream().noneMatch(n -> n.equals(r))) return false;
 		r.setStatus(RequestStatus.REFUSED);
-		Data.getInstance().getEmployeeRequests().remove(r);
+		removeEmployeeRequest(r);
 		return true;
 	}
     /**
@@ -307,7 +310,7 @@ public class Dean extends Employee implements Serializable {
      * @param s The student to warn.
      */
 	public void warn(Student s) {
-		s.addWarning();
+		Data.getInstance().journal(new JournalEntry.AddWarning(s));
 	}
     /**
      * Checks if this dean is equal to another object.
@@ -344,7 +347,7 @@ public class Dean extends Employee implements Serializable {
      * Method for performing operations in the dean's personal cabinet.
      */
     public void run() throws IOException {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
         System.out.println("Вход успешен!.Вы вошли в личный кабинет декана.");
         menu: while (true) {
             System.out.println("Выберите действие: \n1) Просмотр жалоб \n2) Управление запросами " +
@@ -382,7 +385,7 @@ public class Dean extends Employee implements Serializable {
         for (int i = 0; i < actualRequests.size(); i++) {
             System.out.println((i + 1) + ") " + actualRequests.get(i));
         }
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
         System.out.println("Выберите номер запроса для управления (или 0 для выхода):");
         int choice = in.nextInt();
 
@@ -395,7 +398,7 @@ public class Dean extends Employee implements Serializable {
                 case 1:
                     if (signRequest(selectedRequest)) {
 						selectedRequest.getSender().addNotification(new Notification("Запрос", "Ваш запрос был подписан!"));
-						Data.getInstance().getLogs().add(new Log(getId() + " подписал запрос работника " + selectedRequest.getSender().getId()));
+						Data.getInstance().log(LogAction.SIGN_EMPLOYEE_REQUEST, getId(), selectedRequest.getSender().getId(), null);
                         System.out.println("Запрос подписан успешно.");
                     } else {
                         System.out.println("Ошибка.");
@@ -404,7 +407,7 @@ public class Dean extends Employee implements Serializable {
                 case 2:
                     if (rejectRequest(selectedRequest)) {
 						selectedRequest.getSender().addNotification(new Notification("Запрос", "Ваш запрос был отклонен деканатом."));
-						Data.getInstance().getLogs().add(new Log(getId() + " отклонил запрос работника " + selectedRequest.getSender().getId()));
+						Data.getInstance().log(LogAction.REJECT_EMPLOYEE_REQUEST, getId(), selectedRequest.getSender().getId(), null);
                         System.out.println("Запрос отклонен успешно.");
                     } else {
                         System.out.println("Ошибка.");
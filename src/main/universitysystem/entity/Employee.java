@@ -1,9 +1,12 @@
 package universitysystem.entity;
 
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -122,7 +125,7 @@ public class Employee extends User implements Serializable {
      * @param salary The salary to set for the employee.
      */
 	public void setSalary(double salary) {
-		this.salary = salary;
+		Data.getInstance().change(Shard.CORE, () -> this.salary = salary);
 	}
 
     /**
@@ -146,15 +149,14 @@ public class Employee extends User implements Serializable {
      * @return {@code true} if the message is sent successfully.
      */
 	public boolean sendMessage(Employee e, Message m) {
-		e.addMessage(m);
-		return true;
+		return Data.getInstance().journal(new JournalEntry.AddMessage(e, m));
 	}
     /**
      * Adds a message to the employee's messages.
      * @param m The message to add.
      */
 	public void addMessage(Message m) {
-		messages.add(m);
+		Data.getInstance().change(Shard.CORE, () -> messages.add(m));
 	}
     /**
      * Removes a message from the employee's messages.
@@ -162,10 +164,12 @@ public class Employee extends User implements Serializable {
      * @return {@code true} if the message is removed successfully.
      */
 	public boolean removeMessage(Message m){
-		if(messages != null){
-			return messages.remove(m);
-		}
-		return false;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if(messages != null){
+				return messages.remove(m);
+			}
+			return false;
+		});
 	}
     /**
      * Gets the messages of the employee.
@@ -181,7 +185,7 @@ public class Employee extends User implements Serializable {
      */
 	public boolean sendRequest(EmployeeRequest r) {
 		//добавлена реализация
-		Data.getInstance().getLogs().add(new Log(getId() + " отправил employee request"));
+		Data.getInstance().log(LogAction.SEND_EMPLOYEE_REQUEST, getId(), null, null);
 		Dean.addEmployeeRequest(r);
 		return true;
 	}
@@ -220,7 +224,7 @@ public class Employee extends User implements Serializable {
 	 * sending tech reports, and the option to switch to the Researcher role if applicable.
 	 */
 	public void run() throws IOException {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		try {
 			menu: while (true) {
 				System.out.println("Вы сейчас в личном кабинете Employee");
@@ -257,7 +261,7 @@ public class Employee extends User implements Serializable {
 	 * or return to the previous menu. It uses the EmployeeRequest class for creating and handling requests.
 	 */
 	protected void sendEmployeeRequestRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		System.out.println("1) Отправить новый запрос \n2) Посмотреть отправленные \n3) Вернуться назад");
 		choice = in.nextInt();
@@ -5,11 +5,13 @@ import universitysystem.courses.Course;
 import universitysystem.courses.Faculty;
 import universitysystem.courses.Lesson;
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.LogAction;
 import universitysystem.interfaces.CanResearch;
 import universitysystem.research.ResearchProject;
 import universitysystem.research.Researcher;
 import universitysystem.utills.RequestStatus;
+import universitysystem.server.Session;
 
 import java.io.Serializable;
 import java.util.Date;
@@ -174,7 +176,7 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
      * @param r The supervisor to set for the graduate student.
      */
 	public void setSupervisor(Researcher r) {
-		supervisor = r;
+		Data.getInstance().change(Shard.CORE, () -> supervisor = r);
 	}
     /**
      * Gets the type of the graduate student.
@@ -188,7 +190,7 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
      * @param t The type to set for the graduate student.
      */
 	public void setType(GraduateType t) {
-		graduateType = t;
+		Data.getInstance().change(Shard.CORE, () -> graduateType = t);
 	}
 
     /**
@@ -228,13 +230,13 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
 	 * project-related actions, sending tech reports, and the option to switch to the Researcher role if applicable.
 	 */
 	public void run() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		try {
 			System.out.println("Сейчас вы в личном кабинете GRADUATE STUDENT. Год: " + Data.getInstance().getYear() + ", семестр: " + Data.getInstance().getSemester());
 			if (Course.getRegistrationStatus()) {
 				System.out.println("Регистрация на дисциплины открыта!");
 				if (getCurrentCourses().isEmpty()
-						&& Manager.getRegistrationRequests().stream().noneMatch(n -> n.getSender().equals(this) && n.getStatus() == RequestStatus.SHIPPED)) {
+						&& !Data.getInstance().getRequestIndex().contains(this, RequestStatus.SHIPPED)) {
 					System.out.println("Ваш список дисциплин и запросов на регистрацию пуст. Пожалуйста, зарегистрируйте дисциплины!");
 				}
 			}
@@ -285,7 +287,7 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
 	 * It uses the ResearchProject class for project-related operations.
 	 */
 	protected void projectRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		projecting: while(true){
 			System.out.println("1) Посмотреть свой проект \n2) Создать проект \n3) Вступить в проект \n4) Вернуться назад");
@@ -304,7 +306,7 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
 					in.nextLine();
 					String text = in.nextLine();
 					this.createProject(new ResearchProject(text));
-					Data.getInstance().getLogs().add(new Log(getId() + " создал научный проект " + text));
+					Data.getInstance().log(LogAction.CREATE_PROJECT, getId(), null, text);
 					System.out.println("Вы успешно создали проект!");
 				}
 			} else if (choice == 3){
@@ -322,7 +324,7 @@ public class GraduateStudent extends Student implements CanResearch, Serializabl
 					if(choice < 1 || choice >= cnt) continue projecting;
 					ResearchProject actualProject = actualProjects.get(choice - 1);
 					joinToProject(actualProject);
-					Data.getInstance().getLogs().add(new Log(getId() + " вступил в проект " + actualProject.getTopic()));
+					Data.getInstance().log(LogAction.JOIN_PROJECT, getId(), String.valueOf(actualProject.getId()), actualProject.getTopic());
 					System.out.println("Вы успешно вступили в проект!");
 				}
 			} else if(choice == 4){
@@ -2,11 +2,17 @@ package universitysystem.entity;
 
 import universitysystem.courses.*;
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.GpaRanking;
+import universitysystem.data.RegistrationBatch;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
+import universitysystem.data.LockStripes;
 import universitysystem.interfaces.StudentsInfo;
 import universitysystem.interfaces.TeachersInfo;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -20,6 +26,7 @@ import java.util.stream.Collectors;
  */
 public class Manager extends Employee implements TeachersInfo, StudentsInfo, Serializable
 {
+	private static final long serialVersionUID = 2707531014988192521L;
 	private ManagerType type;
 
 	private static Vector<RegistrationRequest> registrationRequests;
@@ -136,7 +143,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
      * @param type - to set for the Manager.
      */
 	public void setType(ManagerType type) {
-		this.type = type;
+		Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.type = type));
 	}
     /**
      * Gets the registration requests submitted to the Manager.
@@ -175,7 +182,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 * @param r The registered course to be added.
 	 */
 	public void addCourse(Student student, RegisteredCourse r) {
-		student.addCurrentCourse(r);
+		Data.getInstance().journal(new JournalEntry.AddCurrentCourse(student, r));
 	}
 	/**
 	 * Drops a course from the current courses of a student.
@@ -184,7 +191,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 * @return {@code true} if the course is successfully dropped, {@code false} otherwise.
 	 */
 	public boolean dropCourse(Student student, Course course) {
-		return student.getCurrentCourses().removeIf(registeredCourse -> registeredCourse.getCourse().equals(course));
+		return Data.getInstance().journal(new JournalEntry.DropCourse(student, course));
 	}
     /**
      * Approves a registration request.
@@ -192,8 +199,8 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
      * @return True if the request is approved successfully, false otherwise.
      */
 	public boolean approveRegistration(RegistrationRequest r){
-		r.getSender().addNotification(new Notification("Заявка на регистрацию курса", "Ваша заявка была рассмотрена!"));
-		r.setStatus(RequestStatus.DONE);
+		Data.getInstance().journal(new JournalEntry.AddNotification(r.getSender(), new Notification("Заявка на регистрацию курса", "Ваша заявка была рассмотрена!")));
+		Data.getInstance().journal(new JournalEntry.SetRequestStatus(r, RequestStatus.DONE));
 		return true;
 	}
     /**
@@ -202,8 +209,8 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
      * @return True if the request is rejected successfully, false otherwise.
      */
 	public boolean rejectRegistration(RegistrationRequest r) {
-		r.getSender().addNotification(new Notification("Заявка на регистрацию курса", "Ваша заявка была отклонена."));
-		r.setStatus(RequestStatus.REFUSED);
+		Data.getInstance().journal(new JournalEntry.AddNotification(r.getSender(), new Notification("Заявка на регистрацию курса", "Ваша заявка была отклонена.")));
+		Data.getInstance().journal(new JournalEntry.SetRequestStatus(r, RequestStatus.REFUSED));
 		return false;
 	}
     /**
@@ -212,9 +219,18 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
      * @return True if the request is approved, false if rejected.
      */
 	public boolean considerRegistration(RegistrationRequest r) {
-		return assignCourseToStudent(r) ? (approveRegistration(r)) : (rejectRegistration(r));
+		return RegistrationBatch.considerAlone(r, q -> assignCourseToStudent(q) ? (approveRegistration(q)) : (rejectRegistration(q)));
 
 	}
+    /**
+     * Considers all pending registration requests at once, see {@link RegistrationBatch}.
+     * @return the finished batch with the number of approved and rejected requests.
+     */
+	public RegistrationBatch considerRegistrations() {
+		RegistrationBatch batch = RegistrationBatch.run(Data.getInstance());
+		Data.getInstance().log(LogAction.CONSIDER_REGISTRATIONS, getId(), null, batch.toString());
+		return batch;
+	}
 	/**
 	 * Assigns the course is for the student according to the registration request.
 	 * @param r - registration request.
@@ -222,25 +238,47 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 */
 	public boolean assignCourseToStudent(RegistrationRequest r) {
 		Student student = (Student) r.getSender();
-		CourseType courseType = null;
 		if (r.getRegistrationType() == RegistrationType.DROP){
 			return dropCourse(student, r.getCourse());
 		}
-		if (r.getCourse().getMajorFaculties().contains(student.getFaculty()))
-			courseType = CourseType.MAJOR;
-		if (r.getCourse().getFreeElectiveFaculties().contains(student.getFaculty()))
-			courseType = CourseType.FREE_ELECTIVE;
-		if (r.getCourse().getMinorFaculties().contains(student.getFaculty()))
-			courseType = CourseType.MINOR;
-		if (student.getCompletedCourses().stream()
-				.allMatch(registeredCourse ->
-						r.getCourse().getPrerequisites().contains(registeredCourse.getCourse()))
-		) {
-			addCourse(student, new RegisteredCourse(r.getCourse(), courseType));
-			return true;
+		CourseType courseType = courseTypeFor(student, r.getCourse());
+		if (courseType == null) return false;
+		if (!hasPrerequisites(student, r.getCourse())) return false;
+		LockStripes.Guard guard = Data.getInstance().lock(student, r.getCourse());
+		try {
+			if (Data.getInstance().getEnrollments().getFreeSeats(r.getCourse()) <= 0) return false;
+			if (student.getCredits(student.getCurrentCourses()) + r.getCourse().getCredits() <= Student.getMaxCredits()) {
+				addCourse(student, new RegisteredCourse(r.getCourse(), courseType));
+				return true;
+			}
+		} finally {
+			guard.close();
 		}
 		return false;
 	}
+	/**
+	 * Type of a course for a student by the faculty of the student. A minor faculty wins over a free elective one,
+	 * a free elective one over a major one.
+	 * @param student - student to be registered.
+	 * @param c - course.
+	 * @return type of the course, {@code null} if the faculty of the student may not take the course.
+	 */
+	public static CourseType courseTypeFor(Student student, Course c) {
+		Faculty faculty = student.getFaculty();
+		if (c.getMinorFaculties().contains(faculty)) return CourseType.MINOR;
+		if (c.getFreeElectiveFaculties().contains(faculty)) return CourseType.FREE_ELECTIVE;
+		if (c.getMajorFaculties().contains(faculty)) return CourseType.MAJOR;
+		return null;
+	}
+	/**
+	 * Checks whether the student completed all prerequisites of a course.
+	 * @param student - student to be registered.
+	 * @param c - course.
+	 * @return {@code true} if the student may take the course.
+	 */
+	public static boolean hasPrerequisites(Student student, Course c) {
+		return Data.getInstance().getPrerequisiteGraph().isEligible(student, c);
+	}
 	/**
 	 * Adds course to the registration system.
 	 * @param c - course to be added.
@@ -258,7 +296,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 */
 	public boolean assignCourseToTeacher(Course c, Teacher t) {
 		if(t.getCourses().stream().anyMatch(n -> n.equals(c))) return false;
-		return t.addCourse(c);
+		return Data.getInstance().journal(new JournalEntry.AssignCourse(t, c));
 	}
 	/**
 	 * Adds news item to the system.
@@ -283,7 +321,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 * @return {@code true} if the news item is successfully deleted, {@code false} otherwise.
 	 */
 	public boolean deleteNews(int id) {
-		return Data.getInstance().getNews().removeIf(news -> news.getId() == id);
+		return Data.getInstance().change(Shard.COMMUNICATION, () -> Data.getInstance().getNews().removeIf(news -> news.getId() == id));
 	}
 	/**
 	 * Removes course from the registration system.
@@ -319,11 +357,12 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		return true;
 	}
 	/**
-	 * Opens course registration.
+	 * Opens course registration and computes the courses every student may add.
 	 */
 	public void openCourseRegistration() {
 
 		Data.getInstance().setRegistrationStatus(true);
+		Data.getInstance().getRecommender().prepare();
 	}
 	/**
 	 * Closes course registration.
@@ -347,12 +386,11 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		Data.getInstance().setSchedulingStatus(false);
 	}
 	/**
-	 * Ends the semester, advancing to the next.
+	 * Ends the semester, advancing to the next. The progress of the rollover is printed while it runs.
 	 * @return {@code true} if the semester is successfully ended, {@code false} otherwise.
 	 */
 	public boolean endSemester() {
-		Data.getInstance().nextSemester();
-		return true;
+		return Data.getInstance().nextSemester(System.out::println).isComplete();
 	}
 	/**
 	 * Adds lesson to a course.
@@ -361,8 +399,13 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 * @return {@code true} if the lesson is successfully added, {@code false} otherwise.
 	 */
 	public boolean addLessonToCourse(Course c, Lesson l) {
-		if(c.getLessons().stream().anyMatch(n -> n.equals(l))) return false;
-		return c.addLesson(l);
+		LockStripes.Guard guard = Data.getInstance().lock(c);
+		try {
+			if(c.getLessons().stream().anyMatch(n -> n.equals(l))) return false;
+			return Data.getInstance().journal(new JournalEntry.AddLesson(c, l));
+		} finally {
+			guard.close();
+		}
 	}
 	/**
 	 * Removes lesson.
@@ -371,7 +414,12 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	 * @return {@code true} if the lesson is successfully removed, {@code false} otherwise.
 	 */
 	public boolean removeLessonFromCourse(Course c, Lesson l) {
-		return c.removeLesson(l);
+		LockStripes.Guard guard = Data.getInstance().lock(c);
+		try {
+			return Data.getInstance().journal(new JournalEntry.RemoveLesson(c, l));
+		} finally {
+			guard.close();
+		}
 	}
 	/**
 	 * Changes the teacher of a lesson in a course.
@@ -383,27 +431,55 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	//Можно просто вызвать для нового учителя метод добавления урока у него, и там уже все проверки будут
 	//и если вернет тру, то значит замена успешна
 	public boolean changeTeacher(Course c, Teacher newTeacher, Lesson l) {
-		c.getLessons().stream().filter(lesson -> lesson.equals(l)).findFirst().ifPresent(lesson -> lesson.setTeacher(newTeacher));
+		LockStripes.Guard guard = Data.getInstance().lock(c);
+		try {
+			c.getLessons().stream().filter(lesson -> lesson.equals(l)).findFirst().ifPresent(lesson -> lesson.setTeacher(newTeacher));
+		} finally {
+			guard.close();
+		}
 		return true;
 	}
 
-	public HashSet<Student> getStudents(){
+	public Set<Student> getStudents(){
 		return Data.getInstance().getStudents();
 	}
 	public List<Student> getStudents(Comparator<Student> comparator){
 		return getStudents().stream().sorted(comparator).toList();
 	}
 	public List<Student> getStudents(Organization organization){
-		return getStudents().stream().filter(student -> student.getOrganization() != null &&
-														student.getOrganization().equals(organization)).toList();
+		return Data.getInstance().getUserRegistry().getStudents(organization);
 	}
 	public List<Student> getStudents(int year){
-		return getStudents().stream().filter(student ->
-				student.getYearOfStudy() == year).toList();
+		return Data.getInstance().getUserRegistry().getStudents(year);
 	}
 	public List<Student> getStudents(Faculty faculty){
-		return getStudents().stream().filter(student -> student.getFaculty() != null &&
-				student.getFaculty().equals(faculty)).toList();
+		return Data.getInstance().getUserRegistry().getStudents(faculty);
+	}
+    /**
+     * Gets the students with the best GPA.
+     * @param k - maximal number of students.
+     * @return students, best first.
+     */
+	public List<Student> getTopStudents(int k){
+		return Data.getInstance().getRanking().all().top(k);
+	}
+    /**
+     * Gets the students of a faculty with the best GPA.
+     * @param faculty - faculty of the students.
+     * @param k - maximal number of students.
+     * @return students, best first.
+     */
+	public List<Student> getTopStudents(Faculty faculty, int k){
+		return Data.getInstance().getRanking().faculty(faculty).top(k);
+	}
+    /**
+     * Gets the students of a year of study with the best GPA.
+     * @param year - year of study of the students.
+     * @param k - maximal number of students.
+     * @return students, best first.
+     */
+	public List<Student> getTopStudents(int year, int k){
+		return Data.getInstance().getRanking().year(year).top(k);
 	}
     /**
      * Views information about students enrolled in a specific course.
@@ -411,33 +487,25 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
      * @return Representation of student information in the given course.
      */
     public List<Student> getStudents(Course c) {
-        return Data.getInstance().getStudents().stream()
-                .filter(student -> student.getCurrentCourses().stream()
-                        .allMatch(registeredCourse -> registeredCourse != null &&
-								registeredCourse.getCourse().equals(c)))
-                .toList();
+        return Data.getInstance().getEnrollments().getStudents(c);
     }
-	public HashSet<Teacher> getTeachers(){
+	public Set<Teacher> getTeachers(){
 		return Data.getInstance().getTeachers();
 	}
 	public List<Teacher> getTeachers(Comparator<Teacher> comparator){
 		return getTeachers().stream().sorted(comparator).toList();
 	}
 	public List<Teacher> getTeachers(Faculty faculty) {
-		return getTeachers().stream()
-				.filter(teacher -> teacher.getFaculty() != null && teacher.getFaculty().equals(faculty))
-				.toList();
+		return Data.getInstance().getUserRegistry().getTeachers(faculty);
 	}
 	public List<Teacher> getTeachers(TeacherType teacherType){
-		return getTeachers().stream()
-				.filter(teacher -> teacher.getType().equals(teacherType))
-				.toList();
+		return Data.getInstance().getUserRegistry().getTeachers(teacherType);
 	}
 	public List<Teacher> getTeachers (Course c) {
 		return c.getLessons().stream().map(Lesson::getTeacher).collect(Collectors.toSet()).stream().toList();
 	}
 	public void run() throws IOException {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		menu:
 		while (true) {
 			System.out.println("""
@@ -466,8 +534,13 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 								2 : Просмотреть отклоненные заявки
 								3 : Просмотреть принятые заявки
 								4 : Просмотреть все заявки
+								5 : Рассмотреть все неотвеченные заявки
 								""");
 						choice = in.nextInt();
+						if (choice == 5) {
+							System.out.println(considerRegistrations());
+							continue menu;
+						}
 						RequestStatus status = switch (choice) {
 							case 1 -> RequestStatus.SHIPPED;
 							case 2 -> RequestStatus.REFUSED;
@@ -548,6 +621,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 					}
 				case 3 -> {
 					List<Student> students = null;
+					GpaRanking.Group ranking = null;
 					filterUsers:
 					while (true) {
 						System.out.println("""
@@ -562,15 +636,25 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 						choice = in.nextInt();
 						switch (choice) {
 							case 1 -> {
-								students = getStudents(determineYear());
+								int year = determineYear();
+								students = getStudents(year);
+								ranking = Data.getInstance().getRanking().year(year);
+							}
+							case 2 -> {
+								Faculty faculty = determineFaculty();
+								students = getStudents(faculty);
+								ranking = Data.getInstance().getRanking().faculty(faculty);
 							}
-							case 2 -> students = getStudents(determineFaculty());
 							case 3 -> {
 								printOrganizations();
 								choice = in.nextInt();
 								students = getStudents(Data.getInstance().getOrganizations().stream().toList().get(choice));
+								ranking = null;
+							}
+							case 4 -> {
+								students = getStudents().stream().toList();
+								ranking = Data.getInstance().getRanking().all();
 							}
-							case 4 -> students = getStudents().stream().toList();
 							case 5 -> {
 								break filterUsers;
 							}
@@ -600,7 +684,14 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 							choice = in.nextInt();
 							Comparator<Student> comparator = Comparator.comparing(Student::getId);
 							switch (choice) {
-								case 1 -> comparator = Comparator.comparing(Student::getGpa);
+								case 1 -> {
+									// the ranking is already ordered, best GPA first
+									if (ranking != null) {
+										outputList(ranking.list());
+										continue;
+									}
+									comparator = Comparator.comparing(Student::getGpa).reversed();
+								}
 								case 2 -> {
 
 								}
@@ -678,7 +769,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 								System.out.println("""
 										Курс добавлен
 										""");
-								Data.getInstance().addLog(new Log("New course in registration: " + course));
+								Data.getInstance().log(LogAction.OPEN_COURSE, getId(), course.getCode(), null);
 							}
 							else {
 								System.out.println("""
@@ -692,7 +783,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 								System.out.println("""
 										Курс удалён
 										""");
-								Data.getInstance().addLog(new Log("Course removed from registration: " + course));
+								Data.getInstance().log(LogAction.CLOSE_COURSE, getId(), course.getCode(), null);
 							}
 							else System.out.println("""
 									Курсов нет
@@ -789,10 +880,10 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 					choice = in.nextInt();
 					switch (choice){
 						case 1 -> {
-							Data.getInstance().nextSemester();
+							Data.getInstance().nextSemester(System.out::println);
 						}
 						case 2 -> {
-							endSemester();
+							if(!endSemester()) System.out.println("Семестр закончен не полностью, повторите, чтобы продолжить");
 						}
 					}
 				}
@@ -851,8 +942,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 
 	private List<RegistrationRequest> printRequests(RequestStatus status){
 		int count = 1;
-		List<RegistrationRequest> requests = Data.getInstance().getRegistrationRequests().stream()
-				.filter(registrationRequest -> registrationRequest.getStatus().equals(status)).toList();
+		List<RegistrationRequest> requests = status == null ? List.of() : Data.getInstance().getRequestIndex().get(status);
 		if (status == null || requests.isEmpty()){
 			System.out.println("""
 					Заявок нет
@@ -881,7 +971,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	}
 
 	private TeacherType determineTeacher(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 			1 : Tutor
 			2 : Senior Lecturer
@@ -895,7 +985,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		};
 	}
 	private Faculty determineFaculty() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		System.out.println("""
 				1 : SITE
@@ -923,7 +1013,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		};
 	}
 	private Teacher chooseTeacher(List<Teacher> teachers){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int count = 1;
 		for (Teacher teacher : teachers) {
 			System.out.println(count++ + "  : " + teacher.toString());
@@ -937,7 +1027,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		return teachers.get(choice - 1);
 	}
 	private Student chooseStudent(List<Student> students){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int count = 1;
 		for (Student student : students) {
 			System.out.println(count++ + "  : " + student.toString());
@@ -967,7 +1057,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	}
 
 	private int determineYear(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				1 : 1 год
 				2 : 2 год
@@ -986,7 +1076,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 		};
 	}
 	private TopicType chooseTopic(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				1 : Research
 				2 : Lessons
@@ -1006,7 +1096,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	}
 
 	private Course chooseCourse(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int count = 1;
 		List<Course> courses = Data.getInstance().getCourses().stream().toList();
 		if (courses.isEmpty()){
@@ -1024,7 +1114,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	}
 
 	private Lesson chooseLesson(Course c){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int count = 1;
 		for (Lesson lesson : c.getLessons()) {
 			System.out.println(count++ + "  : " + lesson.toString());
@@ -1037,7 +1127,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 
 	}
 	private Lesson createLesson(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				Выберите учителя
 				""");
@@ -1089,7 +1179,7 @@ public class Manager extends Employee implements TeachersInfo, StudentsInfo, Ser
 	}
 
 	private Course createCourse(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		System.out.println("""
 				Введите название курса
 				""");
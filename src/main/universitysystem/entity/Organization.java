@@ -1,5 +1,7 @@
 package universitysystem.entity;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -52,7 +54,7 @@ public class Organization implements Serializable
      * @param name The new name of the organization.
      */
 	public void setName(String name) {
-		this.name = name;
+		Data.getInstance().change(Shard.CORE, () -> this.name = name);
 	}
     /**
      * Gets the head student of the organization.
@@ -66,7 +68,7 @@ public class Organization implements Serializable
      * @param head - New head student of the organization.
      */
 	public void setHead(Student head) {
-		this.head = head;
+		Data.getInstance().change(Shard.CORE, () -> this.head = head);
 	}
     /**
      * Hash code for the organization.
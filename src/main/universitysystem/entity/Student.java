@@ -3,11 +3,16 @@ package universitysystem.entity;
 
 import universitysystem.courses.*;
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
+import universitysystem.data.LockStripes;
+import universitysystem.data.CourseRecommender;
 import universitysystem.interfaces.Scheduling;
 import universitysystem.interfaces.TeachersInfo;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -22,6 +27,7 @@ import java.util.stream.Collectors;
 
 public class Student extends User implements TeachersInfo, Scheduling, Serializable
 {
+	private static final long serialVersionUID = 2692480081534697398L;
 	private static int maxCredits = 30;
 	private HashSet<RegisteredCourse> currentCourses;
 	private HashSet<RegisteredCourse> completedCourses;
@@ -30,6 +36,11 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	private int yearOfStudy;
 	private Organization organization;
 	private int warning = 0;
+	private int endedTerm;
+	private transient double gpa;
+	private transient int totalCredits;
+	private transient int creditsVersion;
+	private transient volatile boolean gpaValid;
 
 	{
 		this.currentCourses = new HashSet<>();
@@ -141,7 +152,12 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the addition is successful, {@code false} otherwise.
      */
 	public boolean addCurrentCourse(RegisteredCourse c) {
-		return this.currentCourses.add(c);
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if(!this.currentCourses.add(c)) return false;
+			Data.getInstance().getEnrollments().enroll(this, c);
+			Data.getInstance().recommendationsChanged(this);
+			return true;
+		});
 	}
     /**
      * Removes a current course from the student's collections.
@@ -149,10 +165,15 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the removal is successful, {@code false} otherwise.
      */
 	public boolean removeCurrentCourse(RegisteredCourse c) {
-		if (this.currentCourses != null) {
-			return this.currentCourses.remove(c);
-		}
-		return false;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			// the hash code of a registered course changes with its lessons, so it may have to be found by identity
+			if (this.currentCourses != null && (this.currentCourses.remove(c) || this.currentCourses.removeIf(n -> n == c))) {
+				Data.getInstance().getEnrollments().drop(this, c);
+				Data.getInstance().recommendationsChanged(this);
+				return true;
+			}
+			return false;
+		});
 	}
     /**
      * Gets the list of current courses.
@@ -171,22 +192,27 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @throws DuplicateRegistrationException  If a duplicate registration request is found.
      */
 	public boolean registerToCourse(Course c, RegistrationType type) throws CourseRegisteredException, MaxCreditsException, DuplicateRegistrationException {
-		if(Data.getInstance().getRegistrationRequests().stream().anyMatch(n-> n.getSender() == this && n.getCourse() == c)){
-			throw new DuplicateRegistrationException("The request has already been sent");
-        } else{
-			boolean courseInProgress = currentCourses.stream().anyMatch(n -> n.getCourse() == c);
-			if (type == RegistrationType.ADD){
-				boolean courseCompleted = completedCourses.stream().anyMatch(n -> n.getCourse() == c);
-				if (courseInProgress || courseCompleted){
-					throw new CourseRegisteredException("The course has already been registered");
-                } else if (this.getCredits(currentCourses) + c.getCredits() > maxCredits){
-					throw new MaxCreditsException("Exceeding credits");
-                } else return Data.getInstance().getRegistrationRequests().add(new RegistrationRequest(this, c, type));
+		LockStripes.Guard guard = Data.getInstance().lock(this);
+		try {
+			if(Data.getInstance().getRequestIndex().contains(this, c)){
+				throw new DuplicateRegistrationException("The request has already been sent");
 			} else{
-				if(!courseInProgress){
-					throw new CourseRegisteredException("The course was not registered");
-                } else return Data.getInstance().getRegistrationRequests().add(new RegistrationRequest(this, c, type));
+				boolean courseInProgress = currentCourses.stream().anyMatch(n -> n.getCourse() == c);
+				if (type == RegistrationType.ADD){
+					boolean courseCompleted = completedCourses.stream().anyMatch(n -> n.getCourse() == c);
+					if (courseInProgress || courseCompleted){
+						throw new CourseRegisteredException("The course has already been registered");
+					} else if (this.getCredits(currentCourses) + c.getCredits() > maxCredits){
+						throw new MaxCreditsException("Exceeding credits");
+					} else return Data.getInstance().addRegistrationRequest(new RegistrationRequest(this, c, type));
+				} else{
+					if(!courseInProgress){
+						throw new CourseRegisteredException("The course was not registered");
+					} else return Data.getInstance().addRegistrationRequest(new RegistrationRequest(this, c, type));
+				}
 			}
+		} finally {
+			guard.close();
 		}
     }
     /**
@@ -196,8 +222,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	public List<String> viewTranscript() {
 		List<String> transcript = completedCourses.stream().map(RegisteredCourse::toString).collect(Collectors.toList());
 		transcript.addAll(notCompletedCourses.stream().map(RegisteredCourse::toString).toList());
-		transcript.add("Total credits: " + getCredits(completedCourses) + getCredits(notCompletedCourses)
-				+ ". Total GPA: " + getGpa());
+		transcript.add("Total credits: " + getTotalCredits() + ". Total GPA: " + getGpa());
 		return transcript;
 	}
     /**
@@ -216,18 +241,54 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	public boolean rateTeacher(Teacher t, int rate) {
 		if(currentCourses.stream().anyMatch(n -> n.getLessons().stream().anyMatch(l -> l.getTeacher() == t))
 		&& rate >= 0 && rate <= 10){
-			return t.addRate(this, rate);
+			return Data.getInstance().journal(new JournalEntry.SetRate(t, this, rate));
 		} return false;
 	}
     /**
-     * Retrieve the student's GPA.
+     * Retrieve the student's GPA. It is computed once and kept until a completed course or its grades change.
      * @return student GPA.
      */
 	public double getGpa() {
-		double sumGpa = completedCourses.stream().mapToDouble(n -> n.getGpa() * n.getCourse().getCredits()).sum();
-		int credits = getCredits(completedCourses) + getCredits(notCompletedCourses);
-		if(credits > 0) return sumGpa / credits;
-		else return 0;
+		if(!gpaValid || creditsVersion != Course.getCreditsVersion()) computeGpa();
+		return gpa;
+	}
+    /**
+     * Retrieve the number of credits of the completed and not completed courses.
+     * @return total credits.
+     */
+	public int getTotalCredits() {
+		if(!gpaValid || creditsVersion != Course.getCreditsVersion()) computeGpa();
+		return totalCredits;
+	}
+    /**
+     * Drops the computed GPA, so it is computed again when it is asked for.
+     * Called when a completed course or its grades change.
+     */
+	public void invalidateGpa() {
+		synchronized (this) {
+			gpaValid = false;
+		}
+		Data.getInstance().rankingChanged(this);
+	}
+
+	private synchronized void computeGpa() {
+		int version = Course.getCreditsVersion();
+		if(gpaValid && creditsVersion == version) return;
+		double sumGpa = 0;
+		int credits = 0;
+		for (RegisteredCourse r : completedCourses) {
+			r.setOwner(this);
+			sumGpa += r.getGpa() * r.getCourse().getCredits();
+			credits += r.getCourse().getCredits();
+		}
+		for (RegisteredCourse r : notCompletedCourses) {
+			r.setOwner(this);
+			credits += r.getCourse().getCredits();
+		}
+		gpa = credits > 0 ? sumGpa / credits : 0;
+		totalCredits = credits;
+		creditsVersion = version;
+		gpaValid = true;
 	}
     /**
      * Obtain the academic department to which the student is affiliated.
@@ -241,7 +302,11 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @param faculty The faculty to set.
      */
 	public void setFaculty(Faculty faculty) {
-		this.faculty = faculty;
+		Data.getInstance().change(Shard.CORE, () -> {
+			Data.getInstance().getUserRegistry().update(this, () -> this.faculty = faculty);
+			Data.getInstance().rankingChanged(this);
+			Data.getInstance().recommendationsChanged(this);
+		});
 	}
     /**
      * Gets the year of study for the student.
@@ -255,7 +320,10 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @param yearOfStudy The new year of study.
      */
 	public void setYearOfStudy(int yearOfStudy) {
-		this.yearOfStudy = yearOfStudy;
+		Data.getInstance().change(Shard.CORE, () -> {
+			Data.getInstance().getUserRegistry().update(this, () -> this.yearOfStudy = yearOfStudy);
+			Data.getInstance().rankingChanged(this);
+		});
 	}
     /**
      * Gets the organization to which the student belongs.
@@ -274,7 +342,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 			return;
 		}
 		Organization o = new Organization(name, this);
-		Data.getInstance().getOrganizations().add(o);
+		Data.getInstance().addOrganization(o);
 		joinToOrganization(o);
 	}
 	//можно уведомлять, что лидер ушел и будут проведены выборы
@@ -284,16 +352,20 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	 * @param o - organization to join.
 	 */
 	public void joinToOrganization(Organization o) {
-		leaveFromOrganization();
-		this.organization = o;
+		Data.getInstance().change(Shard.CORE, () -> {
+			leaveFromOrganization();
+			Data.getInstance().getUserRegistry().update(this, () -> this.organization = o);
+		});
 	}
     /**
      * Leaves the current organization.
      */
 	public void leaveFromOrganization(){
-		if(organization != null){
-			if(organization.getHead() == this) organization.setHead(null);
-		}
+		Data.getInstance().change(Shard.CORE, () -> {
+			if(organization != null){
+				if(organization.getHead() == this) organization.setHead(null);
+			}
+		});
 	}
 	/**
 	 * Prints the schedule for the current courses including course code, title, and associated lessons.
@@ -339,7 +411,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * Adds a warning to the student.
      */
 	public void addWarning() {
-		this.warning++;
+		Data.getInstance().change(Shard.CORE, () -> this.warning++);
 	}
     /**
      * Views the marks associated with a registered course.
@@ -351,18 +423,37 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	}
     /**
      * Completes the semester for the student, categorizing courses as either completed or not completed depending on the retake status.
-     * @return {@code true} if the semester end is successful, {@code false} otherwise.
+     * A term that is already ended for the student is skipped, so an interrupted rollover can be repeated.
+     * @param term - number of the ended term, see {@link Data#getTerm()}.
+     * @param newYear - whether the term ends the academic year and the year of study grows.
+     * @return {@code true} if the semester end is successful, {@code false} if the term was already ended.
      */
-	public boolean endSemester() {
-		for (RegisteredCourse r: currentCourses){
-			if(r.isRetake()) notCompletedCourses.add(r);
-			else completedCourses.add(r);
-		}
-		currentCourses.clear();
+	public boolean endSemester(int term, boolean newYear) {
+		if(endedTerm >= term) return false;
+		Data.getInstance().change(Shard.CORE, () -> {
+			Data.getInstance().getEnrollments().remove(this);
+			for (RegisteredCourse r: currentCourses){
+				if(r.isRetake()) notCompletedCourses.add(r);
+				else completedCourses.add(r);
+				r.setOwner(this);
+			}
+			currentCourses.clear();
+			invalidateGpa();
+			Data.getInstance().completedCoursesChanged(this);
+			if(newYear) setYearOfStudy(yearOfStudy + 1);
+			endedTerm = term;
+		});
 		return true;
 	}
+	/**
+	 * Gets the last term that was ended for the student.
+	 * @return term number, see {@link Data#getTerm()}, {@code 0} if none.
+	 */
+	public int getEndedTerm() {
+		return endedTerm;
+	}
     /**
-     * Gets completed courses in set.
+     * Gets completed courses in set. Use the methods of the student to change it, so the GPA is recomputed.
      * @return Set of completed courses.
      */
 	public HashSet<RegisteredCourse> getCompletedCourses() {
@@ -374,7 +465,12 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the removal is successful, {@code false} otherwise.
      */
 	public boolean removeCompletedCourse(RegisteredCourse c) {
-		return completedCourses.remove(c);
+		return Data.getInstance().change(Shard.CORE, () -> {
+			boolean removed = completedCourses.remove(c);
+			invalidateGpa();
+			Data.getInstance().completedCoursesChanged(this);
+			return removed;
+		});
 	}
     /**
      * Adds a completed course to the set of completed courses.
@@ -382,7 +478,13 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the addition is successful, {@code false} otherwise.
      */
 	public boolean addCompletedCourse(RegisteredCourse c) {
-		return completedCourses.add(c);
+		return Data.getInstance().change(Shard.CORE, () -> {
+			c.setOwner(this);
+			boolean added = completedCourses.add(c);
+			invalidateGpa();
+			Data.getInstance().completedCoursesChanged(this);
+			return added;
+		});
 	}
     /**
      * Adds a not completed course to the set of not completed courses.
@@ -390,7 +492,12 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the addition is successful, {@code false} otherwise.
      */
 	public boolean addNotCompletedCourse(RegisteredCourse c) {
-		return notCompletedCourses.add(c);
+		return Data.getInstance().change(Shard.CORE, () -> {
+			c.setOwner(this);
+			boolean added = notCompletedCourses.add(c);
+			invalidateGpa();
+			return added;
+		});
 	}
     /**
      * Removes a not completed course from the set of not completed courses.
@@ -398,10 +505,14 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the removal is successful, {@code false} otherwise.
      */
 	public boolean removeNotCompletedCourse(RegisteredCourse c) {
-		return notCompletedCourses.remove(c);
+		return Data.getInstance().change(Shard.CORE, () -> {
+			boolean removed = notCompletedCourses.remove(c);
+			invalidateGpa();
+			return removed;
+		});
 	}
     /**
-     * Gets the set of not completed courses.
+     * Gets the set of not completed courses. Use the methods of the student to change it, so the GPA is recomputed.
      * @return Set of not completed courses.
      */
 	public HashSet<RegisteredCourse> getNotCompletedCourses() {
@@ -471,27 +582,30 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      */
     
 	public boolean addLessonToSchedule(Course c, Lesson l){
-		if(!Lesson.getSchedulingStatus()) return false;
-		RegisteredCourse r = getCurrentRegisteredCourse(c);
-		if(r == null) return false;
-		if(r.getLessons().stream().anyMatch(n -> n.equals(l))) return false;
-		for(Lesson lesson: viewLessons()){
-			if((l.getStartTime() == lesson.getStartTime()) || (l.getEndTime() == lesson.getEndTime())
-			|| ((l.getStartTime() >= lesson.getStartTime() && l.getEndTime() <= lesson.getEndTime()))) return false;
-		}
-		if(!l.isLessonFull()) return false;
-		boolean result = false;
-		switch (l.getType()){
-			case LECTURE -> result = r.getCourse().getLectures() > r.getLessons().stream()
-					.filter(n -> n.getType() == LessonType.LECTURE).count();
-			case PRACTICE -> result = r.getCourse().getPractices() > r.getLessons().stream()
-					.filter(n -> n.getType() == LessonType.PRACTICE).count();
-			case LAB -> result = r.getCourse().getLabs() > r.getLessons().stream()
-					.filter(n -> n.getType() == LessonType.LAB).count();
+		LockStripes.Guard guard = Data.getInstance().lock(this);
+		try {
+			if(!Lesson.getSchedulingStatus()) return false;
+			RegisteredCourse r = getCurrentRegisteredCourse(c);
+			if(r == null) return false;
+			if(r.getLessons().stream().anyMatch(n -> n.equals(l))) return false;
+			for(Lesson lesson: viewLessons()){
+				if((l.getStartTime() == lesson.getStartTime()) || (l.getEndTime() == lesson.getEndTime())
+				|| ((l.getStartTime() >= lesson.getStartTime() && l.getEndTime() <= lesson.getEndTime()))) return false;
+			}
+			boolean result = false;
+			switch (l.getType()){
+				case LECTURE -> result = r.getCourse().getLectures() > r.getLessons().stream()
+						.filter(n -> n.getType() == LessonType.LECTURE).count();
+				case PRACTICE -> result = r.getCourse().getPractices() > r.getLessons().stream()
+						.filter(n -> n.getType() == LessonType.PRACTICE).count();
+				case LAB -> result = r.getCourse().getLabs() > r.getLessons().stream()
+						.filter(n -> n.getType() == LessonType.LAB).count();
+			}
+			Data.getInstance().log(LogAction.ADD_LESSON, getId(), c.getCode(), null);
+			return result && Data.getInstance().journal(new JournalEntry.ScheduleLesson(this, c, l));
+		} finally {
+			guard.close();
 		}
-		Data.getInstance().getLogs().add(new Log(getId() + " добавил урок в расписание"));
-		if(result) return r.addLesson(l);
-		return false;
 	}
     /**
      * Removes a lesson from the student's schedule.
@@ -499,11 +613,13 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
      * @return {@code true} if the removal is successful, {@code false} otherwise.
      */
 	public boolean removeLessonFromSchedule(Lesson l){
-		if(Lesson.getSchedulingStatus()) return false;
-		RegisteredCourse course = currentCourses.stream().filter(n -> n.getLessons().stream()
-				.anyMatch(lesson -> lesson.equals(l))).findFirst().orElse(null);
-		if(course == null) return false;
-		return course.removeLesson(l);
+		LockStripes.Guard guard = Data.getInstance().lock(this);
+		try {
+			if(!Lesson.getSchedulingStatus()) return false;
+			return Data.getInstance().journal(new JournalEntry.UnscheduleLesson(this, l));
+		} finally {
+			guard.close();
+		}
 	}
     /**
      * Converts the student object to a string representation.
@@ -564,13 +680,13 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	 * @throws IOException If an I/O error occurs during the execution.
 	 */
 	public void run() {
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		try {
 			System.out.println("Сейчас вы в личном кабинете СТУДЕНТА. Год: " + Data.getInstance().getYear() + ", семестр: " + Data.getInstance().getSemester());
 			if (Course.getRegistrationStatus()) {
 				System.out.println("Регистрация на дисциплины открыта!");
 				if (currentCourses.isEmpty()
-						&& Manager.getRegistrationRequests().stream().noneMatch(n -> n.getSender().equals(this) && n.getStatus() == RequestStatus.SHIPPED)) {
+						&& !Data.getInstance().getRequestIndex().contains(this, RequestStatus.SHIPPED)) {
 					System.out.println("Ваш список дисциплин и запросов на регистрацию пуст. Пожалуйста, зарегистрируйте дисциплины!");
 				}
 			}
@@ -621,7 +737,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	 * The method utilizes the console for user input and displays relevant information during the scheduling process.
 	 */
 	protected void studentScheduleRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		schedule:
 		while (true) {
@@ -714,7 +830,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 					if (choice >= cnt - 1 || choice < 1) continue schedule;
 					Lesson lessonForDeleting = viewLessons().get(choice - 1);
 					boolean delLesson = removeLessonFromSchedule(lessonForDeleting);
-					Data.getInstance().getLogs().add(new Log(getId() + " удалил урок из расписания"));
+					Data.getInstance().log(LogAction.REMOVE_LESSON, getId(), null, null);
 					System.out.println((delLesson ? "Успешно удалено!" : "Ошибка при удалении.") + "\n1) Удалить еще один урок \n2) Вернуться назад \n3) Exit");
 					choice = in.nextInt();
 					if (choice == 1) continue deletingLessons;
@@ -734,7 +850,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	 * The method utilizes the console for user input and displays relevant information during the process.
 	 */
 	protected void studentCoursesRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		courses:
 		while (true) {
@@ -839,7 +955,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 							continue courses;
 						}
 						boolean rating = rateTeacher(teacherRate, rate);
-						Data.getInstance().getLogs().add(new Log(getId() + " оценил учителя " + teacherRate.getId()));
+						Data.getInstance().log(LogAction.RATE_TEACHER, getId(), teacherRate.getId(), null);
 						System.out.println((rating ? "Оценка поставлена!" : "Ошибка при оценивании") + "\n1) Оценить другого учителя \n2)Вернуться назад \n3) Exit");
 						choice = in.nextInt();
 						if (choice == 1) continue teachersRating;
@@ -862,19 +978,22 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 						Course choicedCourse = null;
 						RegistrationType type = null;
 						Vector<Course> actualCourses;
+						Vector<String> descriptions;
 						int cnt = 0;
 						if (choice == 1) {
 							type = RegistrationType.ADD;
-							System.out.println("Выберите курс: ");
-							actualCourses = Data.getInstance().getCourses().stream().filter(n -> n.getYear() == Data.getInstance().getYear())
-									.filter(n -> n.getSemester() == Data.getInstance().getSemester()).collect(Collectors.toCollection(Vector::new));
+							System.out.println("Курсы, на которые можно подать заявку. Выберите курс: ");
+							List<CourseRecommender.Recommendation> recommended = Data.getInstance().getRecommender().recommend(this);
+							actualCourses = recommended.stream().map(CourseRecommender.Recommendation::course).collect(Collectors.toCollection(Vector::new));
+							descriptions = recommended.stream().map(CourseRecommender.Recommendation::toString).collect(Collectors.toCollection(Vector::new));
 						} else {
 							type = RegistrationType.DROP;
 							System.out.println("Выберите курс: ");
 							actualCourses = currentCourses.stream().map(RegisteredCourse::getCourse).collect(Collectors.toCollection(Vector::new));
+							descriptions = actualCourses.stream().map(Course::toString).collect(Collectors.toCollection(Vector::new));
 						}
-						for (Course c : actualCourses) {
-							System.out.println(++cnt + ") " + c);
+						for (String d : descriptions) {
+							System.out.println(++cnt + ") " + d);
 						}
 						System.out.println(++cnt + ") Вернуться назад");
 						choice = in.nextInt();
@@ -882,7 +1001,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 						choicedCourse = actualCourses.get(choice - 1);
 						try {
 							boolean request = registerToCourse(choicedCourse, type);
-							Data.getInstance().getLogs().add(new Log(getId() + " отправил заявку на регистрацию курса " + choicedCourse.getCode()));
+							Data.getInstance().log(LogAction.REGISTRATION_REQUEST, getId(), choicedCourse.getCode(), null);
 							System.out.println((request ? "Заявка успешно отправлена!" : "Не удалось отправить заявку.")
 									+ "\n1) Отправить еще одну заявку \n2) Вернутся в меню \n3) Exit");
 							choice = in.nextInt();
@@ -918,7 +1037,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 					}
 				}
 			} else if (choice == 9) {
-				Vector<RegistrationRequest> requests = Data.getInstance().getRegistrationRequests().stream().filter(n -> n.getSender().equals(this)).collect(Collectors.toCollection(Vector::new));
+				List<RegistrationRequest> requests = Data.getInstance().getRequestIndex().get(this);
 				System.out.println("Ваши заявки на регистрацию: ");
 				for (RegistrationRequest r : requests) {
 					System.out.println(r);
@@ -941,7 +1060,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 	 * The method utilizes the console for user input and displays relevant information during the process.
 	 */
 	protected void organizationsRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		organizations:
 		while (true) {
@@ -965,7 +1084,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 			choice = in.nextInt();
 			if (choice == 1 && getOrganization() != null) {
 				leaveFromOrganization();
-				Data.getInstance().getLogs().add(new Log(getId() + " вышел из организации"));
+				Data.getInstance().log(LogAction.LEAVE_ORGANIZATION, getId(), null, null);
 				break;
 			} else if ((choice == 2 && getOrganization() != null) || (choice == 1 && getOrganization() == null)) {
 				System.out.println("Выберите организацию из списка: ");
@@ -979,7 +1098,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 				if (choice >= cnt || choice < 1) break;
 				Organization organ = allOrganizations.get(choice - 1);
 				joinToOrganization(organ);
-				Data.getInstance().getLogs().add(new Log(getId() + " вступил в организацию " + organ.getName()));
+				Data.getInstance().log(LogAction.JOIN_ORGANIZATION, getId(), organ.getName(), null);
 				System.out.println("Вы успешно вступили в организацию " + organ);
 				break;
 			} else if(choice == 3 && getOrganization() == null){
@@ -987,7 +1106,7 @@ public class Student extends User implements TeachersInfo, Scheduling, Serializa
 				in.nextLine();
 				String text = in.nextLine();
 				createOrganization(text);
-				Data.getInstance().getLogs().add(new Log(getId() + " создал организацию " + text));
+				Data.getInstance().log(LogAction.CREATE_ORGANIZATION, getId(), text, null);
 				System.out.println("Успешно!");
 				break;
 			}  else if ((choice == 3 && getOrganization() != null) || (choice == 2 && getOrganization() == null)){
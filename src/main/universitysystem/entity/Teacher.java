@@ -2,10 +2,14 @@ package universitysystem.entity;
 
 import universitysystem.courses.*;
 import universitysystem.data.Data;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
 import universitysystem.interfaces.Scheduling;
 import universitysystem.interfaces.StudentsInfo;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -20,12 +24,14 @@ import java.util.stream.Collectors;
  */
 public class Teacher extends Employee implements StudentsInfo, Scheduling, Serializable
 {
+	private static final long serialVersionUID = 7768653289750031517L;
 	private HashSet<Course> courses;
 	
 	private TeacherType type;
 	
 	private HashMap<Student, Integer> rates;
 	private Faculty faculty;
+	private int endedTerm;
 
 	{
 		type = null;
@@ -133,7 +139,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the course is added successfully, {@code false} otherwise.
      */
 	public boolean addCourse(Course c) {
-		return courses.add(c);
+		return Data.getInstance().change(Shard.CORE, () -> courses.add(c));
 	}
     /**
      * Removes course from the set taught by the teacher.
@@ -141,7 +147,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the course is removed successfully, {@code false} otherwise.
      */
 	public boolean removeCourse(Course c) {
-		return courses.remove(c);
+		return Data.getInstance().change(Shard.CORE, () -> courses.remove(c));
 	}
     /**
      * Gets the set taught by the teacher.
@@ -157,11 +163,9 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if attestation is put successfully, {@code false} otherwise.
      */
 	public boolean putAttestation(Student s, Course c) {
-		return s.getCurrentCourses().stream()
-				.filter(r -> r.getCourse().equals(c))
-				.findFirst()
-				.map(RegisteredCourse::putAttestation)
-				.orElse(false);
+		if(!Data.getInstance().journal(new JournalEntry.PutAttestation(s, c, new Date()))) return false;
+		Data.getInstance().log(LogAction.PUT_ATTESTATION, getId(), s.getId(), c.getCode());
+		return true;
 	}
     /**
      * Puts a final exam score for a student in a specific course.
@@ -171,11 +175,9 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the final exam score is put successfully, {@code false} otherwise.
      */
 	public boolean putFinalExam(Student s, Double value, Course c){
-		return s.getCurrentCourses().stream()
-				.filter(r -> r.getCourse().equals(c))
-				.findFirst()
-				.map(r -> r.putFinalExam(value))
-				.orElse(false);
+		if(!Data.getInstance().journal(new JournalEntry.PutFinalExam(s, c, value, new Date()))) return false;
+		Data.getInstance().log(LogAction.PUT_FINAL_EXAM, getId(), s.getId(), c.getCode());
+		return true;
 	}
     /**
      * Puts a mark for a student in a specific course.
@@ -185,11 +187,9 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the mark is put successfully, {@code false} otherwise.
      */
 	public boolean putMark(Student s, Mark m, Course c) {
-		return s.getCurrentCourses().stream()
-				.filter(r -> r.getCourse().equals(c))
-				.findFirst()
-				.map(r -> r.addMark(m))
-				.orElse(false);
+		if(!Data.getInstance().journal(new JournalEntry.PutMark(s, c, m))) return false;
+		Data.getInstance().log(LogAction.PUT_MARK, getId(), s.getId(), c.getCode());
+		return true;
 	}
 	/**
 	* Sent complaints to the dean's.
@@ -210,7 +210,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @param type - new type of the teacher.
      */
 	public void setType(TeacherType type) {
-		this.type = type;
+		Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.type = type));
 	}
     /**
      * Gets the faculty of the teacher.
@@ -224,7 +224,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @param faculty - new faculty of the teacher.
      */
 	public void setFaculty(Faculty faculty) {
-		this.faculty = faculty;
+		Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.faculty = faculty));
 	}
     /**
      * Gets the average rate of the teacher.
@@ -248,8 +248,10 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the rate is added successfully, {@code false} otherwise.
      */
 	public boolean addRate(Student s, int rate){
-		rates.put(s,rate);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			rates.put(s,rate);
+			return true;
+		});
 	}
     /**
      * Removes the rate given by a student to the teacher.
@@ -257,17 +259,32 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * @return {@code true} if the rate is removed successfully, {@code false} otherwise.
      */
 	public boolean removeRate(Student s){
-		rates.remove(s);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			rates.remove(s);
+			return true;
+		});
 	}
     /**
      * Ends the semester for teacher, clearing the set.
-     * @return {@code true} if the semester is ended successfully, {@code false} otherwise.
-     */
-	public boolean endSemester() {
-		courses.clear();
+     * A term that is already ended for the teacher is skipped, so an interrupted rollover can be repeated.
+     * @param term - number of the ended term, see {@link Data#getTerm()}.
+     * @return {@code true} if the semester is ended successfully, {@code false} if the term was already ended.
+     */
+	public boolean endSemester(int term) {
+		if(endedTerm >= term) return false;
+		Data.getInstance().change(Shard.CORE, () -> {
+			courses.clear();
+			endedTerm = term;
+		});
 		return true;
 	}
+	/**
+	 * Gets the last term that was ended for the teacher.
+	 * @return term number, see {@link Data#getTerm()}, {@code 0} if none.
+	 */
+	public int getEndedTerm() {
+		return endedTerm;
+	}
 	/**
 	 * Sends an employee request to the Dean for approval.
 	 * @param e - {@code EmployeeRequest} to be sent for approval.
@@ -347,7 +364,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
 			if((l.getStartTime() == lesson.getStartTime()) || (l.getEndTime() == lesson.getEndTime())
 					 || ((l.getStartTime() >= lesson.getStartTime() && l.getEndTime() <= lesson.getEndTime()))) return false;
 		}
-		return c.addLesson(l);
+		return Data.getInstance().journal(new JournalEntry.AddLesson(c, l));
 	}
     /**
      * Schedule of the teacher removes.
@@ -360,7 +377,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
 		Course c = courses.stream().filter(n -> n.getLessons().stream()
 				.anyMatch(lesson -> lesson.equals(l))).findFirst().orElse(null);
 		if(c == null) return false;
-		return c.removeLesson(l);
+		return Data.getInstance().journal(new JournalEntry.RemoveLesson(c, l));
 	}
     /**
      * Verifies if this teacher is equal to another object.
@@ -408,7 +425,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * such as managing courses, grading students, and more.
      */
 	public void run(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		try {
 			System.out.println("Сейчас вы в личном кабинете УЧИТЕЛЯ");
 			if(!isScheduleComplete()){
@@ -454,7 +471,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * Method offers options to view, add, and remove lessons from the schedule.
      */
 	protected void teacherScheduleRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		schedule:
 		while (true) {
@@ -528,7 +545,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
 					choice = in.nextInt();
 					if(choice < 10 || choice > 150) continue schedule;
 					int maxStudents = choice;
-					boolean addLesson = currentCourse.addLesson(new Lesson(this, lesType, day, startTime, endTime, maxStudents));
+					boolean addLesson = Data.getInstance().journal(new JournalEntry.AddLesson(currentCourse, new Lesson(this, lesType, day, startTime, endTime, maxStudents)));
 					System.out.println((addLesson ? "Успешно добавлено!" : "Ошибка при добавлении.") + "\n1) Добавить еще один урок \n2) Вернуться назад \n3) Exit");
 					choice = in.nextInt();
 					if (choice == 1) continue addingLessons;
@@ -566,7 +583,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
      * It provides options to add or remove courses from the teacher's list.
      */
 	protected void manageTeacherCoursesRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		manageCourses: while(true){
 			System.out.println("1) Добавить курс \n2) Удалить курс \n3) Вернуться назад");
@@ -624,7 +641,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
 	 * @throws Exception 
 	 */
 	protected void teacherGradeRun(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		int choice;
 		grades: while(true) {
 			System.out.println("Выберите курс: ");
@@ -640,9 +657,7 @@ public class Teacher extends Employee implements StudentsInfo, Scheduling, Seria
 			System.out.println("Курс выбран. \n1) Поставить оценку студенту \n2) Выставить аттестацию \n3) Поставить final exam студенту \n4) Посмотреть информацию о студентах" +
 					"\n5) Вернуться назад");
 			choice = in.nextInt();
-			Vector<Student> students = Data.getInstance().getStudents().stream()
-					.filter(n -> n.getCurrentCourses().stream()
-							.anyMatch(c -> c.getCourse().equals(choicedCourse))).collect(Collectors.toCollection(Vector::new));
+			Vector<Student> students = new Vector<>(Data.getInstance().getEnrollments().getStudents(choicedCourse));
 			students = students.stream().filter(n ->n.getCurrentCourses().stream()
 					.anyMatch(c -> c.getLessons().stream().anyMatch(l -> l.getTeacher().equals(this)))).collect(Collectors.toCollection(Vector::new));
 			if(choice == 1 || choice == 3 || choice == 4){
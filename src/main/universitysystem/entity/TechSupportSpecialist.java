@@ -1,10 +1,12 @@
 package universitysystem.entity;
 
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.LogAction;
 import universitysystem.research.Researcher;
 import universitysystem.utills.TechReport;
 import universitysystem.utills.Notification;
+import universitysystem.server.Session;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
@@ -122,7 +124,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * @param t The new order to be added.
      */
 	public static void addNewOrder(TechReport t) {
-		Data.getInstance().getNewOrders().add(t);
+		Data.getInstance().addNewOrder(t);
 	}
     /**
      * New orders that can be deleted
@@ -130,7 +132,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * @return true if removal is successful, false otherwise.
      */
 	public static boolean removeNewOrder(TechReport t) {
-		return Data.getInstance().getNewOrders().remove(t);
+		return Data.getInstance().removeNewOrder(t);
 	}
     /**
      * Gets the list of accepted orders.
@@ -152,9 +154,11 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * @return true if the order is accepted successfully, false otherwise.
      */
 	public boolean acceptOrder(TechReport t) {
-		Data.getInstance().getNewOrders().remove(t);
-		acceptedOrders.add(t);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			removeNewOrder(t);
+			acceptedOrders.add(t);
+			return true;
+		});
 	}
     /**
      * Completes an order, moving it from accepted orders to complete orders.
@@ -162,10 +166,12 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * @return true if the order is completed successfully, false otherwise.
      */
 	public boolean completeOrder(TechReport t) {
-		if(acceptedOrders.stream().noneMatch(n -> n.equals(t))) return false;
-		acceptedOrders.remove(t);
-		completeOrders.add(t);
-		return true;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			if(acceptedOrders.stream().noneMatch(n -> n.equals(t))) return false;
+			acceptedOrders.remove(t);
+			completeOrders.add(t);
+			return true;
+		});
 	}
     /**
      * Checks if two TechSupportSpecialist objects are equal.
@@ -198,7 +204,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * Operations in the technical specialist's personal.
      */
     public void run() throws IOException {
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         System.out.println("Вход успешен!Вы вошли в личный кабинет технического специалиста.");
         boolean isRunning = true;
         while (isRunning) {
@@ -231,7 +237,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * Manages orders in the technical specialist's personal cabinet.
      */
     private void manageOrders() {
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         System.out.println("Управление заказами технического специалиста.");
         System.out.println("Список заказов:");
         for (int i = 0; i < acceptedOrders.size(); i++) {
@@ -252,7 +258,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
                 case 1:
                     if (completeOrder(selectedOrder)) {
                         selectedOrder.getSender().addNotification(new Notification("Тех репорт", "Ваш тех репорт был завершен"));
-                        Data.getInstance().getLogs().add(new Log(getId() + " завершил выполнение тех репорта от " + selectedOrder.getSender().getId()));
+                        Data.getInstance().log(LogAction.COMPLETE_TECH_REPORT, getId(), selectedOrder.getSender().getId(), null);
                         System.out.println("Заказ завершен успешно.");
                     } else {
                         System.out.println("Ошибка при завершении заказа.");
@@ -272,7 +278,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
      * Views new orders in the technical specialist's personal cabinet.
      */
     private void viewNewOrders() {
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         System.out.println("Новые заказы:");
         for (int i = 0; i < Data.getInstance().getNewOrders().size(); i++) {
             System.out.println((i + 1) + ") " + Data.getInstance().getNewOrders().get(i));
@@ -289,7 +295,7 @@ public class TechSupportSpecialist extends Employee implements Serializable {
             if(action == 1){
                 if (acceptOrder(selectedOrder)) {
                     selectedOrder.getSender().addNotification(new Notification("Тех репорт", "Ваш тех репорт был принят на рассмотрение"));
-                    Data.getInstance().getLogs().add(new Log(getId() + " начал рассматривать тех репорт от " + selectedOrder.getSender().getId()));
+                    Data.getInstance().log(LogAction.ACCEPT_TECH_REPORT, getId(), selectedOrder.getSender().getId(), null);
                     System.out.println("Заказ принят успешно.");
                 } else {
                     System.out.println("Ошибка при принятии заказа.");
@@ -1,13 +1,16 @@
 package universitysystem.entity;
 
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.Shard;
+import universitysystem.data.JournalEntry;
+import universitysystem.data.LogAction;
 import universitysystem.interfaces.CanCreate;
 import universitysystem.interfaces.CanLogin;
 import universitysystem.interfaces.Runnable;
 import universitysystem.interfaces.Subscription;
 import universitysystem.research.Researcher;
 import universitysystem.utills.*;
+import universitysystem.server.Session;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -138,7 +141,7 @@ public String getId(){
  * @param id he new unique ID for the user
  */
 protected void setId(String id){
-     this.id = id;
+     Data.getInstance().getUserRegistry().update(this, () -> this.id = id);
 }
 /**
  * Generates a unique identifier for the user. Subclasses should implement this
@@ -154,7 +157,7 @@ protected abstract String generateId();
  * @param firstname the user's first name
  */
  public void setFirstname(String firstname) {
-	 this.firstname = firstname;
+	 Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.firstname = firstname));
  }
  /**
   * Sets the user's middle name.
@@ -162,14 +165,14 @@ protected abstract String generateId();
   * @param middlename the user's middle name
   */
  public void setMiddlename(String middlename) {
-	 this.middlename = middlename;
+	 Data.getInstance().change(Shard.CORE, () -> this.middlename = middlename);
  }
  /**
   * Sets the user's last name.
   * @param lastname the user's last name
   */
  public void setLastname(String lastname) {
-	 this.lastname = lastname;
+	 Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.lastname = lastname));
  }
  /**
   * Sets the user's full name.
@@ -178,16 +181,20 @@ protected abstract String generateId();
   * @param middlename the user's middle name
   */
  public void setFullName(String firstname, String lastname, String middlename) {
-     this.firstname = firstname;
-     this.lastname = lastname;
-     this.middlename = middlename;
+     Data.getInstance().change(Shard.CORE, () -> {
+         Data.getInstance().getUserRegistry().update(this, () -> {
+             this.firstname = firstname;
+             this.lastname = lastname;
+         });
+         this.middlename = middlename;
+     });
  }
  /**
   * Sets the user's login credentials.
   * @param login the user's login credentials
   */
  public void setLogin(String login){
-     this.login = login; //возможно убрать, ведь логин не изменяемый
+     Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.login = login)); //возможно убрать, ведь логин не изменяемый
  }
  /**
   * Sets the user's password.
@@ -195,7 +202,7 @@ protected abstract String generateId();
   * @param password the user's password
   */
  public void setPassword(String password){
-	 this.password = password;
+	 Data.getInstance().change(Shard.CORE, () -> this.password = password);
  }
  /**
   * Sets the user's email address.
@@ -203,7 +210,7 @@ protected abstract String generateId();
   * @param email the user's email address
   */
  public void setEmail(String email){
-	 this.email = email;
+	 Data.getInstance().change(Shard.CORE, () -> Data.getInstance().getUserRegistry().update(this, () -> this.email = email));
  }
  /**
   * Sets the user's birth date.
@@ -211,7 +218,7 @@ protected abstract String generateId();
   * @param birthDate the user's birth date
   */
  public void setBirthDate(Date birthDate){
-	 this.birthDate = birthDate;
+	 Data.getInstance().change(Shard.CORE, () -> this.birthDate = birthDate);
  }
  /**
   * Sets the user's preferred system language.
@@ -219,7 +226,7 @@ protected abstract String generateId();
   * @param systemLanguage the user's preferred system language
   */
  public void setSystemLanguage(SystemLanguage systemLanguage) {
-	 this.systemLanguage = systemLanguage;
+	 Data.getInstance().change(Shard.CORE, () -> this.systemLanguage = systemLanguage);
  }
 
  //Getters
@@ -292,15 +299,17 @@ protected abstract String generateId();
   * @param n the notification to be added
   */
 public void addNotification(Notification n) {
-    notifications.add(n);
+    Data.getInstance().change(Shard.CORE, () -> notifications.add(n));
 }
 /**
  * Clears all notifications from the user's notification list
  * @return {@code true} if notifications were cleared successfully, {@code false} otherwise
  */
 public boolean clearNotifications() {
-    notifications.clear();
-    return true;
+    return Data.getInstance().change(Shard.CORE, () -> {
+        notifications.clear();
+        return true;
+    });
 }
 /**
  * Returns a vector of news articles available for the user to view.
@@ -317,7 +326,7 @@ public Vector<News> viewNews() {
 //TODO
 public boolean sendTechReport(TechReport report) {
     TechSupportSpecialist.addNewOrder(report);
-    Data.getInstance().getLogs().add(new Log(getId() + " отправил tech report"));
+    Data.getInstance().log(LogAction.SEND_TECH_REPORT, getId(), null, null);
     return true;
 }
 /**
@@ -351,7 +360,7 @@ public String toString() {
  */
     @Override
     public boolean subscribeToJournal(Journal j) {
-        Data.getInstance().getLogs().add(new Log(getId() + " подписался на журнал " + j.getName()));
+        Data.getInstance().log(LogAction.SUBSCRIBE, getId(), String.valueOf(j.getReleaseNumber()), j.getName());
         return j.addSubscriber(this);
     }
     /**
@@ -386,7 +395,7 @@ public String toString() {
      * and modify language settings. The user is prompted to enter new information based on their choice.
      */
     protected void viewPersonalDataRun(){
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         personalData:
         while (true) {
             System.out.println("1) Посмотреть информацию о себе \n2) Изменить пароль \n3) Изменить языковые настройки \n4) Вернуться назад");
@@ -396,9 +405,9 @@ public String toString() {
             } else if (choice == 2) {
                 System.out.println("Введите новый пароль: ");
                 String pass = in.next();
-                this.setPassword(pass);
+                Data.getInstance().journal(new JournalEntry.SetPassword(this, pass));
                 System.out.println("Пароль успешно обновлен! \n1) Вернуться назад \n2) Exit");
-                Data.getInstance().getLogs().add(new Log(getId() + " обновил пароль"));
+                Data.getInstance().log(LogAction.CHANGE_PASSWORD, getId(), getId(), null);
                 choice = in.nextInt();
                 if (choice == 1) continue personalData;
                 if (choice == 2) {
@@ -429,7 +438,7 @@ public String toString() {
      * The user can choose to view more news, return to the previous menu, or exit.
      */
     protected void viewNewsRun(){
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         int choice;
         for (News n : viewNews()) {
             System.out.println(n);
@@ -444,7 +453,7 @@ public String toString() {
      * and return to the previous menu. It uses the Journal class for journal-related operations.
      */
     protected void viewJournalRun(){
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         int choice;
         journals:
         while (true) {
@@ -490,7 +499,7 @@ public String toString() {
                     if (choice < 1 || choice > cnt) continue journals;
                     Journal actualJournal = subJournal.get(choice - 1);
                     actualJournal.removeSubscriber(this);
-                    Data.getInstance().getLogs().add(new Log(getId() + " отписался от журнала " + actualJournal.getName()));
+                    Data.getInstance().log(LogAction.UNSUBSCRIBE, getId(), String.valueOf(actualJournal.getReleaseNumber()), actualJournal.getName());
                     System.out.println("Вы успешно отписались от журнала!"
                             + "\n1) Вернутся к журналам \n2) Exit");
                     choice = in.nextInt();
@@ -508,7 +517,7 @@ public String toString() {
      * and then sends the report. The user is informed about the success or failure of the report submission.
      */
     protected void sendTechReportRun(){
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         int choice;
         teching: while (true){
             System.out.println("1) Отправить report \n2) Посмотреть необработанные report \n3) Вернуться назад");
@@ -558,7 +567,7 @@ public String toString() {
      * Logs out the User and saves any necessary data.
      */
     public void logout(){
-        Data.getInstance().getLogs().add(new Log(this.getId() + " вышел из системы"));
+        Data.getInstance().log(LogAction.LOGOUT, this.getId(), null, null);
         System.out.println("Выполняем выход...");
         try {
             save();
@@ -580,16 +589,16 @@ public String toString() {
      * between the User and Researcher roles. The user is prompted to choose the desired action.
      */
     public void login(){
-        Scanner in = new Scanner(System.in);
+        Scanner in = Session.scanner();
         try {
-            Data.getInstance().getLogs().add(new Log(this.getId() + " вошел в систему"));
+            Data.getInstance().log(LogAction.LOGIN, this.getId(), null, null);
             System.out.println("Добро пожаловать, " + this.getFirstname());
             if(getNotifications().isEmpty()) System.out.println("Нет новых уведомлений");
             else System.out.println("У вас " + getNotifications().size() + " notification/s");
             for (Notification n: getNotifications()){
                 System.out.println(n);
             }
-            clearNotifications();
+            if(!getNotifications().isEmpty()) Data.getInstance().journal(new JournalEntry.ClearNotifications(this));
             if(Data.getInstance().getResearchers().stream().anyMatch(n -> n.getInitialUser().equals(this))){
                 System.out.println("Вы являетесь User и Researcher. В какой личный кабинет вы хотите зайти? \n1) User \n2) Researcher \n3) Exit");
                 int choice = in.nextInt();
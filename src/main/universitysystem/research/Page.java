@@ -1,17 +1,21 @@
 package universitysystem.research;
 
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
+
 import java.io.Serializable;
 import java.util.Objects;
 
 public class Page implements Serializable
 {
+	private static final long serialVersionUID = 563122520678330348L;
 	private int id;
-	private static int nextId = 1;
 	private String topic;
 	private String text;
 
 	{
-		this.id = nextId++;
+		this.id = Data.getInstance().nextId(IdSequence.PAGE);
 	}
 	public Page(){
 		super();
@@ -35,12 +39,14 @@ public class Page implements Serializable
 	}
 
 	public void setTopic(String topic) {
-		// TODO implement me
-		this.topic = topic;
+		Data.getInstance().change(Shard.CORE, () -> {
+			// TODO implement me
+			this.topic = topic;
+		});
 	}
 
 	public void setText(String text) {
-		this.text = text;
+		Data.getInstance().change(Shard.CORE, () -> this.text = text);
 	}
 
 	public boolean equals(Object o) {
@@ -1,4 +1,8 @@
 package universitysystem.research;
+
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
 import universitysystem.interfaces.CanResearch;
 
 import java.io.Serializable;
@@ -16,20 +20,26 @@ import java.util.stream.Collectors;
 
 public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
 {
-	private static int nextId = 1;
+	private static final long serialVersionUID = 8120605404660627359L;
 	private int id;
 	private String title;
 	private HashSet<CanResearch> authors;
 	private Vector<String> citations;
 	private LinkedHashSet<Page> pages;
 	private final Date date;
+	/**
+	 * Constructs an empty paper for the decoder, which sets its fields.
+	 */
+	private ResearchPaper(){
+		this(null);
+	}
     /**
      * Constructs {@code ResearchPaper} with a unique ID, title,collections and release date .
      * @param title The title of the research paper.
      */
 	public ResearchPaper(String title){
 		super();
-		this.id = nextId++;
+		this.id = Data.getInstance().nextId(IdSequence.RESEARCH_PAPER);
         this.title = title;
         this.authors = new HashSet<>();
         this.citations = new Vector<>();
@@ -101,11 +111,13 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the citation is successfully added, {@code false} otherwise.
      */
 	public boolean addCitation(String s) {
-        if (s == null || s.isEmpty()) {
-            return false;
-        }
-        citations.add(s);
-        return true;	
+        return Data.getInstance().change(Shard.CORE, () -> {
+            if (s == null || s.isEmpty()) {
+                return false;
+            }
+            citations.add(s);
+            return true;	
+        });
 	}
     /**
      * Removes a citation from the research paper.
@@ -113,10 +125,12 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the citation is successfully removed, {@code false} otherwise.
      */
 	public boolean removeCitation(String s) {
-        if (s == null || s.isEmpty()) {
-            return false;
-        }
-        return citations.remove(s);
+        return Data.getInstance().change(Shard.CORE, () -> {
+            if (s == null || s.isEmpty()) {
+                return false;
+            }
+            return citations.remove(s);
+        });
 	}
     /**
      * Gets set of authors associated with the research paper.
@@ -131,11 +145,13 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the author is successfully added, {@code false} otherwise.
      */
 	public boolean addAuthor(CanResearch author) {
-        if (author == null) {
-            return false;
-        }
-        authors.add((CanResearch) author);
-        return true;
+        return Data.getInstance().change(Shard.CORE, () -> {
+            if (author == null) {
+                return false;
+            }
+            authors.add((CanResearch) author);
+            return true;
+        });
 	}
     /**
      * Removes the author from the list of authors of the research paper.
@@ -143,10 +159,12 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the author is successfully removed, {@code false} otherwise.
      */
 	public boolean removeAuthor(CanResearch author) {
-	    if (author == null) {
-	        return false;
-	    }
-	    return authors.remove(author);
+	    return Data.getInstance().change(Shard.CORE, () -> {
+		    if (author == null) {
+		        return false;
+		    }
+		    return authors.remove(author);
+	    });
 	}
     /**
      * Gets the set of pages associated with the research paper.
@@ -163,11 +181,13 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the page is successfully added, {@code false} otherwise.
      */
 	public boolean addPage(Page p) {
-        if (p == null) {
-            return false;
-        }
-        pages.add(p);
-        return true;
+        return Data.getInstance().change(Shard.CORE, () -> {
+            if (p == null) {
+                return false;
+            }
+            pages.add(p);
+            return true;
+        });
 	}
     /**
      * Removes a page from the research paper.
@@ -175,10 +195,12 @@ public class ResearchPaper implements Comparable<ResearchPaper>, Serializable
      * @return {@code true} if the page is successfully removed, {@code false} otherwise.
      */
 	public boolean removePage(Page p) {
-	    if (pages != null && pages.contains(p)) {
-	        return pages.remove(p);
-	    }
-	    return false;
+	    return Data.getInstance().change(Shard.CORE, () -> {
+		    if (pages != null && pages.contains(p)) {
+		        return pages.remove(p);
+		    }
+		    return false;
+	    });
 	}
     /**
      * Checks if this research paper is equal to the specified object.
@@ -1,5 +1,8 @@
 package universitysystem.research;
 
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
 import universitysystem.interfaces.CanCreate;
 
 import universitysystem.interfaces.CanResearch;
@@ -17,8 +20,8 @@ import java.util.*;
  */
 public class ResearchProject implements Comparable<ResearchProject>, Serializable
 {
+	private static final long serialVersionUID = 4777383810284576477L;
 	private int id;
-	private static int nextId = 1;
 	private String topic = "";
 	private HashSet<ResearchPaper> publishedPapers;
 	private HashSet<CanResearch> projectParticipants;
@@ -26,7 +29,7 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * Constructs {@code ResearchProject} with a unique ID and collections.
      */
 	public ResearchProject(){
-		this.id = nextId++;
+		this.id = Data.getInstance().nextId(IdSequence.RESEARCH_PROJECT);
 		this.publishedPapers = new HashSet<>();
 		this.projectParticipants = new HashSet<>();
 	}
@@ -35,7 +38,7 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @param topic of the research project.
      */
 	public ResearchProject(String topic){
-		this.id = nextId++;
+		this.id = Data.getInstance().nextId(IdSequence.RESEARCH_PROJECT);
         this.publishedPapers = new HashSet<>();
         this.projectParticipants = new HashSet<>();
 		this.topic = topic;
@@ -52,8 +55,10 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @param topic The new topic to set.
      */
 	public void setTopic(String topic) {
-		// TODO implement me	
-		this.topic=topic;
+		Data.getInstance().change(Shard.CORE, () -> {
+			// TODO implement me	
+			this.topic=topic;
+		});
 	}
     /**
      * Gets the topic of the research project.
@@ -78,7 +83,7 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @return {@code true} if the paper is successfully added, {@code false} otherwise.
      */
 	public boolean addPaper(ResearchPaper p) {
-		return publishedPapers.add(p);	
+		return Data.getInstance().change(Shard.CORE, () -> publishedPapers.add(p));
 	}
     /**
      * Removes a research paper from the project.
@@ -86,11 +91,13 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @return {@code true} if the paper is successfully removed, {@code false} otherwise.
      */
 	public boolean removePaper(ResearchPaper p) {
-		// TODO проверить не пустой ли хешсет
-	    if (publishedPapers != null && p != null) {
-	        return publishedPapers.remove(p);
-	    }
-	    return false;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			// TODO проверить не пустой ли хешсет
+		    if (publishedPapers != null && p != null) {
+		        return publishedPapers.remove(p);
+		    }
+		    return false;
+		});
 	}
     /**
      * Projects with a list of participants.Gets the set of participants 
@@ -107,7 +114,7 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @return {@code true} if the participant is successfully added, {@code false} otherwise.
      */
 	public boolean addParticipant(CanResearch c) {
-		return projectParticipants.add(c);
+		return Data.getInstance().change(Shard.CORE, () -> projectParticipants.add(c));
 	}
     /**
      * Removes a participant from the project.
@@ -115,11 +122,13 @@ public class ResearchProject implements Comparable<ResearchProject>, Serializabl
      * @return {@code true} if the participant is successfully removed, {@code false} otherwise.
      */
 	public boolean removeParticipant(CanCreate c) {
-		// TODO проверить не пустой ли
-	    if (projectParticipants != null && c != null) {
-	        return projectParticipants.remove(c);
-	    }
-	    return false;
+		return Data.getInstance().change(Shard.CORE, () -> {
+			// TODO проверить не пустой ли
+		    if (projectParticipants != null && c != null) {
+		        return projectParticipants.remove(c);
+		    }
+		    return false;
+		});
 	}
     /**
      * Performs a check if this research project is equal to the specified object.
@@ -1,13 +1,14 @@
 package universitysystem.research;
 //TODO Alzhan переделать Researcher
 import universitysystem.data.Data;
-import universitysystem.data.Log;
+import universitysystem.data.LogAction;
 import universitysystem.entity.GraduateType;
 import universitysystem.interfaces.CanCreate;
 import universitysystem.interfaces.CanResearch;
 import universitysystem.entity.GraduateStudent;
 import universitysystem.entity.User;
 import universitysystem.utills.Journal;
+import universitysystem.server.Session;
 
 import java.io.Serializable;
 import java.util.*;
@@ -23,6 +24,12 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 	//добавлено : Serializable implements
 	//переделан сканнер
 	private final User initialUser;
+	/**
+	 * Constructs a researcher for the decoder, which sets its user.
+	 */
+	private Researcher() {
+		this(null);
+	}
     /**
      * Constructs a new {@code Researcher} instance with the provided user.
      * @param user associated with the researcher.
@@ -78,7 +85,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
      */
 	public boolean createResearchPaper(ResearchPaper paper) {
 			paper.addAuthor(this);
-			Data.getInstance().getLogs().add(new Log(initialUser.getId() + " создал научную статью " + paper.getTitle()));
+			Data.getInstance().log(LogAction.CREATE_PAPER, initialUser.getId(), String.valueOf(paper.getId()), paper.getTitle());
 		    return Data.getInstance().addResearchPaper(paper);
 	}
 
@@ -94,7 +101,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 	            .filter(p -> p.equals(paper))
 	            .findFirst()
 				.ifPresent(researchPaper -> researchPaper.addAuthor(this));
-		Data.getInstance().getLogs().add(new Log(initialUser.getId() + " подключился к научной статье " + paper.getTitle()));
+		Data.getInstance().log(LogAction.JOIN_PAPER, initialUser.getId(), String.valueOf(paper.getId()), paper.getTitle());
 	    return true;
 	}
     /**
@@ -104,7 +111,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
      */
 	public boolean createProject(ResearchProject project) {
           project.addParticipant(this);
-		Data.getInstance().getLogs().add(new Log(initialUser.getId() + " создал научный проект " + project.getTopic()));
+		Data.getInstance().log(LogAction.CREATE_PROJECT, initialUser.getId(), String.valueOf(project.getId()), project.getTopic());
 		return Data.getInstance().addResearchProject(project);
 	}
     /**
@@ -115,7 +122,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 	public boolean connectToProject(ResearchProject project) {
 	    if (project != null && Data.getInstance().getResearchProjects().contains(project)) {
 	        project.addParticipant(this);
-			Data.getInstance().getLogs().add(new Log(initialUser.getId() + " подключился к научному проекту " + project.getTopic()));
+			Data.getInstance().log(LogAction.JOIN_PROJECT, initialUser.getId(), String.valueOf(project.getId()), project.getTopic());
 	        return true;
 	    }
 	    return false;
@@ -141,7 +148,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 					.filter(researchProject -> researchProject.getParticipants().contains(g))
 					.findFirst()
 					.ifPresent(researchProject -> researchProject.addParticipant(this));
-				Data.getInstance().getLogs().add(new Log(initialUser.getId() + " стал supervisor для " + g.getId()));
+				Data.getInstance().log(LogAction.SUPERVISE, initialUser.getId(), g.getId(), null);
 			}
 			else {
 				ResearchProject researchProject = new ResearchProject();
@@ -202,7 +209,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 	 * Researchers can navigate through the menu and return to the user interface.
 	 */
 	public void run(){
-		Scanner in = new Scanner(System.in);
+		Scanner in = Session.scanner();
 		try {
 			menu:
 			while (true) {
@@ -232,7 +239,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 							in.nextLine();
 							String text = in.nextLine();
 							createResearchPaper(new ResearchPaper(text));
-							Data.getInstance().getLogs().add(new Log(initialUser.getId() + " создал научную статью " + text));
+							Data.getInstance().log(LogAction.CREATE_PAPER, initialUser.getId(), null, text);
 							System.out.println("Успешно добавлено");
 						} else if (choice == 3) {
 							System.out.println("Выберите существующую статью: ");
@@ -248,7 +255,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 							if (choice < 1 || choice >= cnt) continue papering;
 							ResearchPaper actualPaper = papersForJoin.get(choice - 1);
 							connectToPaper(actualPaper);
-							Data.getInstance().getLogs().add(new Log(initialUser.getId() + " присоеденился к научной статье " + actualPaper.getTitle()));
+							Data.getInstance().log(LogAction.JOIN_PAPER, initialUser.getId(), String.valueOf(actualPaper.getId()), actualPaper.getTitle());
 							System.out.println("Успешно присоеденены!");
 						} else if (choice == 4) {
 							continue menu;
@@ -274,7 +281,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 							in.nextLine();
 							String text = in.nextLine();
 							createProject(new ResearchProject(text));
-							Data.getInstance().getLogs().add(new Log(initialUser.getId() + " создал научный проект " + text));
+							Data.getInstance().log(LogAction.CREATE_PROJECT, initialUser.getId(), null, text);
 							System.out.println("Успешно добавлено");
 						} else if (choice == 3) {
 							System.out.println("Выберите существующий проект: ");
@@ -290,7 +297,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 							if (choice < 1 || choice >= cnt) continue projecting;
 							ResearchProject actualProject = projectsForJoin.get(choice - 1);
 							connectToProject(actualProject);
-							Data.getInstance().getLogs().add(new Log(initialUser.getId() + " присоединился к научному проекту " + actualProject.getTopic()));
+							Data.getInstance().log(LogAction.JOIN_PROJECT, initialUser.getId(), String.valueOf(actualProject.getId()), actualProject.getTopic());
 							System.out.println("Успешно присоеденены!");
 						} else if (choice == 4) {
 							continue menu;
@@ -308,7 +315,7 @@ public class Researcher implements CanCreate, CanResearch, Comparable<Researcher
 						in.nextLine();
 						String text = in.nextLine();
 						createNewJournal(new Journal(text));
-						Data.getInstance().getLogs().add(new Log(initialUser.getId() + " создал новый журнал " + text));
+						Data.getInstance().log(LogAction.CREATE_JOURNAL, initialUser.getId(), null, text);
 						System.out.println("Вы успешно создали новый журнал " + text);
 						continue menu;
 					} else if (choice == 2) {
@@ -0,0 +1,96 @@
+package universitysystem.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Input and output of one user session.
+ * Menus read their input with {@link #scanner()} and print to {@code System.out}; both are bound to the session
+ * of the current thread, so every connection of {@link SessionServer} talks only to its own client.
+ * Threads without a session use the console.
+ */
+public class Session implements Closeable
+{
+	private static final ThreadLocal<Session> current = new ThreadLocal<>();
+	private static final Session console = new Session(System.in, System.out);
+	private static boolean installed;
+
+	private final Scanner scanner;
+	private final OutputStream out;
+	private final Closeable connection;
+
+	private Session(InputStream in, OutputStream out) {
+		this(in, out, null);
+	}
+
+	/**
+	 * Creates a session over a connection.
+	 * @param in - input of the client.
+	 * @param out - output to the client.
+	 * @param connection - closed together with the session, may be {@code null}.
+	 */
+	public Session(InputStream in, OutputStream out, Closeable connection) {
+		this.scanner = new Scanner(in, StandardCharsets.UTF_8);
+		this.out = out;
+		this.connection = connection;
+	}
+
+	/**
+	 * Returns the session of the current thread or the console session.
+	 */
+	public static Session current() {
+		Session session = current.get();
+		return session == null ? console : session;
+	}
+
+	/**
+	 * Returns the scanner of the current session. All menus of a session share one scanner,
+	 * so input that one scanner has buffered is not lost for the next menu.
+	 */
+	public static Scanner scanner() {
+		return current().scanner;
+	}
+
+	/**
+	 * Binds the session to the current thread until {@link #detach()}.
+	 */
+	public void attach() {
+		install();
+		current.set(this);
+	}
+
+	public void detach() {
+		current.remove();
+	}
+
+	/**
+	 * Replaces {@code System.out} with a stream that writes to the session of the current thread.
+	 */
+	static synchronized void install() {
+		if (installed) return;
+		installed = true;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				current().out.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				current().out.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				current().out.flush();
+			}
+		}, true, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.flush();
+		if (connection != null) connection.close();
+	}
+}
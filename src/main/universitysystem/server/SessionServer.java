@@ -0,0 +1,122 @@
+package universitysystem.server;
+
+import universitysystem.data.Data;
+import universitysystem.entity.Admin;
+import universitysystem.interfaces.CanLogin;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves many users at once over a line-based TCP protocol, for example {@code nc host port}.
+ * Every connection gets its own {@link Session} and runs the usual login dialog and menus on a thread of a pool,
+ * all against the shared {@link Data}. Connections above the pool size wait until a session ends.
+ */
+public class SessionServer
+{
+	private final int port;
+	private final ExecutorService sessions;
+	private final AtomicInteger active = new AtomicInteger();
+	private volatile ServerSocket socket;
+
+	/**
+	 * @param port - port to listen on.
+	 * @param maxSessions - number of sessions that are served at the same time.
+	 */
+	public SessionServer(int port, int maxSessions) {
+		this.port = port;
+		AtomicInteger count = new AtomicInteger();
+		this.sessions = Executors.newFixedThreadPool(maxSessions, r -> new Thread(r, "session-" + count.incrementAndGet()));
+	}
+
+	/**
+	 * Accepts connections until {@link #stop()} is called.
+	 */
+	public void start() throws IOException {
+		Data.checkLoaded();
+		Session.install();
+		socket = new ServerSocket(port);
+		System.err.println("Сервер запущен на порту " + socket.getLocalPort());
+		try {
+			while (!socket.isClosed()) {
+				Socket client;
+				try {
+					client = socket.accept();
+				} catch (IOException e) {
+					if (socket.isClosed()) break;
+					throw e;
+				}
+				sessions.execute(() -> serve(client));
+			}
+		} finally {
+			stop();
+		}
+	}
+
+	/**
+	 * Stops accepting connections and waits for the running sessions to end.
+	 */
+	public void stop() throws IOException {
+		if (socket != null) socket.close();
+		sessions.shutdown();
+		try {
+			sessions.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getActiveSessions() {
+		return active.get();
+	}
+
+	private void serve(Socket client) {
+		active.incrementAndGet();
+		try (Session session = new Session(client.getInputStream(), new BufferedOutputStream(client.getOutputStream()), client)) {
+			session.attach();
+			try {
+				login();
+			} finally {
+				session.detach();
+			}
+		} catch (NoSuchElementException e) {
+			// the client closed the connection
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			active.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Asks for login and password and runs the menu of the user in the current session.
+	 */
+	public static void login() {
+		Scanner in = Session.scanner();
+		System.out.println("Добро пожаловать в систему университета! \nВведите логин: ");
+		String login = in.next();
+		Admin admin = Data.getInstance().getAdmin();
+		CanLogin user = admin.getLogin().equals(login) ? admin : Data.getInstance().getUserRegistry().findByLogin(login);
+		if(user != null){
+			System.out.println("Введите пароль: ");
+			String password = in.next();
+			if(user.getPassword().equals(password)){
+				System.out.println("Производим вход....");
+				Data.getInstance().loadCatalog();
+				user.login();
+			} else {
+				System.out.println("Неверный пароль");
+			}
+		} else{
+			System.out.println("Пользователя с таким логином не существует!");
+		}
+	}
+}
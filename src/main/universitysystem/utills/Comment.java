@@ -1,5 +1,8 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
 import universitysystem.entity.User;
 import universitysystem.interfaces.CanCreate;
 
@@ -11,7 +14,7 @@ import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Comment implements Serializable {
-	private static int idCounter = 0;
+    private static final long serialVersionUID = -6040074563494849402L;
     private int id;
     private User author;
     private String text;
@@ -19,7 +22,7 @@ public class Comment implements Serializable {
     private LinkedHashSet<Comment> subComments;
 
     {
-        id = idCounter++;
+        id = Data.getInstance().nextId(IdSequence.COMMENT);
         publishedDate = new Date();
         subComments = new LinkedHashSet<>();
     }
@@ -43,7 +46,7 @@ public class Comment implements Serializable {
     }
 
     public void setAuthor(User author) {
-        this.author = author;
+        Data.getInstance().change(Shard.COMMUNICATION, () -> this.author = author);
     }
 
     public String getText() {
@@ -51,7 +54,7 @@ public class Comment implements Serializable {
     }
 
     public void setText(String text) {
-        this.text = text;
+        Data.getInstance().change(Shard.COMMUNICATION, () -> this.text = text);
     }
 
     public Date getPublishedDate() {
@@ -63,11 +66,11 @@ public class Comment implements Serializable {
     }
 
     public boolean addSubComment(Comment subComment) {
-        return subComments.add(subComment);
+        return Data.getInstance().change(Shard.COMMUNICATION, () -> subComments.add(subComment));
     }
 
     public boolean removeSubComment(Comment subComment) {
-        return subComments.remove(subComment);
+        return Data.getInstance().change(Shard.COMMUNICATION, () -> subComments.remove(subComment));
     }
 
     @Override
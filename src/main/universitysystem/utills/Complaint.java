@@ -1,5 +1,7 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.entity.Student;
 import universitysystem.entity.User;
 
@@ -35,7 +37,7 @@ public class Complaint extends Mail implements Serializable {
 	}
 	
 	public void setType(ImportanceLevel type) {
-		this.type = type;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.type = type);
 	}
 
 	public Student getStudent() {
@@ -43,7 +45,7 @@ public class Complaint extends Mail implements Serializable {
 	}
 
 	public void setStudent(Student s) {
-		this.student = s;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.student = s);
 	}
 
 	public String getDescription() {
@@ -51,7 +53,7 @@ public class Complaint extends Mail implements Serializable {
 	}
 	
 	public void setDescription(String description) {
-		this.description = description;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.description = description);
 	}
 
 	public boolean equals(Object o) {
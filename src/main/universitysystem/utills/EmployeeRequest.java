@@ -1,5 +1,7 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
@@ -31,11 +33,11 @@ public class EmployeeRequest extends Request implements Serializable
 	}
 	
 	public void setSigned(boolean signed) {
-		this.signed = signed;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.signed = signed);
 	}
 	
 	public void setRequest(String request) {
-		this.request = request;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.request = request);
 	}
 
 	@Override
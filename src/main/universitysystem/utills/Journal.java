@@ -1,5 +1,8 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
 import universitysystem.entity.User;
 import universitysystem.interfaces.Observer;
 import universitysystem.interfaces.Subscription;
@@ -13,14 +16,14 @@ import java.util.Objects;
 import java.util.Set;
 
 public class Journal implements Observer, Serializable {
-    private static int idCounter = 0;
+    private static final long serialVersionUID = -5307754697438223104L;
     private int releaseNumber;
     private String name;
     private HashSet<Subscription> subscribers;
     private LinkedHashSet<ResearchPaper> papers;
 
     {
-        releaseNumber = idCounter++;
+        releaseNumber = Data.getInstance().nextId(IdSequence.JOURNAL);
         subscribers = new HashSet<>();
         papers = new LinkedHashSet<>();
     }
@@ -45,12 +48,14 @@ public class Journal implements Observer, Serializable {
     }
 
     public boolean addNewPaper(ResearchPaper paper) {
-        update("Добавлена новая статья");
-        return papers.add(paper);
+        return Data.getInstance().change(Shard.CORE, () -> {
+            update("Добавлена новая статья");
+            return papers.add(paper);
+        });
     }
 
     public boolean removePaper(ResearchPaper paper) {
-        return papers.remove(paper);
+        return Data.getInstance().change(Shard.CORE, () -> papers.remove(paper));
     }
 
     public HashSet<Subscription> getSubscribers() {
@@ -58,11 +63,11 @@ public class Journal implements Observer, Serializable {
     }
 
     public boolean addSubscriber(Subscription subscriber) {
-        return subscribers.add(subscriber);
+        return Data.getInstance().change(Shard.CORE, () -> subscribers.add(subscriber));
     }
 
     public boolean removeSubscriber(Subscription subscriber) {
-        return subscribers.remove(subscriber);
+        return Data.getInstance().change(Shard.CORE, () -> subscribers.remove(subscriber));
     }
 
     public LinkedHashSet<ResearchPaper> getPapers() {
@@ -74,7 +79,7 @@ public class Journal implements Observer, Serializable {
     }
 
     public void setName(String name) {
-        this.name = name;
+        Data.getInstance().change(Shard.CORE, () -> this.name = name);
     }
 
     public void update(String text) {
@@ -1,19 +1,20 @@
 package universitysystem.utills;
 
-
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
 import java.util.*;
 
 public abstract class Mail implements Serializable {
-	private static int numId = 0;
+	private static final long serialVersionUID = 6920783119414509677L;
 	private int id;
 	private User sender;
 	private final Date date;
 
 	{
-		id = numId++;
+		id = Data.getInstance().nextId(IdSequence.MAIL);
 		date = new Date();
 	}
 
@@ -38,7 +39,7 @@ public abstract class Mail implements Serializable {
 	}
 	
 	public void setSender(User sender) {
-		this.sender = sender;
+		Data.getInstance().change(() -> this.sender = sender);
 	}
 
 	public boolean equals(Object o) {
@@ -1,5 +1,7 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
@@ -25,7 +27,7 @@ public class Message extends Mail implements Serializable {
 	}
 
 	public void setTitle(String title) {
-		this.title = title;
+		Data.getInstance().change(Shard.CORE, () -> this.title = title);
 	}
 	
 	public String getTitle() {
@@ -33,7 +35,7 @@ public class Message extends Mail implements Serializable {
 	}
 	
 	public void setText(String text) {
-		this.text = text;
+		Data.getInstance().change(Shard.CORE, () -> this.text = text);
 	}
 	
 	public String getText() {
@@ -43,7 +45,7 @@ public class Message extends Mail implements Serializable {
 		return viewed;	
 	}
 	public void setViewed(boolean viewed) {
-		this.viewed = viewed;
+		Data.getInstance().change(Shard.CORE, () -> this.viewed = viewed);
 	}
 	
 	public boolean equals(Object o) {
@@ -1,12 +1,16 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.IdSequence;
+import universitysystem.data.Shard;
+
 import java.io.Serializable;
 import java.util.*;
 import java.util.LinkedHashSet;
 import java.util.Objects;
 
 public class News implements Serializable {
-	private static int idCounter = 0;
+	private static final long serialVersionUID = 3779941488087945716L;
 	private int id;
 	private TopicType topic;
 	private String title;
@@ -15,7 +19,7 @@ public class News implements Serializable {
 	private LinkedHashSet<Comment> comments;
 
 	{
-		id = idCounter++;
+		id = Data.getInstance().nextId(IdSequence.NEWS);
 		publicationDate = new Date();
 		comments = new LinkedHashSet<>();
 		topic = TopicType.OTHER;
@@ -37,15 +41,15 @@ public class News implements Serializable {
 	}
 
 	public void setTopic(TopicType topic) {
-		this.topic = topic;
+		Data.getInstance().change(Shard.COMMUNICATION, () -> this.topic = topic);
 	}
 
 	public void setTitle(String title) {
-		this.title = title;
+		Data.getInstance().change(Shard.COMMUNICATION, () -> this.title = title);
 	}
 
 	public void setText(String text) {
-		this.text = text;
+		Data.getInstance().change(Shard.COMMUNICATION, () -> this.text = text);
 	}
 
 	public int getId() {
@@ -69,10 +73,10 @@ public class News implements Serializable {
 	}
 
 	public void addComment(Comment c){
-		comments.add(c);
+		Data.getInstance().change(Shard.COMMUNICATION, () -> comments.add(c));
 	}
 	public void removeComment(Comment c) {
-		comments.remove(c);
+		Data.getInstance().change(Shard.COMMUNICATION, () -> comments.remove(c));
 	}
 	public LinkedHashSet<Comment> getComments(){
 		return comments;
@@ -1,5 +1,8 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
+
 import java.io.Serializable;
 
 public class Notification  implements Serializable  {
@@ -21,11 +24,11 @@ public class Notification  implements Serializable  {
 	}
 
 	public void setTitle(String title) {
-		this.title = title;
+		Data.getInstance().change(Shard.CORE, () -> this.title = title);
 	}
 
 	public void setText(String text) {
-		this.text = text;
+		Data.getInstance().change(Shard.CORE, () -> this.text = text);
 	}
 
 	public String getTitle() {
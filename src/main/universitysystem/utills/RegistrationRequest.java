@@ -1,7 +1,10 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.courses.Course;
 import universitysystem.courses.RegisteredCourse;
+import universitysystem.entity.Student;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
@@ -9,8 +12,10 @@ import java.util.*;
 
 public class RegistrationRequest extends Request implements Serializable
 {
+	private static final long serialVersionUID = -4087564564661160345L;
 	private Course course;
 	private RegistrationType type;
+	private int waitlistTicket;
 
 	{
 		type = RegistrationType.ADD;
@@ -33,7 +38,15 @@ public class RegistrationRequest extends Request implements Serializable
 	}
 
 	public void setCourse(Course course) {
-		this.course = course;
+		// the change is entered before the index is locked, so a thread that holds the index never waits for a save
+		Data.getInstance().change(Shard.REQUESTS, () -> Data.getInstance().getRequestIndex().update(this, () -> this.course = course));
+		if (getSender() instanceof Student s) Data.getInstance().recommendationsChanged(s);
+	}
+
+	@Override
+	public void setStatus(RequestStatus status) {
+		Data.getInstance().change(Shard.REQUESTS, () -> Data.getInstance().getRequestIndex().update(this, () -> super.setStatus(status)));
+		if (getSender() instanceof Student s) Data.getInstance().recommendationsChanged(s);
 	}
 	
 	public RegistrationType getRegistrationType() {
@@ -42,7 +55,19 @@ public class RegistrationRequest extends Request implements Serializable
 	}
 	
 	public void setRegistrationType(RegistrationType type) {
-		this.type = type;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.type = type);
+	}
+
+	/**
+	 * Returns the place in line of a request on the waitlist of its course, earlier tickets are served first.
+	 * @return ticket, {@code 0} if the request was never waitlisted.
+	 */
+	public int getWaitlistTicket() {
+		return waitlistTicket;
+	}
+
+	public void setWaitlistTicket(int waitlistTicket) {
+		Data.getInstance().change(Shard.REQUESTS, () -> this.waitlistTicket = waitlistTicket);
 	}
 
 	@Override
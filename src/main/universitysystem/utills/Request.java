@@ -1,5 +1,7 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
+import universitysystem.data.Shard;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
@@ -26,7 +28,7 @@ public abstract class Request extends Mail implements Serializable
 	}
 	
 	public void setStatus(RequestStatus status) {
-		this.status = status;
+		Data.getInstance().change(Shard.REQUESTS, () -> this.status = status);
 	}
 
 	@Override
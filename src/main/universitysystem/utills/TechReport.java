@@ -1,5 +1,6 @@
 package universitysystem.utills;
 
+import universitysystem.data.Data;
 import universitysystem.entity.User;
 
 import java.io.Serializable;
@@ -29,7 +30,7 @@ public class TechReport extends Mail implements Serializable
 	}
 
 	public void setText(String s) {
-		this.text = s;
+		Data.getInstance().change(() -> this.text = s);
 	}
 
 	public String getText() {
@@ -41,7 +42,7 @@ public class TechReport extends Mail implements Serializable
 	}
 	
 	public void setCategory(ReportCategory r) {
-		this.category = r;
+		Data.getInstance().change(() -> this.category = r);
 	}
 
 	@Override
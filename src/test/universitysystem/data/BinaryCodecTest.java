@@ -0,0 +1,410 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.*;
+import universitysystem.research.ResearchPaper;
+import universitysystem.utills.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Round trips of {@link BinaryCodec}: every shard of populated data, every {@link JournalEntry}, shared objects,
+ * the string and class tables and dates are encoded, decoded and compared field by field with the original.
+ * Run it in an empty working directory, the data it creates is stored there.
+ */
+public class BinaryCodecTest {
+	private static int failures;
+
+	public static void main(String[] args) throws IOException {
+		Data data = populate();
+		testShards(data);
+		testJournalEntries(data);
+		testSharedObjects();
+		testTables();
+		testDates();
+		testReferences(data);
+		testUnknownClasses();
+		testLegacyStream(data);
+		System.out.println(failures == 0 ? "OK" : failures + " checks failed");
+		Runtime.getRuntime().halt(failures == 0 ? 0 : 1);
+	}
+
+	private static Data populate() {
+		Data data = Data.getInstance();
+		UserFactory factory = new UserFactory();
+		Teacher teacher = (Teacher) factory.create("teacher", "pass", UsersType.TEACHER, true);
+		Course algebra = new Course("Алгебра", "Основы", "MATH101", 2, 1, 0, 5, data.getYear(), data.getSemester());
+		Course analysis = new Course("Анализ", "Пределы", "MATH201", 2, 1, 0, 5, data.getYear(), data.getSemester());
+		algebra.addMajorFaculty(Faculty.values()[0]);
+		analysis.addMajorFaculty(Faculty.values()[0]);
+		algebra.addLesson(new Lesson(teacher, LessonType.LECTURE, DaysWeek.values()[0], 9, 10, 30));
+		analysis.addLesson(new Lesson(teacher, LessonType.PRACTICE, DaysWeek.values()[1], 11, 12, 30));
+		data.addCourse(algebra);
+		data.addCourse(analysis);
+		analysis.addPrerequisite(algebra);
+		for (int i = 0; i < 5; i++) {
+			Student s = (Student) factory.createUser("student" + i, "pass", UsersType.STUDENT);
+			s.setFaculty(Faculty.values()[0]);
+			RegisteredCourse done = new RegisteredCourse(algebra, CourseType.MAJOR);
+			done.getMarks().add(new Mark(90 - i, LessonType.LECTURE));
+			s.addCompletedCourse(done);
+			data.addRegistrationRequest(new RegistrationRequest(s, analysis, RegistrationType.ADD));
+			data.addComplaint(new Complaint(teacher, s, "Опоздание"));
+		}
+		data.addEmployeeRequest(new EmployeeRequest(teacher, "Проектор"));
+		data.addNewOrder(new TechReport(teacher, "Не работает сеть"));
+		News news = new News("Новости", "Текст");
+		Comment comment = new Comment(teacher, "Комментарий");
+		comment.addSubComment(new Comment(teacher, "Ответ"));
+		news.addComment(comment);
+		data.addNews(news);
+		data.addResearchPaper(new ResearchPaper("Статья"));
+		return data;
+	}
+
+	/**
+	 * Encodes every shard and compares its segments with the data. Users and courses in the segments of the other
+	 * shards are references, they have to be resolved to the very objects of the data.
+	 * The constructors that create the decoded objects take no ids.
+	 */
+	private static void testShards(Data data) throws IOException {
+		int comment = data.nextId(IdSequence.COMMENT);
+		int users = data.currentIdCounter();
+		for (Shard shard : Shard.values()) {
+			Snapshot.Image image = Snapshot.encode(data, shard);
+			if (shard == Shard.CORE) {
+				Set<Object> lazy = Collections.newSetFromMap(new IdentityHashMap<>());
+				for (Shard other : Shard.values()) {
+					for (String name : other.getSegments()) {
+						if (data.loadedSegment(name) != null) lazy.add(data.loadedSegment(name));
+					}
+				}
+				Data decoded = Snapshot.decode(image);
+				check(decoded != data, "core is decoded into new objects");
+				check(!decoded.isCatalogLoaded(), "courses and research are not decoded with the users");
+				decoded.loadCatalog();
+				check(!decoded.hasFailed(Shard.CORE), "courses and research are decoded on first access");
+				check(same(data, decoded, new IdentityHashMap<>(), lazy), "core round trip");
+				continue;
+			}
+			for (String name : shard.getSegments()) {
+				Vector<?> segment = data.loadedSegment(name);
+				if (segment == null) continue;
+				Object decoded = BinaryCodec.decode(image.segment(name), EntityRef.resolver(data));
+				check(same(segment, decoded, new IdentityHashMap<>(), Set.of()), shard + " " + name + " round trip");
+			}
+		}
+		check(data.nextId(IdSequence.COMMENT) == comment + 1 && data.currentIdCounter() == users, "decoding takes no ids");
+	}
+
+	private static void testJournalEntries(Data data) throws IOException {
+		Student student = data.getStudents().iterator().next();
+		Teacher teacher = data.getTeachers().iterator().next();
+		Course course = data.getCourses().stream().filter(c -> c.getCode().equals("MATH201")).findFirst().get();
+		List<RegistrationRequest> requests = new ArrayList<>(data.getRegistrationRequests());
+		Date time = new Date(1_700_000_000_123L);
+		Lesson lesson = course.getLessons().first();
+		List<JournalEntry> entries = List.of(
+				new JournalEntry.AddLog(new Log(LogAction.values()[0], teacher.getId(), student.getId(), "деталь")),
+				new JournalEntry.AddUser(new Student("new", "pass", "new@wow.kz"), true),
+				new JournalEntry.RemoveUser(student),
+				new JournalEntry.SetPassword(student, "secret"),
+				new JournalEntry.AddNotification(student, new Notification("Заголовок", "Текст")),
+				new JournalEntry.ClearNotifications(student),
+				new JournalEntry.AddRegistrationRequest(new RegistrationRequest(student, course, RegistrationType.DROP)),
+				new JournalEntry.SetRequestStatus(requests.get(0), RequestStatus.values()[1]),
+				new JournalEntry.SetRequestStatuses(requests, Collections.nCopies(requests.size(), RequestStatus.values()[1])),
+				new JournalEntry.SetWaitlistTickets(requests, IntStream.rangeClosed(1, requests.size()).toArray()),
+				new JournalEntry.AddCurrentCourse(student, new RegisteredCourse(course, CourseType.MAJOR)),
+				new JournalEntry.DropCourse(student, course),
+				new JournalEntry.PutMark(student, course, new Mark(77.5, LessonType.PRACTICE)),
+				new JournalEntry.PutAttestation(student, course, time),
+				new JournalEntry.PutFinalExam(student, course, 88.0, time),
+				new JournalEntry.AddLesson(course, new Lesson(teacher, LessonType.LAB, DaysWeek.values()[2], 14, 15, 20)),
+				new JournalEntry.RemoveLesson(course, lesson),
+				new JournalEntry.ScheduleLesson(student, course, lesson),
+				new JournalEntry.UnscheduleLesson(student, lesson),
+				new JournalEntry.AddMessage(teacher, new Message(student, "Тема", "Сообщение")),
+				new JournalEntry.SetRate(teacher, student, 9),
+				new JournalEntry.AssignCourse(teacher, course),
+				new JournalEntry.SetTeacherType(teacher, TeacherType.values()[0]),
+				new JournalEntry.AddWarning(student),
+				new JournalEntry.StartRollover(data.getTerm()),
+				new JournalEntry.EndStudentSemester(student, data.getTerm(), true),
+				new JournalEntry.EndTeacherSemester(teacher, data.getTerm()),
+				new JournalEntry.FinishRollover(data.getTerm()));
+		Set<Class<?>> covered = new HashSet<>();
+		for (JournalEntry entry : entries) {
+			entry.setSeq(covered.size() + 1);
+			byte[] bytes = BinaryCodec.encode(entry, EntityRef.replacer(entry.owned()));
+			JournalEntry decoded = (JournalEntry) BinaryCodec.decode(ByteBuffer.wrap(bytes), EntityRef.resolver(data));
+			String name = entry.getClass().getSimpleName();
+			check(decoded != entry && same(entry, decoded, new IdentityHashMap<>(), Set.of()), name + " round trip");
+			check(decoded.getSeq() == entry.getSeq(), name + " sequence number");
+			Object[] aggregates = entry.aggregates();
+			Object[] resolved = decoded.aggregates();
+			for (int i = 0; i < aggregates.length; i++) {
+				if (aggregates[i] != entry.owned()) check(aggregates[i] == resolved[i], name + " resolves " + aggregates[i]);
+			}
+			covered.add(entry.getClass());
+		}
+		for (Class<?> c : JournalEntry.class.getDeclaredClasses()) {
+			if (JournalEntry.class.isAssignableFrom(c) && !Modifier.isAbstract(c.getModifiers())) {
+				check(covered.contains(c), c.getSimpleName() + " is covered");
+			}
+		}
+	}
+
+	/**
+	 * An object written twice and a collection that contains itself come back as one object.
+	 */
+	private static void testSharedObjects() throws IOException {
+		Course course = new Course("Физика", "Механика", "PHYS101", 1, 1, 1, 4, 2024, Semester.FALL);
+		RegisteredCourse first = new RegisteredCourse(course, CourseType.MAJOR);
+		ArrayList<Object> list = new ArrayList<>(List.of(first, first, course));
+		list.add(list);
+		@SuppressWarnings("unchecked")
+		ArrayList<Object> decoded = (ArrayList<Object>) BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(list, null)), null);
+		check(decoded.get(0) == decoded.get(1), "object written twice is decoded once");
+		check(((RegisteredCourse) decoded.get(0)).getCourse() == decoded.get(2), "shared object is kept");
+		check(decoded.get(3) == decoded, "cycle is kept");
+		check(same(list, decoded, new IdentityHashMap<>(), Set.of()), "shared objects round trip");
+	}
+
+	/**
+	 * A string or class that is written again costs only its index in the table.
+	 */
+	private static void testTables() throws IOException {
+		String text = "Одинаковая строка, которая длиннее индекса";
+		ArrayList<String> one = new ArrayList<>(List.of(new String(text)));
+		ArrayList<String> two = new ArrayList<>(List.of(new String(text), new String(text)));
+		int stringCost = BinaryCodec.encode(two, null).length - BinaryCodec.encode(one, null).length;
+		check(stringCost < 4, "repeated string is written as an index, costs " + stringCost);
+		@SuppressWarnings("unchecked")
+		List<String> strings = (List<String>) BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(two, null)), null);
+		check(strings.equals(two), "strings round trip");
+
+		ArrayList<Notification> notifications = new ArrayList<>(List.of(new Notification("a", "b")));
+		int before = BinaryCodec.encode(notifications, null).length;
+		notifications.add(new Notification("c", "d"));
+		int classCost = BinaryCodec.encode(notifications, null).length - before;
+		check(classCost < Notification.class.getName().length(), "repeated class is written as an index, costs " + classCost);
+		Object decoded = BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(notifications, null)), null);
+		check(same(notifications, decoded, new IdentityHashMap<>(), Set.of()), "classes round trip");
+	}
+
+	private static void testDates() throws IOException {
+		for (Date date : List.of(new Date(0), new Date(1_700_000_000_123L), new Date(-86_400_000L), new Date(Long.MAX_VALUE))) {
+			Object decoded = BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(date, null)), null);
+			check(date.equals(decoded), "date " + date.getTime());
+		}
+		Data data = Data.getInstance();
+		RegistrationRequest request = new RegistrationRequest(data.getStudents().iterator().next(), data.getCourses().iterator().next());
+		RegistrationRequest decoded = (RegistrationRequest) BinaryCodec.decode(
+				ByteBuffer.wrap(BinaryCodec.encode(request, EntityRef.replacer(null))), EntityRef.resolver(data));
+		check(decoded.getDate().getTime() == request.getDate().getTime(), "date of an object");
+	}
+
+	/**
+	 * Courses are found by code, year and semester only, a reference that matches nothing is reported,
+	 * and a course that was removed from the data is written in full by a snapshot.
+	 */
+	private static void testReferences(Data data) throws IOException {
+		Course algebra = data.getCourses().stream().filter(c -> "MATH101".equals(c.getCode())).findFirst().orElseThrow();
+		Course twin = new Course(algebra.getTitle(), "Копия", "MATH102", 1, 0, 0, 3, data.getYear(), data.getSemester());
+		data.addCourse(twin);
+		byte[] bytes = BinaryCodec.encode(new Vector<>(List.of(twin, algebra)), EntityRef.replacer(null));
+		Vector<?> decoded = (Vector<?>) BinaryCodec.decode(ByteBuffer.wrap(bytes), EntityRef.resolver(data));
+		check(decoded.get(0) == twin && decoded.get(1) == algebra, "course with the same title is told apart by its code");
+
+		EntityRef.Resolver resolver = EntityRef.resolver(data);
+		twin.setCode("MATH103");
+		BinaryCodec.decode(ByteBuffer.wrap(bytes), resolver);
+		try {
+			resolver.check();
+			check(false, "course with a changed code is reported");
+		} catch (IllegalStateException e) {
+			check(e.getMessage().contains("MATH102"), "missing course is named: " + e.getMessage());
+		}
+
+		Course removed = new Course("Геометрия", "Старый курс", "MATH104", 1, 0, 0, 3, data.getYear(), data.getSemester());
+		data.addCourse(removed);
+		data.removeCourse(removed);
+		Vector<Object> segment = new Vector<>(List.of(removed, algebra));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryCodec.encode(segment, EntityRef.snapshotReplacer(data), out);
+		resolver = EntityRef.resolver(data);
+		decoded = (Vector<?>) BinaryCodec.decode(ByteBuffer.wrap(out.toByteArray()), resolver);
+		resolver.check();
+		check(decoded.get(0) != removed && same(removed, decoded.get(0), new IdentityHashMap<>(), Set.of()),
+				"removed course is written in full");
+		check(decoded.get(1) == algebra, "course of the data is written as a reference");
+	}
+
+	/**
+	 * Only classes of the model, their enums and collections are written and read. A file that names another class
+	 * or holds an object of {@code java.io} serialization is rejected without creating the object.
+	 */
+	private static void testUnknownClasses() throws IOException {
+		try {
+			BinaryCodec.encode(new Vector<>(List.of(new Random())), null);
+			check(false, "object of an unknown class is not written");
+		} catch (java.io.NotSerializableException e) {
+			check(e.getMessage().equals(Random.class.getName()), "unknown class is named: " + e.getMessage());
+		}
+		int[] numbers = {1, -2, Integer.MAX_VALUE};
+		RequestStatus[] statuses = RequestStatus.values();
+		Object decoded = BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(new Vector<>(List.of(numbers, statuses, numbers)), null)), null);
+		check(same(new Vector<>(List.of(numbers, statuses, numbers)), decoded, new IdentityHashMap<>(), Set.of()), "arrays round trip");
+
+		byte[] name = ProcessBuilder.class.getName().getBytes();
+		ByteArrayOutputStream forged = new ByteArrayOutputStream();
+		forged.writeBytes(new byte[]{3, 0, 0, (byte) name.length});
+		forged.writeBytes(name);
+		forged.writeBytes(new byte[]{0});
+		try {
+			BinaryCodec.decode(ByteBuffer.wrap(forged.toByteArray()), null);
+			check(false, "unknown class name is rejected");
+		} catch (IOException e) {
+			check(e.getMessage().contains(ProcessBuilder.class.getName()), "rejected class is named: " + e.getMessage());
+		}
+		try {
+			BinaryCodec.decode(ByteBuffer.wrap(new byte[]{14, 4, 1, 2, 3, 4}), null);
+			check(false, "java.io serialization is rejected");
+		} catch (IOException e) {
+			check(true, "java.io serialization is rejected");
+		}
+	}
+
+	/**
+	 * Writes the data with {@code java.io} serialization, as {@code data.ser} was written, and reads it back with
+	 * {@link LegacyStream}. The streamed collections are passed to sinks, encoded by {@link BinaryCodec.ListEncoder}
+	 * and decoded again; put back into the read data, they have to match the original field by field.
+	 */
+	private static void testLegacyStream(Data data) throws IOException {
+		Path file = Paths.get("legacy.ser");
+		try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+			out.writeObject(data);
+		}
+		Map<String, List<Object>> streamed = new HashMap<>();
+		Map<String, Consumer<Object>> sinks = new HashMap<>();
+		for (String name : List.of("registrationRequests", "complaints", "news")) {
+			sinks.put(name, streamed.computeIfAbsent(name, k -> new ArrayList<>())::add);
+		}
+		Data read;
+		try (LegacyStream in = new LegacyStream(file, sinks)) {
+			read = in.read();
+		}
+		check(read.getComplaints().isEmpty() && streamed.get("complaints").size() == data.getComplaints().size(), "legacy complaints are streamed");
+		ByteArrayOutputStream elements = new ByteArrayOutputStream();
+		BinaryCodec.ListEncoder encoder = new BinaryCodec.ListEncoder(Vector.class, EntityRef.replacer(null), elements);
+		for (Object request : streamed.get("registrationRequests")) encoder.add(request);
+		encoder.flush();
+		ByteArrayOutputStream segment = new ByteArrayOutputStream();
+		encoder.writeHead(segment);
+		elements.writeTo(segment);
+		EntityRef.Resolver resolver = EntityRef.resolver(read);
+		Vector<?> requests = (Vector<?>) BinaryCodec.decode(ByteBuffer.wrap(segment.toByteArray()), resolver);
+		resolver.check();
+		read.getRegistrationRequests().addAll(requests.stream().map(RegistrationRequest.class::cast).toList());
+		read.getComplaints().addAll(streamed.get("complaints").stream().map(Complaint.class::cast).toList());
+		read.getNews().addAll(streamed.get("news").stream().map(News.class::cast).toList());
+		check(same(data, read, new IdentityHashMap<>(), Set.of()), "legacy stream round trip");
+		Files.delete(file);
+	}
+
+	/**
+	 * Compares two object graphs field by field. An object of the first graph has to match the same object
+	 * of the second one every time it is met, so shared objects and cycles are compared as well.
+	 * @param skipped - objects of the first graph that are not written and decoded as {@code null}.
+	 */
+	private static boolean same(Object a, Object b, IdentityHashMap<Object, Object> seen, Set<Object> skipped) {
+		if (a == b) return true;
+		if (b == null && skipped.contains(a)) return true;
+		if (a == null || b == null || a.getClass() != b.getClass()) return false;
+		if (seen.containsKey(a)) return seen.get(a) == b;
+		if (a instanceof String || a instanceof Number || a instanceof Boolean || a instanceof Character
+				|| a instanceof Enum<?> || a instanceof Date) {
+			return a.equals(b);
+		}
+		seen.put(a, b);
+		if (a.getClass().isArray()) {
+			if (Array.getLength(a) != Array.getLength(b)) return false;
+			for (int i = 0; i < Array.getLength(a); i++) {
+				if (!same(Array.get(a, i), Array.get(b, i), seen, skipped)) return false;
+			}
+			return true;
+		}
+		if (a instanceof List<?> x) {
+			List<?> y = (List<?>) b;
+			if (x.size() != y.size()) return false;
+			for (int i = 0; i < x.size(); i++) {
+				if (!same(x.get(i), y.get(i), seen, skipped)) return false;
+			}
+			return true;
+		}
+		if (a instanceof Collection<?> x) {
+			return matchAll(new ArrayList<>(x), new ArrayList<>((Collection<?>) b), seen, skipped);
+		}
+		if (a instanceof Map<?, ?> x) {
+			return matchAll(new ArrayList<>(x.entrySet()), new ArrayList<>(((Map<?, ?>) b).entrySet()), seen, skipped);
+		}
+		if (a instanceof Map.Entry<?, ?> x) {
+			Map.Entry<?, ?> y = (Map.Entry<?, ?>) b;
+			return same(x.getKey(), y.getKey(), seen, skipped) && same(x.getValue(), y.getValue(), seen, skipped);
+		}
+		if (!a.getClass().getName().startsWith("universitysystem.")) return a.toString().equals(b.toString());
+		try {
+			for (Class<?> t = a.getClass(); t != Object.class; t = t.getSuperclass()) {
+				for (Field f : t.getDeclaredFields()) {
+					if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0) continue;
+					f.setAccessible(true);
+					if (!same(f.get(a), f.get(b), seen, skipped)) return false;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Matches the elements of two unordered collections. An element is tried against every unmatched one,
+	 * a failed try leaves the objects it met unmatched.
+	 */
+	private static boolean matchAll(List<?> x, List<?> y, IdentityHashMap<Object, Object> seen, Set<Object> skipped) {
+		if (x.size() != y.size()) return false;
+		List<Object> left = new ArrayList<>(y);
+		for (Object element : x) {
+			boolean found = false;
+			for (Iterator<Object> i = left.iterator(); i.hasNext() && !found; ) {
+				IdentityHashMap<Object, Object> attempt = new IdentityHashMap<>(seen);
+				if (same(element, i.next(), attempt, skipped)) {
+					seen.putAll(attempt);
+					i.remove();
+					found = true;
+				}
+			}
+			if (!found) return false;
+		}
+		return true;
+	}
+
+	private static void check(boolean condition, String name) {
+		if (condition) return;
+		failures++;
+		System.out.println("FAIL " + name);
+	}
+}
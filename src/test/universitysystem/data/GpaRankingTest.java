@@ -0,0 +1,134 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.*;
+
+import java.util.*;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The GPA ranking of real {@link Data}: ranks and percentiles of the groups, students moved between groups
+ * and a query made while another one is still placing the changed students.
+ * Every test uses a year of study of its own, so the groups do not share students.
+ * Run it in an empty working directory, the data it creates is stored there.
+ */
+public class GpaRankingTest {
+	private static int failures;
+	private static int students;
+
+	public static void main(String[] args) throws Exception {
+		Data data = Data.getInstance();
+		Course course = new Course("Курс", "Описание", "GPA101", 1, 0, 0, 5, data.getYear(), data.getSemester());
+		data.addCourse(course);
+		testTies(data, course);
+		testPercentile(data, course);
+		testMoves(data, course);
+		testRefreshInFlight(data, course);
+		System.out.println(failures == 0 ? "OK" : failures + " checks failed");
+		Runtime.getRuntime().halt(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Students with the same GPA share a rank, the next student is ranked after all of them.
+	 */
+	private static void testTies(Data data, Course course) {
+		Student a = student(data, Faculty.SITE, 7, course, 35);
+		Student b = student(data, Faculty.SITE, 7, course, 35);
+		Student c = student(data, Faculty.SITE, 7, course, 12);
+		GpaRanking.Group year = data.getRanking().year(7);
+		check(year.rank(a) == 1 && year.rank(b) == 1, "tied students share the first rank");
+		check(year.rank(c) == 3, "the next student is ranked after both tied ones");
+		check(year.size() == 3 && year.top(2).containsAll(List.of(a, b)) && year.list().get(2) == c, "top lists the tied students first");
+	}
+
+	/**
+	 * The percentile is the share of the group with a lower GPA: none for the last student, all the others
+	 * for the best one. A student of another group has none.
+	 */
+	private static void testPercentile(Data data, Course course) {
+		Student best = student(data, Faculty.BS, 8, course, 35);
+		Student middle = student(data, Faculty.BS, 8, course, 25);
+		Student last = student(data, Faculty.BS, 8, course, 12);
+		Student other = student(data, Faculty.BS, 9, course, 35);
+		GpaRanking.Group year = data.getRanking().year(8);
+		check(year.percentile(last) == 0, "the last student is at percentile 0");
+		check(Math.abs(year.percentile(best) - 100.0 * 2 / 3) < 1e-9, "the best student is above the rest of the group");
+		check(year.percentile(middle) > year.percentile(last) && year.percentile(middle) < year.percentile(best), "percentiles follow the GPAs");
+		check(year.percentile(other) == -1 && year.rank(other) == 0, "a student of another year is not in the group");
+	}
+
+	/**
+	 * A student whose year of study or faculty changes leaves the old group and is ranked in the new one.
+	 */
+	private static void testMoves(Data data, Course course) {
+		Student stays = student(data, Faculty.SEOGI, 10, course, 25);
+		Student moves = student(data, Faculty.SEOGI, 10, course, 35);
+		GpaRanking ranking = data.getRanking();
+		check(ranking.year(10).rank(moves) == 1 && ranking.year(10).rank(stays) == 2, "ranked in the first year");
+		moves.setYearOfStudy(11);
+		check(ranking.year(10).rank(moves) == 0 && ranking.year(10).size() == 1, "the student left the old year");
+		check(ranking.year(10).rank(stays) == 1, "the student left behind moves up");
+		check(ranking.year(11).rank(moves) == 1 && ranking.year(11).size() == 1, "the student is ranked in the new year");
+		check(ranking.faculty(Faculty.SEOGI).rank(moves) > 0 && ranking.faculty(Faculty.SG).rank(moves) == 0, "ranked in the first faculty");
+		moves.setFaculty(Faculty.SG);
+		check(ranking.faculty(Faculty.SEOGI).rank(moves) == 0 && ranking.faculty(Faculty.SEOGI).rank(stays) > 0, "the student left the old faculty");
+		check(ranking.faculty(Faculty.SG).list().equals(List.of(moves)), "the student is ranked in the new faculty");
+	}
+
+	/**
+	 * One query takes a changed student and is held while it computes the GPA. A query made meanwhile
+	 * waits for the student to be placed instead of answering from the old ranking.
+	 */
+	private static void testRefreshInFlight(Data data, Course course) throws Exception {
+		Student rising = student(data, Faculty.SG, 12, course, -1);
+		Student leader = student(data, Faculty.SG, 12, course, 25);
+		GpaRanking.Group year = data.getRanking().year(12);
+		check(year.top(1).equals(List.of(leader)), "the leader is first before the change");
+		complete(rising, course, 35);
+		FutureTask<List<Student>> first = new FutureTask<>(() -> year.top(1));
+		FutureTask<List<Student>> second = new FutureTask<>(() -> year.top(1));
+		Thread placing = new Thread(first);
+		Thread waiting = new Thread(second);
+		synchronized (rising) {
+			// the GPA is computed under the lock of the student, the first query stops there
+			placing.start();
+			await(placing, Thread.State.BLOCKED);
+			waiting.start();
+			await(waiting, Thread.State.WAITING);
+			check(!second.isDone(), "a query waits for the students taken by an earlier one");
+		}
+		check(first.get().equals(List.of(rising)), "the first query places the changed student");
+		check(second.get().equals(List.of(rising)), "the waiting query sees the changed student");
+	}
+
+	/**
+	 * Student of the faculty and year of study with one completed course. A negative number of final exam
+	 * points leaves the student without completed courses.
+	 */
+	private static Student student(Data data, Faculty faculty, int year, Course course, double finalExam) {
+		Student s = (Student) new UserFactory().createUser("ranked" + students++, "pass", UsersType.STUDENT);
+		s.setFaculty(faculty);
+		s.setYearOfStudy(year);
+		if (finalExam >= 0) complete(s, course, finalExam);
+		return s;
+	}
+
+	private static void complete(Student s, Course course, double finalExam) {
+		s.addCompletedCourse(new RegisteredCourse(course, CourseType.MAJOR, new TreeSet<>(), new Vector<>(),
+				30, 30, finalExam, new Date(), false));
+	}
+
+	/**
+	 * Waits until the thread is in the state, or has ended, for at most five seconds.
+	 */
+	private static void await(Thread thread, Thread.State state) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (thread.getState() != state && thread.isAlive() && System.currentTimeMillis() < end) Thread.sleep(1);
+	}
+
+	private static void check(boolean condition, String name) {
+		if (condition) return;
+		failures++;
+		System.out.println("FAIL " + name);
+	}
+}
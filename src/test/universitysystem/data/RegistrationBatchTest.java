@@ -0,0 +1,173 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.*;
+import universitysystem.utills.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Batches of registration requests run on real {@link Data}: the decisions and notifications of a batch,
+ * drops that free seats for the adds of the same batch, and the waitlist of a full course, which keeps its order
+ * from one batch to the next, also when the batches run on different threads.
+ * Every test leaves no pending requests behind, so the next batch considers only the requests of the next test.
+ * Run it in an empty working directory, the data it creates is stored there.
+ */
+public class RegistrationBatchTest {
+	private static int failures;
+	private static int courses;
+
+	public static void main(String[] args) throws Exception {
+		Data data = Data.getInstance();
+		testDecisions(data);
+		testDropsFreeSeats(data);
+		testWaitlistPositions(data);
+		testWaitlistAcrossThreads(data);
+		System.out.println(failures == 0 ? "OK" : failures + " checks failed");
+		Runtime.getRuntime().halt(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * A request is approved, refused for a missing prerequisite or refused for a course of another faculty,
+	 * all statuses are set by the batch and every student gets one notification about all of their requests.
+	 */
+	private static void testDecisions(Data data) {
+		Course open = course(data, 10);
+		Course basic = course(data, 10);
+		Course advanced = course(data, 10);
+		advanced.addPrerequisite(basic);
+		List<Student> students = students(data, 2, 1);
+		Student a = students.get(0);
+		Student b = students.get(1);
+		b.setFaculty(Faculty.values()[1]);
+		RegistrationRequest approved = request(data, a, open);
+		RegistrationRequest missing = request(data, a, advanced);
+		RegistrationRequest foreign = request(data, b, open);
+		int notifications = a.getNotifications().size();
+		RegistrationBatch batch = RegistrationBatch.run(data, 1);
+		check(approved.getStatus() == RequestStatus.DONE && a.getCurrentCourses().size() == 1, "an eligible request gets a seat");
+		check(missing.getStatus() == RequestStatus.REFUSED, "a request without the prerequisite is refused");
+		check(foreign.getStatus() == RequestStatus.REFUSED && b.getCurrentCourses().isEmpty(), "a request for a course of another faculty is refused");
+		check(batch.getTotal() == 3 && batch.getApproved() == 1 && batch.getRejected() == 2 && batch.getWaitlisted() == 0, "the batch counts its decisions");
+		check(batch.getNotified() == 2 && a.getNotifications().size() == notifications + 1, "every student is notified once");
+		String text = a.getNotifications().getLast().getText();
+		check(text.contains("Приняты: " + open.getCode()) && text.contains("Отклонены: " + advanced.getCode()), "the notification lists every request of the student");
+	}
+
+	/**
+	 * A drop and an add of a full course in the same batch: the drop is applied first, so the add takes the seat
+	 * it frees, even though the add was sent first.
+	 */
+	private static void testDropsFreeSeats(Data data) {
+		Course c = course(data, 1);
+		List<Student> students = students(data, 2, 1);
+		Student holder = students.get(0);
+		Student next = students.get(1);
+		request(data, holder, c);
+		RegistrationBatch.run(data, 1);
+		check(holder.getCurrentCourses().size() == 1, "the holder takes the only seat");
+		RegistrationRequest add = request(data, next, c);
+		RegistrationRequest drop = new RegistrationRequest(holder, c, RegistrationType.DROP);
+		data.addRegistrationRequest(drop);
+		RegistrationBatch batch = RegistrationBatch.run(data, 1);
+		check(drop.getStatus() == RequestStatus.DONE && holder.getCurrentCourses().isEmpty(), "the drop is applied");
+		check(add.getStatus() == RequestStatus.DONE && next.getCurrentCourses().size() == 1, "the add takes the freed seat");
+		check(batch.getWaitlisted() == 0 && batch.getWaitlist(c).isEmpty(), "nobody is waitlisted");
+	}
+
+	/**
+	 * Requests that find the course full stay pending with a ticket, and their students are told their place
+	 * on the waitlist.
+	 */
+	private static void testWaitlistPositions(Data data) {
+		Course c = course(data, 1);
+		List<Student> students = students(data, 3, 1);
+		List<RegistrationRequest> requests = new ArrayList<>();
+		for (Student s : students) requests.add(request(data, s, c));
+		RegistrationBatch batch = RegistrationBatch.run(data, 1);
+		List<RegistrationRequest> waitlist = batch.getWaitlist(c);
+		check(batch.getApproved() == 1 && batch.getWaitlisted() == 2 && waitlist.size() == 2, "one seat is taken, two requests wait");
+		for (int i = 0; i < waitlist.size(); i++) {
+			RegistrationRequest r = waitlist.get(i);
+			check(r.getStatus() == RequestStatus.SHIPPED && r.getWaitlistTicket() > 0, "waitlisted request " + i + " stays pending with a ticket");
+			String text = r.getSender().getNotifications().getLast().getText();
+			check(text.contains("В листе ожидания: " + c.getCode() + " (№ " + (i + 1) + ")"), "the student of request " + i + " is told the place");
+		}
+		check(waitlist.get(0).getWaitlistTicket() < waitlist.get(1).getWaitlistTicket(), "the tickets follow the waitlist");
+		for (RegistrationRequest r : waitlist) r.setStatus(RequestStatus.REFUSED);
+	}
+
+	/**
+	 * Two session threads run the batches in turn. A request waitlisted by a later batch never gets ahead
+	 * of one waitlisted by an earlier batch, whichever thread ran it.
+	 */
+	private static void testWaitlistAcrossThreads(Data data) throws Exception {
+		Course c = course(data, 1);
+		List<Student> students = students(data, 4, 1);
+		ExecutorService first = Executors.newSingleThreadExecutor();
+		ExecutorService second = Executors.newSingleThreadExecutor();
+		try {
+			List<RegistrationRequest> waitlisted = new ArrayList<>();
+			ExecutorService[] turns = {first, second, first, second};
+			for (int i = 0; i < students.size(); i++) {
+				RegistrationRequest r = request(data, students.get(i), c);
+				turns[i].submit(() -> RegistrationBatch.run(data, 1)).get();
+				if (i > 0) waitlisted.add(r);
+			}
+			check(students.get(0).getCurrentCourses().size() == 1, "the first request takes the only seat");
+			for (int i = 1; i < waitlisted.size(); i++) {
+				check(waitlisted.get(i - 1).getWaitlistTicket() < waitlisted.get(i).getWaitlistTicket(),
+						"ticket " + i + " is later than ticket " + (i - 1));
+			}
+			for (int i = 0; i < waitlisted.size(); i++) {
+				Student holder = (Student) (i == 0 ? students.get(0) : waitlisted.get(i - 1).getSender());
+				data.journal(new JournalEntry.DropCourse(holder, c));
+				RegistrationBatch batch = turns[i % 2].submit(() -> RegistrationBatch.run(data, 2)).get();
+				check(waitlisted.get(i).getStatus() == RequestStatus.DONE, "waitlisted request " + i + " gets the freed seat");
+				check(batch.getWaitlist(c).equals(waitlisted.subList(i + 1, waitlisted.size())), "the rest keep their order after seat " + i);
+			}
+		} finally {
+			first.shutdown();
+			second.shutdown();
+		}
+	}
+
+	/**
+	 * Course of the first faculty with one lecture of the given number of seats.
+	 */
+	private static Course course(Data data, int seats) {
+		Teacher teacher = (Teacher) new UserFactory().create("teacher" + courses, "pass", UsersType.TEACHER, true);
+		Course c = new Course("Курс " + courses, "Описание", "TEST" + (100 + courses), 1, 0, 0, 5, data.getYear(), data.getSemester());
+		courses++;
+		c.addMajorFaculty(Faculty.values()[0]);
+		c.addLesson(new Lesson(teacher, LessonType.LECTURE, DaysWeek.values()[0], 9, 10, seats));
+		data.addCourse(c);
+		return c;
+	}
+
+	private static List<Student> students(Data data, int count, int year) {
+		UserFactory factory = new UserFactory();
+		List<Student> students = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Student s = (Student) factory.createUser("student" + data.getStudents().size(), "pass", UsersType.STUDENT);
+			s.setFaculty(Faculty.values()[0]);
+			s.setYearOfStudy(year);
+			students.add(s);
+		}
+		return students;
+	}
+
+	private static RegistrationRequest request(Data data, Student s, Course c) {
+		RegistrationRequest r = new RegistrationRequest(s, c, RegistrationType.ADD);
+		data.addRegistrationRequest(r);
+		return r;
+	}
+
+	private static void check(boolean condition, String name) {
+		if (condition) return;
+		failures++;
+		System.out.println("FAIL " + name);
+	}
+}
@@ -0,0 +1,130 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.*;
+import universitysystem.utills.*;
+
+import java.util.*;
+
+/**
+ * The index of the registration requests of real {@link Data}: the lists keep the order the requests were sent in
+ * when the status or the course of a request changes, and a request is found by its id and the time it was sent.
+ * Run it in an empty working directory, the data it creates is stored there.
+ */
+public class RequestIndexTest {
+	private static int failures;
+	private static int created;
+
+	public static void main(String[] args) {
+		Data data = Data.getInstance();
+		testStatusUpdates(data);
+		testCourseUpdates(data);
+		testFind(data);
+		System.out.println(failures == 0 ? "OK" : failures + " checks failed");
+		Runtime.getRuntime().halt(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * A request whose status changes moves to the lists of the new status at the place it was sent,
+	 * not at the end, and the lists of the old status keep the order of the rest.
+	 */
+	private static void testStatusUpdates(Data data) {
+		Student s = student(data);
+		RegistrationRequest first = request(data, s, course(data));
+		RegistrationRequest second = request(data, s, course(data));
+		RegistrationRequest third = request(data, s, course(data));
+		RequestIndex index = data.getRequestIndex();
+		check(index.get(s).equals(List.of(first, second, third)), "the requests of the student in the order they were sent");
+		first.setStatus(RequestStatus.DONE);
+		third.setStatus(RequestStatus.DONE);
+		check(index.get(s, RequestStatus.SHIPPED).equals(List.of(second)), "the pending request is left");
+		check(index.get(s, RequestStatus.DONE).equals(List.of(first, third)), "the decided requests in the order they were sent");
+		check(index.get(s).equals(List.of(first, second, third)), "all requests keep their order");
+		first.setStatus(RequestStatus.SHIPPED);
+		check(index.get(s, RequestStatus.SHIPPED).equals(List.of(first, second)), "a request sent first is first again");
+		List<RegistrationRequest> pending = index.get(RequestStatus.SHIPPED);
+		check(pending.indexOf(first) >= 0 && pending.indexOf(first) < pending.indexOf(second), "the pending requests of all students keep the order");
+		check(!index.get(RequestStatus.DONE).contains(first) && index.get(RequestStatus.DONE).contains(third), "the lists of a status hold only its requests");
+		check(index.contains(s, RequestStatus.DONE) && !index.contains(s, RequestStatus.REFUSED), "the statuses of the student");
+		third.setStatus(RequestStatus.REFUSED);
+		check(!index.contains(s, RequestStatus.DONE), "a status without requests is gone");
+		check(same(index, new RequestIndex(data.getRegistrationRequests()), s), "an index built again gives the same lists");
+	}
+
+	/**
+	 * A request whose course changes is found by the new course and no longer by the old one, unless another
+	 * request of the student is for it.
+	 */
+	private static void testCourseUpdates(Data data) {
+		Student s = student(data);
+		Course old = course(data);
+		Course other = course(data);
+		RegistrationRequest moved = request(data, s, old);
+		RegistrationRequest kept = request(data, s, other);
+		RequestIndex index = data.getRequestIndex();
+		Course next = course(data);
+		moved.setCourse(next);
+		check(!index.contains(s, old) && index.contains(s, next), "the request is found by its new course");
+		check(index.get(s).equals(List.of(moved, kept)), "the request keeps its place");
+		moved.setCourse(other);
+		check(index.contains(s, other) && !index.contains(s, next), "two requests for one course");
+		kept.setCourse(old);
+		check(index.contains(s, other) && index.contains(s, old), "the course is still found by the other request");
+		check(same(index, new RequestIndex(data.getRegistrationRequests()), s), "an index built again gives the same lists");
+	}
+
+	/**
+	 * A request is found by its id and the time it was sent, also after it changed, and only by both.
+	 */
+	private static void testFind(Data data) {
+		Student s = student(data);
+		RegistrationRequest r = request(data, s, course(data));
+		RegistrationRequest other = request(data, s, course(data));
+		RequestIndex index = data.getRequestIndex();
+		long date = r.getDate().getTime();
+		check(index.find(r.getId(), date) == r && index.find(other.getId(), other.getDate().getTime()) == other, "found by id and date");
+		check(index.find(r.getId(), date + 1) == null, "not found by another date");
+		check(index.find(other.getId() + 1000, other.getDate().getTime()) == null, "not found by another id");
+		r.setStatus(RequestStatus.DONE);
+		r.setCourse(course(data));
+		check(index.find(r.getId(), date) == r, "found after its status and course changed");
+		check(JournalEntry.find(data, r.getId(), date) == r, "the journal finds the request by the index");
+	}
+
+	/**
+	 * Compares the lists of the student and of every status in two indexes.
+	 */
+	private static boolean same(RequestIndex a, RequestIndex b, Student s) {
+		if (!a.get(s).equals(b.get(s)) || a.size() != b.size()) return false;
+		for (RequestStatus status : RequestStatus.values()) {
+			if (!a.get(status).equals(b.get(status)) || !a.get(s, status).equals(b.get(s, status))) return false;
+		}
+		return true;
+	}
+
+	private static Course course(Data data) {
+		created++;
+		Course c = new Course("Курс " + created, "Описание", "INDEX" + created, 1, 0, 0, 5, data.getYear(), data.getSemester());
+		data.addCourse(c);
+		return c;
+	}
+
+	private static Student student(Data data) {
+		created++;
+		Student s = (Student) new UserFactory().createUser("indexed" + created, "pass", UsersType.STUDENT);
+		s.setFaculty(Faculty.values()[0]);
+		return s;
+	}
+
+	private static RegistrationRequest request(Data data, Student s, Course c) {
+		RegistrationRequest r = new RegistrationRequest(s, c, RegistrationType.ADD);
+		data.addRegistrationRequest(r);
+		return r;
+	}
+
+	private static void check(boolean condition, String name) {
+		if (condition) return;
+		failures++;
+		System.out.println("FAIL " + name);
+	}
+}
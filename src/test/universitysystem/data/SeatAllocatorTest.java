@@ -0,0 +1,162 @@
+package universitysystem.data;
+
+import universitysystem.courses.*;
+import universitysystem.entity.*;
+import universitysystem.utills.*;
+
+import java.util.*;
+
+/**
+ * The allocation of seats to the requests of one window: rounds, the order within a round, the lottery,
+ * the credit limit and the places on the waitlists. The free seats and the credits are given to the allocator,
+ * so the courses and students need not be in {@link Data}.
+ * Run it in an empty working directory, the data it creates is stored there.
+ */
+public class SeatAllocatorTest {
+	private static int failures;
+	private static int created;
+
+	public static void main(String[] args) {
+		testRounds();
+		testPriority();
+		testLottery();
+		testCredits();
+		testWaitlistPositions();
+		System.out.println(failures == 0 ? "OK" : failures + " checks failed");
+		Runtime.getRuntime().halt(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Every student gets a first course before anyone gets a second one: the second request of a student who sent
+	 * first loses the last seat to the first request of another student.
+	 */
+	private static void testRounds() {
+		Course x = course(5);
+		Course y = course(5);
+		Student first = student(1);
+		Student second = student(1);
+		List<RegistrationRequest> requests = List.of(request(first, x), request(first, y), request(second, y));
+		Window w = allocate(1, requests, Map.of(x, 10, y, 1), Map.of());
+		check(w.statuses[0] == RequestStatus.DONE && w.statuses[2] == RequestStatus.DONE, "both students get their first course");
+		check(w.statuses[1] == RequestStatus.SHIPPED, "the second course of the first student is waitlisted");
+		check(w.approved.equals(List.of(0, 2)), "the seats are given round by round");
+		check(w.allocator.getWaitlist(y).equals(List.of(requests.get(1))), "the waitlist of the full course");
+	}
+
+	/**
+	 * Within a round a major course goes before a minor one, and an older year before a younger one.
+	 */
+	private static void testPriority() {
+		Course c = course(5);
+		List<RegistrationRequest> requests = List.of(request(student(4), c), request(student(1), c), request(student(3), c));
+		CourseType[] types = {CourseType.MINOR, CourseType.MAJOR, CourseType.MAJOR};
+		Window w = allocate(1, requests, types, Map.of(c, 2), Map.of());
+		check(w.approved.equals(List.of(2, 1)), "majors of the older year first, then of the younger one");
+		check(w.statuses[0] == RequestStatus.SHIPPED, "the minor course waits, though its student is in the oldest year");
+	}
+
+	/**
+	 * Students with the same priority are ordered by a lottery drawn from the seed: the same seed gives the same
+	 * seat, other seeds give it to other students.
+	 */
+	private static void testLottery() {
+		Course c = course(5);
+		List<RegistrationRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 20; i++) requests.add(request(student(2), c));
+		Set<Integer> winners = new HashSet<>();
+		for (long seed = 1; seed <= 10; seed++) {
+			List<Integer> winner = allocate(seed, requests, Map.of(c, 1), Map.of()).approved;
+			check(winner.equals(allocate(seed, requests, Map.of(c, 1), Map.of()).approved), "seed " + seed + " gives the same seat again");
+			winners.addAll(winner);
+		}
+		check(winners.size() > 1, "other seeds give the seat to other students");
+	}
+
+	/**
+	 * A request is refused when the credits of the student would go over the limit, counting the courses
+	 * the student got earlier in the same window.
+	 */
+	private static void testCredits() {
+		Course a = course(5);
+		Course b = course(5);
+		Course third = course(5);
+		Student full = student(1);
+		Student some = student(1);
+		List<RegistrationRequest> requests = List.of(request(full, a), request(some, a), request(some, b), request(some, third));
+		int max = Student.getMaxCredits();
+		Window w = allocate(1, requests, Map.of(a, 10, b, 10, third, 10), Map.of(full, max - 4, some, max - 10));
+		check(w.statuses[0] == RequestStatus.REFUSED, "a course over the limit is refused");
+		check(w.statuses[1] == RequestStatus.DONE && w.statuses[2] == RequestStatus.DONE, "courses within the limit are given");
+		check(w.statuses[3] == RequestStatus.REFUSED, "the credits given earlier in the window count");
+		check(w.allocator.getWaitlisted().isEmpty(), "refused requests are not waitlisted");
+	}
+
+	/**
+	 * Places on the waitlist: requests with a ticket are served first, in the order of their tickets, and keep
+	 * their place before the new requests. A request whose seat is taken after it was given goes back to its place.
+	 */
+	private static void testWaitlistPositions() {
+		Course c = course(5);
+		List<RegistrationRequest> fresh = new ArrayList<>();
+		for (int i = 0; i < 4; i++) fresh.add(request(student(1), c));
+		Window w = allocate(1, fresh, Map.of(c, 1), Map.of());
+		List<RegistrationRequest> waitlist = w.allocator.getWaitlist(c);
+		check(w.approved.size() == 1 && waitlist.size() == 3, "one seat, three waiting");
+		check(w.allocator.getWaitlistPosition(w.approved.get(0)) == 0, "the approved request has no place");
+		for (int n = 0; n < waitlist.size(); n++) {
+			check(w.allocator.getWaitlistPosition(fresh.indexOf(waitlist.get(n))) == n + 1, "place " + (n + 1));
+		}
+		RegistrationRequest later = request(student(1), c);
+		RegistrationRequest earlier = request(student(1), c);
+		later.setWaitlistTicket(20);
+		earlier.setWaitlistTicket(10);
+		List<RegistrationRequest> requests = List.of(request(student(4), c), later, request(student(4), c), earlier);
+		w = allocate(1, requests, Map.of(c, 1), Map.of());
+		check(w.approved.equals(List.of(3)), "the earliest ticket is served first");
+		check(w.allocator.getWaitlist(c).get(0) == later && w.allocator.getWaitlistPosition(1) == 1, "a ticket keeps its place before the new requests");
+		w.allocator.waitlist(3);
+		check(w.allocator.getWaitlistPosition(3) == 1 && w.allocator.getWaitlistPosition(1) == 2, "a request put back goes before later tickets");
+		check(w.allocator.getWaitlist(c).size() == 4, "the new requests stay behind");
+	}
+
+	private static Window allocate(long seed, List<RegistrationRequest> requests, Map<Course, Integer> seats, Map<Student, Integer> credits) {
+		CourseType[] types = new CourseType[requests.size()];
+		Arrays.fill(types, CourseType.MAJOR);
+		return allocate(seed, requests, types, seats, credits);
+	}
+
+	/**
+	 * Allocates the seats of a window. Students not in the map of credits take no courses yet.
+	 */
+	private static Window allocate(long seed, List<RegistrationRequest> requests, CourseType[] types,
+								   Map<Course, Integer> seats, Map<Student, Integer> credits) {
+		SeatAllocator allocator = new SeatAllocator(seed, seats::get, s -> credits.getOrDefault(s, 0));
+		RequestStatus[] statuses = new RequestStatus[requests.size()];
+		List<Integer> approved = allocator.allocate(requests, types, statuses);
+		return new Window(allocator, statuses, approved);
+	}
+
+	private static Course course(int credits) {
+		created++;
+		return new Course("Курс " + created, "Описание", "SEAT" + created, 1, 0, 0, credits, 2024, Semester.FALL);
+	}
+
+	private static Student student(int year) {
+		created++;
+		return new Student("seat" + created, "pass", "seat" + created + "@wow.kz", Faculty.values()[0], year);
+	}
+
+	private static RegistrationRequest request(Student s, Course c) {
+		return new RegistrationRequest(s, c, RegistrationType.ADD);
+	}
+
+	private record Window(SeatAllocator allocator, RequestStatus[] statuses, List<Integer> approved)
+	{
+	}
+
+	private static void check(boolean condition, String name) {
+		if (condition) return;
+		failures++;
+		System.out.println("FAIL " + name);
+	}
+}